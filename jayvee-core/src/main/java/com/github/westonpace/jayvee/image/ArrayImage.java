@@ -0,0 +1,730 @@
+package com.github.westonpace.jayvee.image;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.util.DoubleSinkerator;
+
+/**
+ * <p>
+ * The base class for images which store their pixel values in a single primitive
+ * array in memory. Subclasses decide what kind of array (and therefore what
+ * {@link Image.SampleType SampleType}) is used while this class takes care of
+ * everything that only depends on the position of a value in that array.
+ * </p><p>
+ * Values are stored starting with the pixel at (0,0) in one of two
+ * {@link Image.Layout layouts}.  In the interleaved layout the bands of each pixel are
+ * stored next to each other:
+ * </p><pre><code>
+ * index = x*numBands + y*width*numBands + b
+ * </code></pre><p>
+ * In the planar layout each band is stored in its own contiguous plane:
+ * </p><pre><code>
+ * index = x + y*width + b*width*height
+ * </code></pre><p>
+ * Either way the position of a value is offset + x*pixelStride + y*rowStride + b*bandStride
+ * and the rest of this class is written in terms of those strides.
+ * </p><p>
+ * Because of this, {@link #subImage(int, int, int, int) sub images} and
+ * {@link #subBands(int, int) band subsets} of an array image are array images themselves.
+ * They share the array of the image they were taken from and simply start at a different
+ * offset (and possibly cover fewer values of each row) so creating them is cheap and
+ * writing into them writes into the original image.
+ * </p>
+ *
+ * @see StandardImage
+ * @see ByteImage
+ * @see ShortImage
+ * @see IntImage
+ * @see FloatImage
+ */
+public abstract class ArrayImage extends Image {
+
+	/**
+	 * The size (in pixels) of the square blocks a transpose works through.  A block of
+	 * rows from the source and a block of rows of the destination comfortably fit in cache.
+	 */
+	private static final int TRANSPOSE_BLOCK = 32;
+
+	protected final int width;
+	protected final int height;
+	protected final int numBands;
+	protected final Layout layout;
+	/**
+	 * The distance in the array between a value and the same value of the next pixel
+	 */
+	protected final int pixelStride;
+	/**
+	 * The distance in the array between a value and the same value of the next row
+	 */
+	protected final int rowStride;
+	/**
+	 * The distance in the array between a value and the same value of the next band
+	 */
+	protected final int bandStride;
+	/**
+	 * The position in the array of the first value of the pixel at (0,0)
+	 */
+	protected final int offset;
+	private final boolean view;
+	/**
+	 * The pool this image was acquired from, if any
+	 */
+	ImagePool pool;
+
+	/**
+	 * Creates a new array image with the given dimensions and layout
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values are arranged in the array
+	 */
+	protected ArrayImage(int width, int height, int numBands, Layout layout) {
+		if(width <= 0 || height <= 0 || numBands <= 0) {
+			throw new InvalidParameterException("Width, height, and number of bands must be > 0. Actual:(" + width + "," + height + "," + numBands + ")");
+		}
+		if((long) width * height * numBands > Integer.MAX_VALUE) {
+			throw new InvalidParameterException("An image of (" + width + "," + height + "," + numBands + ") has too many values to fit in a single array, consider using a TiledImage");
+		}
+		this.width = width;
+		this.height = height;
+		this.numBands = numBands;
+		this.layout = layout;
+		if(layout == Layout.Planar) {
+			this.pixelStride = 1;
+			this.rowStride = width;
+			this.bandStride = width * height;
+		} else {
+			this.pixelStride = numBands;
+			this.rowStride = width * numBands;
+			this.bandStride = 1;
+		}
+		this.offset = 0;
+		this.view = false;
+	}
+
+	/**
+	 * Creates a view of part of the parent's array.  The view uses the same strides as
+	 * the parent and so the caller only needs to say where the view starts and how big
+	 * it is.
+	 *
+	 * @param parent
+	 *            The image whose array is being shared
+	 * @param width
+	 *            The width of the view
+	 * @param height
+	 *            The height of the view
+	 * @param numBands
+	 *            The number of bands in the view
+	 * @param offset
+	 *            The position in the parent's array of the first value of the view
+	 */
+	protected ArrayImage(ArrayImage parent, int width, int height, int numBands, int offset) {
+		this.width = width;
+		this.height = height;
+		this.numBands = numBands;
+		this.layout = parent.layout;
+		this.pixelStride = parent.pixelStride;
+		this.rowStride = parent.rowStride;
+		this.bandStride = parent.bandStride;
+		this.offset = offset;
+		this.view = true;
+	}
+
+	/**
+	 * Creates an empty (all 0's) interleaved array image with the given dimensions that
+	 * stores its values with the given sample type.
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param sampleType
+	 *            How the values of the image should be stored
+	 * @return A new image
+	 */
+	public static ArrayImage create(int width, int height, int numBands, SampleType sampleType) {
+		return create(width, height, numBands, sampleType, Layout.Interleaved);
+	}
+
+	/**
+	 * Creates an empty (all 0's) array image with the given dimensions that stores its
+	 * values with the given sample type and layout.
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param sampleType
+	 *            How the values of the image should be stored
+	 * @param layout
+	 *            How the values of the image should be arranged
+	 * @return A new image
+	 */
+	public static ArrayImage create(int width, int height, int numBands, SampleType sampleType, Layout layout) {
+		switch(sampleType) {
+		case UnsignedByte:
+			return new ByteImage(width, height, numBands, layout);
+		case UnsignedShort:
+			return new ShortImage(width, height, numBands, layout);
+		case SignedInt:
+			return new IntImage(width, height, numBands, layout);
+		case Float32:
+			return new FloatImage(width, height, numBands, layout);
+		case Float64:
+			return new StandardImage(width, height, numBands, layout);
+		default:
+			throw new InvalidParameterException("Unrecognized sample type: " + sampleType);
+		}
+	}
+
+	/**
+	 * Verifies that an array given to a constructor has the correct number of values
+	 * for the given dimensions
+	 */
+	static void checkLength(int length, int width, int height, int numBands) {
+		if (length != (width * height * numBands)) {
+			throw new InvalidParameterException("When constructing an image we were given " + length + " pixels but for a width x height x bands of (" + width + "," + height + "," + numBands
+					+ ") we should have " + (width * height * numBands) + " pixels");
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getNumBands() {
+		return numBands;
+	}
+
+	@Override
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Returns true if this image is a sub image or band subset of another image and so
+	 * shares its array with that image
+	 *
+	 * @return true if this image is a view of another image
+	 */
+	public boolean isView() {
+		return view;
+	}
+
+	/**
+	 * Array images can always be split across threads, every value has its own element
+	 * of the array
+	 */
+	@Override
+	public boolean supportsConcurrentAccess() {
+		return true;
+	}
+
+	/**
+	 * Returns this image to the {@link ImagePool ImagePool} it was acquired from, if any
+	 */
+	@Override
+	public void release() {
+		ImagePool owner = pool;
+		if(owner != null) {
+			owner.release(this);
+		}
+	}
+
+	/**
+	 * Returns the position in the underlying array of the first value of the pixel at
+	 * (0,0).  This is 0 unless the image is a view of another image.
+	 *
+	 * @return The offset of the image in its array
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the distance in the underlying array between a value and the same value of
+	 * the next pixel in the row
+	 *
+	 * @return The pixel stride
+	 */
+	public int getPixelStride() {
+		return pixelStride;
+	}
+
+	/**
+	 * Returns the distance in the underlying array between a value and the same value of
+	 * the pixel below it
+	 *
+	 * @return The row stride
+	 */
+	public int getRowStride() {
+		return rowStride;
+	}
+
+	/**
+	 * Returns the distance in the underlying array between a value and the value of the
+	 * next band of the same pixel
+	 *
+	 * @return The band stride
+	 */
+	public int getBandStride() {
+		return bandStride;
+	}
+
+	/**
+	 * Returns the position in the underlying array of the given value
+	 */
+	protected final int indexOf(int x, int y, int b) {
+		return offset + y * rowStride + x * pixelStride + b * bandStride;
+	}
+
+	/**
+	 * Returns true if every value of a row (all bands of all pixels) sits next to the
+	 * previous one in the array.  This is true of interleaved images and their sub images
+	 * but not of band subsets.
+	 */
+	final boolean hasContiguousRows() {
+		return pixelStride == numBands && (bandStride == 1 || numBands == 1);
+	}
+
+	/**
+	 * Creates an image of the same class as this one which shares this image's array.
+	 * Used to create sub images and band subsets.
+	 *
+	 * @param width
+	 *            The width of the view
+	 * @param height
+	 *            The height of the view
+	 * @param numBands
+	 *            The number of bands in the view
+	 * @param offset
+	 *            The position in the array of the first value of the view
+	 * @return The view
+	 */
+	protected abstract ArrayImage createView(int width, int height, int numBands, int offset);
+
+	@Override
+	public ArrayImage subImage(int x, int y, int width, int height) {
+		checkRegion(x, y, width, height);
+		return createView(width, height, numBands, indexOf(x, y, 0));
+	}
+
+	@Override
+	public ArrayImage subBands(int firstBand, int numBands) {
+		checkBands(firstBand, numBands);
+		return createView(width, height, numBands, indexOf(0, 0, firstBand));
+	}
+
+	/**
+	 * Reads the value at the given position in the underlying array
+	 *
+	 * @param index
+	 *            The position in the underlying array
+	 * @return The value, widened to a double
+	 */
+	protected abstract double getElement(int index);
+
+	/**
+	 * Writes the value at the given position in the underlying array, converting it
+	 * to the sample type of the image
+	 *
+	 * @param index
+	 *            The position in the underlying array
+	 * @param value
+	 *            The value to write
+	 */
+	protected abstract void setElement(int index, double value);
+
+	/**
+	 * Copies a strided run of values from this image into another array image.
+	 * Subclasses override this with a tight loop over their arrays when the destination
+	 * stores the same kind of array.  This implementation works for any pair of images
+	 * and converts each value as it goes.
+	 *
+	 * @param srcIndex
+	 *            The position of the first value to read from this image
+	 * @param srcStride
+	 *            The distance between consecutive values read from this image
+	 * @param destination
+	 *            The image to write into
+	 * @param dstIndex
+	 *            The position of the first value to write in the destination
+	 * @param dstStride
+	 *            The distance between consecutive values written to the destination
+	 * @param count
+	 *            The number of values to copy
+	 */
+	void copyElements(int srcIndex, int srcStride, ArrayImage destination, int dstIndex, int dstStride, int count) {
+		for(int i = 0; i < count; i++) {
+			destination.setElement(dstIndex, getElement(srcIndex));
+			srcIndex += srcStride;
+			dstIndex += dstStride;
+		}
+	}
+
+	/**
+	 * Reads a strided run of values from this image into consecutive positions of an
+	 * array.  Subclasses override this with a tight loop over their arrays.
+	 *
+	 * @param index
+	 *            The position of the first value to read from this image
+	 * @param stride
+	 *            The distance between consecutive values read from this image
+	 * @param destination
+	 *            The array to copy the values into
+	 * @param offset
+	 *            The position in the array of the first value
+	 * @param count
+	 *            The number of values to copy
+	 */
+	void readElements(int index, int stride, double[] destination, int offset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[offset + i] = getElement(index);
+			index += stride;
+		}
+	}
+
+	/**
+	 * Writes consecutive values of an array into a strided run of values of this image.
+	 * Subclasses override this with a tight loop over their arrays.
+	 *
+	 * @param source
+	 *            The array holding the new values
+	 * @param offset
+	 *            The position in the array of the first value
+	 * @param index
+	 *            The position of the first value to write in this image
+	 * @param stride
+	 *            The distance between consecutive values written to this image
+	 * @param count
+	 *            The number of values to copy
+	 */
+	void writeElements(double[] source, int offset, int index, int stride, int count) {
+		for(int i = 0; i < count; i++) {
+			setElement(index, source[offset + i]);
+			index += stride;
+		}
+	}
+
+	/**
+	 * Sets a strided run of values of this image to the same value.  Subclasses override
+	 * this with a tight loop (or Arrays.fill) over their arrays.
+	 *
+	 * @param index
+	 *            The position of the first value to set
+	 * @param stride
+	 *            The distance between consecutive values to set
+	 * @param count
+	 *            The number of values to set
+	 * @param value
+	 *            The value to set them to
+	 */
+	void fillElements(int index, int stride, int count, double value) {
+		for(int i = 0; i < count; i++) {
+			setElement(index, value);
+			index += stride;
+		}
+	}
+
+	/**
+	 * Sets every value of the image to the given value
+	 *
+	 * @param value
+	 *            The value to set
+	 */
+	public void fill(double value) {
+		if(hasContiguousRows() && rowStride == width * numBands) {
+			fillElements(indexOf(0, 0, 0), 1, width * height * numBands, value);
+		} else if(hasContiguousRows()) {
+			for(int y = 0; y < height; y++) {
+				fillElements(indexOf(0, y, 0), 1, width * numBands, value);
+			}
+		} else {
+			for(int b = 0; b < numBands; b++) {
+				for(int y = 0; y < height; y++) {
+					fillElements(indexOf(0, y, b), pixelStride, width, value);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void readRow(int y, int b, double[] destination, int offset) {
+		readElements(indexOf(0, y, b), pixelStride, destination, offset, width);
+	}
+
+	@Override
+	protected void writeRow(int y, int b, double[] source, int offset) {
+		writeElements(source, offset, indexOf(0, y, b), pixelStride, width);
+	}
+
+	@Override
+	protected void readRegion(int x, int y, int width, int height, double[] destination, int offset) {
+		if(!hasContiguousRows()) {
+			super.readRegion(x, y, width, height, destination, offset);
+			return;
+		}
+		int rowLength = width * numBands;
+		for(int j = y; j < y + height; j++) {
+			readElements(indexOf(x, j, 0), 1, destination, offset, rowLength);
+			offset += rowLength;
+		}
+	}
+
+	@Override
+	protected void writeRegion(int x, int y, int width, int height, double[] source, int offset) {
+		if(!hasContiguousRows()) {
+			super.writeRegion(x, y, width, height, source, offset);
+			return;
+		}
+		int rowLength = width * numBands;
+		for(int j = y; j < y + height; j++) {
+			writeElements(source, offset, indexOf(x, j, 0), 1, rowLength);
+			offset += rowLength;
+		}
+	}
+
+	/**
+	 * Copies every value of this image into the destination image.  The destination must
+	 * have the same dimensions but may have a different layout or sample type (in which
+	 * case the values are converted as they are copied).  The copy is done one row at a
+	 * time so that both images are walked through mostly sequentially.
+	 *
+	 * @param destination
+	 *            The image to copy the values into
+	 * @throws InvalidParameterException
+	 *             If the destination is not the same size as this image
+	 */
+	public void copyTo(ArrayImage destination) {
+		if(destination.width != width || destination.height != height || destination.numBands != numBands) {
+			throw new InvalidParameterException("Cannot copy a (" + width + "," + height + "," + numBands + ") image into a (" + destination.width + "," + destination.height + ","
+					+ destination.numBands + ") image");
+		}
+		if(hasContiguousRows() && destination.hasContiguousRows()) {
+			//Every row of values (all bands) lines up exactly
+			for(int y = 0; y < height; y++) {
+				copyElements(indexOf(0, y, 0), 1, destination, destination.indexOf(0, y, 0), 1, width * numBands);
+			}
+		} else if(pixelStride == 1 && rowStride == width && destination.pixelStride == 1 && destination.rowStride == width) {
+			//Every plane lines up exactly
+			for(int b = 0; b < numBands; b++) {
+				copyElements(indexOf(0, 0, b), 1, destination, destination.indexOf(0, 0, b), 1, width * height);
+			}
+		} else if(layout == destination.layout) {
+			//The values of a band in a row are spaced out the same way in both images
+			for(int b = 0; b < numBands; b++) {
+				for(int y = 0; y < height; y++) {
+					copyElements(indexOf(0, y, b), pixelStride, destination, destination.indexOf(0, y, b), destination.pixelStride, width);
+				}
+			}
+		} else {
+			//One row of one image is small enough to stay in cache while we scatter or
+			//gather the bands of the other
+			for(int y = 0; y < height; y++) {
+				for(int b = 0; b < numBands; b++) {
+					copyElements(indexOf(0, y, b), pixelStride, destination, destination.indexOf(0, y, b), destination.pixelStride, width);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a new image, with the same sample type and layout, whose value at (x,y) is
+	 * the value of this image at (y,x).
+	 *
+	 * @return The transposed image
+	 * @see #transposeInto(ArrayImage)
+	 */
+	public ArrayImage transpose() {
+		ArrayImage result = create(height, width, numBands, getSampleType(), layout);
+		transposeInto(result);
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Writes the transpose of this image into the destination.  The destination must be
+	 * as wide as this image is tall (and vice versa), have the same number of bands, and
+	 * must not share its values with this image.
+	 * </p><p>
+	 * A simple transpose reads along the rows of one image while writing down the columns
+	 * of the other, so every write lands on a different row (and often a different page)
+	 * of memory.  Instead the image is transposed one small square block at a time so that
+	 * the rows being written all stay in cache while the block is copied.  Algorithms which
+	 * need to walk down columns (e.g. the vertical pass of a separable filter) can transpose,
+	 * walk along rows, and transpose back.
+	 * </p>
+	 *
+	 * @param destination
+	 *            The image to write the transpose into
+	 * @throws InvalidParameterException
+	 *             If the destination is the wrong size
+	 */
+	public void transposeInto(ArrayImage destination) {
+		if(destination.width != height || destination.height != width || destination.numBands != numBands) {
+			throw new InvalidParameterException("The transpose of a (" + width + "," + height + "," + numBands + ") image cannot be written into a (" + destination.width + ","
+					+ destination.height + "," + destination.numBands + ") image");
+		}
+		for(int blockY = 0; blockY < height; blockY += TRANSPOSE_BLOCK) {
+			int blockBottom = Math.min(blockY + TRANSPOSE_BLOCK, height);
+			for(int blockX = 0; blockX < width; blockX += TRANSPOSE_BLOCK) {
+				int blockWidth = Math.min(TRANSPOSE_BLOCK, width - blockX);
+				//Each row of the block becomes a column of the destination
+				for(int y = blockY; y < blockBottom; y++) {
+					for(int b = 0; b < numBands; b++) {
+						copyElements(indexOf(blockX, y, b), pixelStride, destination, destination.indexOf(y, blockX, b), destination.rowStride, blockWidth);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns an image with the same values and sample type as this one arranged in the
+	 * given layout.  If this image already has the given layout then it is returned
+	 * as is, otherwise the values are copied into a new image.
+	 *
+	 * @param targetLayout
+	 *            The desired layout
+	 * @return An image with the given layout
+	 */
+	public ArrayImage toLayout(Layout targetLayout) {
+		if(targetLayout == layout) {
+			return this;
+		}
+		ArrayImage result = create(width, height, numBands, getSampleType(), targetLayout);
+		copyTo(result);
+		return result;
+	}
+
+	@Override
+	protected double doGet(int x, int y, int b) {
+		return getElement(indexOf(x, y, b));
+	}
+
+	@Override
+	public void doSet(int x, int y, int b, double value) {
+		setElement(indexOf(x, y, b), value);
+	}
+
+	@Override
+	PixelWalker newWalker(PixelOrder pixelOrder) {
+		return new ArrayWalker(this, pixelOrder);
+	}
+
+	@Override
+	PixelWalker newWalker(TiledOrder tiledOrder) {
+		return new ArrayWalker(this, tiledOrder);
+	}
+
+	@Override
+	PixelCursor newCursor(PixelWalker pixelWalker) {
+		final ArrayWalker walker = (ArrayWalker) pixelWalker;
+		return new PixelCursor() {
+
+			@Override
+			public boolean hasNext() {
+				return walker.hasNext();
+			}
+
+			@Override
+			public double nextDouble() {
+				walker.checkHasNext();
+				double result = getElement(walker.index());
+				walker.advance();
+				return result;
+			}
+
+			@Override
+			public int next(double[] destination, int offset, int count) {
+				int read = 0;
+				while(read < count && walker.hasNext()) {
+					//Copy as much as we can in one go (usually the rest of the row)
+					int run = Math.min(walker.contiguousRun(), count - read);
+					if(run == 1) {
+						destination[offset + read] = getElement(walker.index());
+						walker.advance();
+					} else {
+						readElements(walker.index(), 1, destination, offset + read, run);
+						walker.advance(run);
+					}
+					read += run;
+				}
+				return read;
+			}
+
+		};
+	}
+
+	@Override
+	DoubleSinkerator newWriter(PixelWalker pixelWalker) {
+		final ArrayWalker walker = (ArrayWalker) pixelWalker;
+		return new DoubleSinkerator() {
+
+			@Override
+			public void putNext(double value) {
+				walker.checkHasNext();
+				setElement(walker.index(), value);
+				walker.advance();
+			}
+
+			@Override
+			public void putNext(Double value) {
+				putNext(value.doubleValue());
+			}
+
+			@Override
+			public void putNext(double[] source, int offset, int length) {
+				checkCount(length);
+				walker.checkRemaining(length);
+				int written = 0;
+				while(written < length) {
+					//Copy as much as we can in one go (usually the rest of the row)
+					int run = Math.min(walker.contiguousRun(), length - written);
+					if(run == 1) {
+						setElement(walker.index(), source[offset + written]);
+						walker.advance();
+					} else {
+						writeElements(source, offset + written, walker.index(), 1, run);
+						walker.advance(run);
+					}
+					written += run;
+				}
+			}
+
+			@Override
+			public void skipNext() {
+				walker.checkHasNext();
+				walker.advance();
+			}
+
+			@Override
+			public void skip(int count) {
+				checkCount(count);
+				walker.checkRemaining(count);
+				walker.advance(count);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return walker.hasNext();
+			}
+		};
+	}
+
+}
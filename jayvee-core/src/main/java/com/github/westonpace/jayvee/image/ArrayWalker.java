@@ -0,0 +1,54 @@
+package com.github.westonpace.jayvee.image;
+
+import com.github.westonpace.jayvee.image.Image.PixelOrder;
+import com.github.westonpace.jayvee.image.Image.TiledOrder;
+
+/**
+ * Walks through the values of an array image in a given pixel order and works out where
+ * each value sits in the underlying array.  It also knows how many of the upcoming values
+ * sit next to each other in the array so that bulk reads and writes can copy them in one
+ * go.
+ */
+class ArrayWalker extends PixelWalker {
+
+	private final ArrayImage image;
+
+	ArrayWalker(ArrayImage image, PixelOrder pixelOrder) {
+		super(image, pixelOrder);
+		this.image = image;
+	}
+
+	ArrayWalker(ArrayImage image, TiledOrder tiledOrder) {
+		super(image, tiledOrder);
+		this.image = image;
+	}
+
+	/**
+	 * Returns the position in the array of the current value
+	 */
+	int index() {
+		return image.indexOf(x, y, b);
+	}
+
+	/**
+	 * Returns how many values, starting with the current one, sit next to each other in
+	 * the array and are visited one after another.  This is at least 1 unless there are no
+	 * values left.
+	 */
+	int contiguousRun() {
+		//Array images never have more than Integer.MAX_VALUE values
+		int remaining = (int) remaining();
+		if(image.hasContiguousRows()) {
+			if(isRowMajor()) {
+				if(image.rowStride == width * numBands) {
+					return remaining;
+				}
+				return (width - x) * numBands - b;
+			} else if(isTiled()) {
+				return (tileRight - x) * numBands - b;
+			}
+		}
+		return Math.min(1, remaining);
+	}
+
+}
@@ -0,0 +1,205 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An image that stores its values as unsigned bytes in a single byte array.  This
+ * is the natural representation for most 8 bit images (e.g. images read from PNG or
+ * JPEG files) and takes up an eighth of the memory of a {@link StandardImage StandardImage}.
+ * </p><p>
+ * Values range from 0 to 255.  Values written to the image are rounded to the nearest
+ * integer and anything below 0 or above 255 is clamped to 0 or 255 respectively.
+ * </p><p>
+ * The values are laid out in either of the {@link Image.Layout layouts} of an
+ * {@link ArrayImage ArrayImage}: row-major with the bands of each pixel interleaved (the
+ * default) or planar, with each band in its own row-major plane.
+ * </p>
+ */
+public class ByteImage extends ArrayImage {
+
+	private final byte[] pixels;
+
+	/**
+	 * Creates a new image with all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 */
+	public ByteImage(int width, int height, int numBands) {
+		this(width, height, numBands, Layout.Interleaved);
+	}
+
+	/**
+	 * Creates a new image with the given layout and all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values should be arranged in memory
+	 */
+	public ByteImage(int width, int height, int numBands, Layout layout) {
+		super(width, height, numBands, layout);
+		this.pixels = new byte[height * width * numBands];
+	}
+
+	/**
+	 * Creates an image from existing values.  The data is not copied so further
+	 * modification to the data array will modify the image itself.  The bytes are
+	 * interpreted as unsigned values.
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param pixels
+	 *            The initial data for the image (must be in interleaved row-major order)
+	 */
+	public ByteImage(int width, int height, int numBands, byte[] pixels) {
+		this(width, height, numBands, Layout.Interleaved, pixels);
+	}
+
+	/**
+	 * Creates an image from existing values.  The data is not copied so further
+	 * modification to the data array will modify the image itself.  The bytes are
+	 * interpreted as unsigned values.
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values are arranged in the pixels array
+	 * @param pixels
+	 *            The initial data for the image (must be arranged according to the layout)
+	 */
+	public ByteImage(int width, int height, int numBands, Layout layout, byte[] pixels) {
+		super(width, height, numBands, layout);
+		checkLength(pixels.length, width, height, numBands);
+		this.pixels = pixels;
+	}
+
+	private ByteImage(ByteImage parent, int width, int height, int numBands, int offset) {
+		super(parent, width, height, numBands, offset);
+		this.pixels = parent.pixels;
+	}
+
+	/**
+	 * Returns the array backing this image. This is not a copy, modifying the
+	 * array will modify the image.  Views of another image return the array of that image,
+	 * use the offset and strides to find the values of the view.  Remember that Java
+	 * bytes are signed and so values should be masked (e.g. {@code data[i] & 0xFF}) when
+	 * read.
+	 *
+	 * @return The pixel values of the image, arranged according to the layout and
+	 *         starting at the offset
+	 */
+	public byte[] getData() {
+		return pixels;
+	}
+
+	@Override
+	protected ArrayImage createView(int width, int height, int numBands, int offset) {
+		return new ByteImage(this, width, height, numBands, offset);
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return SampleType.UnsignedByte;
+	}
+
+	/**
+	 * Rounds and clamps a double into the 0-255 range
+	 *
+	 * @param value
+	 *            The value to convert
+	 * @return The value as an (unsigned) byte
+	 */
+	public static byte toByte(double value) {
+		if(value <= 0) {
+			return 0;
+		} else if(value >= 255) {
+			return (byte) 255;
+		}
+		//NaN falls through the checks above and is converted to 0 here
+		return (byte) (int) (value + 0.5);
+	}
+
+	@Override
+	protected double getElement(int index) {
+		return pixels[index] & 0xFF;
+	}
+
+	@Override
+	protected void setElement(int index, double value) {
+		pixels[index] = toByte(value);
+	}
+
+	@Override
+	void readElements(int index, int stride, double[] destination, int offset, int count) {
+		if(stride == 1) {
+			RowKernels.getInstance().unsignedBytesToDoubles(pixels, index, destination, offset, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			destination[offset + i] = pixels[index] & 0xFF;
+			index += stride;
+		}
+	}
+
+	@Override
+	void writeElements(double[] source, int offset, int index, int stride, int count) {
+		if(stride == 1) {
+			RowKernels.getInstance().doublesToUnsignedBytes(source, offset, pixels, index, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			pixels[index] = toByte(source[offset + i]);
+			index += stride;
+		}
+	}
+
+	@Override
+	void fillElements(int index, int stride, int count, double value) {
+		byte converted = toByte(value);
+		if(stride == 1) {
+			Arrays.fill(pixels, index, index + count, converted);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			pixels[index] = converted;
+			index += stride;
+		}
+	}
+
+	@Override
+	void copyElements(int srcIndex, int srcStride, ArrayImage destination, int dstIndex, int dstStride, int count) {
+		if(!(destination instanceof ByteImage)) {
+			super.copyElements(srcIndex, srcStride, destination, dstIndex, dstStride, count);
+			return;
+		}
+		byte[] target = ((ByteImage) destination).pixels;
+		if(srcStride == 1 && dstStride == 1) {
+			System.arraycopy(pixels, srcIndex, target, dstIndex, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			target[dstIndex] = pixels[srcIndex];
+			srcIndex += srcStride;
+			dstIndex += dstStride;
+		}
+	}
+
+}
@@ -0,0 +1,550 @@
+package com.github.westonpace.jayvee.image;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.log4j.Logger;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * An image that stores its values outside of the Java heap in a direct
+ * {@link ByteBuffer ByteBuffer}.  Large images sitting in buffers between workers
+ * put a lot of pressure on the garbage collector.  Keeping the pixels off-heap means
+ * the collector only ever sees the (tiny) image object itself.  It also means the
+ * pixels can be handed to a {@link java.nio.channels.FileChannel FileChannel} (or any
+ * other channel) without first being copied into a heap array.
+ * </p><p>
+ * The values can be stored as any {@link Image.SampleType SampleType} and use the
+ * interleaved layout (see {@link ArrayImage ArrayImage}).  Values are
+ * stored in the native byte order of the machine.
+ * </p><p>
+ * Off-heap memory is only reclaimed when the buffer is garbage collected, which may
+ * be a long time after the image is no longer used.  Call {@link #close() close}
+ * when you are finished with the image to release the memory right away.  Once
+ * closed any attempt to access the image will throw an {@link IllegalStateException
+ * IllegalStateException}.  The image must not be closed while another thread is still
+ * reading or writing it.
+ * </p><p>
+ * Sub images and band subsets of a direct image share its buffer.  They always go
+ * through the image they were taken from to reach the buffer so once that image is
+ * closed its views can no longer be accessed either.  Closing a view does nothing.
+ * </p>
+ */
+public class DirectImage extends ArrayImage implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(DirectImage.class);
+
+	/**
+	 * Runs of bytes are converted through a heap array this long so they can use the row
+	 * kernels
+	 */
+	private static final int CHUNK_SIZE = 4096;
+	private static final ThreadLocal<byte[]> scratchBytes = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[CHUNK_SIZE];
+		}
+	};
+	private static final ThreadLocal<double[]> scratchValues = new ThreadLocal<double[]>() {
+		@Override
+		protected double[] initialValue() {
+			return new double[CHUNK_SIZE];
+		}
+	};
+
+	private final SampleType sampleType;
+	private final int bytesPerSample;
+	private final boolean ownsBuffer;
+	/**
+	 * The image which holds the buffer, this image unless it is a view
+	 */
+	private final DirectImage owner;
+	/**
+	 * The values of the image, null once the image has been closed
+	 */
+	private volatile ByteBuffer buffer;
+	/**
+	 * Set once the buffer has been handed out by getBuffer, after that it can't be freed
+	 * early since the caller could still touch it
+	 */
+	private volatile boolean bufferShared = false;
+
+	/**
+	 * Creates a new off-heap image with all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param sampleType
+	 *            How each value should be stored
+	 */
+	public DirectImage(int width, int height, int numBands, SampleType sampleType) {
+		super(width, height, numBands, Layout.Interleaved);
+		this.sampleType = sampleType;
+		this.bytesPerSample = sampleType.getBytesPerSample();
+		this.buffer = ByteBuffer.allocateDirect(checkCapacity(width, height, numBands, sampleType)).order(ByteOrder.nativeOrder());
+		this.ownsBuffer = true;
+		this.owner = this;
+	}
+
+	/**
+	 * <p>
+	 * Creates an image on top of an existing buffer.  The buffer is not copied so
+	 * further modification to the buffer will modify the image itself.  This can be
+	 * used, for example, to view a memory mapped file as an image.
+	 * </p><p>
+	 * The buffer must contain exactly width*height*numBands values of the given sample
+	 * type between its position and its limit.  As the image does not own the buffer,
+	 * closing the image will not release the buffer's memory.
+	 * </p>
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param sampleType
+	 *            How each value is stored in the buffer
+	 * @param buffer
+	 *            The values of the image (in row-major order)
+	 */
+	public DirectImage(int width, int height, int numBands, SampleType sampleType, ByteBuffer buffer) {
+		super(width, height, numBands, Layout.Interleaved);
+		if(buffer.remaining() != checkCapacity(width, height, numBands, sampleType)) {
+			throw new InvalidParameterException("When constructing a direct image we were given " + buffer.remaining() + " bytes but for a width x height x bands of (" + width + "," + height + ","
+					+ numBands + ") we should have " + ((long) width * height * numBands * sampleType.getBytesPerSample()) + " bytes");
+		}
+		this.sampleType = sampleType;
+		this.bytesPerSample = sampleType.getBytesPerSample();
+		this.buffer = buffer.slice().order(buffer.order());
+		this.ownsBuffer = false;
+		this.owner = this;
+	}
+
+	private DirectImage(DirectImage parent, int width, int height, int numBands, int offset) {
+		super(parent, width, height, numBands, offset);
+		this.sampleType = parent.sampleType;
+		this.bytesPerSample = parent.bytesPerSample;
+		this.ownsBuffer = false;
+		this.owner = parent.owner;
+	}
+
+	private static int checkCapacity(int width, int height, int numBands, SampleType sampleType) {
+		long capacity = (long) width * height * numBands * sampleType.getBytesPerSample();
+		if(capacity > Integer.MAX_VALUE) {
+			throw new InvalidParameterException("A direct image can hold at most " + Integer.MAX_VALUE + " bytes but (" + width + "," + height + "," + numBands + ") " + sampleType + " needs " + capacity);
+		}
+		return (int) capacity;
+	}
+
+	@Override
+	protected ArrayImage createView(int width, int height, int numBands, int offset) {
+		return new DirectImage(this, width, height, numBands, offset);
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return sampleType;
+	}
+
+	/**
+	 * <p>
+	 * Returns a view of the memory backing this image.  The view has its own position and
+	 * limit (set to cover the entire image) but shares its content with the image so
+	 * writing into the view modifies the image.  If this image is a view of another
+	 * image then the whole buffer of that image is returned, use the offset and strides
+	 * to find the values of this image.
+	 * </p><p>
+	 * Once a buffer has been handed out, closing the image no longer frees the memory right
+	 * away (the buffer could still be in use) and leaves it to the garbage collector.
+	 * </p>
+	 *
+	 * @return A buffer containing the values of the image in row-major order
+	 * @throws IllegalStateException
+	 *             If the image has been closed
+	 */
+	public ByteBuffer getBuffer() {
+		owner.bufferShared = true;
+		return duplicateBuffer();
+	}
+
+	private ByteBuffer duplicateBuffer() {
+		ByteBuffer buffer = liveBuffer();
+		return buffer.duplicate().order(buffer.order());
+	}
+
+	private ByteBuffer liveBuffer() {
+		ByteBuffer buffer = owner.buffer;
+		if(buffer == null) {
+			throw new IllegalStateException("The direct image has been closed");
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes the raw values of the image (in row-major order and native byte order) to the
+	 * given channel without copying them onto the heap.  The only exception is a band
+	 * subset whose values are gathered into a small buffer one row at a time.
+	 *
+	 * @param channel
+	 *            The channel to write to
+	 * @throws IOException
+	 *             If the channel cannot be written to
+	 * @throws IllegalStateException
+	 *             If the image has been closed
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer view = duplicateBuffer();
+		int rowBytes = width * numBands * bytesPerSample;
+		if(hasContiguousRows() && rowStride == width * numBands) {
+			//The whole image is one contiguous run of the buffer
+			view.position(offset * bytesPerSample);
+			view.limit(view.position() + rowBytes * height);
+			writeFully(view, channel);
+		} else if(hasContiguousRows()) {
+			for(int y = 0; y < height; y++) {
+				view.limit(view.capacity());
+				view.position(indexOf(0, y, 0) * bytesPerSample);
+				view.limit(view.position() + rowBytes);
+				writeFully(view, channel);
+			}
+		} else {
+			//The values of a row are spread out so gather them first
+			ByteBuffer row = ByteBuffer.allocate(rowBytes);
+			for(int y = 0; y < height; y++) {
+				row.clear();
+				for(int x = 0; x < width; x++) {
+					for(int b = 0; b < numBands; b++) {
+						int start = indexOf(x, y, b) * bytesPerSample;
+						for(int i = 0; i < bytesPerSample; i++) {
+							row.put(view.get(start + i));
+						}
+					}
+				}
+				row.flip();
+				writeFully(row, channel);
+			}
+		}
+	}
+
+	private static void writeFully(ByteBuffer source, WritableByteChannel channel) throws IOException {
+		while(source.hasRemaining()) {
+			channel.write(source);
+		}
+	}
+
+	/**
+	 * Returns true if {@link #close() close} has been called on this image
+	 *
+	 * @return true if the image has been closed
+	 */
+	public boolean isClosed() {
+		return owner.buffer == null;
+	}
+
+	/**
+	 * Releases the memory held by this image.  If this image allocated its own buffer then
+	 * the memory is freed immediately (where the JVM allows it) rather than waiting for
+	 * the garbage collector.  If a buffer has been handed out by {@link #getBuffer()
+	 * getBuffer} the memory is left for the garbage collector instead, so that buffer stays
+	 * safe to touch.  Closing an image that is already closed does nothing.
+	 */
+	@Override
+	public synchronized void close() {
+		if(owner != this || isClosed()) {
+			return;
+		}
+		ByteBuffer released = buffer;
+		buffer = null;
+		if(ownsBuffer && !bufferShared) {
+			free(released);
+		}
+	}
+
+	/*
+	 * There is no public API for freeing a direct buffer so we have to reach into the JVM.
+	 * Newer JVMs expose Unsafe.invokeCleaner, older ones expose a cleaner() method on the
+	 * buffer itself.  If neither works we simply let the garbage collector take care of it.
+	 */
+	private static void free(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Exception ex) {
+			logger.trace("Unsafe.invokeCleaner unavailable", ex);
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if(cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Exception ex) {
+			logger.debug("Unable to free direct buffer, it will be freed when it is garbage collected");
+			logger.trace("Stack trace", ex);
+		}
+	}
+
+	@Override
+	protected double getElement(int index) {
+		ByteBuffer buffer = liveBuffer();
+		switch(sampleType) {
+		case UnsignedByte:
+			return buffer.get(index) & 0xFF;
+		case UnsignedShort:
+			return buffer.getShort(index * bytesPerSample) & 0xFFFF;
+		case SignedInt:
+			return buffer.getInt(index * bytesPerSample);
+		case Float32:
+			return buffer.getFloat(index * bytesPerSample);
+		default:
+			return buffer.getDouble(index * bytesPerSample);
+		}
+	}
+
+	@Override
+	protected void setElement(int index, double value) {
+		ByteBuffer buffer = liveBuffer();
+		switch(sampleType) {
+		case UnsignedByte:
+			buffer.put(index, ByteImage.toByte(value));
+			break;
+		case UnsignedShort:
+			buffer.putShort(index * bytesPerSample, ShortImage.toShort(value));
+			break;
+		case SignedInt:
+			buffer.putInt(index * bytesPerSample, (int) Math.floor(value + 0.5));
+			break;
+		case Float32:
+			buffer.putFloat(index * bytesPerSample, (float) value);
+			break;
+		default:
+			buffer.putDouble(index * bytesPerSample, value);
+			break;
+		}
+	}
+
+	/*
+	 * The bulk hooks below fetch the buffer once and pick the sample type once per run
+	 * rather than once per value.  The typed views are taken from the whole buffer (whose
+	 * position is always 0) so they can be indexed by element index.
+	 */
+
+	@Override
+	void readElements(int index, int stride, double[] destination, int offset, int count) {
+		ByteBuffer buffer = liveBuffer();
+		switch(sampleType) {
+		case UnsignedByte:
+			if(stride == 1) {
+				readBytes(buffer, index, destination, offset, count);
+				return;
+			}
+			for(int i = 0; i < count; i++) {
+				destination[offset + i] = buffer.get(index) & 0xFF;
+				index += stride;
+			}
+			break;
+		case UnsignedShort:
+			ShortBuffer shorts = buffer.asShortBuffer();
+			for(int i = 0; i < count; i++) {
+				destination[offset + i] = shorts.get(index) & 0xFFFF;
+				index += stride;
+			}
+			break;
+		case SignedInt:
+			IntBuffer ints = buffer.asIntBuffer();
+			for(int i = 0; i < count; i++) {
+				destination[offset + i] = ints.get(index);
+				index += stride;
+			}
+			break;
+		case Float32:
+			FloatBuffer floats = buffer.asFloatBuffer();
+			for(int i = 0; i < count; i++) {
+				destination[offset + i] = floats.get(index);
+				index += stride;
+			}
+			break;
+		default:
+			DoubleBuffer doubles = buffer.asDoubleBuffer();
+			if(stride == 1) {
+				doubles.position(index);
+				doubles.get(destination, offset, count);
+				return;
+			}
+			for(int i = 0; i < count; i++) {
+				destination[offset + i] = doubles.get(index);
+				index += stride;
+			}
+			break;
+		}
+	}
+
+	private static void readBytes(ByteBuffer buffer, int index, double[] destination, int offset, int count) {
+		RowKernels kernels = RowKernels.getInstance();
+		byte [] bytes = scratchBytes.get();
+		ByteBuffer view = buffer.duplicate();
+		view.position(index);
+		while(count > 0) {
+			int run = Math.min(count, bytes.length);
+			view.get(bytes, 0, run);
+			kernels.unsignedBytesToDoubles(bytes, 0, destination, offset, run);
+			offset += run;
+			count -= run;
+		}
+	}
+
+	@Override
+	void writeElements(double[] source, int offset, int index, int stride, int count) {
+		ByteBuffer buffer = liveBuffer();
+		switch(sampleType) {
+		case UnsignedByte:
+			if(stride == 1) {
+				writeBytes(source, offset, buffer, index, count);
+				return;
+			}
+			for(int i = 0; i < count; i++) {
+				buffer.put(index, ByteImage.toByte(source[offset + i]));
+				index += stride;
+			}
+			break;
+		case UnsignedShort:
+			ShortBuffer shorts = buffer.asShortBuffer();
+			for(int i = 0; i < count; i++) {
+				shorts.put(index, ShortImage.toShort(source[offset + i]));
+				index += stride;
+			}
+			break;
+		case SignedInt:
+			IntBuffer ints = buffer.asIntBuffer();
+			for(int i = 0; i < count; i++) {
+				ints.put(index, (int) Math.floor(source[offset + i] + 0.5));
+				index += stride;
+			}
+			break;
+		case Float32:
+			FloatBuffer floats = buffer.asFloatBuffer();
+			for(int i = 0; i < count; i++) {
+				floats.put(index, (float) source[offset + i]);
+				index += stride;
+			}
+			break;
+		default:
+			DoubleBuffer doubles = buffer.asDoubleBuffer();
+			if(stride == 1) {
+				doubles.position(index);
+				doubles.put(source, offset, count);
+				return;
+			}
+			for(int i = 0; i < count; i++) {
+				doubles.put(index, source[offset + i]);
+				index += stride;
+			}
+			break;
+		}
+	}
+
+	private static void writeBytes(double[] source, int offset, ByteBuffer buffer, int index, int count) {
+		RowKernels kernels = RowKernels.getInstance();
+		byte [] bytes = scratchBytes.get();
+		ByteBuffer view = buffer.duplicate();
+		view.position(index);
+		while(count > 0) {
+			int run = Math.min(count, bytes.length);
+			kernels.doublesToUnsignedBytes(source, offset, bytes, 0, run);
+			view.put(bytes, 0, run);
+			offset += run;
+			count -= run;
+		}
+	}
+
+	@Override
+	void fillElements(int index, int stride, int count, double value) {
+		ByteBuffer buffer = liveBuffer();
+		switch(sampleType) {
+		case UnsignedByte:
+			byte byteValue = ByteImage.toByte(value);
+			for(int i = 0; i < count; i++) {
+				buffer.put(index, byteValue);
+				index += stride;
+			}
+			break;
+		case UnsignedShort:
+			ShortBuffer shorts = buffer.asShortBuffer();
+			short shortValue = ShortImage.toShort(value);
+			for(int i = 0; i < count; i++) {
+				shorts.put(index, shortValue);
+				index += stride;
+			}
+			break;
+		case SignedInt:
+			IntBuffer ints = buffer.asIntBuffer();
+			int intValue = (int) Math.floor(value + 0.5);
+			for(int i = 0; i < count; i++) {
+				ints.put(index, intValue);
+				index += stride;
+			}
+			break;
+		case Float32:
+			FloatBuffer floats = buffer.asFloatBuffer();
+			float floatValue = (float) value;
+			for(int i = 0; i < count; i++) {
+				floats.put(index, floatValue);
+				index += stride;
+			}
+			break;
+		default:
+			DoubleBuffer doubles = buffer.asDoubleBuffer();
+			for(int i = 0; i < count; i++) {
+				doubles.put(index, value);
+				index += stride;
+			}
+			break;
+		}
+	}
+
+	@Override
+	void copyElements(int srcIndex, int srcStride, ArrayImage destination, int dstIndex, int dstStride, int count) {
+		if(destination instanceof DirectImage && ((DirectImage) destination).sampleType == sampleType && srcStride == 1 && dstStride == 1) {
+			//Same encoding on both sides so the raw bytes can be copied
+			ByteBuffer source = liveBuffer().duplicate();
+			ByteBuffer target = ((DirectImage) destination).liveBuffer().duplicate();
+			source.position(srcIndex * bytesPerSample);
+			source.limit(source.position() + count * bytesPerSample);
+			target.position(dstIndex * bytesPerSample);
+			target.put(source);
+			return;
+		}
+		//Otherwise go through doubles a chunk at a time, the destination converts them
+		double [] values = scratchValues.get();
+		while(count > 0) {
+			int run = Math.min(count, values.length);
+			readElements(srcIndex, srcStride, values, 0, run);
+			destination.writeElements(values, 0, dstIndex, dstStride, run);
+			srcIndex += run * srcStride;
+			dstIndex += run * dstStride;
+			count -= run;
+		}
+	}
+
+}
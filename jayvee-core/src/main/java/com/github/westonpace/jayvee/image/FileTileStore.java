@@ -0,0 +1,171 @@
+package com.github.westonpace.jayvee.image;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.TiledImage.TileStore;
+
+/**
+ * <p>
+ * A {@link TileStore TileStore} which keeps the tiles of a {@link TiledImage TiledImage}
+ * in a temporary file so that modified tiles can be evicted from memory.  Tiles are
+ * written to the end of the file the first time they are stored and overwritten in place
+ * after that.  Tiles which have never been stored load as 0's.
+ * </p><p>
+ * Values are stored in the tile's sample type so the file is no bigger than the image
+ * would be in memory.  The file is created the first time a tile is stored and deleted
+ * when the store is closed (or, failing that, when the JVM exits).
+ * </p>
+ */
+public class FileTileStore implements TileStore, Closeable {
+
+	private final Map<Long, Long> offsets = new HashMap<Long, Long>();
+	private File file;
+	private RandomAccessFile randomAccessFile;
+	private long length = 0;
+	private ByteBuffer buffer;
+	private double[] values;
+
+	private FileChannel getChannel() throws IOException {
+		if(randomAccessFile == null) {
+			file = File.createTempFile("jayvee-tiles", ".tmp");
+			file.deleteOnExit();
+			randomAccessFile = new RandomAccessFile(file, "rw");
+		}
+		return randomAccessFile.getChannel();
+	}
+
+	private static long key(int tileX, int tileY) {
+		return ((long) tileY << 32) | (tileX & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * Makes sure the scratch arrays can hold a tile
+	 */
+	private void prepare(ArrayImage tile) {
+		int count = tile.getWidth() * tile.getHeight() * tile.getNumBands();
+		int bytes = count * tile.getSampleType().getBytesPerSample();
+		if(values == null || values.length < count) {
+			values = new double[count];
+		}
+		if(buffer == null || buffer.capacity() < bytes) {
+			buffer = ByteBuffer.allocate(bytes);
+		}
+		buffer.clear();
+		buffer.limit(bytes);
+	}
+
+	@Override
+	public synchronized void loadTile(int tileX, int tileY, ArrayImage tile) {
+		Long offset = offsets.get(key(tileX, tileY));
+		if(offset == null) {
+			return;
+		}
+		prepare(tile);
+		try {
+			FileChannel channel = getChannel();
+			long position = offset;
+			while(buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if(read < 0) {
+					throw new IOException("The tile file ended early");
+				}
+				position += read;
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Could not load tile (" + tileX + "," + tileY + ")", ex);
+		}
+		buffer.flip();
+		int count = buffer.limit() / tile.getSampleType().getBytesPerSample();
+		SampleType sampleType = tile.getSampleType();
+		for(int i = 0; i < count; i++) {
+			switch(sampleType) {
+			case UnsignedByte:
+				values[i] = buffer.get() & 0xFF;
+				break;
+			case UnsignedShort:
+				values[i] = buffer.getShort() & 0xFFFF;
+				break;
+			case SignedInt:
+				values[i] = buffer.getInt();
+				break;
+			case Float32:
+				values[i] = buffer.getFloat();
+				break;
+			default:
+				values[i] = buffer.getDouble();
+			}
+		}
+		tile.setRegion(0, 0, tile.getWidth(), tile.getHeight(), values, 0);
+	}
+
+	@Override
+	public synchronized void storeTile(int tileX, int tileY, ArrayImage tile) {
+		prepare(tile);
+		tile.getRegion(0, 0, tile.getWidth(), tile.getHeight(), values, 0);
+		int count = buffer.limit() / tile.getSampleType().getBytesPerSample();
+		SampleType sampleType = tile.getSampleType();
+		//The tile has already rounded and clamped its values so these casts are exact
+		for(int i = 0; i < count; i++) {
+			switch(sampleType) {
+			case UnsignedByte:
+				buffer.put((byte) values[i]);
+				break;
+			case UnsignedShort:
+				buffer.putShort((short) values[i]);
+				break;
+			case SignedInt:
+				buffer.putInt((int) values[i]);
+				break;
+			case Float32:
+				buffer.putFloat((float) values[i]);
+				break;
+			default:
+				buffer.putDouble(values[i]);
+			}
+		}
+		buffer.flip();
+		Long offset = offsets.get(key(tileX, tileY));
+		if(offset == null) {
+			offset = length;
+			length += buffer.limit();
+			offsets.put(key(tileX, tileY), offset);
+		}
+		try {
+			FileChannel channel = getChannel();
+			long position = offset;
+			while(buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Could not store tile (" + tileX + "," + tileY + ")", ex);
+		}
+	}
+
+	/**
+	 * Deletes the file holding the tiles.  Tiles which have been stored are lost.
+	 */
+	@Override
+	public synchronized void close() {
+		offsets.clear();
+		length = 0;
+		if(randomAccessFile != null) {
+			try {
+				randomAccessFile.close();
+			} catch (IOException ex) {
+				throw new RuntimeException("Could not close the tile file", ex);
+			} finally {
+				randomAccessFile = null;
+				file.delete();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An image that stores its values as single precision floating point numbers in a
+ * single float array.  This takes up half the memory of a
+ * {@link StandardImage StandardImage} and is accurate enough for most intermediate
+ * results (e.g. gradients, filter responses) which need fractional values.
+ * </p><p>
+ * The values are laid out in either of the {@link Image.Layout layouts} of an
+ * {@link ArrayImage ArrayImage}: row-major with the bands of each pixel interleaved (the
+ * default) or planar, with each band in its own row-major plane.
+ * </p>
+ */
+public class FloatImage extends ArrayImage {
+
+	private final float[] pixels;
+
+	/**
+	 * Creates a new image with all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 */
+	public FloatImage(int width, int height, int numBands) {
+		this(width, height, numBands, Layout.Interleaved);
+	}
+
+	/**
+	 * Creates a new image with the given layout and all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values should be arranged in memory
+	 */
+	public FloatImage(int width, int height, int numBands, Layout layout) {
+		super(width, height, numBands, layout);
+		this.pixels = new float[height * width * numBands];
+	}
+
+	/**
+	 * Creates an image from existing values.  The data is not copied so further
+	 * modification to the data array will modify the image itself.
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param pixels
+	 *            The initial data for the image (must be in interleaved row-major order)
+	 */
+	public FloatImage(int width, int height, int numBands, float[] pixels) {
+		this(width, height, numBands, Layout.Interleaved, pixels);
+	}
+
+	/**
+	 * Creates an image from existing values.  The data is not copied so further
+	 * modification to the data array will modify the image itself.
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values are arranged in the pixels array
+	 * @param pixels
+	 *            The initial data for the image (must be arranged according to the layout)
+	 */
+	public FloatImage(int width, int height, int numBands, Layout layout, float[] pixels) {
+		super(width, height, numBands, layout);
+		checkLength(pixels.length, width, height, numBands);
+		this.pixels = pixels;
+	}
+
+	private FloatImage(FloatImage parent, int width, int height, int numBands, int offset) {
+		super(parent, width, height, numBands, offset);
+		this.pixels = parent.pixels;
+	}
+
+	/**
+	 * Returns the array backing this image. This is not a copy, modifying the
+	 * array will modify the image.  Views of another image return the array of that image,
+	 * use the offset and strides to find the values of the view.
+	 *
+	 * @return The pixel values of the image, arranged according to the layout and
+	 *         starting at the offset
+	 */
+	public float[] getData() {
+		return pixels;
+	}
+
+	@Override
+	protected ArrayImage createView(int width, int height, int numBands, int offset) {
+		return new FloatImage(this, width, height, numBands, offset);
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return SampleType.Float32;
+	}
+
+	@Override
+	protected double getElement(int index) {
+		return pixels[index];
+	}
+
+	@Override
+	protected void setElement(int index, double value) {
+		pixels[index] = (float) value;
+	}
+
+	@Override
+	void readElements(int index, int stride, double[] destination, int offset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[offset + i] = pixels[index];
+			index += stride;
+		}
+	}
+
+	@Override
+	void writeElements(double[] source, int offset, int index, int stride, int count) {
+		for(int i = 0; i < count; i++) {
+			pixels[index] = (float) source[offset + i];
+			index += stride;
+		}
+	}
+
+	@Override
+	void fillElements(int index, int stride, int count, double value) {
+		float converted = (float) value;
+		if(stride == 1) {
+			Arrays.fill(pixels, index, index + count, converted);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			pixels[index] = converted;
+			index += stride;
+		}
+	}
+
+	@Override
+	void copyElements(int srcIndex, int srcStride, ArrayImage destination, int dstIndex, int dstStride, int count) {
+		if(!(destination instanceof FloatImage)) {
+			super.copyElements(srcIndex, srcStride, destination, dstIndex, dstStride, count);
+			return;
+		}
+		float[] target = ((FloatImage) destination).pixels;
+		if(srcStride == 1 && dstStride == 1) {
+			System.arraycopy(pixels, srcIndex, target, dstIndex, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			target[dstIndex] = pixels[srcIndex];
+			srcIndex += srcStride;
+			dstIndex += dstStride;
+		}
+	}
+
+}
@@ -1,8 +1,11 @@
 package com.github.westonpace.jayvee.image;
 
+import java.util.Iterator;
+
 import com.github.westonpace.jayvee.image.Interpolator.BilinearInterpolator;
 import com.github.westonpace.jayvee.util.InvalidParameterException;
-import com.github.westonpace.jayvee.util.Sinkerator;
+import com.github.westonpace.jayvee.util.DoubleSinkerator;
+import com.github.westonpace.jayvee.util.Parallel;
 
 /**
  * <p>
@@ -48,6 +51,20 @@ import com.github.westonpace.jayvee.util.Sinkerator;
  * <p>
  * 1A 1B 1C 4A 4B 4C 7A 7B 7C 2A ...
  * </p>
+ * <p>
+ * Walking down the columns of a wide image jumps a whole row ahead in memory on every
+ * step.  A {@link TiledOrder tiled} order instead visits the image one
+ * small tile at a time (row-major within each tile, tiles in row-major order) which
+ * keeps every access close to the previous ones.  With 2x2 tiles the image above is
+ * visited as 1 2 4 5 3 6 7 8 9.
+ * </p>
+ * <h3>Layout</h3>
+ * <p>
+ * Regardless of the pixel order requested, the way an image actually stores its
+ * values in memory is described by its {@link Layout Layout}. Workers which loop
+ * over every value should consult the layout and choose a loop order that walks
+ * through memory sequentially.
+ * </p>
  */
 public abstract class Image {
 
@@ -55,6 +72,130 @@ public abstract class Image {
 	 * The default interpolator is used if no interpolator is supplied
 	 */
 	private static final Interpolator DEFAULT_INTERPOLATOR = new BilinearInterpolator();
+	/**
+	 * The fewest rows worth handing to another thread in the map and forEach methods
+	 */
+	private static final int MIN_STRIP_ROWS = 16;
+
+	/**
+	 * <p>
+	 * Direct access to the values of an image without any bounds checking.  The
+	 * dimensions of the image are read once when the view is created so loops can use
+	 * them without calling back into the image.
+	 * </p><p>
+	 * It is up to the caller to stay within the bounds of the image.  Accessing a value
+	 * outside of the image may throw an exception or may quietly read (or write) the
+	 * wrong value.
+	 * </p>
+	 */
+	public static final class UnsafeView {
+
+		private final Image image;
+		private final int width;
+		private final int height;
+		private final int numBands;
+
+		private UnsafeView(Image image) {
+			this.image = image;
+			this.width = image.getWidth();
+			this.height = image.getHeight();
+			this.numBands = image.getNumBands();
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getNumBands() {
+			return numBands;
+		}
+
+		/**
+		 * Returns the value at the given coordinates, which must be within the image
+		 */
+		public double get(int x, int y, int b) {
+			return image.doGet(x, y, b);
+		}
+
+		/**
+		 * Sets the value at the given coordinates, which must be within the image
+		 */
+		public void set(int x, int y, int b, double value) {
+			image.doSet(x, y, b, value);
+		}
+
+	}
+
+	/**
+	 * Calculates a new value from a single value, used by
+	 * {@link Image#mapValues(ValueOperator, Image) mapValues}.  Operators may be called
+	 * from several threads at once.
+	 */
+	public interface ValueOperator {
+
+		/**
+		 * @param value A value of the source image
+		 * @return The matching value of the destination image
+		 */
+		public double apply(double value);
+
+	}
+
+	/**
+	 * Calculates a destination pixel from a source pixel, used by
+	 * {@link Image#mapPixels(PixelOperator, Image) mapPixels}.  The source and destination
+	 * may have a different number of bands.  Operators may be called from several threads
+	 * at once.
+	 */
+	public interface PixelOperator {
+
+		/**
+		 * @param source An array holding the bands of the source pixel
+		 * @param sourceOffset The position of the first band of the source pixel
+		 * @param destination The array to write the bands of the destination pixel into
+		 * @param destinationOffset The position of the first band of the destination pixel
+		 */
+		public void apply(double[] source, int sourceOffset, double[] destination, int destinationOffset);
+
+	}
+
+	/**
+	 * Calculates a destination row from a source row, used by
+	 * {@link Image#mapRows(RowOperator, Image) mapRows}.  Rows hold every band of every
+	 * pixel of the row (see {@link Image#getRegion(int, int, int, int, double[], int)
+	 * getRegion}).  Images stored in tiles hand over each row one tile at a time so a row
+	 * may arrive in several pieces, the length of the arrays is the length of the piece.
+	 * Operators may be called from several threads at once.
+	 */
+	public interface RowOperator {
+
+		/**
+		 * @param y The row being calculated
+		 * @param source The values of the source row
+		 * @param destination The array to write the values of the destination row into
+		 */
+		public void apply(int y, double[] source, double[] destination);
+
+	}
+
+	/**
+	 * Looks at the rows of an image, used by {@link Image#forEachRow(RowVisitor) forEachRow}.
+	 * Rows hold every band of every pixel of the row.  Visitors may be called from several
+	 * threads at once.
+	 */
+	public interface RowVisitor {
+
+		/**
+		 * @param y The row being visited
+		 * @param row The values of the row
+		 */
+		public void visit(int y, double[] row);
+
+	}
 
 	/**
 	 * PixelOrder defines how a 2 dimensional image can be presented as a 1
@@ -73,6 +214,162 @@ public abstract class Image {
 		ColumnMajor;
 	}
 
+	/**
+	 * A pixel order which visits the image one tile at a time.  Tiles are visited in
+	 * row-major order and the pixels within each tile are also visited in row-major order.
+	 * Tiles along the right and bottom edges are clipped to the image.  This is kept apart
+	 * from {@link PixelOrder PixelOrder} so that PixelOrder stays a plain enum.
+	 */
+	public static final class TiledOrder {
+
+		private final int tileWidth;
+		private final int tileHeight;
+
+		/**
+		 * Creates a new tiled order
+		 *
+		 * @param tileWidth
+		 *            The width of each tile
+		 * @param tileHeight
+		 *            The height of each tile
+		 */
+		public TiledOrder(int tileWidth, int tileHeight) {
+			if(tileWidth <= 0 || tileHeight <= 0) {
+				throw new InvalidParameterException("Tile width and height must be > 0. Actual:(" + tileWidth + "," + tileHeight + ")");
+			}
+			this.tileWidth = tileWidth;
+			this.tileHeight = tileHeight;
+		}
+
+		/**
+		 * Returns the width of each tile
+		 */
+		public int getTileWidth() {
+			return tileWidth;
+		}
+
+		/**
+		 * Returns the height of each tile
+		 */
+		public int getTileHeight() {
+			return tileHeight;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof TiledOrder)) {
+				return false;
+			}
+			TiledOrder otherOrder = (TiledOrder) other;
+			return tileWidth == otherOrder.tileWidth && tileHeight == otherOrder.tileHeight;
+		}
+
+		@Override
+		public int hashCode() {
+			return tileWidth * 31 + tileHeight;
+		}
+
+		@Override
+		public String toString() {
+			return "Tiled(" + tileWidth + "," + tileHeight + ")";
+		}
+
+	}
+
+	/**
+	 * Layout describes how the values of an image are arranged in memory
+	 */
+	public enum Layout {
+		/**
+		 * All of the bands of a pixel are stored next to each other (e.g. RGBRGBRGB...).
+		 * Loops should visit every band of a pixel before moving on to the next pixel.
+		 */
+		Interleaved,
+		/**
+		 * Each band is stored in its own contiguous plane (e.g. RRR...GGG...BBB...).
+		 * Loops should visit every pixel of a band before moving on to the next band.
+		 */
+		Planar;
+	}
+
+	/**
+	 * SampleType describes how an image stores each of its values in memory and
+	 * therefore what range of values the image can faithfully hold. Regardless of
+	 * the sample type all values are read and written as doubles. Values written to
+	 * an integer sample type are rounded to the nearest integer and clamped to the
+	 * range of the type.
+	 */
+	public enum SampleType {
+		/**
+		 * One unsigned byte per value, 0 to 255
+		 */
+		UnsignedByte(1, true, 0, 255),
+		/**
+		 * Two unsigned bytes per value, 0 to 65535
+		 */
+		UnsignedShort(2, true, 0, 65535),
+		/**
+		 * A signed 32 bit integer per value
+		 */
+		SignedInt(4, true, Integer.MIN_VALUE, Integer.MAX_VALUE),
+		/**
+		 * A single precision floating point number per value
+		 */
+		Float32(4, false, -Float.MAX_VALUE, Float.MAX_VALUE),
+		/**
+		 * A double precision floating point number per value
+		 */
+		Float64(8, false, -Double.MAX_VALUE, Double.MAX_VALUE);
+
+		private final int bytesPerSample;
+		private final boolean integral;
+		private final double minValue;
+		private final double maxValue;
+
+		private SampleType(int bytesPerSample, boolean integral, double minValue, double maxValue) {
+			this.bytesPerSample = bytesPerSample;
+			this.integral = integral;
+			this.minValue = minValue;
+			this.maxValue = maxValue;
+		}
+
+		/**
+		 * Returns the number of bytes it takes to store a single value
+		 *
+		 * @return The size of one value, in bytes
+		 */
+		public int getBytesPerSample() {
+			return bytesPerSample;
+		}
+
+		/**
+		 * Returns true if this sample type can only hold whole numbers
+		 *
+		 * @return true for integer sample types, false for floating point types
+		 */
+		public boolean isIntegral() {
+			return integral;
+		}
+
+		/**
+		 * Returns the smallest value this sample type can hold
+		 *
+		 * @return The minimum value of the sample type
+		 */
+		public double getMinValue() {
+			return minValue;
+		}
+
+		/**
+		 * Returns the largest value this sample type can hold
+		 *
+		 * @return The maximum value of the sample type
+		 */
+		public double getMaxValue() {
+			return maxValue;
+		}
+	}
+
 	/**
 	 * Returns the width of the image
 	 * 
@@ -95,6 +392,26 @@ public abstract class Image {
 	 */
 	public abstract int getNumBands();
 
+	/**
+	 * Returns the way the image stores its values. Images which don't declare a
+	 * sample type are assumed to be able to hold any double value.
+	 *
+	 * @return The sample type of the image
+	 */
+	public SampleType getSampleType() {
+		return SampleType.Float64;
+	}
+
+	/**
+	 * Returns the way the image arranges its values in memory. Images which
+	 * don't store their values in a single block of memory report Interleaved.
+	 *
+	 * @return The layout of the image
+	 */
+	public Layout getLayout() {
+		return Layout.Interleaved;
+	}
+
 	/**
 	 * Implemented by child classes to actually return the pixel value at the
 	 * given coordinates. These coordinates are guaranteed to be >= 0 and <=
@@ -222,6 +539,187 @@ public abstract class Image {
 		return interpolator.interpolate(x, y, b, this);
 	}
 
+	/**
+	 * Signals that the caller is finished with this image.  Workers at the end of a
+	 * pipeline (or any worker that is the last user of an image) should call this once
+	 * they no longer need the image.  Images acquired from an {@link ImagePool ImagePool}
+	 * go back to the pool so that their memory can be reused, for every other image this
+	 * does nothing.  The image must not be used after it has been released.
+	 */
+	public void release() {
+		//Only pooled images have anything to release
+	}
+
+	/**
+	 * Returns a view of this image which skips the bounds checks done by
+	 * {@link #get(int, int, int) get} and {@link #set(int, int, int, double) set}.  This is
+	 * meant for tight loops whose bounds are known to be valid up front.
+	 *
+	 * @return An unchecked view of this image
+	 */
+	public UnsafeView unsafeView() {
+		return new UnsafeView(this);
+	}
+
+	/**
+	 * Copies one band of a row of the image into an array.  The bounds are checked once
+	 * for the entire row rather than once for every value.
+	 *
+	 * @param y
+	 *            The row to read
+	 * @param b
+	 *            The band to read
+	 * @param destination
+	 *            The array to copy the values into
+	 * @param offset
+	 *            The position in the array of the value of the first pixel of the row
+	 * @throws InvalidParameterException
+	 *             If the row or band is out of range or the array is too small
+	 */
+	public void getRow(int y, int b, double[] destination, int offset) {
+		checkRow(y, b, destination.length, offset);
+		readRow(y, b, destination, offset);
+	}
+
+	/**
+	 * Copies values from an array into one band of a row of the image.  The bounds are
+	 * checked once for the entire row rather than once for every value.
+	 *
+	 * @param y
+	 *            The row to write
+	 * @param b
+	 *            The band to write
+	 * @param source
+	 *            The array holding the new values
+	 * @param offset
+	 *            The position in the array of the value of the first pixel of the row
+	 * @throws InvalidParameterException
+	 *             If the row or band is out of range or the array is too small
+	 */
+	public void setRow(int y, int b, double[] source, int offset) {
+		checkRow(y, b, source.length, offset);
+		writeRow(y, b, source, offset);
+	}
+
+	/**
+	 * Copies every band of a rectangular region of the image into an array.  The values are
+	 * copied in row-major order with the bands of each pixel interleaved (the same order as
+	 * {@link #getPixels() getPixels}).
+	 *
+	 * @param x
+	 *            The x coordinate of the top left corner of the region
+	 * @param y
+	 *            The y coordinate of the top left corner of the region
+	 * @param width
+	 *            The width of the region
+	 * @param height
+	 *            The height of the region
+	 * @param destination
+	 *            The array to copy the values into
+	 * @param offset
+	 *            The position in the array of the first value of the region
+	 * @throws InvalidParameterException
+	 *             If the region does not lie within the image or the array is too small
+	 */
+	public void getRegion(int x, int y, int width, int height, double[] destination, int offset) {
+		checkRegion(x, y, width, height);
+		checkArray(destination.length, offset, (long) width * height * getNumBands());
+		readRegion(x, y, width, height, destination, offset);
+	}
+
+	/**
+	 * Copies values from an array into every band of a rectangular region of the image.
+	 * The values must be in row-major order with the bands of each pixel interleaved.
+	 *
+	 * @param x
+	 *            The x coordinate of the top left corner of the region
+	 * @param y
+	 *            The y coordinate of the top left corner of the region
+	 * @param width
+	 *            The width of the region
+	 * @param height
+	 *            The height of the region
+	 * @param source
+	 *            The array holding the new values
+	 * @param offset
+	 *            The position in the array of the first value of the region
+	 * @throws InvalidParameterException
+	 *             If the region does not lie within the image or the array is too small
+	 */
+	public void setRegion(int x, int y, int width, int height, double[] source, int offset) {
+		checkRegion(x, y, width, height);
+		checkArray(source.length, offset, (long) width * height * getNumBands());
+		writeRegion(x, y, width, height, source, offset);
+	}
+
+	/**
+	 * Implements {@link #getRow(int, int, double[], int) getRow} once the bounds have been
+	 * checked.  Subclasses which can copy a row faster than one value at a time should
+	 * override this.
+	 */
+	protected void readRow(int y, int b, double[] destination, int offset) {
+		int width = getWidth();
+		for(int x = 0; x < width; x++) {
+			destination[offset + x] = doGet(x, y, b);
+		}
+	}
+
+	/**
+	 * Implements {@link #setRow(int, int, double[], int) setRow} once the bounds have been
+	 * checked.  Subclasses which can copy a row faster than one value at a time should
+	 * override this.
+	 */
+	protected void writeRow(int y, int b, double[] source, int offset) {
+		int width = getWidth();
+		for(int x = 0; x < width; x++) {
+			doSet(x, y, b, source[offset + x]);
+		}
+	}
+
+	/**
+	 * Implements {@link #getRegion(int, int, int, int, double[], int) getRegion} once the
+	 * bounds have been checked
+	 */
+	protected void readRegion(int x, int y, int width, int height, double[] destination, int offset) {
+		int numBands = getNumBands();
+		for(int j = y; j < y + height; j++) {
+			for(int i = x; i < x + width; i++) {
+				for(int b = 0; b < numBands; b++) {
+					destination[offset++] = doGet(i, j, b);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Implements {@link #setRegion(int, int, int, int, double[], int) setRegion} once the
+	 * bounds have been checked
+	 */
+	protected void writeRegion(int x, int y, int width, int height, double[] source, int offset) {
+		int numBands = getNumBands();
+		for(int j = y; j < y + height; j++) {
+			for(int i = x; i < x + width; i++) {
+				for(int b = 0; b < numBands; b++) {
+					doSet(i, j, b, source[offset++]);
+				}
+			}
+		}
+	}
+
+	private void checkRow(int y, int b, int length, int offset) {
+		if (y < 0 || y >= getHeight() || b < 0 || b >= getNumBands()) {
+			throw new InvalidParameterException("The row " + y + " band " + b + " is out of range for this image.  Bounds: " + getWidth() + "," + getHeight() + ","
+					+ getNumBands());
+		}
+		checkArray(length, offset, getWidth());
+	}
+
+	private static void checkArray(int length, int offset, long count) {
+		if (offset < 0 || offset + count > length) {
+			throw new InvalidParameterException("An array of length " + length + " cannot hold " + count + " values starting at " + offset);
+		}
+	}
+
 	/**
 	 * Returns an iterable of the pixels in the given row order. See the
 	 * comments at the class level for more details on the pixel order. The
@@ -234,7 +732,55 @@ public abstract class Image {
 	 * @return An iterable of band-interleaved pixel values in the supplied
 	 *         order
 	 */
-	public abstract Iterable<Double> getPixels(PixelOrder pixelOrder);
+	public Iterable<Double> getPixels(PixelOrder pixelOrder) {
+		return getPixels(pixelOrder, null);
+	}
+
+	/**
+	 * Returns an iterable of the pixels in the given tiled order.  The pixel bands will
+	 * be interleaved in the same way as {@link #getPixels(PixelOrder) getPixels}.
+	 *
+	 * @param tiledOrder
+	 *            The pixel order of the resulting iterator
+	 * @return An iterable of band-interleaved pixel values in the supplied order
+	 */
+	public Iterable<Double> getPixels(TiledOrder tiledOrder) {
+		return getPixels(null, tiledOrder);
+	}
+
+	/*
+	 * Exactly one of the orders is given
+	 */
+	private Iterable<Double> getPixels(final PixelOrder pixelOrder, final TiledOrder tiledOrder) {
+		//Boxes every value, workers should prefer getPixelCursor
+		return new Iterable<Double>() {
+
+			@Override
+			public Iterator<Double> iterator() {
+				return new Iterator<Double>() {
+
+					private final PixelCursor cursor = pixelOrder != null ? getPixelCursor(pixelOrder) : getPixelCursor(tiledOrder);
+
+					@Override
+					public boolean hasNext() {
+						return cursor.hasNext();
+					}
+
+					@Override
+					public Double next() {
+						return cursor.nextDouble();
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+
+				};
+			}
+
+		};
+	}
 
 	/**
 	 * Returns an iterable of pixels in the RowMajor pixel order.
@@ -245,23 +791,356 @@ public abstract class Image {
 		return getPixels(PixelOrder.RowMajor);
 	}
 
+	/**
+	 * Returns a cursor which reads through the values of the image in the given pixel
+	 * order without boxing them.  The values come in the same order as
+	 * {@link #getPixels(PixelOrder) getPixels}.
+	 *
+	 * @param pixelOrder
+	 *            The order to read the pixels in
+	 * @return A cursor positioned at the first value of the image
+	 */
+	public PixelCursor getPixelCursor(PixelOrder pixelOrder) {
+		return newCursor(newWalker(pixelOrder));
+	}
+
+	/**
+	 * Returns a cursor which reads through the values of the image one tile at a time
+	 * without boxing them
+	 *
+	 * @param tiledOrder
+	 *            The order to read the pixels in
+	 * @return A cursor positioned at the first value of the image
+	 */
+	public PixelCursor getPixelCursor(TiledOrder tiledOrder) {
+		return newCursor(newWalker(tiledOrder));
+	}
+
+	/*
+	 * The walkers, cursors and writers below are overridden by images backed by a single
+	 * array so that they walk the array directly.  Walkers given to newCursor and newWriter
+	 * always come from newWalker.
+	 */
+
+	PixelWalker newWalker(PixelOrder pixelOrder) {
+		return new PixelWalker(this, pixelOrder);
+	}
+
+	PixelWalker newWalker(TiledOrder tiledOrder) {
+		return new PixelWalker(this, tiledOrder);
+	}
+
+	PixelCursor newCursor(final PixelWalker walker) {
+		//This default walks the coordinates and reads each value individually
+		return new PixelCursor() {
+
+			@Override
+			public boolean hasNext() {
+				return walker.hasNext();
+			}
+
+			@Override
+			public double nextDouble() {
+				walker.checkHasNext();
+				double result = doGet(walker.x, walker.y, walker.b);
+				walker.advance();
+				return result;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns a cursor which reads through the values of the image in row-major order.
+	 *
+	 * @return A cursor positioned at the first value of the image
+	 */
+	public PixelCursor getPixelCursor() {
+		return getPixelCursor(PixelOrder.RowMajor);
+	}
+
 	/**
 	 * Returns a iteratee which will allow you to write the pixel values out.
 	 * Each call to putNext will replace the pixel value poitned at with the
-	 * given value and move on to the next value.
+	 * given value and move on to the next value.  Use the primitive and bulk
+	 * putNext methods to avoid boxing every value.
 	 * 
 	 * @return An iteratee of band-interleaved pixels that writes into the pixel
 	 *         values
 	 */
-	public abstract Sinkerator<Double> getPixelWriter(PixelOrder pixelOrder);
+	public DoubleSinkerator getPixelWriter(PixelOrder pixelOrder) {
+		return newWriter(newWalker(pixelOrder));
+	}
+
+	/**
+	 * Returns a iteratee which writes the pixel values out one tile at a time.  It works
+	 * in the same way as {@link #getPixelWriter(PixelOrder) getPixelWriter}.
+	 *
+	 * @param tiledOrder
+	 *            The order to write the pixels in
+	 * @return An iteratee of band-interleaved pixels that writes into the pixel values
+	 */
+	public DoubleSinkerator getPixelWriter(TiledOrder tiledOrder) {
+		return newWriter(newWalker(tiledOrder));
+	}
+
+	DoubleSinkerator newWriter(final PixelWalker walker) {
+		//This default walks the coordinates and writes each value individually
+		return new DoubleSinkerator() {
+
+			@Override
+			public void putNext(double value) {
+				walker.checkHasNext();
+				doSet(walker.x, walker.y, walker.b, value);
+				walker.advance();
+			}
+
+			@Override
+			public void putNext(Double value) {
+				putNext(value.doubleValue());
+			}
+
+			@Override
+			public void putNext(double[] source, int offset, int length) {
+				checkCount(length);
+				walker.checkRemaining(length);
+				for(int i = 0; i < length; i++) {
+					doSet(walker.x, walker.y, walker.b, source[offset + i]);
+					walker.advance();
+				}
+			}
+
+			@Override
+			public void skipNext() {
+				walker.checkHasNext();
+				walker.advance();
+			}
+
+			@Override
+			public void skip(int count) {
+				checkCount(count);
+				walker.checkRemaining(count);
+				walker.advance(count);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return walker.hasNext();
+			}
+		};
+	}
+
+	/**
+	 * Verifies that a number of values to write or skip is not negative
+	 */
+	static void checkCount(int count) {
+		if (count < 0) {
+			throw new InvalidParameterException("The number of values must be >= 0.  Given: " + count);
+		}
+	}
 
 	/**
 	 * Returns a iteratee of pixels in RowMajor pixel order.
 	 * 
 	 * @return An iteratee of band-interleaved pixels in row-major order.
 	 */
-	public Sinkerator<Double> getPixelWriter() {
+	public DoubleSinkerator getPixelWriter() {
 		return getPixelWriter(PixelOrder.RowMajor);
 	}
 
+	/**
+	 * Returns true if different rows of this image can be read and written from several
+	 * threads at the same time.  Images which cache or load parts of themselves on demand
+	 * (such as {@link TiledImage TiledImage}) can't be, which is the default.
+	 *
+	 * @return true if the image can be split across threads by rows
+	 */
+	public boolean supportsConcurrentAccess() {
+		return false;
+	}
+
+	/**
+	 * Calculates every value of the destination image from the matching value of this
+	 * image.  The destination must be the same size as this image and may be this image.
+	 *
+	 * @param operator
+	 *            Calculates each destination value
+	 * @param destination
+	 *            The image to write the results into
+	 * @see #mapRows(RowOperator, Image)
+	 */
+	public void mapValues(final ValueOperator operator, Image destination) {
+		if (destination.getNumBands() != getNumBands()) {
+			throw new InvalidParameterException("The destination has " + destination.getNumBands() + " bands but this image has " + getNumBands());
+		}
+		mapRows(new RowOperator() {
+			@Override
+			public void apply(int y, double[] source, double[] destination) {
+				for (int i = 0; i < source.length; i++) {
+					destination[i] = operator.apply(source[i]);
+				}
+			}
+		}, destination);
+	}
+
+	/**
+	 * Calculates every pixel of the destination image from the matching pixel of this
+	 * image.  The destination must have the same width and height as this image (but may
+	 * have a different number of bands) and may be this image.
+	 *
+	 * @param operator
+	 *            Calculates each destination pixel
+	 * @param destination
+	 *            The image to write the results into
+	 * @see #mapRows(RowOperator, Image)
+	 */
+	public void mapPixels(final PixelOperator operator, Image destination) {
+		final int sourceBands = getNumBands();
+		final int destinationBands = destination.getNumBands();
+		mapRows(new RowOperator() {
+			@Override
+			public void apply(int y, double[] source, double[] destination) {
+				int width = source.length / sourceBands;
+				for (int x = 0; x < width; x++) {
+					operator.apply(source, x * sourceBands, destination, x * destinationBands);
+				}
+			}
+		}, destination);
+	}
+
+	/**
+	 * <p>
+	 * Calculates every row of the destination image from the matching row of this image.
+	 * The destination must have the same width and height as this image (but may have a
+	 * different number of bands) and may be this image.
+	 * </p><p>
+	 * If both images {@link #supportsConcurrentAccess() support concurrent access} then
+	 * the image is split into strips of rows which are calculated on several threads (see
+	 * {@link Parallel Parallel}), otherwise the rows are calculated on the calling thread.
+	 * </p>
+	 *
+	 * @param operator
+	 *            Calculates each destination row
+	 * @param destination
+	 *            The image to write the results into
+	 */
+	public void mapRows(final RowOperator operator, final Image destination) {
+		if (destination.getWidth() != getWidth() || destination.getHeight() != getHeight()) {
+			throw new InvalidParameterException("The destination (" + destination.getWidth() + "x" + destination.getHeight() + ") is not the same size as this image ("
+					+ getWidth() + "x" + getHeight() + ")");
+		}
+		final int width = getWidth();
+		final int sourceLength = width * getNumBands();
+		final int destinationLength = width * destination.getNumBands();
+		Parallel.StripTask task = new Parallel.StripTask() {
+			@Override
+			public void run(int start, int end) {
+				double [] source = new double[sourceLength];
+				double [] result = new double[destinationLength];
+				for (int y = start; y < end; y++) {
+					getRegion(0, y, width, 1, source, 0);
+					operator.apply(y, source, result);
+					destination.setRegion(0, y, width, 1, result, 0);
+				}
+			}
+		};
+		if (supportsConcurrentAccess() && destination.supportsConcurrentAccess()) {
+			Parallel.forEachStrip(0, getHeight(), MIN_STRIP_ROWS, task);
+		} else {
+			task.run(0, getHeight());
+		}
+	}
+
+	/**
+	 * Visits every row of this image.  Like {@link #mapRows(RowOperator, Image) mapRows}
+	 * the rows may be visited on several threads at once, in any order.
+	 *
+	 * @param visitor
+	 *            Is given each row of the image
+	 */
+	public void forEachRow(final RowVisitor visitor) {
+		final int width = getWidth();
+		final int length = width * getNumBands();
+		Parallel.StripTask task = new Parallel.StripTask() {
+			@Override
+			public void run(int start, int end) {
+				double [] row = new double[length];
+				for (int y = start; y < end; y++) {
+					getRegion(0, y, width, 1, row, 0);
+					visitor.visit(y, row);
+				}
+			}
+		};
+		if (supportsConcurrentAccess()) {
+			Parallel.forEachStrip(0, getHeight(), MIN_STRIP_ROWS, task);
+		} else {
+			task.run(0, getHeight());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns a view of a rectangular region of this image.  The view does not copy any
+	 * values, it simply translates coordinates into this image, so writing to the view
+	 * modifies this image and vice versa.  The pixel at (0,0) of the view is the pixel
+	 * at (x,y) of this image.
+	 * </p><p>
+	 * Subclasses which know how their values are stored (e.g. {@link ArrayImage ArrayImage})
+	 * return a view which shares the underlying storage directly.
+	 * </p>
+	 *
+	 * @param x
+	 *            The x coordinate of the top left corner of the region
+	 * @param y
+	 *            The y coordinate of the top left corner of the region
+	 * @param width
+	 *            The width of the region
+	 * @param height
+	 *            The height of the region
+	 * @return A view of the region
+	 * @throws InvalidParameterException
+	 *             If the region does not lie entirely within this image
+	 */
+	public Image subImage(int x, int y, int width, int height) {
+		checkRegion(x, y, width, height);
+		return new ImageView(this, x, y, 0, width, height, getNumBands());
+	}
+
+	/**
+	 * Returns a view of some of the bands of this image.  For example, calling
+	 * subBands(1, 1) on an RGB image returns a single band image of the green values.
+	 * Like {@link #subImage(int, int, int, int) subImage} the values are not copied.
+	 *
+	 * @param firstBand
+	 *            The first band of this image to include in the view
+	 * @param numBands
+	 *            The number of bands to include in the view
+	 * @return A view of the bands
+	 * @throws InvalidParameterException
+	 *             If the bands are not all bands of this image
+	 */
+	public Image subBands(int firstBand, int numBands) {
+		checkBands(firstBand, numBands);
+		return new ImageView(this, 0, 0, firstBand, getWidth(), getHeight(), numBands);
+	}
+
+	/**
+	 * Verifies that the given region is non-empty and lies entirely within this image
+	 */
+	protected final void checkRegion(int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || width <= 0 || height <= 0 || (long) x + width > getWidth() || (long) y + height > getHeight()) {
+			throw new InvalidParameterException("The region (" + x + "," + y + "," + width + "," + height + ") does not lie within the image.  Bounds: " + getWidth() + ","
+					+ getHeight());
+		}
+	}
+
+	/**
+	 * Verifies that the given range of bands is non-empty and within this image
+	 */
+	protected final void checkBands(int firstBand, int numBands) {
+		if (firstBand < 0 || numBands <= 0 || (long) firstBand + numBands > getNumBands()) {
+			throw new InvalidParameterException("The bands " + firstBand + " to " + ((long) firstBand + numBands - 1) + " are out of range.  Bands: " + getNumBands());
+		}
+	}
+
 }
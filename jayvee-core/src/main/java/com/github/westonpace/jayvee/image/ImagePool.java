@@ -0,0 +1,262 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.github.westonpace.jayvee.image.Image.Layout;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * Keeps released images around so that their memory can be reused for new images of
+ * the same size and type.  A pipeline processing a stream of same sized frames would
+ * otherwise allocate (and later garbage collect) a brand new pixel array for every frame.
+ * </p><p>
+ * Images are handed out by {@link #acquire(int, int, int, SampleType) acquire} and
+ * come back to the pool when {@link Image#release() release} is called on them.  Only
+ * release an image once nothing else will read or write it, the pool will hand it to
+ * the next caller of acquire.  Images that are never released are simply garbage
+ * collected like any other image.
+ * </p><p>
+ * The pool holds on to at most a fixed number of images and, optionally, a fixed number
+ * of bytes of pixel data.  Once full, released images are dropped.  The shared pool is
+ * limited to 32 images and to the smaller of 256MB and an eighth of the maximum heap.
+ * Pools are thread safe.
+ * </p>
+ */
+public class ImagePool {
+
+	private static final Logger logger = Logger.getLogger(ImagePool.class);
+
+	private static final ImagePool SHARED_POOL = new ImagePool(32, Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8));
+
+	private static class Key {
+
+		private final int width;
+		private final int height;
+		private final int numBands;
+		private final SampleType sampleType;
+		private final Layout layout;
+
+		Key(int width, int height, int numBands, SampleType sampleType, Layout layout) {
+			this.width = width;
+			this.height = height;
+			this.numBands = numBands;
+			this.sampleType = sampleType;
+			this.layout = layout;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof Key)) {
+				return false;
+			}
+			Key otherKey = (Key) other;
+			return width == otherKey.width && height == otherKey.height && numBands == otherKey.numBands && sampleType == otherKey.sampleType && layout == otherKey.layout;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((((width * 31) + height) * 31 + numBands) * 31 + sampleType.hashCode()) * 31 + layout.hashCode();
+		}
+
+	}
+
+	private final int maxPooledImages;
+	private final long maxPooledBytes;
+	private final Map<Key, List<ArrayImage>> pooledImages = new HashMap<Key, List<ArrayImage>>();
+	private int pooledCount = 0;
+	private long pooledBytes = 0;
+
+	/**
+	 * Creates a new, empty, pool limited only by the number of images it holds
+	 *
+	 * @param maxPooledImages
+	 *            The most images the pool will hold on to at any one time
+	 */
+	public ImagePool(int maxPooledImages) {
+		this(maxPooledImages, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new, empty, pool
+	 *
+	 * @param maxPooledImages
+	 *            The most images the pool will hold on to at any one time
+	 * @param maxPooledBytes
+	 *            The most bytes of pixel data the pool will hold on to at any one time
+	 */
+	public ImagePool(int maxPooledImages, long maxPooledBytes) {
+		if(maxPooledImages < 0) {
+			throw new InvalidParameterException("The maximum number of pooled images must be >= 0.  Given: " + maxPooledImages);
+		}
+		if(maxPooledBytes < 0) {
+			throw new InvalidParameterException("The maximum number of pooled bytes must be >= 0.  Given: " + maxPooledBytes);
+		}
+		this.maxPooledImages = maxPooledImages;
+		this.maxPooledBytes = maxPooledBytes;
+	}
+
+	/**
+	 * Returns a pool that is shared by everything that doesn't create its own pool
+	 *
+	 * @return The shared pool
+	 */
+	public static ImagePool getSharedPool() {
+		return SHARED_POOL;
+	}
+
+	/**
+	 * Returns an empty (all 0's) interleaved image with the given dimensions and sample
+	 * type.  A released image is reused if there is one, otherwise a new image is created.
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param sampleType
+	 *            How the values of the image should be stored
+	 * @return An empty image which will return to this pool when released
+	 */
+	public ArrayImage acquire(int width, int height, int numBands, SampleType sampleType) {
+		return acquire(width, height, numBands, sampleType, Layout.Interleaved);
+	}
+
+	/**
+	 * Returns an empty (all 0's) image with the given dimensions, sample type, and layout.
+	 * A released image is reused if there is one, otherwise a new image is created.
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param sampleType
+	 *            How the values of the image should be stored
+	 * @param layout
+	 *            How the values of the image should be arranged
+	 * @return An empty image which will return to this pool when released
+	 */
+	public ArrayImage acquire(int width, int height, int numBands, SampleType sampleType, Layout layout) {
+		ArrayImage result = takePooledImage(new Key(width, height, numBands, sampleType, layout));
+		if(result == null) {
+			result = ArrayImage.create(width, height, numBands, sampleType, layout);
+		} else {
+			//Clearing the values is much cheaper than allocating (and zeroing) a new array
+			result.fill(0);
+		}
+		result.pool = this;
+		return result;
+	}
+
+	private synchronized ArrayImage takePooledImage(Key key) {
+		List<ArrayImage> images = pooledImages.get(key);
+		if(images == null) {
+			return null;
+		}
+		ArrayImage image = images.remove(images.size() - 1);
+		if(images.isEmpty()) {
+			pooledImages.remove(key);
+		}
+		pooledCount--;
+		pooledBytes -= getBytes(image);
+		return image;
+	}
+
+	private static long getBytes(ArrayImage image) {
+		return (long) image.width * image.height * image.numBands * image.getSampleType().getBytesPerSample();
+	}
+
+	/**
+	 * <p>
+	 * Hands an image to the pool so that it can be reused.  This is normally called through
+	 * {@link Image#release() Image.release} but any image created by
+	 * {@link ArrayImage#create(int, int, int, SampleType, Layout) ArrayImage.create} may be
+	 * given to the pool this way.
+	 * </p><p>
+	 * Images which could not have been created by the pool (views, direct images, tiled
+	 * images, etc.) are ignored, as are images that are already in the pool.
+	 * </p>
+	 *
+	 * @param image
+	 *            The image which is no longer needed
+	 */
+	public void release(Image image) {
+		if(!isPoolable(image)) {
+			logger.trace("Ignoring release of an image which cannot be pooled");
+			return;
+		}
+		ArrayImage arrayImage = (ArrayImage) image;
+		Key key = new Key(arrayImage.width, arrayImage.height, arrayImage.numBands, arrayImage.getSampleType(), arrayImage.layout);
+		long bytes = getBytes(arrayImage);
+		synchronized(this) {
+			List<ArrayImage> images = pooledImages.get(key);
+			if(images != null) {
+				for(ArrayImage pooled : images) {
+					if(pooled == arrayImage) {
+						logger.debug("Image released more than once, ignoring");
+						return;
+					}
+				}
+			}
+			if(pooledCount >= maxPooledImages || bytes > maxPooledBytes - pooledBytes) {
+				return;
+			}
+			if(images == null) {
+				images = new ArrayList<ArrayImage>();
+				pooledImages.put(key, images);
+			}
+			images.add(arrayImage);
+			pooledCount++;
+			pooledBytes += bytes;
+		}
+	}
+
+	private static boolean isPoolable(Image image) {
+		if(image == null) {
+			return false;
+		}
+		Class<?> imageClass = image.getClass();
+		if(imageClass != ByteImage.class && imageClass != ShortImage.class && imageClass != IntImage.class && imageClass != FloatImage.class && imageClass != StandardImage.class) {
+			return false;
+		}
+		//Views share their array with some other image and so must never be reused
+		return !((ArrayImage) image).isView();
+	}
+
+	/**
+	 * Returns the number of images currently held by the pool
+	 *
+	 * @return The number of pooled images
+	 */
+	public synchronized int getPooledCount() {
+		return pooledCount;
+	}
+
+	/**
+	 * Returns the number of bytes of pixel data currently held by the pool
+	 *
+	 * @return The size of the pooled images
+	 */
+	public synchronized long getPooledBytes() {
+		return pooledBytes;
+	}
+
+	/**
+	 * Drops every image held by the pool
+	 */
+	public synchronized void clear() {
+		pooledImages.clear();
+		pooledCount = 0;
+		pooledBytes = 0;
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.westonpace.jayvee.image.Interpolator.BilinearInterpolator;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * A stack of successively smaller copies of an image (a mipmap).  Level 0 is the image
+ * itself and every level after that is half the width and height (rounded up) of the
+ * level before it, down to a single pixel.  Each pixel of a level is the average of the
+ * 2x2 block of pixels it covers in the level before.
+ * </p><p>
+ * Levels are only built when they are first asked for and are then kept so that
+ * multi-scale operations (and large downscales) can start from the closest level
+ * instead of the full size image.  The pyramid does not notice changes to the image
+ * it was built from, call {@link #invalidate() invalidate} if the image is modified.
+ * </p><p>
+ * Pyramids are thread safe as long as the image isn't being modified.
+ * </p>
+ */
+public class ImagePyramid {
+
+	private static final OutOfBoundsAccessStrategy EXTEND_EDGES = new OutOfBoundsAccessStrategy.ExtendEdgesStrategy();
+
+	private final Image base;
+	private final int numLevels;
+	private final List<Image> levels = new ArrayList<Image>();
+	private final BilinearInterpolator interpolator = new BilinearInterpolator();
+
+	/**
+	 * Creates a new pyramid.  No levels are built until they are asked for.
+	 * @param base The full size image
+	 */
+	public ImagePyramid(Image base) {
+		this.base = base;
+		int count = 1;
+		int width = base.getWidth();
+		int height = base.getHeight();
+		while(width > 1 || height > 1) {
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			count++;
+		}
+		this.numLevels = count;
+		levels.add(base);
+	}
+
+	/**
+	 * Returns the image the pyramid was built from
+	 * @return Level 0 of the pyramid
+	 */
+	public Image getBase() {
+		return base;
+	}
+
+	/**
+	 * Returns the number of levels in the pyramid, including the base.  The last level is
+	 * a single pixel.
+	 * @return The number of levels
+	 */
+	public int getNumLevels() {
+		return numLevels;
+	}
+
+	/**
+	 * Returns a level of the pyramid, building it (and any missing levels before it) if
+	 * needed
+	 * @param level The level to get, 0 is the base image
+	 * @return The image at that level
+	 */
+	public synchronized Image getLevel(int level) {
+		if(level < 0 || level >= numLevels) {
+			throw new InvalidParameterException("Level " + level + " does not exist, the pyramid has " + numLevels + " levels");
+		}
+		while(levels.size() <= level) {
+			levels.add(downsample(levels.get(levels.size() - 1)));
+		}
+		return levels.get(level);
+	}
+
+	/**
+	 * Returns the number of levels which have been built so far, including the base
+	 * @return The number of levels in memory
+	 */
+	public synchronized int getBuiltLevels() {
+		return levels.size();
+	}
+
+	/**
+	 * Throws away every level but the base.  Call this after modifying the base image.
+	 */
+	public synchronized void invalidate() {
+		while(levels.size() > 1) {
+			levels.remove(levels.size() - 1);
+		}
+	}
+
+	/**
+	 * Returns the smallest level which is still at least as large as the base image
+	 * scaled by the given factor.  Resampling from this level (instead of the base) to
+	 * the final size gives nearly the same result for a fraction of the work.
+	 * @param scale The size of the final image relative to the base (0.25 for a quarter of
+	 *        the width and height)
+	 * @return The level to resample from
+	 */
+	public int getLevelForScale(double scale) {
+		if(!(scale > 0)) {
+			throw new InvalidParameterException("The scale must be > 0. Actual: " + scale);
+		}
+		int level = (int) Math.floor(Math.log(1 / scale) / Math.log(2) + 1e-9);
+		return Math.max(0, Math.min(level, numLevels - 1));
+	}
+
+	/**
+	 * Interpolates a value at a point between levels of the pyramid (trilinear
+	 * interpolation).  The point is given in the coordinates of the base image.  The
+	 * point is bilinearly interpolated in the two levels on either side of the given level
+	 * and the two results are blended linearly.
+	 * @param x The x coordinate of the point, in base image coordinates
+	 * @param y The y coordinate of the point, in base image coordinates
+	 * @param b The band to interpolate
+	 * @param level The level (for example 1.5 is half way between level 1 and level 2)
+	 * @return The interpolated value
+	 */
+	public double interpolate(double x, double y, int b, double level) {
+		if(!(level >= 0 && level <= numLevels - 1)) {
+			throw new InvalidParameterException("Level " + level + " is outside of the pyramid, which has " + numLevels + " levels");
+		}
+		int lower = (int) level;
+		double fraction = level - lower;
+		double lowerValue = interpolateLevel(x, y, b, lower);
+		if(fraction == 0) {
+			return lowerValue;
+		}
+		return lowerValue * (1 - fraction) + interpolateLevel(x, y, b, lower + 1) * fraction;
+	}
+
+	private double interpolateLevel(double x, double y, int b, int level) {
+		Image image = getLevel(level);
+		//Pixel centers line up between levels, not pixel corners.  Sizes are rounded up so
+		//the scale is the actual ratio of the sizes rather than a power of 2.
+		double levelX = (x + 0.5) * image.getWidth() / base.getWidth() - 0.5;
+		double levelY = (y + 0.5) * image.getHeight() / base.getHeight() - 0.5;
+		return interpolator.interpolate(levelX, levelY, b, image, EXTEND_EDGES);
+	}
+
+	/*
+	 * Averages every 2x2 block of the image.  An odd last row or column is averaged with
+	 * itself.
+	 */
+	private static Image downsample(Image image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int numBands = image.getNumBands();
+		int halfWidth = (width + 1) / 2;
+		int halfHeight = (height + 1) / 2;
+		Image result = ArrayImage.create(halfWidth, halfHeight, numBands, image.getSampleType());
+		double [] top = new double[width];
+		double [] bottom = new double[width];
+		double [] averaged = new double[halfWidth];
+		for(int b = 0; b < numBands; b++) {
+			for(int y = 0; y < halfHeight; y++) {
+				image.getRow(y * 2, b, top, 0);
+				image.getRow(Math.min(y * 2 + 1, height - 1), b, bottom, 0);
+				for(int x = 0; x < halfWidth; x++) {
+					int left = x * 2;
+					int right = Math.min(left + 1, width - 1);
+					averaged[x] = (top[left] + top[right] + bottom[left] + bottom[right]) * 0.25;
+				}
+				result.setRow(y, b, averaged, 0);
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,310 @@
+package com.github.westonpace.jayvee.image;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.util.Parallel;
+
+/**
+ * <p>
+ * Per band statistics of an image: the minimum, maximum, mean, and variance of each band
+ * and, optionally, a histogram of each band (from which percentiles can be estimated).
+ * </p><p>
+ * Everything is gathered in a single pass over the image.  Images which
+ * {@link Image#supportsConcurrentAccess() support concurrent access} are split into strips
+ * of rows which are read in bulk and summarized on separate threads (see
+ * {@link Parallel Parallel}), the partial results are then merged.  Other images are read
+ * on the calling thread.
+ * </p>
+ */
+public class ImageStatistics {
+
+	private static final int MIN_STRIP_ROWS = 32;
+
+	/*
+	 * Partial statistics for a strip of rows.  Sums are of the values minus a per band
+	 * shift (the first value of the band) which keeps the variance accurate even when the
+	 * values are large compared to their spread.
+	 */
+	private static class Accumulator {
+
+		private final double[] min;
+		private final double[] max;
+		private final double[] sum;
+		private final double[] squaredSum;
+		private final long[][] histogram;
+
+		Accumulator(int numBands, int numBins) {
+			min = new double[numBands];
+			max = new double[numBands];
+			sum = new double[numBands];
+			squaredSum = new double[numBands];
+			histogram = numBins > 0 ? new long[numBands][numBins] : null;
+			for(int b = 0; b < numBands; b++) {
+				min[b] = Double.POSITIVE_INFINITY;
+				max[b] = Double.NEGATIVE_INFINITY;
+			}
+		}
+
+		void merge(Accumulator other) {
+			for(int b = 0; b < min.length; b++) {
+				min[b] = Math.min(min[b], other.min[b]);
+				max[b] = Math.max(max[b], other.max[b]);
+				sum[b] += other.sum[b];
+				squaredSum[b] += other.squaredSum[b];
+				if(histogram != null) {
+					for(int bin = 0; bin < histogram[b].length; bin++) {
+						histogram[b][bin] += other.histogram[b][bin];
+					}
+				}
+			}
+		}
+
+	}
+
+	private final int numBands;
+	private final long count;
+	private final double[] shift;
+	private final double lower;
+	private final double upper;
+	private final Accumulator totals;
+
+	private ImageStatistics(final Image image, int numBins, double lower, double upper) {
+		this.numBands = image.getNumBands();
+		this.count = (long) image.getWidth() * image.getHeight();
+		this.lower = lower;
+		this.upper = upper;
+		this.shift = new double[numBands];
+		for(int b = 0; b < numBands; b++) {
+			shift[b] = image.get(0, 0, b);
+		}
+		this.totals = new Accumulator(numBands, numBins);
+		final int bins = numBins;
+		Parallel.StripTask task = new Parallel.StripTask() {
+			@Override
+			public void run(int start, int end) {
+				Accumulator accumulator = new Accumulator(numBands, bins);
+				accumulate(image, start, end, accumulator);
+				synchronized(totals) {
+					totals.merge(accumulator);
+				}
+			}
+		};
+		if(image.supportsConcurrentAccess()) {
+			Parallel.forEachStrip(0, image.getHeight(), MIN_STRIP_ROWS, task);
+		} else {
+			task.run(0, image.getHeight());
+		}
+	}
+
+	/**
+	 * Calculates the minimum, maximum, mean, and variance of each band of an image
+	 * @param image The image to summarize
+	 * @return The statistics of the image
+	 */
+	public static ImageStatistics compute(Image image) {
+		return new ImageStatistics(image, 0, 0, 0);
+	}
+
+	/**
+	 * Calculates the minimum, maximum, mean, variance, and histogram of each band of an
+	 * image.  The histogram splits [lower, upper) into numBins bins of equal width.  Values
+	 * below lower are counted in the first bin and values at or above upper in the last.
+	 * @param image The image to summarize
+	 * @param numBins The number of bins in each histogram
+	 * @param lower The smallest value of the first bin
+	 * @param upper The value just past the end of the last bin
+	 * @return The statistics of the image
+	 */
+	public static ImageStatistics compute(Image image, int numBins, double lower, double upper) {
+		if(numBins <= 0) {
+			throw new InvalidParameterException("The number of bins must be > 0. Actual: " + numBins);
+		}
+		if(!(upper > lower)) {
+			throw new InvalidParameterException("The histogram range is empty: [" + lower + "," + upper + ")");
+		}
+		return new ImageStatistics(image, numBins, lower, upper);
+	}
+
+	/**
+	 * Calculates statistics with a histogram which has one bin for every possible value of
+	 * an 8 or 16 bit image
+	 * @param image An image with an UnsignedByte or UnsignedShort sample type
+	 * @return The statistics of the image
+	 */
+	public static ImageStatistics computeWithHistogram(Image image) {
+		switch(image.getSampleType()) {
+		case UnsignedByte:
+			return compute(image, 256, 0, 256);
+		case UnsignedShort:
+			return compute(image, 65536, 0, 65536);
+		default:
+			throw new InvalidParameterException("A histogram range must be given for images of type " + image.getSampleType());
+		}
+	}
+
+	private void accumulate(Image image, int start, int end, Accumulator accumulator) {
+		int width = image.getWidth();
+		double [] row = new double[width * numBands];
+		double [] min = accumulator.min;
+		double [] max = accumulator.max;
+		double [] sum = accumulator.sum;
+		double [] squaredSum = accumulator.squaredSum;
+		long [][] histogram = accumulator.histogram;
+		int numBins = histogram == null ? 0 : histogram[0].length;
+		double binScale = numBins / (upper - lower);
+		for(int y = start; y < end; y++) {
+			image.getRegion(0, y, width, 1, row, 0);
+			for(int b = 0; b < numBands; b++) {
+				double bandMin = min[b];
+				double bandMax = max[b];
+				double bandSum = 0;
+				double bandSquaredSum = 0;
+				double bandShift = shift[b];
+				for(int i = b; i < row.length; i += numBands) {
+					double value = row[i];
+					if(value < bandMin) {
+						bandMin = value;
+					}
+					if(value > bandMax) {
+						bandMax = value;
+					}
+					double shifted = value - bandShift;
+					bandSum += shifted;
+					bandSquaredSum += shifted * shifted;
+				}
+				min[b] = bandMin;
+				max[b] = bandMax;
+				sum[b] += bandSum;
+				squaredSum[b] += bandSquaredSum;
+				if(histogram != null) {
+					long [] bins = histogram[b];
+					for(int i = b; i < row.length; i += numBands) {
+						int bin = (int) ((row[i] - lower) * binScale);
+						if(bin < 0 || row[i] < lower) {
+							bin = 0;
+						} else if(bin >= numBins) {
+							bin = numBins - 1;
+						}
+						bins[bin]++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bands that statistics were calculated for
+	 * @return The number of bands of the image
+	 */
+	public int getNumBands() {
+		return numBands;
+	}
+
+	/**
+	 * Returns the number of values in each band
+	 * @return The number of pixels in the image
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value of a band
+	 * @param b The band
+	 * @return The minimum value
+	 */
+	public double getMin(int b) {
+		return totals.min[b];
+	}
+
+	/**
+	 * Returns the largest value of a band
+	 * @param b The band
+	 * @return The maximum value
+	 */
+	public double getMax(int b) {
+		return totals.max[b];
+	}
+
+	/**
+	 * Returns the average value of a band
+	 * @param b The band
+	 * @return The mean of the values of the band
+	 */
+	public double getMean(int b) {
+		return shift[b] + totals.sum[b] / count;
+	}
+
+	/**
+	 * Returns the (population) variance of a band
+	 * @param b The band
+	 * @return The variance of the values of the band
+	 */
+	public double getVariance(int b) {
+		double shiftedMean = totals.sum[b] / count;
+		return Math.max(totals.squaredSum[b] / count - shiftedMean * shiftedMean, 0);
+	}
+
+	/**
+	 * Returns the (population) standard deviation of a band
+	 * @param b The band
+	 * @return The square root of the variance
+	 */
+	public double getStandardDeviation(int b) {
+		return Math.sqrt(getVariance(b));
+	}
+
+	/**
+	 * Returns true if histograms were calculated
+	 * @return true if histograms and percentiles are available
+	 */
+	public boolean hasHistogram() {
+		return totals.histogram != null;
+	}
+
+	private void checkHistogram() {
+		if(totals.histogram == null) {
+			throw new InvalidParameterException("These statistics were calculated without a histogram");
+		}
+	}
+
+	/**
+	 * Returns the histogram of a band
+	 * @param b The band
+	 * @return A copy of the bin counts
+	 * @throws InvalidParameterException If no histogram was calculated
+	 */
+	public long[] getHistogram(int b) {
+		checkHistogram();
+		return totals.histogram[b].clone();
+	}
+
+	/**
+	 * Estimates a percentile of a band from its histogram.  Values are assumed to be spread
+	 * evenly within each bin.  The result is never less than the minimum or greater than the
+	 * maximum of the band.
+	 * @param b The band
+	 * @param percentile The percentile, from 0 to 100
+	 * @return The estimated value below which the given percentage of values fall
+	 * @throws InvalidParameterException If no histogram was calculated
+	 */
+	public double getPercentile(int b, double percentile) {
+		checkHistogram();
+		if(!(percentile >= 0 && percentile <= 100)) {
+			throw new InvalidParameterException("The percentile must be between 0 and 100. Actual: " + percentile);
+		}
+		long [] bins = totals.histogram[b];
+		double binWidth = (upper - lower) / bins.length;
+		double target = percentile / 100 * count;
+		long below = 0;
+		double estimate = upper;
+		for(int bin = 0; bin < bins.length; bin++) {
+			if(bins[bin] > 0 && below + bins[bin] >= target) {
+				estimate = lower + (bin + (target - below) / bins[bin]) * binWidth;
+				break;
+			}
+			below += bins[bin];
+		}
+		return Math.min(Math.max(estimate, getMin(b)), getMax(b));
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.github.westonpace.jayvee.image;
+
+/**
+ * A view of a region and/or a range of bands of another image.  Coordinates are simply
+ * translated into the parent image so this works for any kind of image, although
+ * images that know how they store their values should return something faster from
+ * {@link Image#subImage(int, int, int, int) subImage} and
+ * {@link Image#subBands(int, int) subBands}.
+ */
+class ImageView extends Image {
+
+	private final Image parent;
+	private final int x0;
+	private final int y0;
+	private final int b0;
+	private final int width;
+	private final int height;
+	private final int numBands;
+
+	ImageView(Image parent, int x0, int y0, int b0, int width, int height, int numBands) {
+		this.parent = parent;
+		this.x0 = x0;
+		this.y0 = y0;
+		this.b0 = b0;
+		this.width = width;
+		this.height = height;
+		this.numBands = numBands;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getNumBands() {
+		return numBands;
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return parent.getSampleType();
+	}
+
+	@Override
+	public Layout getLayout() {
+		return parent.getLayout();
+	}
+
+	@Override
+	protected double doGet(int x, int y, int b) {
+		return parent.doGet(x + x0, y + y0, b + b0);
+	}
+
+	@Override
+	public void doSet(int x, int y, int b, double value) {
+		parent.doSet(x + x0, y + y0, b + b0, value);
+	}
+
+	@Override
+	public boolean supportsConcurrentAccess() {
+		return parent.supportsConcurrentAccess();
+	}
+
+	//Views of views are views of the parent so that lookups don't chain
+
+	@Override
+	public Image subImage(int x, int y, int width, int height) {
+		checkRegion(x, y, width, height);
+		return new ImageView(parent, x + x0, y + y0, b0, width, height, numBands);
+	}
+
+	@Override
+	public Image subBands(int firstBand, int numBands) {
+		checkBands(firstBand, numBands);
+		return new ImageView(parent, x0, y0, b0 + firstBand, width, height, numBands);
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An image that stores its values as signed 32 bit integers in a single int array.
+ * This is useful for intermediate results which must be whole numbers but may exceed
+ * the range of a {@link ShortImage ShortImage} (e.g. labels, counts, sums).
+ * </p><p>
+ * Values written to the image are rounded to the nearest integer and anything outside
+ * of the range of an int is clamped.
+ * </p><p>
+ * The values are laid out in either of the {@link Image.Layout layouts} of an
+ * {@link ArrayImage ArrayImage}: row-major with the bands of each pixel interleaved (the
+ * default) or planar, with each band in its own row-major plane.
+ * </p>
+ */
+public class IntImage extends ArrayImage {
+
+	private final int[] pixels;
+
+	/**
+	 * Creates a new image with all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 */
+	public IntImage(int width, int height, int numBands) {
+		this(width, height, numBands, Layout.Interleaved);
+	}
+
+	/**
+	 * Creates a new image with the given layout and all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values should be arranged in memory
+	 */
+	public IntImage(int width, int height, int numBands, Layout layout) {
+		super(width, height, numBands, layout);
+		this.pixels = new int[height * width * numBands];
+	}
+
+	/**
+	 * Creates an image from existing values.  The data is not copied so further
+	 * modification to the data array will modify the image itself.
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param pixels
+	 *            The initial data for the image (must be in interleaved row-major order)
+	 */
+	public IntImage(int width, int height, int numBands, int[] pixels) {
+		this(width, height, numBands, Layout.Interleaved, pixels);
+	}
+
+	/**
+	 * Creates an image from existing values.  The data is not copied so further
+	 * modification to the data array will modify the image itself.
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values are arranged in the pixels array
+	 * @param pixels
+	 *            The initial data for the image (must be arranged according to the layout)
+	 */
+	public IntImage(int width, int height, int numBands, Layout layout, int[] pixels) {
+		super(width, height, numBands, layout);
+		checkLength(pixels.length, width, height, numBands);
+		this.pixels = pixels;
+	}
+
+	private IntImage(IntImage parent, int width, int height, int numBands, int offset) {
+		super(parent, width, height, numBands, offset);
+		this.pixels = parent.pixels;
+	}
+
+	/**
+	 * Returns the array backing this image. This is not a copy, modifying the
+	 * array will modify the image.  Views of another image return the array of that image,
+	 * use the offset and strides to find the values of the view.
+	 *
+	 * @return The pixel values of the image, arranged according to the layout and
+	 *         starting at the offset
+	 */
+	public int[] getData() {
+		return pixels;
+	}
+
+	@Override
+	protected ArrayImage createView(int width, int height, int numBands, int offset) {
+		return new IntImage(this, width, height, numBands, offset);
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return SampleType.SignedInt;
+	}
+
+	@Override
+	protected double getElement(int index) {
+		return pixels[index];
+	}
+
+	@Override
+	protected void setElement(int index, double value) {
+		//Casting a double to an int already clamps to the int range (and turns NaN into 0)
+		pixels[index] = (int) Math.floor(value + 0.5);
+	}
+
+	@Override
+	void readElements(int index, int stride, double[] destination, int offset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[offset + i] = pixels[index];
+			index += stride;
+		}
+	}
+
+	@Override
+	void writeElements(double[] source, int offset, int index, int stride, int count) {
+		for(int i = 0; i < count; i++) {
+			pixels[index] = (int) Math.floor(source[offset + i] + 0.5);
+			index += stride;
+		}
+	}
+
+	@Override
+	void fillElements(int index, int stride, int count, double value) {
+		int converted = (int) Math.floor(value + 0.5);
+		if(stride == 1) {
+			Arrays.fill(pixels, index, index + count, converted);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			pixels[index] = converted;
+			index += stride;
+		}
+	}
+
+	@Override
+	void copyElements(int srcIndex, int srcStride, ArrayImage destination, int dstIndex, int dstStride, int count) {
+		if(!(destination instanceof IntImage)) {
+			super.copyElements(srcIndex, srcStride, destination, dstIndex, dstStride, count);
+			return;
+		}
+		int[] target = ((IntImage) destination).pixels;
+		if(srcStride == 1 && dstStride == 1) {
+			System.arraycopy(pixels, srcIndex, target, dstIndex, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			target[dstIndex] = pixels[srcIndex];
+			srcIndex += srcStride;
+			dstIndex += dstStride;
+		}
+	}
+
+}
@@ -0,0 +1,221 @@
+package com.github.westonpace.jayvee.image;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * A summed-area table of an image.  Each entry holds the sum of every value of a band
+ * above and to the left of a pixel so the sum of any rectangular box of the image can be
+ * found from just four entries, no matter how large the box.  Box filters, local means,
+ * local variances, and adaptive thresholds computed this way cost the same for a 3x3
+ * window as for a 101x101 window.
+ * </p><p>
+ * Images with an integral sample type are summed into longs, so the sums are exact.
+ * Other images are summed into doubles.  The table can optionally also hold the sums of
+ * the squared values (always as doubles) which allows the variance of a box to be found.
+ * </p><p>
+ * The table is computed once, in a single pass over the image, when the integral image is
+ * created.  It does not change if the image is modified afterwards.
+ * </p>
+ */
+public class IntegralImage {
+
+	private final int width;
+	private final int height;
+	private final int numBands;
+	/*
+	 * The tables have an extra row and column of zeros at the top and left so that
+	 * boxes touching the edge of the image don't need special cases.  Entry (x, y) holds
+	 * the sum of all values above and to the left of pixel (x, y), not including it.
+	 */
+	private final int rowLength;
+	private final long[] longSums;
+	private final double[] doubleSums;
+	private final double[] squaredSums;
+
+	/**
+	 * Creates an integral image without squared sums
+	 * @param source The image to sum
+	 */
+	public IntegralImage(Image source) {
+		this(source, false);
+	}
+
+	/**
+	 * Creates an integral image
+	 * @param source The image to sum
+	 * @param squares true if the squared values should be summed as well (needed for
+	 *        {@link #boxVariance(int, int, int, int, int) boxVariance})
+	 */
+	public IntegralImage(Image source, boolean squares) {
+		this.width = source.getWidth();
+		this.height = source.getHeight();
+		this.numBands = source.getNumBands();
+		this.rowLength = (width + 1) * numBands;
+		long size = (long) rowLength * (height + 1);
+		if(size > Integer.MAX_VALUE) {
+			throw new InvalidParameterException("The image (" + width + "x" + height + "x" + numBands + ") is too large for an integral image");
+		}
+		boolean exact = source.getSampleType().isIntegral();
+		longSums = exact ? new long[(int) size] : null;
+		doubleSums = exact ? null : new double[(int) size];
+		squaredSums = squares ? new double[(int) size] : null;
+
+		double [] row = new double[width * numBands];
+		long [] longRowSums = new long[numBands];
+		double [] doubleRowSums = new double[numBands];
+		double [] squaredRowSums = new double[numBands];
+		for(int y = 0; y < height; y++) {
+			source.getRegion(0, y, width, 1, row, 0);
+			for(int b = 0; b < numBands; b++) {
+				longRowSums[b] = 0;
+				doubleRowSums[b] = 0;
+				squaredRowSums[b] = 0;
+			}
+			int above = y * rowLength + numBands;
+			int index = above + rowLength;
+			int value = 0;
+			for(int x = 0; x < width; x++) {
+				for(int b = 0; b < numBands; b++) {
+					double sample = row[value++];
+					if(exact) {
+						longRowSums[b] += (long) sample;
+						longSums[index] = longSums[above] + longRowSums[b];
+					} else {
+						doubleRowSums[b] += sample;
+						doubleSums[index] = doubleSums[above] + doubleRowSums[b];
+					}
+					if(squares) {
+						squaredRowSums[b] += sample * sample;
+						squaredSums[index] = squaredSums[above] + squaredRowSums[b];
+					}
+					index++;
+					above++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the width of the summed image
+	 * @return The width of the image, in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the summed image
+	 * @return The height of the image, in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of bands of the summed image
+	 * @return The number of bands
+	 */
+	public int getNumBands() {
+		return numBands;
+	}
+
+	/**
+	 * Returns true if the squared values were summed as well
+	 * @return true if variances can be calculated
+	 */
+	public boolean hasSquares() {
+		return squaredSums != null;
+	}
+
+	private int checkBox(int x0, int y0, int x1, int y1, int b) {
+		if(x0 < 0 || y0 < 0 || x1 >= width || y1 >= height || x0 > x1 || y0 > y1 || b < 0 || b >= numBands) {
+			throw new InvalidParameterException("The box (" + x0 + "," + y0 + ") to (" + x1 + "," + y1 + ") band " + b + " does not fit in the image. Bounds: "
+					+ width + "," + height + "," + numBands);
+		}
+		return (x1 - x0 + 1) * (y1 - y0 + 1);
+	}
+
+	private double sum(double[] table, int x0, int y0, int x1, int y1, int b) {
+		int top = y0 * rowLength + b;
+		int bottom = (y1 + 1) * rowLength + b;
+		int left = x0 * numBands;
+		int right = (x1 + 1) * numBands;
+		return table[bottom + right] - table[bottom + left] - table[top + right] + table[top + left];
+	}
+
+	/**
+	 * Returns the sum of every value of a band within a box.  The corners are included in
+	 * the box.
+	 * @param x0 The left edge of the box
+	 * @param y0 The top edge of the box
+	 * @param x1 The right edge of the box
+	 * @param y1 The bottom edge of the box
+	 * @param b The band to sum
+	 * @return The sum of the values in the box
+	 */
+	public double boxSum(int x0, int y0, int x1, int y1, int b) {
+		checkBox(x0, y0, x1, y1, b);
+		if(longSums == null) {
+			return sum(doubleSums, x0, y0, x1, y1, b);
+		}
+		int top = y0 * rowLength + b;
+		int bottom = (y1 + 1) * rowLength + b;
+		int left = x0 * numBands;
+		int right = (x1 + 1) * numBands;
+		return longSums[bottom + right] - longSums[bottom + left] - longSums[top + right] + longSums[top + left];
+	}
+
+	/**
+	 * Returns the average of the values of a band within a box.  The corners are included
+	 * in the box.
+	 * @param x0 The left edge of the box
+	 * @param y0 The top edge of the box
+	 * @param x1 The right edge of the box
+	 * @param y1 The bottom edge of the box
+	 * @param b The band to average
+	 * @return The mean of the values in the box
+	 */
+	public double boxMean(int x0, int y0, int x1, int y1, int b) {
+		return boxSum(x0, y0, x1, y1, b) / checkBox(x0, y0, x1, y1, b);
+	}
+
+	/**
+	 * Returns the sum of the squares of the values of a band within a box.  The corners are
+	 * included in the box.
+	 * @param x0 The left edge of the box
+	 * @param y0 The top edge of the box
+	 * @param x1 The right edge of the box
+	 * @param y1 The bottom edge of the box
+	 * @param b The band to sum
+	 * @return The sum of the squared values in the box
+	 * @throws InvalidParameterException If the integral image was created without squares
+	 */
+	public double boxSquaredSum(int x0, int y0, int x1, int y1, int b) {
+		checkBox(x0, y0, x1, y1, b);
+		if(squaredSums == null) {
+			throw new InvalidParameterException("This integral image was created without squared sums");
+		}
+		return sum(squaredSums, x0, y0, x1, y1, b);
+	}
+
+	/**
+	 * Returns the (population) variance of the values of a band within a box.  The corners
+	 * are included in the box.
+	 * @param x0 The left edge of the box
+	 * @param y0 The top edge of the box
+	 * @param x1 The right edge of the box
+	 * @param y1 The bottom edge of the box
+	 * @param b The band to use
+	 * @return The variance of the values in the box
+	 * @throws InvalidParameterException If the integral image was created without squares
+	 */
+	public double boxVariance(int x0, int y0, int x1, int y1, int b) {
+		int count = checkBox(x0, y0, x1, y1, b);
+		double mean = boxSum(x0, y0, x1, y1, b) / count;
+		double variance = boxSquaredSum(x0, y0, x1, y1, b) / count - mean * mean;
+		//Rounding can push the variance of a flat box slightly below zero
+		return Math.max(variance, 0);
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.github.westonpace.jayvee.image;
 
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
 /**
  * <p>
  * Defines how an image should retrieve a value from neighboring pixels
@@ -31,6 +34,206 @@ public interface Interpolator {
 	 */
 	public double interpolate(double x, double y, int b, Image source);
 	
+	/**
+	 * <p>
+	 * The base class for interpolators which can fill in many values at once.  Resampling
+	 * an image (resizing, warping, etc.) interpolates a value for every pixel of the output
+	 * and calling {@link Interpolator#interpolate(double, double, int, Image) interpolate}
+	 * for each one means a virtual call and a fully bounds checked read of every neighbor.
+	 * The batch methods instead work through a whole row (or grid) of points at a time.
+	 * </p><p>
+	 * Most points are far enough from the edge of the image that all of their neighbors
+	 * are inside the image.  These are interpolated with unchecked reads (see
+	 * {@link Image#unsafeView() unsafeView}).  Only points near the edge go through the
+	 * given {@link OutOfBoundsAccessStrategy OutOfBoundsAccessStrategy}.
+	 * </p><p>
+	 * Subclasses describe how far their neighborhood reaches with
+	 * {@link #getRadius() getRadius} and implement the interpolation twice, once for
+	 * interior points and once for points whose neighbors may be out of bounds.
+	 * </p>
+	 */
+	public static abstract class BatchInterpolator implements Interpolator {
+
+		private static final OutOfBoundsAccessStrategy EXTEND_EDGES = new OutOfBoundsAccessStrategy.ExtendEdgesStrategy();
+
+		/**
+		 * Returns how far the neighborhood of a point reaches.  A point whose integer part
+		 * is (x,y) uses neighbors from (x-radius+1,y-radius+1) to (x+radius,y+radius).
+		 * @return The radius of the neighborhood
+		 */
+		protected abstract int getRadius();
+
+		/**
+		 * Interpolates a point whose entire neighborhood is known to be inside the image
+		 * @param x The x coordinate of the point
+		 * @param y The y coordinate of the point
+		 * @param b The band to interpolate
+		 * @param source An unchecked view of the image
+		 * @return The interpolated value
+		 */
+		protected abstract double interpolateInterior(double x, double y, int b, Image.UnsafeView source);
+
+		/**
+		 * Interpolates a point whose neighborhood may stretch beyond the image
+		 * @param x The x coordinate of the point
+		 * @param y The y coordinate of the point
+		 * @param b The band to interpolate
+		 * @param source The image
+		 * @param outOfBoundsAccessStrategy Supplies the neighbors which are outside of the image
+		 * @return The interpolated value
+		 */
+		protected abstract double interpolateEdge(double x, double y, int b, Image source, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy);
+
+		/**
+		 * Interpolates a single point.  The point must lie within the image but may be on the
+		 * last row or column (neighbors beyond the edge are taken from the edge).
+		 * @throws InvalidParameterException If the point is outside of the image
+		 */
+		@Override
+		public double interpolate(double x, double y, int b, Image source) {
+			if(!(x >= 0 && y >= 0 && x <= source.getWidth() - 1 && y <= source.getHeight() - 1) || b < 0 || b >= source.getNumBands()) {
+				throw new InvalidParameterException("The x,y,b coordinates supplied are out of range for this image.  Given: " + x + "," + y + "," + b
+						+ " Bounds: " + source.getWidth() + "," + source.getHeight() + "," + source.getNumBands());
+			}
+			return interpolate(x, y, b, source, EXTEND_EDGES);
+		}
+
+		/**
+		 * Interpolates a single point which may lie outside of the image
+		 * @param x The x coordinate of the point
+		 * @param y The y coordinate of the point
+		 * @param b The band to interpolate
+		 * @param source The image
+		 * @param outOfBoundsAccessStrategy Supplies the neighbors which are outside of the image
+		 * @return The interpolated value
+		 */
+		public double interpolate(double x, double y, int b, Image source, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			if(isInterior(x, y, source.getWidth(), source.getHeight())) {
+				return interpolateInterior(x, y, b, source.unsafeView());
+			}
+			return interpolateEdge(x, y, b, source, outOfBoundsAccessStrategy);
+		}
+
+		/**
+		 * Returns true if every neighbor of the point is inside an image of the given size
+		 */
+		protected final boolean isInterior(double x, double y, int width, int height) {
+			int radius = getRadius();
+			//Written so that NaN is never considered interior
+			return x >= radius - 1 && y >= radius - 1 && x < width - radius && y < height - radius;
+		}
+
+		/**
+		 * Interpolates the points (xs[i], ys[i]) into consecutive positions of the destination
+		 * @param source The image to interpolate
+		 * @param b The band to interpolate
+		 * @param xs The x coordinates of the points
+		 * @param ys The y coordinates of the points (must be at least as long as xs)
+		 * @param destination The array to write the values into
+		 * @param offset The position in the destination of the first value
+		 * @param outOfBoundsAccessStrategy Supplies the neighbors which are outside of the image
+		 */
+		public void interpolateRow(Image source, int b, double[] xs, double[] ys, double[] destination, int offset, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			Image.UnsafeView view = source.unsafeView();
+			int width = view.getWidth();
+			int height = view.getHeight();
+			for(int i = 0; i < xs.length; i++) {
+				double x = xs[i];
+				double y = ys[i];
+				if(isInterior(x, y, width, height)) {
+					destination[offset + i] = interpolateInterior(x, y, b, view);
+				} else {
+					destination[offset + i] = interpolateEdge(x, y, b, source, outOfBoundsAccessStrategy);
+				}
+			}
+		}
+
+		/**
+		 * Interpolates count points along a line, starting at (x, y) and stepping by (dx, dy)
+		 * from one point to the next.  This is what an affine transform of a row of pixels
+		 * looks like.
+		 * @param source The image to interpolate
+		 * @param b The band to interpolate
+		 * @param x The x coordinate of the first point
+		 * @param y The y coordinate of the first point
+		 * @param dx The change in x from one point to the next
+		 * @param dy The change in y from one point to the next
+		 * @param count The number of points
+		 * @param destination The array to write the values into
+		 * @param offset The position in the destination of the first value
+		 * @param outOfBoundsAccessStrategy Supplies the neighbors which are outside of the image
+		 */
+		public void interpolateRow(Image source, int b, double x, double y, double dx, double dy, int count, double[] destination, int offset,
+				OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			Image.UnsafeView view = source.unsafeView();
+			int width = view.getWidth();
+			int height = view.getHeight();
+			for(int i = 0; i < count; i++) {
+				//Computed from the start each time so that rounding errors don't accumulate
+				double pointX = x + i * dx;
+				double pointY = y + i * dy;
+				if(isInterior(pointX, pointY, width, height)) {
+					destination[offset + i] = interpolateInterior(pointX, pointY, b, view);
+				} else {
+					destination[offset + i] = interpolateEdge(pointX, pointY, b, source, outOfBoundsAccessStrategy);
+				}
+			}
+		}
+
+		/**
+		 * Interpolates every point of the grid formed by the given x and y coordinates.  The
+		 * values are written in row-major order, xs.length values for each of the ys.
+		 * @param source The image to interpolate
+		 * @param b The band to interpolate
+		 * @param xs The x coordinates of the columns of the grid
+		 * @param ys The y coordinates of the rows of the grid
+		 * @param destination The array to write the values into
+		 * @param offset The position in the destination of the first value
+		 * @param outOfBoundsAccessStrategy Supplies the neighbors which are outside of the image
+		 */
+		public void interpolateGrid(Image source, int b, double[] xs, double[] ys, double[] destination, int offset, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			Image.UnsafeView view = source.unsafeView();
+			int width = view.getWidth();
+			int height = view.getHeight();
+			for(int j = 0; j < ys.length; j++) {
+				double y = ys[j];
+				for(int i = 0; i < xs.length; i++) {
+					double x = xs[i];
+					if(isInterior(x, y, width, height)) {
+						destination[offset++] = interpolateInterior(x, y, b, view);
+					} else {
+						destination[offset++] = interpolateEdge(x, y, b, source, outOfBoundsAccessStrategy);
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Takes the value of the pixel closest to the point.  This is the cheapest interpolator
+	 * and does not blur the image at all but it results in blocky images when enlarging.
+	 */
+	public static class NearestNeighborInterpolator extends BatchInterpolator {
+
+		@Override
+		protected int getRadius() {
+			//The nearest pixel may be the pixel to the right or below
+			return 1;
+		}
+
+		@Override
+		protected double interpolateInterior(double x, double y, int b, Image.UnsafeView source) {
+			return source.get((int) (x + 0.5), (int) (y + 0.5), b);
+		}
+
+		@Override
+		protected double interpolateEdge(double x, double y, int b, Image source, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			return source.get((int) Math.floor(x + 0.5), (int) Math.floor(y + 0.5), b, outOfBoundsAccessStrategy);
+		}
+
+	}
+
 	/**
 	 * <p>
 	 * Calculates a pixel value from the 4 closest neighbors using bilinear interpolation.  
@@ -57,27 +260,197 @@ public interface Interpolator {
 	 * bicubic interpolation.  It is more accurate than nearest neighbor interpolation.
 	 * </p>
 	 */
-	public static class BilinearInterpolator implements Interpolator {
+	public static class BilinearInterpolator extends BatchInterpolator {
 
 		@Override
-		public double interpolate(double x, double y, int b, Image source) {
-			
-			double topLeftNeighbor = source.get((int)x, (int)y, b);
-			double topRightNeighbor = source.get((int)x+1, (int)y, b);
-			double bottomLeftNeighbor = source.get((int)x, (int)y+1, b);
-			double bottomRightNeighbor = source.get((int)x+1, (int)y+1, b);
-			
-			double xPercent = x - (int)x;
-			double yPercent = y - (int)y;
-			
+		protected int getRadius() {
+			return 1;
+		}
+
+		@Override
+		protected double interpolateInterior(double x, double y, int b, Image.UnsafeView source) {
+			//Interior points are never negative so truncating is the same as the floor
+			int left = (int) x;
+			int top = (int) y;
+			double topLeftNeighbor = source.get(left, top, b);
+			double topRightNeighbor = source.get(left + 1, top, b);
+			double bottomLeftNeighbor = source.get(left, top + 1, b);
+			double bottomRightNeighbor = source.get(left + 1, top + 1, b);
+			return combine(x - left, y - top, topLeftNeighbor, topRightNeighbor, bottomLeftNeighbor, bottomRightNeighbor);
+		}
+
+		@Override
+		protected double interpolateEdge(double x, double y, int b, Image source, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			int left = (int) Math.floor(x);
+			int top = (int) Math.floor(y);
+			double topLeftNeighbor = source.get(left, top, b, outOfBoundsAccessStrategy);
+			double topRightNeighbor = source.get(left + 1, top, b, outOfBoundsAccessStrategy);
+			double bottomLeftNeighbor = source.get(left, top + 1, b, outOfBoundsAccessStrategy);
+			double bottomRightNeighbor = source.get(left + 1, top + 1, b, outOfBoundsAccessStrategy);
+			return combine(x - left, y - top, topLeftNeighbor, topRightNeighbor, bottomLeftNeighbor, bottomRightNeighbor);
+		}
+
+		private static double combine(double xPercent, double yPercent, double topLeftNeighbor, double topRightNeighbor, double bottomLeftNeighbor, double bottomRightNeighbor) {
 			//Assuming all pixels the same size (seems safe)
 			double topNeighbor = topLeftNeighbor * (1-xPercent) + topRightNeighbor * xPercent;
 			double bottomNeighbor = bottomLeftNeighbor * (1-xPercent) + bottomRightNeighbor * xPercent;
-			double value = topNeighbor * (1-yPercent) + bottomNeighbor * yPercent;
-			
-			return value;
+			return topNeighbor * (1-yPercent) + bottomNeighbor * yPercent;
 		}
 		
 	}
 	
+	/**
+	 * <p>
+	 * Bilinear interpolation for unsigned 8 and 16 bit images done with integer arithmetic.
+	 * {@link ByteImage ByteImage} and {@link ShortImage ShortImage} are read directly from
+	 * their backing arrays, other array images of those sample types (e.g.
+	 * {@link DirectImage DirectImage}) are read value by value.  The weights are rounded to
+	 * 8 bits (multiples of 1/256) for byte images and to 16 bits for short images.  The
+	 * result is rounded to the nearest integer so this differs from
+	 * {@link BilinearInterpolator BilinearInterpolator} by at most one (it is meant for
+	 * images whose output will be stored as integers anyway).
+	 * </p><p>
+	 * The fixed point path is used for every point whose neighbors are all inside the
+	 * image, by the batch methods and by single point calls alike (the four argument
+	 * {@link #interpolate(double, double, int, Image) interpolate} goes through
+	 * {@link #interpolate(double, double, int, Image, OutOfBoundsAccessStrategy) interpolate}
+	 * with a strategy).  Other points are interpolated as doubles and rounded.  Images of
+	 * any other type are interpolated exactly as {@link BilinearInterpolator
+	 * BilinearInterpolator} would.
+	 * </p>
+	 */
+	public static class FixedPointBilinearInterpolator extends BilinearInterpolator {
+
+		private static final int BYTE_WEIGHT_BITS = 8;
+		private static final int SHORT_WEIGHT_BITS = 16;
+
+		private static boolean isFixedPoint(Image source) {
+			SampleType sampleType = source.getSampleType();
+			return source instanceof ArrayImage && (sampleType == SampleType.UnsignedByte || sampleType == SampleType.UnsignedShort);
+		}
+
+		@Override
+		public double interpolate(double x, double y, int b, Image source, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			if(!isFixedPoint(source)) {
+				return super.interpolate(x, y, b, source, outOfBoundsAccessStrategy);
+			}
+			if(isInterior(x, y, source.getWidth(), source.getHeight())) {
+				return interpolateFixed((ArrayImage) source, x, y, b);
+			}
+			return Math.round(interpolateEdge(x, y, b, source, outOfBoundsAccessStrategy));
+		}
+
+		@Override
+		public void interpolateRow(Image source, int b, double[] xs, double[] ys, double[] destination, int offset, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			if(!isFixedPoint(source)) {
+				super.interpolateRow(source, b, xs, ys, destination, offset, outOfBoundsAccessStrategy);
+				return;
+			}
+			ArrayImage image = (ArrayImage) source;
+			int width = image.getWidth();
+			int height = image.getHeight();
+			for(int i = 0; i < xs.length; i++) {
+				double x = xs[i];
+				double y = ys[i];
+				if(isInterior(x, y, width, height)) {
+					destination[offset + i] = interpolateFixed(image, x, y, b);
+				} else {
+					destination[offset + i] = Math.round(interpolateEdge(x, y, b, source, outOfBoundsAccessStrategy));
+				}
+			}
+		}
+
+		@Override
+		public void interpolateRow(Image source, int b, double x, double y, double dx, double dy, int count, double[] destination, int offset,
+				OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			if(!isFixedPoint(source)) {
+				super.interpolateRow(source, b, x, y, dx, dy, count, destination, offset, outOfBoundsAccessStrategy);
+				return;
+			}
+			ArrayImage image = (ArrayImage) source;
+			int width = image.getWidth();
+			int height = image.getHeight();
+			for(int i = 0; i < count; i++) {
+				double pointX = x + i * dx;
+				double pointY = y + i * dy;
+				if(isInterior(pointX, pointY, width, height)) {
+					destination[offset + i] = interpolateFixed(image, pointX, pointY, b);
+				} else {
+					destination[offset + i] = Math.round(interpolateEdge(pointX, pointY, b, source, outOfBoundsAccessStrategy));
+				}
+			}
+		}
+
+		@Override
+		public void interpolateGrid(Image source, int b, double[] xs, double[] ys, double[] destination, int offset, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+			if(!isFixedPoint(source)) {
+				super.interpolateGrid(source, b, xs, ys, destination, offset, outOfBoundsAccessStrategy);
+				return;
+			}
+			ArrayImage image = (ArrayImage) source;
+			int width = image.getWidth();
+			int height = image.getHeight();
+			for(int j = 0; j < ys.length; j++) {
+				double y = ys[j];
+				for(int i = 0; i < xs.length; i++) {
+					double x = xs[i];
+					if(isInterior(x, y, width, height)) {
+						destination[offset++] = interpolateFixed(image, x, y, b);
+					} else {
+						destination[offset++] = Math.round(interpolateEdge(x, y, b, source, outOfBoundsAccessStrategy));
+					}
+				}
+			}
+		}
+
+		/*
+		 * Interpolates an interior point of an unsigned byte or short image.  The weights
+		 * are the fractional parts of x and y scaled to [0, 2^bits].
+		 */
+		private static int interpolateFixed(ArrayImage image, double x, double y, int b) {
+			int left = (int) x;
+			int top = (int) y;
+			int index = image.indexOf(left, top, b);
+			int pixelStride = image.getPixelStride();
+			int rowStride = image.getRowStride();
+			int topLeft;
+			int topRight;
+			int bottomLeft;
+			int bottomRight;
+			if(image instanceof ByteImage) {
+				byte [] data = ((ByteImage) image).getData();
+				topLeft = data[index] & 0xFF;
+				topRight = data[index + pixelStride] & 0xFF;
+				bottomLeft = data[index + rowStride] & 0xFF;
+				bottomRight = data[index + rowStride + pixelStride] & 0xFF;
+			} else if(image instanceof ShortImage) {
+				short [] data = ((ShortImage) image).getData();
+				topLeft = data[index] & 0xFFFF;
+				topRight = data[index + pixelStride] & 0xFFFF;
+				bottomLeft = data[index + rowStride] & 0xFFFF;
+				bottomRight = data[index + rowStride + pixelStride] & 0xFFFF;
+			} else {
+				topLeft = (int) image.getElement(index);
+				topRight = (int) image.getElement(index + pixelStride);
+				bottomLeft = (int) image.getElement(index + rowStride);
+				bottomRight = (int) image.getElement(index + rowStride + pixelStride);
+			}
+			if(image.getSampleType() == SampleType.UnsignedByte) {
+				int xWeight = (int) ((x - left) * (1 << BYTE_WEIGHT_BITS) + 0.5);
+				int yWeight = (int) ((y - top) * (1 << BYTE_WEIGHT_BITS) + 0.5);
+				//Each row is at most 255 * 256 so the final sum fits comfortably in an int
+				int topRow = (topLeft << BYTE_WEIGHT_BITS) + (topRight - topLeft) * xWeight;
+				int bottomRow = (bottomLeft << BYTE_WEIGHT_BITS) + (bottomRight - bottomLeft) * xWeight;
+				return ((topRow << BYTE_WEIGHT_BITS) + (bottomRow - topRow) * yWeight + (1 << (2 * BYTE_WEIGHT_BITS - 1))) >> (2 * BYTE_WEIGHT_BITS);
+			}
+			//Eight bit weights would be too coarse for sixteen bit values
+			long xWeight = (long) ((x - left) * (1 << SHORT_WEIGHT_BITS) + 0.5);
+			long yWeight = (long) ((y - top) * (1 << SHORT_WEIGHT_BITS) + 0.5);
+			long topRow = ((long) topLeft << SHORT_WEIGHT_BITS) + (topRight - topLeft) * xWeight;
+			long bottomRow = ((long) bottomLeft << SHORT_WEIGHT_BITS) + (bottomRight - bottomLeft) * xWeight;
+			return (int) (((topRow << SHORT_WEIGHT_BITS) + (bottomRow - topRow) * yWeight + (1L << (2 * SHORT_WEIGHT_BITS - 1))) >> (2 * SHORT_WEIGHT_BITS));
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.github.westonpace.jayvee.image;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * A convolution kernel: a small grid of weights which is laid over an image, centered on
+ * a pixel, to calculate a weighted sum of the pixel's neighborhood.  The center of the
+ * kernel is at (width / 2, height / 2) so kernels normally have odd sizes.  Kernels are
+ * applied as written (the weight at the top left of the kernel multiplies the pixel up
+ * and to the left of the center) so, for example, {@link #sobelX() sobelX} is positive
+ * where the image gets brighter to the right.
+ * </p><p>
+ * A kernel is separable if it is the outer product of a column and a row (every row of
+ * the kernel is a multiple of the same row).  A separable kernel can be applied as a
+ * horizontal pass followed by a vertical pass which costs width + height multiplications
+ * per value instead of width * height.  Separability is detected when the kernel is
+ * created.
+ * </p><p>
+ * Kernels are immutable.
+ * </p>
+ */
+public final class Kernel {
+
+	/**
+	 * How far (relative to the largest weight) a weight may be from the outer product for
+	 * a kernel to still be considered separable
+	 */
+	private static final double SEPARABLE_TOLERANCE = 1e-9;
+
+	private final int width;
+	private final int height;
+	private final double[] weights;
+	private final double[] horizontal;
+	private final double[] vertical;
+
+	/**
+	 * Creates a kernel from a grid of weights
+	 * @param width The width of the kernel
+	 * @param height The height of the kernel
+	 * @param weights The weights in row-major order, width * height values
+	 */
+	public Kernel(int width, int height, double[] weights) {
+		if(width < 1 || height < 1) {
+			throw new InvalidParameterException("A kernel must be at least 1x1. Actual: " + width + "x" + height);
+		}
+		if(weights == null || weights.length != width * height) {
+			throw new InvalidParameterException("A " + width + "x" + height + " kernel needs " + (width * height) + " weights");
+		}
+		this.width = width;
+		this.height = height;
+		this.weights = weights.clone();
+		double [][] factors = factor(width, height, this.weights);
+		this.horizontal = factors == null ? null : factors[0];
+		this.vertical = factors == null ? null : factors[1];
+	}
+
+	private Kernel(double[] horizontal, double[] vertical) {
+		this.width = horizontal.length;
+		this.height = vertical.length;
+		this.horizontal = horizontal.clone();
+		this.vertical = vertical.clone();
+		this.weights = new double[width * height];
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				weights[y * width + x] = vertical[y] * horizontal[x];
+			}
+		}
+	}
+
+	/**
+	 * Creates a separable kernel from its row and column
+	 * @param horizontal The weights of the horizontal pass
+	 * @param vertical The weights of the vertical pass
+	 * @return The kernel whose weights are vertical[y] * horizontal[x]
+	 */
+	public static Kernel separable(double[] horizontal, double[] vertical) {
+		if(horizontal == null || vertical == null || horizontal.length == 0 || vertical.length == 0) {
+			throw new InvalidParameterException("A separable kernel needs at least one horizontal and one vertical weight");
+		}
+		return new Kernel(horizontal, vertical);
+	}
+
+	/*
+	 * Splits the kernel into a row and a column if it is (close enough to) their outer
+	 * product.  The row is taken through the largest weight so the division is stable.
+	 */
+	private static double[][] factor(int width, int height, double[] weights) {
+		int pivot = 0;
+		for(int i = 1; i < weights.length; i++) {
+			if(Math.abs(weights[i]) > Math.abs(weights[pivot])) {
+				pivot = i;
+			}
+		}
+		double largest = Math.abs(weights[pivot]);
+		if(largest == 0) {
+			return null;
+		}
+		int pivotX = pivot % width;
+		int pivotY = pivot / width;
+		double [] horizontal = new double[width];
+		double [] vertical = new double[height];
+		for(int x = 0; x < width; x++) {
+			horizontal[x] = weights[pivotY * width + x];
+		}
+		for(int y = 0; y < height; y++) {
+			vertical[y] = weights[y * width + pivotX] / weights[pivot];
+		}
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				if(Math.abs(vertical[y] * horizontal[x] - weights[y * width + x]) > largest * SEPARABLE_TOLERANCE) {
+					return null;
+				}
+			}
+		}
+		return new double[][] { horizontal, vertical };
+	}
+
+	/**
+	 * A kernel which averages a size x size square
+	 * @param size The width and height of the square
+	 * @return The box kernel
+	 */
+	public static Kernel box(int size) {
+		if(size < 1) {
+			throw new InvalidParameterException("The size of a box kernel must be at least 1. Actual: " + size);
+		}
+		double [] weights = new double[size];
+		for(int i = 0; i < size; i++) {
+			weights[i] = 1.0 / size;
+		}
+		return separable(weights, weights);
+	}
+
+	/**
+	 * A gaussian blur, cut off at three standard deviations and normalized so the weights
+	 * add up to 1
+	 * @param sigma The standard deviation, in pixels
+	 * @return The gaussian kernel
+	 */
+	public static Kernel gaussian(double sigma) {
+		if(!(sigma > 0)) {
+			throw new InvalidParameterException("The standard deviation of a gaussian must be > 0. Actual: " + sigma);
+		}
+		int radius = (int) Math.ceil(sigma * 3);
+		double [] weights = new double[radius * 2 + 1];
+		double sum = 0;
+		for(int i = -radius; i <= radius; i++) {
+			weights[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+			sum += weights[i + radius];
+		}
+		for(int i = 0; i < weights.length; i++) {
+			weights[i] /= sum;
+		}
+		return separable(weights, weights);
+	}
+
+	/**
+	 * A 3x3 sharpening kernel (the image plus its negated 4-neighbor laplacian)
+	 * @return The sharpen kernel
+	 */
+	public static Kernel sharpen() {
+		return new Kernel(3, 3, new double[] {
+				 0, -1,  0,
+				-1,  5, -1,
+				 0, -1,  0 });
+	}
+
+	/**
+	 * The 4-neighbor laplacian
+	 * @return The laplacian kernel
+	 */
+	public static Kernel laplacian() {
+		return new Kernel(3, 3, new double[] {
+				0,  1, 0,
+				1, -4, 1,
+				0,  1, 0 });
+	}
+
+	/**
+	 * The horizontal Sobel operator, positive where values increase to the right
+	 * @return The Sobel x kernel
+	 */
+	public static Kernel sobelX() {
+		return separable(new double[] { -1, 0, 1 }, new double[] { 1, 2, 1 });
+	}
+
+	/**
+	 * The vertical Sobel operator, positive where values increase downwards
+	 * @return The Sobel y kernel
+	 */
+	public static Kernel sobelY() {
+		return separable(new double[] { 1, 2, 1 }, new double[] { -1, 0, 1 });
+	}
+
+	/**
+	 * @return The width of the kernel
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the kernel
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The column of the center of the kernel
+	 */
+	public int getCenterX() {
+		return width / 2;
+	}
+
+	/**
+	 * @return The row of the center of the kernel
+	 */
+	public int getCenterY() {
+		return height / 2;
+	}
+
+	/**
+	 * Returns one weight of the kernel
+	 * @param x The column of the weight
+	 * @param y The row of the weight
+	 * @return The weight
+	 */
+	public double getWeight(int x, int y) {
+		return weights[y * width + x];
+	}
+
+	/**
+	 * @return A copy of the weights, in row-major order
+	 */
+	public double[] getWeights() {
+		return weights.clone();
+	}
+
+	/**
+	 * @return true if the kernel can be applied as a horizontal and a vertical pass
+	 */
+	public boolean isSeparable() {
+		return horizontal != null;
+	}
+
+	/**
+	 * Returns the weights of the horizontal pass of a separable kernel
+	 * @return A copy of the horizontal weights
+	 * @throws InvalidParameterException If the kernel is not separable
+	 */
+	public double[] getHorizontal() {
+		checkSeparable();
+		return horizontal.clone();
+	}
+
+	/**
+	 * Returns the weights of the vertical pass of a separable kernel
+	 * @return A copy of the vertical weights
+	 * @throws InvalidParameterException If the kernel is not separable
+	 */
+	public double[] getVertical() {
+		checkSeparable();
+		return vertical.clone();
+	}
+
+	private void checkSeparable() {
+		if(horizontal == null) {
+			throw new InvalidParameterException("The kernel is not separable");
+		}
+	}
+
+}
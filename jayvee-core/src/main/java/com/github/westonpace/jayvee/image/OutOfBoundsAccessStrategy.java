@@ -1,5 +1,7 @@
 package com.github.westonpace.jayvee.image;
 
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
 /**
  * Defines what to do when a user attempts to access a pixel value that is outside
  * of the legal range.  Several common out of bounds strategies exist and they have
@@ -18,6 +20,37 @@ public interface OutOfBoundsAccessStrategy {
 	 */
 	public double get(int x, int y, int b, Image img);
 	
+	/**
+	 * <p>
+	 * A strategy which maps every out of bounds coordinate onto a coordinate inside of the
+	 * image.  The mapping only depends on the coordinate and the size of the image so it
+	 * can be worked out ahead of time for a whole row or column (see
+	 * {@link PaddedImage PaddedImage}).
+	 * </p><p>
+	 * The x and y coordinates are mapped independently.
+	 * </p>
+	 */
+	public abstract class IndexMappingStrategy implements OutOfBoundsAccessStrategy {
+
+		/**
+		 * Maps a coordinate onto the range [0, size)
+		 * @param index The coordinate, which may be out of bounds
+		 * @param size The width or height of the image
+		 * @return The coordinate to read instead
+		 */
+		public abstract int mapIndex(int index, int size);
+
+		@Override
+		public double get(int x, int y, int b, Image img) {
+			if(b < 0 || b >= img.getNumBands()) {
+				throw new InvalidParameterException("The band supplied is out of range for this image.  Given: " + b + " Bands: " + img.getNumBands());
+			}
+			//The mapped coordinates are always in range so there is no need to check them again
+			return img.doGet(mapIndex(x, img.getWidth()), mapIndex(y, img.getHeight()), b);
+		}
+
+	}
+
 	/**
 	 * <p>
 	 * Accesses pixels beyond the edge of an image by assuming the edgemost
@@ -43,21 +76,113 @@ public interface OutOfBoundsAccessStrategy {
 	 * Extended Image
 	 * </p>
 	 */
-	public class ExtendEdgesStrategy implements OutOfBoundsAccessStrategy {
+	public class ExtendEdgesStrategy extends IndexMappingStrategy {
 
 		@Override
-		public double get(int x, int y, int b, Image img) {
-			//Set x to 0 if it is below 0
-			int trueX = Math.max(x, 0);
-			//Set x to the width of the image - 1 if it is >= the width
-			trueX = Math.min(img.getWidth()-1, trueX);
-			//Set y to 0 if it is below 0
-			int trueY = Math.max(y, 0);
-			//Set y to the height of the image - 1 if it is >= the height
-			trueY = Math.min(img.getHeight()-1, trueY);
-			return img.get(trueX, trueY, b);
+		public int mapIndex(int index, int size) {
+			//Set the index to 0 if it is below 0 and to size - 1 if it is >= size
+			return Math.min(size - 1, Math.max(index, 0));
 		}
 		
 	}
+
+	/**
+	 * <p>
+	 * Accesses pixels beyond the edge of an image by mirroring the image across its edges.
+	 * The edgemost pixels are repeated (the mirror lies on the edge of the pixel).  Images are
+	 * mirrored as many times as needed so any coordinate can be accessed.  As an example
+	 * (a single row):
+	 * </p><pre><code>
+	 * 0 1 2
+	 * </code></pre>
+	 * <p>
+	 * Input Image
+	 * </p>
+	 * <pre><code>
+	 * 1 0 0 1 2 2 1
+	 * </code></pre>
+	 * <p>
+	 * Reflected Image
+	 * </p>
+	 */
+	public class ReflectStrategy extends IndexMappingStrategy {
+
+		@Override
+		public int mapIndex(int index, int size) {
+			int period = size * 2;
+			int position = index % period;
+			if(position < 0) {
+				position += period;
+			}
+			return position < size ? position : period - 1 - position;
+		}
+
+	}
+
+	/**
+	 * <p>
+	 * Accesses pixels beyond the edge of an image by repeating the image, as if it were
+	 * tiled across the plane.  As an example (a single row):
+	 * </p><pre><code>
+	 * 0 1 2
+	 * </code></pre>
+	 * <p>
+	 * Input Image
+	 * </p>
+	 * <pre><code>
+	 * 1 2 0 1 2 0 1
+	 * </code></pre>
+	 * <p>
+	 * Wrapped Image
+	 * </p>
+	 */
+	public class WrapStrategy extends IndexMappingStrategy {
+
+		@Override
+		public int mapIndex(int index, int size) {
+			int position = index % size;
+			return position < 0 ? position + size : position;
+		}
+
+	}
+
+	/**
+	 * Treats every pixel beyond the edge of an image as having the same value (in every
+	 * band).  The default value is 0, which makes the image look as if it were surrounded
+	 * by black.
+	 */
+	public class ConstantStrategy implements OutOfBoundsAccessStrategy {
+
+		private final double value;
+
+		/**
+		 * Creates a strategy that reads 0 beyond the edge of the image
+		 */
+		public ConstantStrategy() {
+			this(0);
+		}
+
+		/**
+		 * Creates a strategy that reads the given value beyond the edge of the image
+		 * @param value The value of every pixel beyond the edge
+		 */
+		public ConstantStrategy(double value) {
+			this.value = value;
+		}
+
+		/**
+		 * Returns the value of every pixel beyond the edge
+		 * @return The constant value
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		@Override
+		public double get(int x, int y, int b, Image img) {
+			return value;
+		}
+
+	}
 	
-}
+}
\ No newline at end of file
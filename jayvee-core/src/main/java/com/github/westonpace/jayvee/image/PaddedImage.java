@@ -0,0 +1,184 @@
+package com.github.westonpace.jayvee.image;
+
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.IndexMappingStrategy;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * A view of an image with a border of extra pixels around it.  The border pixels are
+ * supplied by an {@link OutOfBoundsAccessStrategy OutOfBoundsAccessStrategy}.  Pixel (0,0)
+ * of the padded image is pixel (-border,-border) of the source image.
+ * </p><p>
+ * Neighborhood operations (convolution, morphology, etc.) would otherwise have to check
+ * every neighbor of every pixel against the edges of the image.  Instead they can run over
+ * the interior of a padded image with unchecked reads, whatever the neighborhood.
+ * </p><p>
+ * The padded image does not copy the source.  When it is created the source coordinate
+ * of every padded row and column is worked out (using
+ * {@link IndexMappingStrategy#mapIndex(int, int) mapIndex} if the strategy is an index
+ * mapping strategy) so a read is just two table lookups.  If the border will be read many
+ * times it may be faster still to {@link #materialize() materialize} the padded image.
+ * </p><p>
+ * Writes go through to the source image.  The border itself is read only.
+ * </p>
+ */
+public class PaddedImage extends Image {
+
+	private final Image source;
+	private final int border;
+	private final OutOfBoundsAccessStrategy outOfBoundsAccessStrategy;
+	/*
+	 * The source coordinate of each column and row of the padded image, -1 where the
+	 * strategy has to be asked for the value
+	 */
+	private final int[] columns;
+	private final int[] rows;
+
+	/**
+	 * Creates a new padded view of an image
+	 * @param source The image to pad
+	 * @param border The number of pixels to add to each side of the image
+	 * @param outOfBoundsAccessStrategy Supplies the values of the border pixels
+	 */
+	public PaddedImage(Image source, int border, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+		if(border < 0) {
+			throw new InvalidParameterException("The border must be >= 0. Actual: " + border);
+		}
+		if(outOfBoundsAccessStrategy == null) {
+			throw new InvalidParameterException("An out of bounds access strategy must be given");
+		}
+		this.source = source;
+		this.border = border;
+		this.outOfBoundsAccessStrategy = outOfBoundsAccessStrategy;
+		this.columns = createTable(source.getWidth(), border, outOfBoundsAccessStrategy);
+		this.rows = createTable(source.getHeight(), border, outOfBoundsAccessStrategy);
+	}
+
+	private static int[] createTable(int size, int border, OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+		int [] table = new int[size + border * 2];
+		for(int i = 0; i < table.length; i++) {
+			int index = i - border;
+			if(index >= 0 && index < size) {
+				table[i] = index;
+			} else if(outOfBoundsAccessStrategy instanceof IndexMappingStrategy) {
+				table[i] = ((IndexMappingStrategy) outOfBoundsAccessStrategy).mapIndex(index, size);
+			} else {
+				table[i] = -1;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the image that is being padded
+	 * @return The source image
+	 */
+	public Image getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of pixels added to each side of the source image
+	 * @return The size of the border
+	 */
+	public int getBorder() {
+		return border;
+	}
+
+	@Override
+	public int getWidth() {
+		return columns.length;
+	}
+
+	@Override
+	public int getHeight() {
+		return rows.length;
+	}
+
+	@Override
+	public int getNumBands() {
+		return source.getNumBands();
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return source.getSampleType();
+	}
+
+	@Override
+	public Layout getLayout() {
+		return source.getLayout();
+	}
+
+	@Override
+	public boolean supportsConcurrentAccess() {
+		return source.supportsConcurrentAccess();
+	}
+
+	@Override
+	protected double doGet(int x, int y, int b) {
+		int sourceX = columns[x];
+		int sourceY = rows[y];
+		if((sourceX | sourceY) < 0) {
+			return outOfBoundsAccessStrategy.get(x - border, y - border, b, source);
+		}
+		return source.doGet(sourceX, sourceY, b);
+	}
+
+	@Override
+	public void doSet(int x, int y, int b, double value) {
+		int sourceX = x - border;
+		int sourceY = y - border;
+		if(sourceX < 0 || sourceY < 0 || sourceX >= source.getWidth() || sourceY >= source.getHeight()) {
+			throw new InvalidParameterException("The border of a padded image is read only.  Given: " + x + "," + y);
+		}
+		source.doSet(sourceX, sourceY, b, value);
+	}
+
+	@Override
+	protected void readRow(int y, int b, double[] destination, int offset) {
+		int sourceY = rows[y];
+		if(sourceY < 0) {
+			super.readRow(y, b, destination, offset);
+			return;
+		}
+		//Read the source row in bulk and then fill in the border from it
+		int width = source.getWidth();
+		source.readRow(sourceY, b, destination, offset + border);
+		for(int x = 0; x < border; x++) {
+			destination[offset + x] = borderValue(x, y, b, destination, offset);
+		}
+		for(int x = border + width; x < columns.length; x++) {
+			destination[offset + x] = borderValue(x, y, b, destination, offset);
+		}
+	}
+
+	private double borderValue(int x, int y, int b, double[] row, int offset) {
+		int sourceX = columns[x];
+		if(sourceX < 0) {
+			return outOfBoundsAccessStrategy.get(x - border, y - border, b, source);
+		}
+		return row[offset + border + sourceX];
+	}
+
+	/**
+	 * Copies the padded image into a new array image with the same sample type as the
+	 * source image.
+	 * @return A copy of the padded image, border included
+	 */
+	public ArrayImage materialize() {
+		int width = getWidth();
+		int height = getHeight();
+		int numBands = getNumBands();
+		ArrayImage result = ArrayImage.create(width, height, numBands, getSampleType());
+		double [] row = new double[width];
+		for(int b = 0; b < numBands; b++) {
+			for(int y = 0; y < height; y++) {
+				readRow(y, b, row, 0);
+				result.writeRow(y, b, row, 0);
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.github.westonpace.jayvee.image;
+
+/**
+ * <p>
+ * Reads through the values of an image in a given {@link Image.PixelOrder PixelOrder}
+ * without boxing them.  Like {@link Image#getPixels(Image.PixelOrder) getPixels} the bands
+ * of each pixel are returned together before moving on to the next pixel.
+ * </p><p>
+ * A cursor never allocates once it has been created so it is the preferred way for
+ * workers to stream through every value of an image.  Array images return a cursor
+ * which walks through the underlying array directly and which copies whole rows at a
+ * time when reading in bulk.
+ * </p>
+ *
+ * @see Image#getPixelCursor(Image.PixelOrder)
+ */
+public abstract class PixelCursor {
+
+	/**
+	 * Returns true if there are values left to read
+	 *
+	 * @return true if there are more values
+	 */
+	public abstract boolean hasNext();
+
+	/**
+	 * Returns the next value and moves the cursor past it
+	 *
+	 * @return The next value
+	 * @throws java.util.NoSuchElementException
+	 *             If there are no values left
+	 */
+	public abstract double nextDouble();
+
+	/**
+	 * Returns the next value, rounded to the nearest integer, and moves the cursor past it.
+	 * For images with an integral {@link Image.SampleType SampleType} this is exactly the
+	 * stored value.
+	 *
+	 * @return The next value as an integer
+	 * @throws java.util.NoSuchElementException
+	 *             If there are no values left
+	 */
+	public int nextInt() {
+		return (int) Math.round(nextDouble());
+	}
+
+	/**
+	 * Reads up to count values into the array.  Fewer values are read if the cursor runs
+	 * out of values first.
+	 *
+	 * @param destination
+	 *            The array to read the values into
+	 * @param offset
+	 *            The position in the array of the first value
+	 * @param count
+	 *            The maximum number of values to read
+	 * @return The number of values actually read
+	 */
+	public int next(double[] destination, int offset, int count) {
+		int read = 0;
+		while(read < count && hasNext()) {
+			destination[offset + read] = nextDouble();
+			read++;
+		}
+		return read;
+	}
+
+	/**
+	 * Reads up to count values into the start of the array.
+	 *
+	 * @param destination
+	 *            The array to read the values into
+	 * @param count
+	 *            The maximum number of values to read
+	 * @return The number of values actually read
+	 */
+	public int next(double[] destination, int count) {
+		return next(destination, 0, count);
+	}
+
+}
@@ -0,0 +1,187 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.NoSuchElementException;
+
+import com.github.westonpace.jayvee.image.Image.PixelOrder;
+import com.github.westonpace.jayvee.image.Image.TiledOrder;
+
+/**
+ * Walks through the coordinates of an image in a given pixel order, visiting every
+ * band of a pixel before moving on to the next pixel.  The total number of values is
+ * tracked as a long so that images with more than 2^31 values can be walked.
+ */
+class PixelWalker {
+
+	private static final int ROW_MAJOR = 0;
+	private static final int COLUMN_MAJOR = 1;
+	private static final int TILED = 2;
+
+	final int width;
+	final int height;
+	final int numBands;
+	private final int order;
+	private final int tileWidth;
+	private final int tileHeight;
+	private final long total;
+	private long remaining;
+
+	int x = 0;
+	int y = 0;
+	int b = 0;
+	/*
+	 * The bounds of the current tile (only used by the tiled order)
+	 */
+	int tileLeft = 0;
+	int tileTop = 0;
+	int tileRight;
+	int tileBottom;
+
+	PixelWalker(Image image, PixelOrder pixelOrder) {
+		this(image, pixelOrder == PixelOrder.RowMajor ? ROW_MAJOR : COLUMN_MAJOR, 0, 0);
+	}
+
+	PixelWalker(Image image, TiledOrder tiledOrder) {
+		this(image, TILED, tiledOrder.getTileWidth(), tiledOrder.getTileHeight());
+	}
+
+	private PixelWalker(Image image, int order, int tileWidth, int tileHeight) {
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.numBands = image.getNumBands();
+		this.order = order;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.tileRight = Math.min(tileWidth, width);
+		this.tileBottom = Math.min(tileHeight, height);
+		this.total = (long) width * height * numBands;
+		this.remaining = total;
+	}
+
+	boolean hasNext() {
+		return remaining > 0;
+	}
+
+	long remaining() {
+		return remaining;
+	}
+
+	boolean isRowMajor() {
+		return order == ROW_MAJOR;
+	}
+
+	boolean isTiled() {
+		return order == TILED;
+	}
+
+	/**
+	 * Checks that there is a value left to visit.  The coordinates of that value are
+	 * in x, y, and b and remain valid until advance is called.
+	 */
+	void checkHasNext() {
+		if(remaining == 0) {
+			throw new NoSuchElementException();
+		}
+	}
+
+	/**
+	 * Checks that there are at least count values left to visit
+	 */
+	void checkRemaining(long count) {
+		if(count > remaining) {
+			throw new NoSuchElementException("Only " + remaining + " values remain but " + count + " were requested");
+		}
+	}
+
+	/**
+	 * Moves on to the next value
+	 */
+	void advance() {
+		remaining--;
+		b++;
+		if(b == numBands) {
+			b = 0;
+			switch(order) {
+			case ROW_MAJOR:
+				x++;
+				if(x == width) {
+					x = 0;
+					y++;
+				}
+				break;
+			case COLUMN_MAJOR:
+				y++;
+				if(y == height) {
+					y = 0;
+					x++;
+				}
+				break;
+			default:
+				x++;
+				if(x == tileRight) {
+					x = tileLeft;
+					y++;
+					if(y == tileBottom && remaining > 0) {
+						nextTile();
+					}
+				}
+				break;
+			}
+		}
+	}
+
+	private void nextTile() {
+		tileLeft += tileWidth;
+		if(tileLeft >= width) {
+			tileLeft = 0;
+			tileTop += tileHeight;
+		}
+		setTile(tileLeft, tileTop);
+		x = tileLeft;
+		y = tileTop;
+	}
+
+	private void setTile(int left, int top) {
+		tileLeft = left;
+		tileTop = top;
+		tileRight = Math.min(left + tileWidth, width);
+		tileBottom = Math.min(top + tileHeight, height);
+	}
+
+	/**
+	 * Moves forward by the given number of values, which must not be more than remain
+	 */
+	void advance(long count) {
+		remaining -= count;
+		if(remaining == 0) {
+			//Nothing left to visit so the coordinates no longer matter
+			return;
+		}
+		long position = total - remaining;
+		long pixel = position / numBands;
+		b = (int) (position % numBands);
+		switch(order) {
+		case ROW_MAJOR:
+			x = (int) (pixel % width);
+			y = (int) (pixel / width);
+			break;
+		case COLUMN_MAJOR:
+			y = (int) (pixel % height);
+			x = (int) (pixel / height);
+			break;
+		default:
+			//Every row of tiles but the last holds tileHeight full rows of the image
+			int top = (int) (pixel / ((long) tileHeight * width)) * tileHeight;
+			long inTileRow = pixel % ((long) tileHeight * width);
+			int rows = Math.min(tileHeight, height - top);
+			//Every tile in the row but the last is tileWidth wide
+			int left = (int) (inTileRow / ((long) tileWidth * rows)) * tileWidth;
+			int inTile = (int) (inTileRow % ((long) tileWidth * rows));
+			setTile(left, top);
+			int columns = tileRight - tileLeft;
+			x = left + inTile % columns;
+			y = top + inTile / columns;
+			break;
+		}
+	}
+
+}
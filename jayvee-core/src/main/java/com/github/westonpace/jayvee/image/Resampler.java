@@ -0,0 +1,343 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * Resizes images using a separable filter.  Rather than interpolating every output pixel
+ * from a 2D neighborhood the image is first resampled horizontally, one row at a time, and
+ * then vertically.  Each pass is a weighted sum of a handful of neighboring values.
+ * </p><p>
+ * The weights only depend on the size of the source, the size of the destination, and the
+ * filter so they are computed once and cached.  Resizing many images to the same size
+ * (for example, making thumbnails) reuses the same weight tables for every image.
+ * </p><p>
+ * When shrinking an image the filter is stretched so that every source pixel contributes
+ * to the result (otherwise the result would alias badly).  Neighbors beyond the edge of
+ * the image are simply left out and the remaining weights are normalized.
+ * </p><p>
+ * Resamplers are thread safe.
+ * </p>
+ */
+public class Resampler {
+
+	private static final int MAX_CACHED_TABLES = 64;
+
+	/**
+	 * The filters a resampler can use, from the fastest (and blockiest) to the slowest (and
+	 * sharpest)
+	 */
+	public enum Filter {
+		/**
+		 * Takes the value of the closest source pixel
+		 */
+		NearestNeighbor(0.5),
+		/**
+		 * Linear interpolation between the two closest source pixels (a triangle filter)
+		 */
+		Bilinear(1),
+		/**
+		 * Cubic convolution (Keys, a = -0.5) using the four closest source pixels
+		 */
+		Bicubic(2),
+		/**
+		 * A windowed sinc using the six closest source pixels
+		 */
+		Lanczos3(3);
+
+		private final double radius;
+
+		private Filter(double radius) {
+			this.radius = radius;
+		}
+
+		/**
+		 * Returns how far (in source pixels) the filter reaches when the image is not
+		 * being shrunk
+		 * @return The radius of the filter
+		 */
+		public double getRadius() {
+			return radius;
+		}
+
+		double weight(double x) {
+			x = Math.abs(x);
+			switch(this) {
+			case Bilinear:
+				return x < 1 ? 1 - x : 0;
+			case Bicubic:
+				if(x < 1) {
+					return (1.5 * x - 2.5) * x * x + 1;
+				} else if(x < 2) {
+					return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+				}
+				return 0;
+			case Lanczos3:
+				if(x == 0) {
+					return 1;
+				} else if(x < 3) {
+					double piX = Math.PI * x;
+					return 3 * Math.sin(piX) * Math.sin(piX / 3) / (piX * piX);
+				}
+				return 0;
+			default:
+				return x < 0.5 ? 1 : 0;
+			}
+		}
+	}
+
+	/**
+	 * The weights used to resample one dimension.  Output position i is the sum of the
+	 * source values starting at starts[i], each multiplied by the matching value of
+	 * weights[i * taps ...].  Positions which need fewer than taps source values have
+	 * their extra weights set to 0 (and their start pulled back so they never reach past
+	 * the end of the source).
+	 */
+	static final class WeightTable {
+
+		final int sourceSize;
+		final int taps;
+		final int[] starts;
+		final double[] weights;
+
+		WeightTable(int sourceSize, int destinationSize, Filter filter) {
+			this.sourceSize = sourceSize;
+			double scale = (double) sourceSize / destinationSize;
+			starts = new int[destinationSize];
+			if(filter == Filter.NearestNeighbor) {
+				taps = 1;
+				weights = new double[destinationSize];
+				for(int i = 0; i < destinationSize; i++) {
+					starts[i] = Math.min((int) ((i + 0.5) * scale), sourceSize - 1);
+					weights[i] = 1;
+				}
+				return;
+			}
+			double filterScale = Math.max(scale, 1);
+			double support = filter.getRadius() * filterScale;
+			taps = Math.min((int) Math.ceil(support) * 2 + 1, sourceSize);
+			weights = new double[destinationSize * taps];
+			for(int i = 0; i < destinationSize; i++) {
+				//The center of output pixel i, in source coordinates
+				double center = (i + 0.5) * scale - 0.5;
+				int first = Math.max((int) Math.floor(center - support) + 1, 0);
+				int last = Math.min((int) Math.ceil(center + support) - 1, sourceSize - 1);
+				//Keep the window inside the table (and inside the source)
+				last = Math.min(last, first + taps - 1);
+				int start = Math.min(first, sourceSize - taps);
+				starts[i] = start;
+				double total = 0;
+				for(int s = first; s <= last; s++) {
+					double weight = filter.weight((s - center) / filterScale);
+					weights[i * taps + s - start] = weight;
+					total += weight;
+				}
+				if(total != 0) {
+					for(int t = 0; t < taps; t++) {
+						weights[i * taps + t] /= total;
+					}
+				} else {
+					//Can only happen when the window falls between source pixels
+					weights[i * taps + Math.min(Math.max((int) Math.round(center), 0), sourceSize - 1) - start] = 1;
+				}
+			}
+		}
+
+		int getDestinationSize() {
+			return starts.length;
+		}
+
+	}
+
+	private static final class Key {
+
+		private final int sourceSize;
+		private final int destinationSize;
+		private final Filter filter;
+
+		Key(int sourceSize, int destinationSize, Filter filter) {
+			this.sourceSize = sourceSize;
+			this.destinationSize = destinationSize;
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return sourceSize == key.sourceSize && destinationSize == key.destinationSize && filter == key.filter;
+		}
+
+		@Override
+		public int hashCode() {
+			return (sourceSize * 31 + destinationSize) * 31 + filter.hashCode();
+		}
+
+	}
+
+	private static final Map<Key, WeightTable> weightTables = new LinkedHashMap<Key, WeightTable>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, WeightTable> eldest) {
+			return size() > MAX_CACHED_TABLES;
+		}
+
+	};
+
+	/**
+	 * Returns the (possibly cached) weights for resampling one dimension
+	 */
+	static WeightTable getWeightTable(int sourceSize, int destinationSize, Filter filter) {
+		Key key = new Key(sourceSize, destinationSize, filter);
+		synchronized(weightTables) {
+			WeightTable table = weightTables.get(key);
+			if(table == null) {
+				table = new WeightTable(sourceSize, destinationSize, filter);
+				weightTables.put(key, table);
+			}
+			return table;
+		}
+	}
+
+	/**
+	 * The rows a thread resamples with, kept between calls so resizing many images
+	 * doesn't allocate new rows for each one
+	 */
+	private static final class Scratch {
+
+		double [] sourceRow = new double[0];
+		double [] destinationRow = new double[0];
+		double [][] resampledRows = new double[0][0];
+
+		void prepare(int sourceLength, int rowLength, int taps) {
+			if(sourceRow.length < sourceLength) {
+				sourceRow = new double[sourceLength];
+			}
+			if(destinationRow.length < rowLength) {
+				destinationRow = new double[rowLength];
+			}
+			if(resampledRows.length < taps || resampledRows[0].length < rowLength) {
+				resampledRows = new double[Math.max(taps, resampledRows.length)][destinationRow.length];
+			}
+		}
+
+	}
+
+	private final Filter filter;
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * Creates a new resampler
+	 * @param filter The filter to resample with
+	 */
+	public Resampler(Filter filter) {
+		if(filter == null) {
+			throw new InvalidParameterException("A filter must be given");
+		}
+		this.filter = filter;
+	}
+
+	/**
+	 * Returns the filter this resampler uses
+	 * @return The filter
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Resamples the source image so that it fills the destination image.  The images may
+	 * be any size but must have the same number of bands.  Source rows are resampled
+	 * horizontally as the vertical pass reaches them so only a few rows are held at once.
+	 * @param source The image to resample
+	 * @param destination The image to write the result into
+	 */
+	public void resample(Image source, Image destination) {
+		int numBands = source.getNumBands();
+		if(destination.getNumBands() != numBands) {
+			throw new InvalidParameterException("The destination has " + destination.getNumBands() + " bands but the source has " + numBands);
+		}
+		int sourceWidth = source.getWidth();
+		int sourceHeight = source.getHeight();
+		int width = destination.getWidth();
+		int height = destination.getHeight();
+		WeightTable columns = getWeightTable(sourceWidth, width, filter);
+		WeightTable rows = getWeightTable(sourceHeight, height, filter);
+
+		int rowLength = width * numBands;
+		int taps = rows.taps;
+		Scratch rowScratch = scratch.get();
+		rowScratch.prepare(sourceWidth * numBands, rowLength, taps);
+		double [] sourceRow = rowScratch.sourceRow;
+		double [] destinationRow = rowScratch.destinationRow;
+		//The horizontally resampled source rows, row y is kept at y mod taps
+		double [][] resampledRows = rowScratch.resampledRows;
+		RowKernels kernels = RowKernels.getInstance();
+		//The next source row to resample horizontally
+		int next = 0;
+		for(int y = 0; y < height; y++) {
+			//The windows only ever move down so rows above the start are never needed again
+			int start = rows.starts[y];
+			next = Math.max(next, start);
+			for(; next < start + taps; next++) {
+				source.getRegion(0, next, sourceWidth, 1, sourceRow, 0);
+				resampleRow(sourceRow, numBands, columns, resampledRows[next % taps], 0);
+			}
+			for(int i = 0; i < rowLength; i++) {
+				destinationRow[i] = 0;
+			}
+			for(int t = 0; t < taps; t++) {
+				double weight = rows.weights[y * taps + t];
+				if(weight == 0) {
+					continue;
+				}
+				kernels.multiplyAdd(resampledRows[(start + t) % taps], 0, weight, destinationRow, 0, rowLength);
+			}
+			destination.setRegion(0, y, width, 1, destinationRow, 0);
+		}
+	}
+
+	/**
+	 * Resamples a pyramid so that it fills the destination image.  Rather than filtering
+	 * the full size image the resampling starts from the smallest level which is still at
+	 * least as large as the destination (see {@link ImagePyramid#getLevelForScale(double)
+	 * getLevelForScale}).  Heavy downscales only read a fraction of the pixels, at the cost
+	 * of a slightly softer result.
+	 * @param pyramid The pyramid of the image to resample
+	 * @param destination The image to write the result into
+	 */
+	public void resample(ImagePyramid pyramid, Image destination) {
+		Image base = pyramid.getBase();
+		double scale = Math.max((double) destination.getWidth() / base.getWidth(), (double) destination.getHeight() / base.getHeight());
+		resample(pyramid.getLevel(pyramid.getLevelForScale(scale)), destination);
+	}
+
+	private static void resampleRow(double[] sourceRow, int numBands, WeightTable columns, double[] destination, int offset) {
+		int taps = columns.taps;
+		int width = columns.getDestinationSize();
+		for(int x = 0; x < width; x++) {
+			int start = columns.starts[x] * numBands;
+			int weightOffset = x * taps;
+			for(int b = 0; b < numBands; b++) {
+				double sum = 0;
+				for(int t = 0; t < taps; t++) {
+					sum += columns.weights[weightOffset + t] * sourceRow[start + t * numBands + b];
+				}
+				destination[offset++] = sum;
+			}
+		}
+	}
+
+}
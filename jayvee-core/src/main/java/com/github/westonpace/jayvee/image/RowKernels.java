@@ -0,0 +1,160 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * The innermost loops of the library: simple operations on runs of values which take up
+ * most of the time of common workers (converting to grayscale, converting bytes to
+ * doubles and back, accumulating weighted rows for convolution and resampling, etc.).
+ * </p><p>
+ * The implementations here are plain scalar loops that run on any JVM.  Faster versions
+ * (for example, ones written with SIMD instructions for JVMs which support them) can be
+ * plugged in without changing the core library by extending this class, overriding the
+ * kernels they speed up, and registering the subclass as a service (a
+ * {@code META-INF/services/com.github.westonpace.jayvee.image.RowKernels} file listing the
+ * class).  The first registered implementation which loads and reports that it is
+ * {@link #isSupported() supported} is used, otherwise these scalar kernels are used.
+ * The jayvee-simd module provides kernels written with the JDK's vector API for JVMs 16
+ * and later.
+ * </p><p>
+ * Implementations must be thread safe and must give the same results as the scalar
+ * kernels (apart from differences in floating point rounding).
+ * </p>
+ */
+public class RowKernels {
+
+	private static final Logger logger = Logger.getLogger(RowKernels.class);
+
+	private static final RowKernels instance = load();
+
+	private static RowKernels load() {
+		try {
+			Iterator<RowKernels> providers = ServiceLoader.load(RowKernels.class, RowKernels.class.getClassLoader()).iterator();
+			while(providers.hasNext()) {
+				try {
+					RowKernels provider = providers.next();
+					if(provider.isSupported()) {
+						logger.debug("Using row kernels " + provider.getClass().getName());
+						return provider;
+					}
+				} catch (ServiceConfigurationError ex) {
+					logger.debug("Skipping row kernels that could not be loaded", ex);
+				} catch (LinkageError ex) {
+					//Usually a provider compiled for a newer JVM than this one
+					logger.debug("Skipping row kernels that could not be linked", ex);
+				}
+			}
+		} catch (ServiceConfigurationError ex) {
+			logger.debug("Could not look up row kernels", ex);
+		}
+		return new RowKernels();
+	}
+
+	/**
+	 * Returns the kernels in use
+	 * @return The fastest supported kernels
+	 */
+	public static RowKernels getInstance() {
+		return instance;
+	}
+
+	protected RowKernels() {
+		//Only subclasses (and the scalar default) can be created
+	}
+
+	/**
+	 * Returns true if these kernels can run on this JVM and hardware.  Implementations which
+	 * depend on optional JVM features should check for them here.
+	 * @return true if the kernels can be used
+	 */
+	protected boolean isSupported() {
+		return true;
+	}
+
+	/**
+	 * Averages the bands of each of a run of interleaved pixels
+	 * @param source The pixels, numBands values per pixel
+	 * @param sourceOffset The position of the first band of the first pixel
+	 * @param numBands The number of bands per pixel
+	 * @param destination The array to write the averages into
+	 * @param destinationOffset The position to write the first average
+	 * @param count The number of pixels
+	 */
+	public void averageBands(double[] source, int sourceOffset, int numBands, double[] destination, int destinationOffset, int count) {
+		for(int i = 0; i < count; i++) {
+			double sum = 0;
+			for(int b = 0; b < numBands; b++) {
+				sum += source[sourceOffset++];
+			}
+			destination[destinationOffset + i] = sum / numBands;
+		}
+	}
+
+	/**
+	 * Calculates destination = source * scale + offset for a run of values.  The source and
+	 * destination may be the same array.
+	 * @param source The values
+	 * @param sourceOffset The position of the first value
+	 * @param scale The amount to multiply each value by
+	 * @param offset The amount to add to each scaled value
+	 * @param destination The array to write the results into
+	 * @param destinationOffset The position to write the first result
+	 * @param count The number of values
+	 */
+	public void scaleAndOffset(double[] source, int sourceOffset, double scale, double offset, double[] destination, int destinationOffset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[destinationOffset + i] = source[sourceOffset + i] * scale + offset;
+		}
+	}
+
+	/**
+	 * Calculates destination += source * weight for a run of values, the building block of
+	 * convolution and resampling
+	 * @param source The values to add
+	 * @param sourceOffset The position of the first value
+	 * @param weight The amount to multiply each value by
+	 * @param destination The values to add to
+	 * @param destinationOffset The position of the first value to add to
+	 * @param count The number of values
+	 */
+	public void multiplyAdd(double[] source, int sourceOffset, double weight, double[] destination, int destinationOffset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[destinationOffset + i] += source[sourceOffset + i] * weight;
+		}
+	}
+
+	/**
+	 * Converts a run of unsigned bytes to doubles
+	 * @param source The bytes (interpreted as 0-255)
+	 * @param sourceOffset The position of the first byte
+	 * @param destination The array to write the values into
+	 * @param destinationOffset The position to write the first value
+	 * @param count The number of values
+	 */
+	public void unsignedBytesToDoubles(byte[] source, int sourceOffset, double[] destination, int destinationOffset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[destinationOffset + i] = source[sourceOffset + i] & 0xFF;
+		}
+	}
+
+	/**
+	 * Converts a run of doubles to unsigned bytes, rounding and clamping them in the same
+	 * way as {@link ByteImage#toByte(double) ByteImage.toByte}
+	 * @param source The values
+	 * @param sourceOffset The position of the first value
+	 * @param destination The array to write the bytes into
+	 * @param destinationOffset The position to write the first byte
+	 * @param count The number of values
+	 */
+	public void doublesToUnsignedBytes(double[] source, int sourceOffset, byte[] destination, int destinationOffset, int count) {
+		for(int i = 0; i < count; i++) {
+			destination[destinationOffset + i] = ByteImage.toByte(source[sourceOffset + i]);
+		}
+	}
+
+}
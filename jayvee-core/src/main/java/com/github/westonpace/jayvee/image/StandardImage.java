@@ -1,9 +1,6 @@
 package com.github.westonpace.jayvee.image;
 
-import java.util.Iterator;
-
-import com.github.westonpace.jayvee.util.InvalidParameterException;
-import com.github.westonpace.jayvee.util.Sinkerator;
+import java.util.Arrays;
 
 /**
  * <p>
@@ -14,7 +11,7 @@ import com.github.westonpace.jayvee.util.Sinkerator;
  * The accessor functions then simply index to the correct position in the array
  * to obtain the pixels we want.
  * </p><p>
- * The standard image always stores the underyling data in row-major order
+ * By default the standard image stores the underyling data in row-major order
  * starting with the pixel at (0,0). In other words, an image with 3 bands would
  * have the following in the beginning of the array:
  * </p><p>
@@ -28,14 +25,19 @@ import com.github.westonpace.jayvee.util.Sinkerator;
  * And the total length of our double array will be:
  * </p><pre><code>
  * length = width * height * numBands
- * </code></pre>
+ * </code></pre><p>
+ * The image can also be created with a {@link Image.Layout#Planar Planar} layout in
+ * which case each band is stored in its own contiguous plane.  See
+ * {@link ArrayImage ArrayImage} for details.
+ * </p><p>
+ * Every value takes up 8 bytes.  Images whose values are known to fit in a smaller
+ * range (e.g. 8 bit camera images) can be stored much more compactly in one of the
+ * other {@link ArrayImage ArrayImage} types such as {@link ByteImage ByteImage}.
+ * </p>
  */
-public class StandardImage extends Image {
+public class StandardImage extends ArrayImage {
 
-	private int width;
-	private int height;
-	private int numBands;
-	private double[] pixels;
+	private final double[] pixels;
 
 	/**
 	 * Creates a new image with the values array will be initialized to all 0's
@@ -48,13 +50,24 @@ public class StandardImage extends Image {
 	 *            The number of bands in the image
 	 */
 	public StandardImage(int width, int height, int numBands) {
-		if(width <= 0 || height <= 0 || numBands <= 0) {
-			throw new InvalidParameterException("Width, height, and number of bands must be > 0. Actual:(" + width + "," + height + "," + numBands + ")");
-		}
+		this(width, height, numBands, Layout.Interleaved);
+	}
+
+	/**
+	 * Creates a new image with the given layout and all values initialized to 0
+	 *
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values should be arranged in memory
+	 */
+	public StandardImage(int width, int height, int numBands, Layout layout) {
+		super(width, height, numBands, layout);
 		this.pixels = new double[height * width * numBands];
-		this.width = width;
-		this.height = height;
-		this.numBands = numBands;
 	}
 
 	/**
@@ -74,133 +87,138 @@ public class StandardImage extends Image {
 	 * @param numBands
 	 *            The number of bands in the image
 	 * @param pixels
-	 *            The initial data for the image (must be in row-major order)
+	 *            The initial data for the image (must be in interleaved row-major order)
 	 */
 	public StandardImage(int width, int height, int numBands, double[] pixels) {
-		if (pixels.length != (width * height * numBands)) {
-			throw new InvalidParameterException("When constructing a standard image we were given " + pixels.length + " pixels but for a width x height x bands of (" + width + "," + height + "," + numBands
-					+ ") we should have " + (width * height * numBands) + " pixels");
-		}
-		this.width = width;
-		this.height = height;
-		this.numBands = numBands;
+		this(width, height, numBands, Layout.Interleaved, pixels);
+	}
+
+	/**
+	 * <p>
+	 * Creates an image from existing values. This constructor does not copy the
+	 * data passed in, but rather references it. This means that further
+	 * modification to the data array will modify the image itself.
+	 * </p><p>
+	 * The pixels array must be of correct length (width * height * numBands) or
+	 * an error will be thrown.
+	 * </p>
+	 * 
+	 * @param width
+	 *            The desired width of the image
+	 * @param height
+	 *            The desired height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param layout
+	 *            How the values are arranged in the pixels array
+	 * @param pixels
+	 *            The initial data for the image (must be arranged according to the layout)
+	 */
+	public StandardImage(int width, int height, int numBands, Layout layout, double[] pixels) {
+		super(width, height, numBands, layout);
+		checkLength(pixels.length, width, height, numBands);
 		this.pixels = pixels;
 	}
 
-	@Override
-	public int getWidth() {
-		return width;
+	private StandardImage(StandardImage parent, int width, int height, int numBands, int offset) {
+		super(parent, width, height, numBands, offset);
+		this.pixels = parent.pixels;
+	}
+
+	/**
+	 * Returns the array backing this image. This is not a copy, modifying the
+	 * array will modify the image.  Views of another image return the array of that image,
+	 * use the offset and strides to find the values of the view.
+	 * 
+	 * @return The pixel values of the image, arranged according to the layout and
+	 *         starting at the offset
+	 */
+	public double[] getData() {
+		return pixels;
 	}
 
 	@Override
-	public int getHeight() {
-		return height;
+	protected ArrayImage createView(int width, int height, int numBands, int offset) {
+		return new StandardImage(this, width, height, numBands, offset);
 	}
 
 	@Override
-	public int getNumBands() {
-		return numBands;
+	public SampleType getSampleType() {
+		return SampleType.Float64;
 	}
 
 	@Override
-	public Iterable<Double> getPixels(PixelOrder pixelOrder) {
-		//To iterate through the pixels in row-major order we simply iterate forwards through
-		//the array.  To iterate through the pixels in column-major order we will have to jump
-		//downwards through the array
-		final int stride = numBands * ((pixelOrder == PixelOrder.RowMajor) ? 1 : getWidth()) - numBands;
-		final int length = pixels.length;
-		return new Iterable<Double>() {
-
-			@Override
-			public Iterator<Double> iterator() {
-				return new Iterator<Double>() {
-
-					boolean ended = false;
-					int index = 0;
-
-					@Override
-					public boolean hasNext() {
-						return !(ended);
-					}
-
-					@Override
-					public Double next() {
-						if(index == length - 1) {
-							ended = true;
-						}
-						double result = pixels[index];
-						index++;
-						if(index % numBands == 0) {
-							index += stride;
-						}
-						if(index >= length) {
-							index %= length;
-							index += numBands;
-						}
-						return result;
-					}
-
-					@Override
-					public void remove() {
-						throw new UnsupportedOperationException();
-					}
-
-				};
-			}
-
-		};
+	protected double getElement(int index) {
+		return pixels[index];
 	}
 
 	@Override
-	public Sinkerator<Double> getPixelWriter(PixelOrder pixelOrder) {
-		//We use the same trick to iterate in the proper pixelOrder as above in getPixels()
-		final int stride = numBands * ((pixelOrder == PixelOrder.RowMajor) ? 1 : getWidth()) - numBands;
-		final int length = pixels.length;
-		return new Sinkerator<Double>() {
-
-			private int index = 0;
-			private boolean ended = false;
-
-			private void incrementIndex() {
-				if(index == length-1) {
-					ended = true;
-				}
-				index++;
-				if(index % numBands == 0) {
-					index += stride;
-				}
-				if(index >= length) {
-					index %= length;
-					index += numBands;
-				}
-			}
-
-			@Override
-			public void putNext(Double value) {
-				pixels[index] = value;
-				incrementIndex();
-			}
-
-			@Override
-			public void skipNext() {
-				incrementIndex();
-			}
-
-			@Override
-			public boolean hasNext() {
-				return !ended;
-			}
-		};
+	protected void setElement(int index, double value) {
+		pixels[index] = value;
 	}
 
 	@Override
 	public double doGet(int x, int y, int b) {
-		return pixels[y * width * numBands + x * numBands + b];
+		return pixels[offset + y * rowStride + x * pixelStride + b * bandStride];
 	}
 
 	@Override
 	public void doSet(int x, int y, int b, double value) {
-		pixels[y * width * numBands + x * numBands + b] = value;
+		pixels[offset + y * rowStride + x * pixelStride + b * bandStride] = value;
+	}
+
+	@Override
+	void readElements(int index, int stride, double[] destination, int offset, int count) {
+		if(stride == 1) {
+			System.arraycopy(pixels, index, destination, offset, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			destination[offset + i] = pixels[index];
+			index += stride;
+		}
+	}
+
+	@Override
+	void writeElements(double[] source, int offset, int index, int stride, int count) {
+		if(stride == 1) {
+			System.arraycopy(source, offset, pixels, index, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			pixels[index] = source[offset + i];
+			index += stride;
+		}
+	}
+
+	@Override
+	void fillElements(int index, int stride, int count, double value) {
+		if(stride == 1) {
+			Arrays.fill(pixels, index, index + count, value);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			pixels[index] = value;
+			index += stride;
+		}
+	}
+
+	@Override
+	void copyElements(int srcIndex, int srcStride, ArrayImage destination, int dstIndex, int dstStride, int count) {
+		if(!(destination instanceof StandardImage)) {
+			super.copyElements(srcIndex, srcStride, destination, dstIndex, dstStride, count);
+			return;
+		}
+		double[] target = ((StandardImage) destination).pixels;
+		if(srcStride == 1 && dstStride == 1) {
+			System.arraycopy(pixels, srcIndex, target, dstIndex, count);
+			return;
+		}
+		for(int i = 0; i < count; i++) {
+			target[dstIndex] = pixels[srcIndex];
+			srcIndex += srcStride;
+			dstIndex += dstStride;
+		}
 	}
 
 }
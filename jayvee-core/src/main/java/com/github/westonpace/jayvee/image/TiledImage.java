@@ -0,0 +1,475 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * An image which is split up into a grid of fixed size tiles, each of which is stored
+ * in its own {@link ArrayImage ArrayImage}.  This allows images which are far too large
+ * to fit into a single array (or even into memory) to be worked with like any other image.
+ * </p><p>
+ * Tiles are only created when they are first touched.  Reading from a tile that has
+ * never been written (and can't be loaded) simply returns 0 without allocating anything.
+ * If a {@link TileLoader TileLoader} is supplied then tiles are loaded from it the first
+ * time they are accessed.
+ * </p><p>
+ * The tiled image can also be given a memory budget.  Once the tiles in memory exceed
+ * the budget the least recently used tiles are evicted.  A tile which has not been
+ * modified since it was loaded can always be evicted as it can simply be loaded again.
+ * Modified tiles are only evicted if the loader is also a {@link TileStore TileStore}
+ * in which case they are stored before they are evicted.  If nothing can be evicted the
+ * budget is exceeded rather than losing data.
+ * </p><p>
+ * Accessing the image is fastest when neighboring accesses stay within the same tile.
+ * Workers that visit every pixel should process the image one tile at a time (see
+ * {@link #getTile(int, int) getTile}) rather than one full row at a time.
+ * {@link #mapRows(Image.RowOperator, Image) mapRows} already works that way.
+ * </p><p>
+ * Tiled images are not thread safe.
+ * </p>
+ */
+public class TiledImage extends Image {
+
+	private static final Logger logger = Logger.getLogger(TiledImage.class);
+
+	/**
+	 * Supplies the contents of tiles as they are needed
+	 */
+	public interface TileLoader {
+
+		/**
+		 * Fills in the values of a tile.  The tile will be empty (all 0's) when given.
+		 * @param tileX The column of the tile in the tile grid
+		 * @param tileY The row of the tile in the tile grid
+		 * @param tile The tile to fill in
+		 */
+		public void loadTile(int tileX, int tileY, ArrayImage tile);
+
+	}
+
+	/**
+	 * A tile loader that can also save modified tiles so that they can be evicted
+	 */
+	public interface TileStore extends TileLoader {
+
+		/**
+		 * Saves the values of a modified tile.  The next time the tile is loaded it
+		 * should contain these values.
+		 * @param tileX The column of the tile in the tile grid
+		 * @param tileY The row of the tile in the tile grid
+		 * @param tile The tile to save
+		 */
+		public void storeTile(int tileX, int tileY, ArrayImage tile);
+
+	}
+
+	private static class Tile {
+
+		private final int index;
+		private final ArrayImage pixels;
+		private boolean dirty;
+
+		Tile(int index, ArrayImage pixels) {
+			this.index = index;
+			this.pixels = pixels;
+		}
+
+	}
+
+	private final int width;
+	private final int height;
+	private final int numBands;
+	private final int tileWidth;
+	private final int tileHeight;
+	private final SampleType sampleType;
+	private final int tilesAcross;
+	private final int tilesDown;
+	//The tiles in memory by index, least recently used first
+	private final LinkedHashMap<Integer, Tile> residentTiles = new LinkedHashMap<Integer, Tile>(16, 0.75f, true);
+	private final TileLoader loader;
+	private final long memoryBudget;
+	private boolean ownsLoader = false;
+	private long residentBytes = 0;
+	private int lastTileIndex = -1;
+	private Tile lastTile;
+
+	/**
+	 * Creates a new, empty, tiled image.  Tiles are allocated as they are written to and
+	 * are never evicted.
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param tileWidth
+	 *            The width of each tile
+	 * @param tileHeight
+	 *            The height of each tile
+	 * @param sampleType
+	 *            How the values of each tile are stored
+	 */
+	public TiledImage(int width, int height, int numBands, int tileWidth, int tileHeight, SampleType sampleType) {
+		this(width, height, numBands, tileWidth, tileHeight, sampleType, null, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new tiled image whose tiles are loaded (and possibly stored) on demand.
+	 *
+	 * @param width
+	 *            The width of the image
+	 * @param height
+	 *            The height of the image
+	 * @param numBands
+	 *            The number of bands in the image
+	 * @param tileWidth
+	 *            The width of each tile
+	 * @param tileHeight
+	 *            The height of each tile
+	 * @param sampleType
+	 *            How the values of each tile are stored
+	 * @param loader
+	 *            Supplies the contents of the tiles, may be null
+	 * @param memoryBudget
+	 *            The number of bytes of tiles that should be kept in memory
+	 */
+	public TiledImage(int width, int height, int numBands, int tileWidth, int tileHeight, SampleType sampleType, TileLoader loader, long memoryBudget) {
+		if(width <= 0 || height <= 0 || numBands <= 0) {
+			throw new InvalidParameterException("Width, height, and number of bands must be > 0. Actual:(" + width + "," + height + "," + numBands + ")");
+		}
+		if(tileWidth <= 0 || tileHeight <= 0) {
+			throw new InvalidParameterException("Tile width and height must be > 0. Actual:(" + tileWidth + "," + tileHeight + ")");
+		}
+		this.width = width;
+		this.height = height;
+		this.numBands = numBands;
+		this.tileWidth = Math.min(tileWidth, width);
+		this.tileHeight = Math.min(tileHeight, height);
+		this.sampleType = sampleType;
+		this.tilesAcross = (width + this.tileWidth - 1) / this.tileWidth;
+		this.tilesDown = (height + this.tileHeight - 1) / this.tileHeight;
+		if((long) tilesAcross * tilesDown > Integer.MAX_VALUE) {
+			throw new InvalidParameterException("Too many tiles (" + tilesAcross + "x" + tilesDown + "), use larger tiles");
+		}
+		this.loader = loader;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Creates a new, empty, tiled image with the same size and tiling as this image.  If
+	 * this image has a memory budget the new image gets the same budget and stores the
+	 * tiles it evicts in a {@link FileTileStore FileTileStore}, which is deleted when the
+	 * new image is {@link #release() released}.  Otherwise the new image has no loader and
+	 * no memory budget.
+	 *
+	 * @param numBands
+	 *            The number of bands in the new image
+	 * @param sampleType
+	 *            How the values of each tile of the new image are stored
+	 * @return A new tiled image
+	 */
+	public TiledImage createBlank(int numBands, SampleType sampleType) {
+		if(memoryBudget == Long.MAX_VALUE) {
+			return new TiledImage(width, height, numBands, tileWidth, tileHeight, sampleType);
+		}
+		TiledImage blank = new TiledImage(width, height, numBands, tileWidth, tileHeight, sampleType, new FileTileStore(), memoryBudget);
+		blank.ownsLoader = true;
+		return blank;
+	}
+
+	/**
+	 * Closes the tile store of an image created by {@link #createBlank(int, SampleType)
+	 * createBlank}.  Does nothing for other images.
+	 */
+	@Override
+	public void release() {
+		if(ownsLoader) {
+			((FileTileStore) loader).close();
+			residentTiles.clear();
+			residentBytes = 0;
+			lastTile = null;
+			lastTileIndex = -1;
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getNumBands() {
+		return numBands;
+	}
+
+	@Override
+	public SampleType getSampleType() {
+		return sampleType;
+	}
+
+	/**
+	 * Returns the width of a tile.  Tiles along the right edge may be narrower.
+	 *
+	 * @return The width of a tile, in pixels
+	 */
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	/**
+	 * Returns the height of a tile.  Tiles along the bottom edge may be shorter.
+	 *
+	 * @return The height of a tile, in pixels
+	 */
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	/**
+	 * Returns the number of columns in the tile grid
+	 *
+	 * @return The number of tiles across the image
+	 */
+	public int getTilesAcross() {
+		return tilesAcross;
+	}
+
+	/**
+	 * Returns the number of rows in the tile grid
+	 *
+	 * @return The number of tiles down the image
+	 */
+	public int getTilesDown() {
+		return tilesDown;
+	}
+
+	/**
+	 * Returns the number of bytes taken up by the tiles currently in memory
+	 *
+	 * @return The size of the resident tiles, in bytes
+	 */
+	public long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * Returns the given tile, loading or creating it if needed.  The tile is the actual
+	 * storage of the image (not a copy) and since the caller may write to it the tile is
+	 * considered modified.  The returned tile should not be held on to as it may be
+	 * evicted by later accesses.
+	 *
+	 * @param tileX
+	 *            The column of the tile in the tile grid
+	 * @param tileY
+	 *            The row of the tile in the tile grid
+	 * @return The tile
+	 */
+	public ArrayImage getTile(int tileX, int tileY) {
+		if(tileX < 0 || tileY < 0 || tileX >= tilesAcross || tileY >= tilesDown) {
+			throw new InvalidParameterException("Tile (" + tileX + "," + tileY + ") is outside of the " + tilesAcross + "x" + tilesDown + " tile grid");
+		}
+		Tile tile = fetchTile(tileY * tilesAcross + tileX, true);
+		tile.dirty = true;
+		return tile.pixels;
+	}
+
+	/**
+	 * Writes all modified tiles out to the tile store.  Does nothing if the loader for this
+	 * image is not a tile store.
+	 */
+	public void flush() {
+		if(loader instanceof TileStore) {
+			for(Tile tile : residentTiles.values()) {
+				if(tile.dirty) {
+					store(tile);
+				}
+			}
+		}
+	}
+
+	private void store(Tile tile) {
+		((TileStore) loader).storeTile(tile.index % tilesAcross, tile.index / tilesAcross, tile.pixels);
+		tile.dirty = false;
+	}
+
+	/*
+	 * Finds the tile with the given index.  If the tile isn't in memory it is loaded (if
+	 * there is a loader) or created (if create is true).  Otherwise null is returned.
+	 */
+	private Tile fetchTile(int index, boolean create) {
+		if(index == lastTileIndex) {
+			return lastTile;
+		}
+		//Looking the tile up also marks it as the most recently used
+		Tile tile = residentTiles.get(index);
+		if(tile == null) {
+			if(loader == null && !create) {
+				return null;
+			}
+			tile = materialize(index);
+		}
+		lastTileIndex = index;
+		lastTile = tile;
+		return tile;
+	}
+
+	private Tile materialize(int index) {
+		int tileX = index % tilesAcross;
+		int tileY = index / tilesAcross;
+		int thisTileWidth = Math.min(tileWidth, width - tileX * tileWidth);
+		int thisTileHeight = Math.min(tileHeight, height - tileY * tileHeight);
+		long tileBytes = (long) thisTileWidth * thisTileHeight * numBands * sampleType.getBytesPerSample();
+		while(residentBytes + tileBytes > memoryBudget && evictOne()) {
+			//Keep evicting until we fit or nothing else can be evicted
+		}
+		Tile tile = new Tile(index, ArrayImage.create(thisTileWidth, thisTileHeight, numBands, sampleType));
+		if(loader != null) {
+			loader.loadTile(tileX, tileY, tile.pixels);
+		}
+		residentTiles.put(index, tile);
+		residentBytes += tileBytes;
+		return tile;
+	}
+
+	private boolean evictOne() {
+		if(loader == null) {
+			logger.debug("Memory budget of " + memoryBudget + " bytes exceeded but there is nowhere to load tiles from");
+			return false;
+		}
+		boolean canStore = loader instanceof TileStore;
+		Tile oldest = null;
+		Iterator<Tile> tiles = residentTiles.values().iterator();
+		//Without a store only clean tiles can go, skip past any dirty ones
+		while(tiles.hasNext()) {
+			Tile tile = tiles.next();
+			if(canStore || !tile.dirty) {
+				oldest = tile;
+				tiles.remove();
+				break;
+			}
+		}
+		if(oldest == null) {
+			logger.debug("Memory budget of " + memoryBudget + " bytes exceeded but no tiles can be evicted");
+			return false;
+		}
+		if(oldest.dirty) {
+			store(oldest);
+		}
+		residentBytes -= (long) oldest.pixels.getWidth() * oldest.pixels.getHeight() * numBands * sampleType.getBytesPerSample();
+		if(lastTile == oldest) {
+			lastTile = null;
+			lastTileIndex = -1;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Calculates the destination one tile at a time instead of one full row at a time so
+	 * that each tile only has to be in memory once, even when the memory budget only
+	 * leaves room for a few tiles.  The operator is given each row of a tile separately
+	 * so the rows it sees are only as wide as a tile.
+	 * </p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void mapRows(RowOperator operator, Image destination) {
+		if(destination.getWidth() != width || destination.getHeight() != height) {
+			throw new InvalidParameterException("The destination (" + destination.getWidth() + "x" + destination.getHeight() + ") is not the same size as this image ("
+					+ width + "x" + height + ")");
+		}
+		int destinationBands = destination.getNumBands();
+		double [] source = null;
+		double [] result = null;
+		for(int tileY = 0; tileY < tilesDown; tileY++) {
+			int top = tileY * tileHeight;
+			int bottom = Math.min(top + tileHeight, height);
+			for(int tileX = 0; tileX < tilesAcross; tileX++) {
+				int left = tileX * tileWidth;
+				int columns = Math.min(tileWidth, width - left);
+				if(source == null || source.length != columns * numBands) {
+					source = new double[columns * numBands];
+					result = new double[columns * destinationBands];
+				}
+				for(int y = top; y < bottom; y++) {
+					getRegion(left, y, columns, 1, source, 0);
+					operator.apply(y, source, result);
+					destination.setRegion(left, y, columns, 1, result, 0);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void readRegion(int x, int y, int width, int height, double[] destination, int offset) {
+		int rowLength = width * numBands;
+		for(int j = y; j < y + height; j++) {
+			int tileY = j / tileHeight;
+			int i = x;
+			while(i < x + width) {
+				int tileX = i / tileWidth;
+				int columns = Math.min((tileX + 1) * tileWidth, x + width) - i;
+				int position = offset + (i - x) * numBands;
+				Tile tile = fetchTile(tileY * tilesAcross + tileX, false);
+				if(tile == null) {
+					Arrays.fill(destination, position, position + columns * numBands, 0);
+				} else {
+					tile.pixels.readRegion(i - tileX * tileWidth, j - tileY * tileHeight, columns, 1, destination, position);
+				}
+				i += columns;
+			}
+			offset += rowLength;
+		}
+	}
+
+	@Override
+	protected void writeRegion(int x, int y, int width, int height, double[] source, int offset) {
+		int rowLength = width * numBands;
+		for(int j = y; j < y + height; j++) {
+			int tileY = j / tileHeight;
+			int i = x;
+			while(i < x + width) {
+				int tileX = i / tileWidth;
+				int columns = Math.min((tileX + 1) * tileWidth, x + width) - i;
+				Tile tile = fetchTile(tileY * tilesAcross + tileX, true);
+				tile.dirty = true;
+				tile.pixels.writeRegion(i - tileX * tileWidth, j - tileY * tileHeight, columns, 1, source, offset + (i - x) * numBands);
+				i += columns;
+			}
+			offset += rowLength;
+		}
+	}
+
+	@Override
+	protected double doGet(int x, int y, int b) {
+		int tileX = x / tileWidth;
+		int tileY = y / tileHeight;
+		Tile tile = fetchTile(tileY * tilesAcross + tileX, false);
+		if(tile == null) {
+			return 0;
+		}
+		return tile.pixels.doGet(x - tileX * tileWidth, y - tileY * tileHeight, b);
+	}
+
+	@Override
+	public void doSet(int x, int y, int b, double value) {
+		int tileX = x / tileWidth;
+		int tileY = y / tileHeight;
+		Tile tile = fetchTile(tileY * tilesAcross + tileX, true);
+		tile.dirty = true;
+		tile.pixels.doSet(x - tileX * tileWidth, y - tileY * tileHeight, b, value);
+	}
+
+}
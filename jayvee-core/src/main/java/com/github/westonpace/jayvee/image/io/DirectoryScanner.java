@@ -13,6 +13,7 @@ import com.github.westonpace.jayvee.util.InvalidParameterException;
 import com.github.westonpace.jayvee.workflow.OutputBuffer;
 import com.github.westonpace.jayvee.workflow.Sink;
 import com.github.westonpace.jayvee.workflow.StandardWorker;
+import com.github.westonpace.jayvee.workflow.Stateful;
 
 /**
  * <p>
@@ -38,6 +39,7 @@ import com.github.westonpace.jayvee.workflow.StandardWorker;
  * TODO: Enhance this class to take in a custom comparator
  * </p>
  */
+@Stateful
 public class DirectoryScanner extends StandardWorker {
 
 	private static final Logger logger = Logger.getLogger(DirectoryScanner.class);
@@ -1,6 +1,7 @@
 package com.github.westonpace.jayvee.image.io.jse;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
@@ -10,8 +11,11 @@ import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.ByteImage;
 import com.github.westonpace.jayvee.image.Image;
-import com.github.westonpace.jayvee.image.StandardImage;
+import com.github.westonpace.jayvee.image.ShortImage;
+import com.github.westonpace.jayvee.util.DoubleSinkerator;
 import com.github.westonpace.jayvee.workflow.InputBuffer;
 import com.github.westonpace.jayvee.workflow.OutputBuffer;
 import com.github.westonpace.jayvee.workflow.Sink;
@@ -22,24 +26,28 @@ import com.github.westonpace.jayvee.workflow.StandardWorker;
  * Uses Java's ImageIO library to read in images from
  * an input stream.  Currently it is not the most ideal algorithm.  It first
  * loads images into a BufferedImage and then copies the data from the buffered image
- * into the actual StandardImage.  This has the unfortunate side effect of loading the 
- * image into memory twice.  Ideally an image reader would just spit out the StandardImage
+ * into the actual ByteImage.  This has the unfortunate side effect of loading the 
+ * image into memory twice.  Ideally an image reader would just spit out the ByteImage
  * directly from the input.
  * 
  * TODO: Skip BufferedImage
  * 
- * The input streams given can currently only be images that result in the ImageIO library
- * creating a TYPE_3BYTE_BGR data buffer that stores its data in bytes.  This works for
- * PNG images and JPG images and may work for others
+ * The most common kinds of buffered image (8 bit gray, RGB, BGR, and ABGR) are copied
+ * straight out of their data buffers.  Anything else ImageIO can read (e.g. indexed color
+ * GIFs or 16 bit PNGs) is converted one row at a time through the color model of the
+ * image, which is slower but works for every format.
  * 
- * TODO: Support all image formats
+ * Color images always result in 3 band {@link ByteImage ByteImages} (values 0 to 255, one
+ * byte per value) with any alpha band dropped.  Gray images result in 1 band images,
+ * {@link ShortImage ShortImages} if they have more than 8 bits per sample and
+ * ByteImages otherwise.
  */
 public class ImageIOImageReader extends StandardWorker {
 
 	/**
 	 * This sink receives the images that are read in by this reader.  This reader
 	 * is not a streaming reader.  It will read the entire image into memory and then
-	 * place it into this sink.  Images can be quite large (8*width*height*numBands bytes)
+	 * place it into this sink.  Images can be quite large (width*height*numBands bytes)
 	 * so use caution when sizing this buffer (and all future buffers that contain images).
 	 */
 	@OutputBuffer
@@ -64,99 +72,137 @@ public class ImageIOImageReader extends StandardWorker {
 		}
 	}
 
-	private double [] loadDataFromIntRgb(int width, int height, DataBufferInt dataBuffer) {
-		double[] pixels = new double[width*height*3];
+	private byte [] loadDataFromIntRgb(int width, int height, DataBufferInt dataBuffer) {
+		byte[] pixels = new byte[width*height*3];
 		int [] ints = dataBuffer.getData();
 		int index = 0;
 		for(int i = 0; i < ints.length; i++) {
 			int rgb = ints[i];
-			pixels[index] = ((rgb & 0xFF0000) >> 16);
-			pixels[index+1] = ((rgb & 0xFF00) >> 8);
-			pixels[index+2] = (rgb & 0xFF);
+			pixels[index] = (byte) (rgb >> 16);
+			pixels[index+1] = (byte) (rgb >> 8);
+			pixels[index+2] = (byte) rgb;
 			index+=3 ;
 		}
 		return pixels;
 	}
 
-	private double [] loadDataFromOneByteGray(int width, int height, DataBufferByte dataBuffer) {
-		double[] pixels = new double[width*height];
+	private byte [] loadDataFromOneByteGray(int width, int height, DataBufferByte dataBuffer) {
 		byte [] bytes = dataBuffer.getData();
-		for(int i = 0; i < bytes.length; i++) {
-			byte gray = bytes[i];
-			pixels[i] = gray & 0xFF;
+		if(bytes.length == width*height) {
+			//The layout is already exactly what we want and nobody else has a reference to
+			//the buffered image so we can simply take over the array
+			return bytes;
 		}
+		byte[] pixels = new byte[width*height];
+		System.arraycopy(bytes, 0, pixels, 0, pixels.length);
 		return pixels;
 	}
 
-	private double [] loadDataFromTwoByteAlphaGray(int width, int height, DataBufferByte dataBuffer) {
-		double[] pixels = new double[width*height];
+	private byte [] loadDataFromTwoByteAlphaGray(int width, int height, DataBufferByte dataBuffer) {
+		byte[] pixels = new byte[width*height];
 		byte [] bytes = dataBuffer.getData();
 		int index = 0;
 		for(int i = 0; i < bytes.length; i+=2) {
-			byte gray = bytes[i];
-			pixels[index] = gray & 0xFF;
+			pixels[index] = bytes[i];
 			index++;
 		}
 		return pixels;
 	}
 
-	private double [] loadDataFromThreeByteBgr(int width, int height, DataBufferByte dataBuffer) {
-		double[] pixels = new double[width*height*3];
+	private byte [] loadDataFromThreeByteBgr(int width, int height, DataBufferByte dataBuffer) {
+		byte[] pixels = new byte[width*height*3];
 		byte [] bytes = dataBuffer.getData();
 		for(int i = 0; i < bytes.length; i+=3) {
-			byte blue = bytes[i];
-			byte green = bytes[i+1];
-			byte red = bytes[i+2];
-			pixels[i] = red & 0xFF;
-			pixels[i+1] = green & 0xFF;
-			pixels[i+2] = blue & 0xFF;
+			pixels[i] = bytes[i+2];
+			pixels[i+1] = bytes[i+1];
+			pixels[i+2] = bytes[i];
 		}
 		return pixels;
 	}
 	
-	private double [] loadDataFromFourByteAbgr(int width, int height, DataBufferByte dataBuffer) {
-		double[] pixels = new double[width*height*3];
+	private byte [] loadDataFromFourByteAbgr(int width, int height, DataBufferByte dataBuffer) {
+		byte[] pixels = new byte[width*height*3];
 		byte [] bytes = dataBuffer.getData();
 		int index = 0;
 		for(int i = 0; i < bytes.length; i+=4) {
-			byte blue = bytes[i+1];
-			byte green = bytes[i+2];
-			byte red = bytes[i+3];
-			pixels[index] = red & 0xFF;
-			pixels[index+1] = green & 0xFF;
-			pixels[index+2] = blue & 0xFF;
+			pixels[index] = bytes[i+3];
+			pixels[index+1] = bytes[i+2];
+			pixels[index+2] = bytes[i+1];
 			index+=3;
 		}
 		return pixels;
 	}
 	
-	private StandardImage decodeImage(BufferedImage source) {
+	/*
+	 * Works for any kind of buffered image by letting the color model do the conversion.
+	 * Each row is converted into a reusable array and written into the image in bulk so
+	 * nothing is allocated per pixel.
+	 */
+	private ArrayImage decodeAnyImage(BufferedImage source) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		ColorModel colorModel = source.getColorModel();
+		Raster raster = source.getRaster();
+		double [] row;
+		if(colorModel.getNumColorComponents() == 1 && !colorModel.hasAlpha() && raster.getNumBands() == 1) {
+			ArrayImage result;
+			if(colorModel.getComponentSize(0) > 8) {
+				result = new ShortImage(width, height, 1);
+			} else {
+				result = new ByteImage(width, height, 1);
+			}
+			DoubleSinkerator writer = result.getPixelWriter();
+			row = new double[width];
+			for(int y = 0; y < height; y++) {
+				raster.getSamples(0, y, width, 1, 0, row);
+				writer.putNext(row, 0, width);
+			}
+			return result;
+		}
+		ByteImage result = new ByteImage(width, height, 3);
+		DoubleSinkerator writer = result.getPixelWriter();
+		int [] rgb = new int[width];
+		row = new double[width * 3];
+		for(int y = 0; y < height; y++) {
+			source.getRGB(0, y, width, 1, rgb, 0, width);
+			for(int x = 0; x < width; x++) {
+				row[x * 3] = (rgb[x] >> 16) & 0xFF;
+				row[x * 3 + 1] = (rgb[x] >> 8) & 0xFF;
+				row[x * 3 + 2] = rgb[x] & 0xFF;
+			}
+			writer.putNext(row, 0, row.length);
+		}
+		return result;
+	}
+
+	private ArrayImage decodeImage(BufferedImage source) {
 		Raster raster = source.getRaster();
 		DataBuffer buffer = raster.getDataBuffer();
 		int width = source.getWidth();
 		int height = source.getHeight();
 		if(buffer.getNumBanks() != 1) {
-			throw new RuntimeException("Oops");
+			return decodeAnyImage(source);
 		}
-		//Clearly not the best algorithm but it is reasonably fast and works
+		//Clearly not the best algorithm but it is reasonably fast and works.  All of the
+		//supported types are 8 bits per sample so we keep them that way.
 		if(source.getType() == BufferedImage.TYPE_3BYTE_BGR) {
-			double [] pixels = loadDataFromThreeByteBgr(width, height, (DataBufferByte)buffer);
-			return new StandardImage(width, height, 3, pixels);
+			byte [] pixels = loadDataFromThreeByteBgr(width, height, (DataBufferByte)buffer);
+			return new ByteImage(width, height, 3, pixels);
 		} else if (source.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
-			double [] pixels = loadDataFromFourByteAbgr(width, height, (DataBufferByte)buffer);
-			return new StandardImage(width, height, 3, pixels);
-		} else if (source.getType() == BufferedImage.TYPE_CUSTOM) { 
+			byte [] pixels = loadDataFromFourByteAbgr(width, height, (DataBufferByte)buffer);
+			return new ByteImage(width, height, 3, pixels);
+		} else if (source.getType() == BufferedImage.TYPE_CUSTOM && buffer instanceof DataBufferByte && raster.getNumBands() == 2) { 
 			//This is 2 byte buffer?!
-			double [] pixels = loadDataFromTwoByteAlphaGray(width, height, (DataBufferByte)buffer);
-			return new StandardImage(width, height, 1, pixels);
+			byte [] pixels = loadDataFromTwoByteAlphaGray(width, height, (DataBufferByte)buffer);
+			return new ByteImage(width, height, 1, pixels);
 		} else if (source.getType() == BufferedImage.TYPE_INT_RGB) {
-			double [] pixels = loadDataFromIntRgb(width, height, (DataBufferInt)buffer);
-			return new StandardImage(width, height, 3, pixels);
+			byte [] pixels = loadDataFromIntRgb(width, height, (DataBufferInt)buffer);
+			return new ByteImage(width, height, 3, pixels);
 		} else if (source.getType() == BufferedImage.TYPE_BYTE_GRAY) {
-			double [] pixels = loadDataFromOneByteGray(width, height, (DataBufferByte)buffer);
-			return new StandardImage(width, height, 1, pixels);
+			byte [] pixels = loadDataFromOneByteGray(width, height, (DataBufferByte)buffer);
+			return new ByteImage(width, height, 1, pixels);
 		} else {
-			throw new RuntimeException("Image type not implemented: " + source.getType());
+			return decodeAnyImage(source);
 		}
 	}
 	
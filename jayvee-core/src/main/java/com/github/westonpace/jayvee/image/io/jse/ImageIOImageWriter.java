@@ -28,6 +28,11 @@ import com.github.westonpace.jayvee.workflow.StandardWorker;
  * 
  * Image values will be rounded to the nearest integer.
  * 
+ * The writer is usually the last worker to see an image.  If nothing else holds on to
+ * the images being written then turn on {@link #setReleaseImages(boolean) setReleaseImages}
+ * so that pooled images (see {@link com.github.westonpace.jayvee.image.ImagePool ImagePool})
+ * are returned for reuse once written.
+ * 
  * TODO: Improve image writing performance and memory usage
  */
 public class ImageIOImageWriter extends StandardWorker {
@@ -53,6 +58,17 @@ public class ImageIOImageWriter extends StandardWorker {
 	@InputBuffer
 	public Source<String> imageFormats;
 	
+	private boolean releaseImages = false;
+	
+	/**
+	 * Sets whether or not images are released once they have been written.  Only turn
+	 * this on if nothing else holds on to the images.
+	 * @param releaseImages true if images should be released after being written
+	 */
+	public void setReleaseImages(boolean releaseImages) {
+		this.releaseImages = releaseImages;
+	}
+	
 	public void writeImage(Image image, String format, OutputStream streamToWriteTo) {
 		try {
 			ImageIO.write(J2SEUtils.bufferedImageFromImage(image), format, streamToWriteTo);
@@ -67,6 +83,9 @@ public class ImageIOImageWriter extends StandardWorker {
 		OutputStream streamToWriteTo = outputStreamsToWriteTo.pop();
 		String format = imageFormats.pop();
 		writeImage(imageToWrite, format, streamToWriteTo);
+		if(releaseImages) {
+			imageToWrite.release();
+		}
 	}
 	
 }
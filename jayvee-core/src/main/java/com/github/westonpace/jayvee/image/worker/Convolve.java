@@ -0,0 +1,227 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.Arrays;
+
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.Kernel;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ExtendEdgesStrategy;
+import com.github.westonpace.jayvee.image.RowKernels;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+/**
+ * <p>
+ * Convolves images with a {@link Kernel Kernel} (blurs, sharpening, edge detection,
+ * etc.).  Every band is convolved separately with the same kernel.
+ * </p><p>
+ * Separable kernels are applied as a horizontal pass and then a vertical pass.  Rows are
+ * read in bulk and run through the passes one at a time so only the last few filtered
+ * rows (as many as the kernel is tall) are kept around.  Wide images are also split into
+ * blocks of columns so that those rows stay in the processor cache.  Other kernels are
+ * applied directly, also a row at a time.
+ * </p><p>
+ * Pixels past the edge of the image are only looked up through the
+ * {@link OutOfBoundsAccessStrategy OutOfBoundsAccessStrategy} (extending the edges by
+ * default) for the rows and columns which need them, the rest of the image is read
+ * directly.  Large images are split into strips which are convolved on several threads
+ * (see {@link ParallelImageTransformer ParallelImageTransformer}).
+ * </p>
+ */
+public class Convolve extends ParallelImageTransformer {
+
+	/**
+	 * Roughly how many bytes of rows a column block should keep in use at once
+	 */
+	private static final int BLOCK_BYTES = 128 * 1024;
+
+	private Kernel kernel;
+	private OutOfBoundsAccessStrategy outOfBoundsAccessStrategy = new ExtendEdgesStrategy();
+	private SampleType outputSampleType = SampleType.Float64;
+
+	/**
+	 * Creates a new convolution worker, the kernel must be set before it is used
+	 */
+	public Convolve() {
+		//The kernel is set later
+	}
+
+	/**
+	 * Creates a new convolution worker
+	 * @param kernel The kernel to convolve images with
+	 */
+	public Convolve(Kernel kernel) {
+		setKernel(kernel);
+	}
+
+	/**
+	 * Sets the kernel that images are convolved with
+	 * @param kernel The kernel
+	 */
+	public void setKernel(Kernel kernel) {
+		if(kernel == null) {
+			throw new InvalidParameterException("The kernel cannot be null");
+		}
+		this.kernel = kernel;
+	}
+
+	/**
+	 * Sets how pixels past the edges of the image are filled in.  By default the edge
+	 * pixels are extended.
+	 * @param outOfBoundsAccessStrategy The strategy to use
+	 */
+	public void setOutOfBoundsAccessStrategy(OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+		this.outOfBoundsAccessStrategy = outOfBoundsAccessStrategy;
+	}
+
+	/**
+	 * Sets the sample type of the output images.  By default the output holds doubles,
+	 * which is needed for kernels with negative weights such as edge detectors.
+	 * @param outputSampleType The sample type of the output
+	 */
+	public void setOutputSampleType(SampleType outputSampleType) {
+		this.outputSampleType = outputSampleType;
+	}
+
+	@Override
+	protected int getOutputBands(Image input) {
+		return input.getNumBands();
+	}
+
+	@Override
+	protected SampleType getOutputSampleType(Image input) {
+		return outputSampleType;
+	}
+
+	@Override
+	protected void transform(Image input, Image output, Region region) {
+		if(kernel == null) {
+			throw new InvalidParameterException("No kernel has been set");
+		}
+		int right = region.getX() + region.getWidth();
+		int numBands = input.getNumBands();
+		int blockWidth = Math.max(BLOCK_BYTES / (8 * numBands * (kernel.getHeight() + 2)), kernel.getWidth() * 4);
+		int start = region.getY();
+		int end = region.getY() + region.getHeight();
+		for(int x0 = region.getX(); x0 < right; x0 += blockWidth) {
+			int x1 = Math.min(x0 + blockWidth, right);
+			if(kernel.isSeparable()) {
+				convolveSeparable(input, output, x0, x1, start, end);
+			} else {
+				convolve(input, output, x0, x1, start, end);
+			}
+		}
+	}
+
+	private static int ringIndex(int row, int size) {
+		int index = row % size;
+		return index < 0 ? index + size : index;
+	}
+
+	private void convolveSeparable(Image input, Image output, int x0, int x1, int start, int end) {
+		RowKernels kernels = RowKernels.getInstance();
+		double [] horizontal = kernel.getHorizontal();
+		double [] vertical = kernel.getVertical();
+		int kernelHeight = vertical.length;
+		int centerY = kernel.getCenterY();
+		int numBands = input.getNumBands();
+		int count = (x1 - x0) * numBands;
+		double [] padded = new double[(x1 - x0 + horizontal.length - 1) * numBands];
+		//The horizontally filtered rows, row y is kept at y mod kernelHeight
+		double [][] filtered = new double[kernelHeight][count];
+		double [] result = new double[count];
+		for(int row = start - centerY; row < start - centerY + kernelHeight - 1; row++) {
+			filterRow(input, row, x0, x1, horizontal, padded, filtered[ringIndex(row, kernelHeight)], kernels);
+		}
+		for(int y = start; y < end; y++) {
+			int first = y - centerY;
+			int newest = first + kernelHeight - 1;
+			filterRow(input, newest, x0, x1, horizontal, padded, filtered[ringIndex(newest, kernelHeight)], kernels);
+			Arrays.fill(result, 0);
+			for(int t = 0; t < kernelHeight; t++) {
+				if(vertical[t] != 0) {
+					kernels.multiplyAdd(filtered[ringIndex(first + t, kernelHeight)], 0, vertical[t], result, 0, count);
+				}
+			}
+			output.setRegion(x0, y, x1 - x0, 1, result, 0);
+		}
+	}
+
+	private void filterRow(Image input, int y, int x0, int x1, double[] horizontal, double[] padded, double[] destination, RowKernels kernels) {
+		int numBands = input.getNumBands();
+		readPaddedRow(input, y, x0 - kernel.getCenterX(), padded);
+		Arrays.fill(destination, 0);
+		for(int t = 0; t < horizontal.length; t++) {
+			if(horizontal[t] != 0) {
+				kernels.multiplyAdd(padded, t * numBands, horizontal[t], destination, 0, destination.length);
+			}
+		}
+	}
+
+	private void convolve(Image input, Image output, int x0, int x1, int start, int end) {
+		RowKernels kernels = RowKernels.getInstance();
+		int kernelWidth = kernel.getWidth();
+		int kernelHeight = kernel.getHeight();
+		int centerX = kernel.getCenterX();
+		int centerY = kernel.getCenterY();
+		int numBands = input.getNumBands();
+		int count = (x1 - x0) * numBands;
+		//The padded source rows, row y is kept at y mod kernelHeight
+		double [][] rows = new double[kernelHeight][(x1 - x0 + kernelWidth - 1) * numBands];
+		double [] result = new double[count];
+		for(int row = start - centerY; row < start - centerY + kernelHeight - 1; row++) {
+			readPaddedRow(input, row, x0 - centerX, rows[ringIndex(row, kernelHeight)]);
+		}
+		for(int y = start; y < end; y++) {
+			int first = y - centerY;
+			int newest = first + kernelHeight - 1;
+			readPaddedRow(input, newest, x0 - centerX, rows[ringIndex(newest, kernelHeight)]);
+			Arrays.fill(result, 0);
+			for(int ky = 0; ky < kernelHeight; ky++) {
+				double [] row = rows[ringIndex(first + ky, kernelHeight)];
+				for(int kx = 0; kx < kernelWidth; kx++) {
+					double weight = kernel.getWeight(kx, ky);
+					if(weight != 0) {
+						kernels.multiplyAdd(row, kx * numBands, weight, result, 0, count);
+					}
+				}
+			}
+			output.setRegion(x0, y, x1 - x0, 1, result, 0);
+		}
+	}
+
+	/*
+	 * Reads the pixels of row y starting at column startX into the destination.  The
+	 * part inside the image is read in bulk, only the pixels outside the image go through
+	 * the out of bounds access strategy.
+	 */
+	private void readPaddedRow(Image input, int y, int startX, double[] destination) {
+		int numBands = input.getNumBands();
+		int length = destination.length / numBands;
+		int endX = startX + length;
+		int interiorStart = startX;
+		int interiorEnd = endX;
+		if(y >= 0 && y < input.getHeight()) {
+			interiorStart = Math.min(Math.max(startX, 0), endX);
+			interiorEnd = Math.max(Math.min(endX, input.getWidth()), interiorStart);
+		} else {
+			interiorEnd = interiorStart;
+		}
+		int index = 0;
+		for(int x = startX; x < interiorStart; x++) {
+			for(int b = 0; b < numBands; b++) {
+				destination[index++] = outOfBoundsAccessStrategy.get(x, y, b, input);
+			}
+		}
+		if(interiorEnd > interiorStart) {
+			input.getRegion(interiorStart, y, interiorEnd - interiorStart, 1, destination, index);
+			index += (interiorEnd - interiorStart) * numBands;
+		}
+		for(int x = interiorEnd; x < endX; x++) {
+			for(int b = 0; b < numBands; b++) {
+				destination[index++] = outOfBoundsAccessStrategy.get(x, y, b, input);
+			}
+		}
+	}
+
+}
@@ -2,8 +2,12 @@ package com.github.westonpace.jayvee.image.worker;
 
 import org.apache.log4j.Logger;
 
+import com.github.westonpace.jayvee.image.ArrayImage;
 import com.github.westonpace.jayvee.image.Image;
-import com.github.westonpace.jayvee.image.StandardImage;
+import com.github.westonpace.jayvee.image.ImagePool;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.TiledImage;
+import com.github.westonpace.jayvee.workflow.InPlaceWorker;
 import com.github.westonpace.jayvee.workflow.InputBuffer;
 import com.github.westonpace.jayvee.workflow.OutputBuffer;
 import com.github.westonpace.jayvee.workflow.Sink;
@@ -20,8 +24,26 @@ import com.github.westonpace.jayvee.workflow.StandardWorker;
  * This basic image transformer creates a brand new image in memory and then relies
  * on a subclass to do the actual transformation.  Some subclasses may choose to modify
  * the image in place.
+ * 
+ * Output images are drawn from an {@link ImagePool ImagePool} (the shared pool unless
+ * another is set) so once the images flowing through a pipeline are being released
+ * (see {@link Image#release() Image.release}) the transformer stops allocating new
+ * pixel arrays.  If the transformer is the only consumer of its input images it can
+ * release them itself, see {@link #setReleaseInputs(boolean) setReleaseInputs}.
+ * 
+ * Transformers which can work on one part of an image at a time should extend
+ * {@link ParallelImageTransformer ParallelImageTransformer} so that large images are
+ * transformed on several threads.
+ * 
+ * Transformers whose output has the same shape and sample type as their input can write
+ * the output straight into the input image instead of a new image.  This is off unless
+ * it is turned on with {@link #setInPlace(boolean) setInPlace}, since it is only safe when
+ * the worker upstream does not touch an image after pushing it.  Even then it only
+ * happens when the subclass says it is safe (see {@link #isInPlaceSafe() isInPlaceSafe})
+ * and the system has verified that nothing else sees the input images (see
+ * {@link InPlaceWorker InPlaceWorker}).
  */
-public abstract class ImageTransformer extends StandardWorker {
+public abstract class ImageTransformer extends StandardWorker implements InPlaceWorker {
 
 	private static final Logger logger = Logger.getLogger(ImageTransformer.class);
 	
@@ -37,20 +59,105 @@ public abstract class ImageTransformer extends StandardWorker {
 	 */
 	@OutputBuffer
 	public Sink<Image> outputImages;
+	
+	private ImagePool imagePool = ImagePool.getSharedPool();
+	private boolean releaseInputs = false;
+	private boolean inPlace = false;
+	private boolean exclusiveInputs = false;
 		
 	protected abstract void transform(Image input, Image output);
 	protected abstract int getOutputBands(Image input);
 	
+	/**
+	 * Returns the sample type of the image that will be created to hold the output.
+	 * By default the output holds doubles which is always safe.  Subclasses whose output
+	 * is known to fit in a smaller type (for example, a threshold that only produces 0 or
+	 * 255) should override this so that the output doesn't have to be widened.
+	 * @param input The image that is about to be transformed
+	 * @return The sample type of the output image
+	 */
+	protected SampleType getOutputSampleType(Image input) {
+		return SampleType.Float64;
+	}
+	
+	/**
+	 * Returns true if {@link #transform(Image, Image) transform} still works when the
+	 * output image is the input image.  That is, every input value is read before the
+	 * output value at the same position is written and no input value is read after it
+	 * has been overwritten.  False by default.
+	 * @return true if the transformer can work in place
+	 */
+	protected boolean isInPlaceSafe() {
+		return false;
+	}
+	
+	/**
+	 * Sets the pool that output images are drawn from
+	 * @param imagePool The pool to use, or null to always create new output images
+	 */
+	public void setImagePool(ImagePool imagePool) {
+		this.imagePool = imagePool;
+	}
+	
+	/**
+	 * Sets whether or not input images are released once they have been transformed.  Only
+	 * turn this on if nothing else holds on to the input images.
+	 * @param releaseInputs true if input images should be released after being transformed
+	 */
+	public void setReleaseInputs(boolean releaseInputs) {
+		this.releaseInputs = releaseInputs;
+	}
+	
+	/**
+	 * Sets whether images may be transformed in place when that is safe.  This is off by
+	 * default.  Only turn it on if the workers feeding this one never use an image again
+	 * after pushing it.
+	 * @param inPlace true to write the output into the input image when possible
+	 */
+	public void setInPlace(boolean inPlace) {
+		this.inPlace = inPlace;
+	}
+	
+	@Override
+	public void setExclusiveInputs(boolean exclusiveInputs) {
+		this.exclusiveInputs = exclusiveInputs;
+	}
+	
+	/*
+	 * True if the other transformer draws its output from the same pool and releases and
+	 * reuses its inputs in the same way
+	 */
+	boolean hasSameSettings(ImageTransformer other) {
+		return imagePool == other.imagePool && releaseInputs == other.releaseInputs && inPlace == other.inPlace;
+	}
+	
+	private boolean canTransformInPlace(Image input) {
+		return inPlace && exclusiveInputs && isInPlaceSafe() && getOutputBands(input) == input.getNumBands()
+				&& getOutputSampleType(input) == input.getSampleType();
+	}
+	
 	private Image buildOutputImage(Image input) {
-		return new StandardImage(input.getWidth(), input.getHeight(), getOutputBands(input));
+		if(input instanceof TiledImage) {
+			//Tiled images are usually too large for a single array so tile the output as well
+			return ((TiledImage) input).createBlank(getOutputBands(input), getOutputSampleType(input));
+		}
+		if(imagePool == null) {
+			return ArrayImage.create(input.getWidth(), input.getHeight(), getOutputBands(input), getOutputSampleType(input));
+		}
+		return imagePool.acquire(input.getWidth(), input.getHeight(), getOutputBands(input), getOutputSampleType(input));
 	}
 	
 	@Override
 	public void iterate() {
 		Image input = inputImages.pop();
-		Image output = buildOutputImage(input);
-		logger.debug("Transforming input image (" + input.getWidth() + "x" + input.getHeight() + "x" + input.getNumBands() + ") into (" + output.getWidth() + "x" + output.getHeight() + "x" + output.getNumBands() + ")");
+		boolean transformInPlace = canTransformInPlace(input);
+		Image output = transformInPlace ? input : buildOutputImage(input);
+		logger.debug("Transforming input image (" + input.getWidth() + "x" + input.getHeight() + "x" + input.getNumBands() + ") into (" + output.getWidth() + "x" + output.getHeight() + "x" + output.getNumBands() + ")"
+				+ (transformInPlace ? " in place" : ""));
 		transform(input, output);
+		if(releaseInputs && !transformInPlace) {
+			input.release();
+		}
 		outputImages.push(output);
 	}
 	
@@ -0,0 +1,128 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.util.Parallel;
+
+/**
+ * <p>
+ * An image transformer which can split the transformation of a single image across
+ * several threads.  Instead of transforming the whole image at once subclasses transform
+ * one {@link Region Region} of the output at a time.  The regions are horizontal strips
+ * which are spread across the threads of {@link Parallel Parallel} and every region has
+ * been transformed before the output image is pushed on.
+ * </p><p>
+ * Subclasses must only write to the output pixels inside the region they are given (they
+ * may read any input pixel) and must not change any state of the transformer while
+ * transforming, since several regions of the same image are transformed at once.
+ * </p><p>
+ * Images are only split up when both the input and the output
+ * {@link Image#supportsConcurrentAccess() support concurrent access}, otherwise (or if
+ * parallel transformation has been turned off) the whole image is transformed as a single
+ * region on the worker's own thread.
+ * </p>
+ */
+public abstract class ParallelImageTransformer extends ImageTransformer {
+
+	/**
+	 * The smallest strip worth handing to another thread
+	 */
+	private static final int MIN_STRIP_ROWS = 16;
+
+	/**
+	 * A rectangular part of an image
+	 */
+	public static final class Region {
+
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+
+		public Region(int x, int y, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * @return The left edge of the region
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * @return The top edge of the region
+		 */
+		public int getY() {
+			return y;
+		}
+
+		/**
+		 * @return The width of the region, in pixels
+		 */
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * @return The height of the region, in pixels
+		 */
+		public int getHeight() {
+			return height;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + x + "," + y + " " + width + "x" + height + ")";
+		}
+
+	}
+
+	private boolean parallel = true;
+	private int minStripRows = MIN_STRIP_ROWS;
+
+	/**
+	 * Transforms part of the input image.  This will be called from several threads at once.
+	 * @param input The image being transformed
+	 * @param output The image to write the result into
+	 * @param region The part of the output image to calculate
+	 */
+	protected abstract void transform(Image input, Image output, Region region);
+
+	/**
+	 * Sets whether images may be transformed on several threads at once.  This is on by
+	 * default.
+	 * @param parallel false to always transform on the worker's thread
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets the smallest number of rows worth transforming on a separate thread.  Transforms
+	 * which do a lot of work per pixel can lower this so small images are still split up.
+	 * @param minStripRows The smallest strip height, 16 by default
+	 */
+	public void setMinStripRows(int minStripRows) {
+		this.minStripRows = Math.max(1, minStripRows);
+	}
+
+	@Override
+	protected final void transform(final Image input, final Image output) {
+		final int width = output.getWidth();
+		Parallel.StripTask task = new Parallel.StripTask() {
+			@Override
+			public void run(int start, int end) {
+				transform(input, output, new Region(0, start, width, end - start));
+			}
+		};
+		if(parallel && input.supportsConcurrentAccess() && output.supportsConcurrentAccess()) {
+			Parallel.forEachStrip(0, output.getHeight(), minStripRows, task);
+		} else {
+			task.run(0, output.getHeight());
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.westonpace.jayvee.image.ByteImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.RowOperator;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.ShortImage;
+import com.github.westonpace.jayvee.workflow.FusibleWorker;
+import com.github.westonpace.jayvee.workflow.Sink;
+import com.github.westonpace.jayvee.workflow.Source;
+
+/**
+ * <p>
+ * An image transformer where each output pixel depends only on the input pixel at the
+ * same position (color space conversions, gain and offset, thresholds, etc.).  Subclasses
+ * transform runs of pixels, the transformer takes care of walking over the rows of the
+ * image (on several threads when the images allow it).
+ * </p><p>
+ * Point-wise transformers are {@link FusibleWorker fusible}.  When fusion is turned on
+ * (see {@link com.github.westonpace.jayvee.workflow.SystemBuilder#setFusion(boolean)
+ * SystemBuilder.setFusion}) and one point-wise transformer feeds straight into another
+ * the builder folds the second into the first so that a chain of them makes a single
+ * pass over the pixels.  Each row is passed through every stage of the chain before the
+ * next row is read, so no intermediate images are created and no images are handed
+ * between threads.  If a stage in the middle of a chain produces anything but doubles
+ * then its part of the row is rounded (and clamped) to that sample type, just as it
+ * would have been had the stages run separately.
+ * </p><p>
+ * Only transformers with the same image pool, release and in place settings are fused,
+ * since the fused chain has a single set of them.
+ * </p>
+ */
+public abstract class PointwiseTransformer extends ImageTransformer implements FusibleWorker {
+
+	/**
+	 * The transformers that have been fused into this one, in the order they are applied
+	 * (after this one)
+	 */
+	private final List<PointwiseTransformer> fusedStages = new ArrayList<PointwiseTransformer>();
+
+	/**
+	 * Returns the number of bands each output pixel has
+	 * @param inputBands The number of bands each input pixel has
+	 * @return The number of bands of the output
+	 */
+	protected abstract int getOutputBands(int inputBands);
+
+	/**
+	 * Transforms a run of pixels.  This may be called from several threads at once.
+	 * @param source The input pixels, inputBands values per pixel
+	 * @param destination The array to write the output pixels into,
+	 *        {@link #getOutputBands(int) getOutputBands(inputBands)} values per pixel
+	 * @param count The number of pixels
+	 * @param inputBands The number of bands each input pixel has
+	 */
+	protected abstract void apply(double[] source, double[] destination, int count, int inputBands);
+
+	/**
+	 * Returns the sample type of the output.  By default the output holds doubles.
+	 * @param inputSampleType The sample type of the input
+	 * @return The sample type of the output
+	 */
+	protected SampleType getOutputSampleType(SampleType inputSampleType) {
+		return SampleType.Float64;
+	}
+
+	/**
+	 * Point-wise transforms read each row before writing it so they can always work in
+	 * place
+	 */
+	@Override
+	protected boolean isInPlaceSafe() {
+		return true;
+	}
+
+	private List<PointwiseTransformer> getStages() {
+		List<PointwiseTransformer> stages = new ArrayList<PointwiseTransformer>(fusedStages.size() + 1);
+		stages.add(this);
+		stages.addAll(fusedStages);
+		return stages;
+	}
+
+	@Override
+	protected final int getOutputBands(Image input) {
+		int bands = input.getNumBands();
+		for(PointwiseTransformer stage : getStages()) {
+			bands = stage.getOutputBands(bands);
+		}
+		return bands;
+	}
+
+	@Override
+	protected final SampleType getOutputSampleType(Image input) {
+		SampleType sampleType = input.getSampleType();
+		for(PointwiseTransformer stage : getStages()) {
+			sampleType = stage.getOutputSampleType(sampleType);
+		}
+		return sampleType;
+	}
+
+	@Override
+	protected void transform(Image input, Image output) {
+		final List<PointwiseTransformer> stages = getStages();
+		final int [] bands = new int[stages.size() + 1];
+		final SampleType [] sampleTypes = new SampleType[stages.size() + 1];
+		bands[0] = input.getNumBands();
+		sampleTypes[0] = input.getSampleType();
+		for(int i = 0; i < stages.size(); i++) {
+			bands[i + 1] = stages.get(i).getOutputBands(bands[i]);
+			sampleTypes[i + 1] = stages.get(i).getOutputSampleType(sampleTypes[i]);
+		}
+		//The rows between stages, each thread allocates them once and reuses them
+		final ThreadLocal<double[][]> scratchRows = new ThreadLocal<double[][]>();
+		input.mapRows(new RowOperator() {
+			@Override
+			public void apply(int y, double[] source, double[] destination) {
+				//Tiled images hand over rows a tile at a time
+				int count = source.length / bands[0];
+				double [][] scratch = scratchRows.get();
+				if(scratch == null || (scratch.length > 0 && scratch[0].length < count * bands[1])) {
+					scratch = new double[stages.size() - 1][];
+					for(int i = 0; i < scratch.length; i++) {
+						scratch[i] = new double[count * bands[i + 1]];
+					}
+					scratchRows.set(scratch);
+				}
+				double [] current = source;
+				for(int i = 0; i < stages.size(); i++) {
+					double [] target = i < scratch.length ? scratch[i] : destination;
+					stages.get(i).apply(current, target, count, bands[i]);
+					if(i < scratch.length) {
+						round(target, count * bands[i + 1], sampleTypes[i + 1]);
+					}
+					current = target;
+				}
+			}
+		}, output);
+	}
+
+	/*
+	 * Rounds and clamps values the same way an image of the given sample type would
+	 */
+	private static void round(double[] values, int count, SampleType sampleType) {
+		switch(sampleType) {
+		case UnsignedByte:
+			for(int i = 0; i < count; i++) {
+				values[i] = ByteImage.toByte(values[i]) & 0xFF;
+			}
+			break;
+		case UnsignedShort:
+			for(int i = 0; i < count; i++) {
+				values[i] = ShortImage.toShort(values[i]) & 0xFFFF;
+			}
+			break;
+		case SignedInt:
+			for(int i = 0; i < count; i++) {
+				values[i] = (int) Math.floor(values[i] + 0.5);
+			}
+			break;
+		case Float32:
+			for(int i = 0; i < count; i++) {
+				values[i] = (float) values[i];
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public Source<?> getFusibleInput() {
+		return inputImages;
+	}
+
+	@Override
+	public Sink<?> getFusibleOutput() {
+		return outputImages;
+	}
+
+	@Override
+	public boolean canFuse(FusibleWorker next) {
+		return next instanceof PointwiseTransformer && hasSameSettings((PointwiseTransformer) next);
+	}
+
+	@Override
+	public void fuse(FusibleWorker next) {
+		PointwiseTransformer nextTransformer = (PointwiseTransformer) next;
+		fusedStages.add(nextTransformer);
+		fusedStages.addAll(nextTransformer.fusedStages);
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import org.apache.log4j.Logger;
+
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.ImagePool;
+import com.github.westonpace.jayvee.image.ImagePyramid;
+import com.github.westonpace.jayvee.image.Resampler;
+import com.github.westonpace.jayvee.image.Resampler.Filter;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.workflow.InputBuffer;
+import com.github.westonpace.jayvee.workflow.OutputBuffer;
+import com.github.westonpace.jayvee.workflow.Sink;
+import com.github.westonpace.jayvee.workflow.Source;
+import com.github.westonpace.jayvee.workflow.StandardWorker;
+
+/**
+ * Resizes images to a fixed width and height.  The output image has the same number of
+ * bands and sample type as the input image.
+ *
+ * The resizing is done by a {@link Resampler Resampler} so resizing a stream of images
+ * to the same size only calculates the filter weights once.  Output images are drawn from
+ * an {@link ImagePool ImagePool} in the same way as the {@link ImageTransformer ImageTransformer}.
+ *
+ * Large downscales can be sped up by resizing from an {@link ImagePyramid ImagePyramid}
+ * (see {@link #setUsePyramid(boolean) setUsePyramid}).  This is off by default since the
+ * result is slightly softer than resampling the full size image.
+ */
+public class Resize extends StandardWorker {
+
+	private static final Logger logger = Logger.getLogger(Resize.class);
+
+	/**
+	 * The images to resize
+	 */
+	@InputBuffer
+	public Source<Image> inputImages;
+	/**
+	 * The resized images
+	 */
+	@OutputBuffer
+	public Sink<Image> outputImages;
+
+	private int width = -1;
+	private int height = -1;
+	private Resampler resampler = new Resampler(Filter.Bilinear);
+	private ImagePool imagePool = ImagePool.getSharedPool();
+	private boolean releaseInputs = false;
+	private boolean usePyramid = false;
+
+	/**
+	 * Creates a worker that resizes images using bilinear filtering, the size must be set
+	 * before it is used
+	 */
+	public Resize() {
+		//The size is set later
+	}
+
+	/**
+	 * Creates a worker that resizes images using bilinear filtering
+	 * @param width The width of the resized images
+	 * @param height The height of the resized images
+	 */
+	public Resize(int width, int height) {
+		this(width, height, Filter.Bilinear);
+	}
+
+	/**
+	 * Creates a worker that resizes images
+	 * @param width The width of the resized images
+	 * @param height The height of the resized images
+	 * @param filter The filter to resample the images with
+	 */
+	public Resize(int width, int height, Filter filter) {
+		setSize(width, height);
+		setFilter(filter);
+	}
+
+	/**
+	 * Sets the size of the resized images
+	 * @param width The width of the resized images
+	 * @param height The height of the resized images
+	 */
+	public void setSize(int width, int height) {
+		if(width <= 0 || height <= 0) {
+			throw new InvalidParameterException("Width and height must be > 0. Actual:(" + width + "," + height + ")");
+		}
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Sets the filter the images are resampled with.  The default is bilinear filtering.
+	 * @param filter The filter to use
+	 */
+	public void setFilter(Filter filter) {
+		if(filter == null) {
+			throw new InvalidParameterException("The filter cannot be null");
+		}
+		this.resampler = new Resampler(filter);
+	}
+
+	/**
+	 * Sets the pool that output images are drawn from
+	 * @param imagePool The pool to use, or null to always create new output images
+	 */
+	public void setImagePool(ImagePool imagePool) {
+		this.imagePool = imagePool;
+	}
+
+	/**
+	 * Sets whether or not input images are released once they have been resized.  Only
+	 * turn this on if nothing else holds on to the input images.
+	 * @param releaseInputs true if input images should be released after being resized
+	 */
+	public void setReleaseInputs(boolean releaseInputs) {
+		this.releaseInputs = releaseInputs;
+	}
+
+	/**
+	 * Sets whether or not images are resized from a pyramid.  When set the image is first
+	 * halved (by averaging 2x2 blocks) until it is no more than twice the output size and
+	 * that level is resampled instead of the full size image.  This is much faster for
+	 * heavy downscales (e.g. thumbnails) and has no effect when enlarging.
+	 * @param usePyramid true if images should be resized from a pyramid
+	 */
+	public void setUsePyramid(boolean usePyramid) {
+		this.usePyramid = usePyramid;
+	}
+
+	@Override
+	public void iterate() {
+		if(width < 0) {
+			throw new InvalidParameterException("No output size has been set");
+		}
+		Image input = inputImages.pop();
+		Image output;
+		if(imagePool == null) {
+			output = ArrayImage.create(width, height, input.getNumBands(), input.getSampleType());
+		} else {
+			output = imagePool.acquire(width, height, input.getNumBands(), input.getSampleType());
+		}
+		logger.debug("Resizing input image (" + input.getWidth() + "x" + input.getHeight() + ") to (" + width + "x" + height + ")");
+		if(usePyramid) {
+			resampler.resample(new ImagePyramid(input), output);
+		} else {
+			resampler.resample(input, output);
+		}
+		if(releaseInputs) {
+			input.release();
+		}
+		outputImages.push(output);
+	}
+
+}
@@ -0,0 +1,292 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import org.apache.log4j.Logger;
+
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.ImagePool;
+import com.github.westonpace.jayvee.image.Interpolator;
+import com.github.westonpace.jayvee.image.Interpolator.BatchInterpolator;
+import com.github.westonpace.jayvee.image.Interpolator.BilinearInterpolator;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ConstantStrategy;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.util.Parallel;
+import com.github.westonpace.jayvee.workflow.InputBuffer;
+import com.github.westonpace.jayvee.workflow.OutputBuffer;
+import com.github.westonpace.jayvee.workflow.Sink;
+import com.github.westonpace.jayvee.workflow.Source;
+import com.github.westonpace.jayvee.workflow.StandardWorker;
+
+/**
+ * <p>
+ * Applies a geometric transform (affine or perspective) to images.  The transform is given
+ * as a matrix which maps a pixel of the output image to the point in the input image which
+ * should be sampled.  That is, it is the inverse of the transform being applied (see
+ * {@link #invert(double[]) invert}).  An affine transform is given as 6 values:
+ * </p><pre>
+ * sourceX = m[0] * x + m[1] * y + m[2]
+ * sourceY = m[3] * x + m[4] * y + m[5]
+ * </pre><p>
+ * and a perspective transform (homography) as 9 values:
+ * </p><pre>
+ * w       = m[6] * x + m[7] * y + m[8]
+ * sourceX = (m[0] * x + m[1] * y + m[2]) / w
+ * sourceY = (m[3] * x + m[4] * y + m[5]) / w
+ * </pre><p>
+ * Along a row of the output the numerators (and w) change by a constant step so the
+ * source coordinates are worked out incrementally instead of with a matrix multiply per
+ * pixel.  When the interpolator is a {@link BatchInterpolator BatchInterpolator} the whole
+ * row is interpolated at once.  Any other interpolator is called one point at a time and
+ * points which fall outside of the input take the value of the nearest pixel according to
+ * the out of bounds access strategy.
+ * </p><p>
+ * Images which {@link Image#supportsConcurrentAccess() support concurrent access} are warped
+ * in horizontal strips spread across the threads of {@link Parallel Parallel}.  Other images
+ * (such as tiled images, which are not thread safe) are warped on the worker's own thread.
+ * </p>
+ */
+public class Warp extends StandardWorker {
+
+	private static final Logger logger = Logger.getLogger(Warp.class);
+	private static final int MIN_STRIP_ROWS = 16;
+
+	/**
+	 * The images to warp
+	 */
+	@InputBuffer
+	public Source<Image> inputImages;
+	/**
+	 * The warped images
+	 */
+	@OutputBuffer
+	public Sink<Image> outputImages;
+
+	private double[] matrix;
+	private int outputWidth = -1;
+	private int outputHeight = -1;
+	private Interpolator interpolator = new BilinearInterpolator();
+	private OutOfBoundsAccessStrategy outOfBoundsAccessStrategy = new ConstantStrategy();
+	private ImagePool imagePool = ImagePool.getSharedPool();
+	private boolean parallel = true;
+
+	/**
+	 * Creates a new warp worker, the matrix must be set before it is used
+	 */
+	public Warp() {
+		//The matrix is set later
+	}
+
+	/**
+	 * Creates a new warp worker
+	 * @param matrix The transform from output coordinates to input coordinates, either 6
+	 *        (affine) or 9 (perspective) values in row-major order
+	 */
+	public Warp(double[] matrix) {
+		setMatrix(matrix);
+	}
+
+	/**
+	 * Sets the transform applied to the images
+	 * @param matrix The transform from output coordinates to input coordinates, either 6
+	 *        (affine) or 9 (perspective) values in row-major order
+	 */
+	public void setMatrix(double[] matrix) {
+		if(matrix == null || (matrix.length != 6 && matrix.length != 9)) {
+			throw new InvalidParameterException("A warp matrix must have 6 (affine) or 9 (perspective) values");
+		}
+		if(matrix.length == 9 && matrix[6] == 0 && matrix[7] == 0) {
+			//A perspective matrix without a perspective row is just an affine transform
+			this.matrix = new double [] {matrix[0] / matrix[8], matrix[1] / matrix[8], matrix[2] / matrix[8],
+					matrix[3] / matrix[8], matrix[4] / matrix[8], matrix[5] / matrix[8]};
+		} else {
+			this.matrix = matrix.clone();
+		}
+	}
+
+	/**
+	 * Inverts a 6 value affine or 9 value perspective matrix.  Use this to turn the transform
+	 * from input coordinates to output coordinates into the matrix the warp expects.
+	 * @param matrix The matrix to invert
+	 * @return The inverse, with the same number of values
+	 * @throws InvalidParameterException If the matrix can't be inverted
+	 */
+	public static double[] invert(double[] matrix) {
+		double [] m = matrix;
+		if(matrix.length == 6) {
+			m = new double [] {matrix[0], matrix[1], matrix[2], matrix[3], matrix[4], matrix[5], 0, 0, 1};
+		} else if(matrix.length != 9) {
+			throw new InvalidParameterException("A warp matrix must have 6 (affine) or 9 (perspective) values");
+		}
+		double c0 = m[4] * m[8] - m[5] * m[7];
+		double c1 = m[5] * m[6] - m[3] * m[8];
+		double c2 = m[3] * m[7] - m[4] * m[6];
+		double determinant = m[0] * c0 + m[1] * c1 + m[2] * c2;
+		if(determinant == 0) {
+			throw new InvalidParameterException("The warp matrix is singular and can't be inverted");
+		}
+		double [] inverse = new double [] {
+				c0 / determinant, (m[2] * m[7] - m[1] * m[8]) / determinant, (m[1] * m[5] - m[2] * m[4]) / determinant,
+				c1 / determinant, (m[0] * m[8] - m[2] * m[6]) / determinant, (m[2] * m[3] - m[0] * m[5]) / determinant,
+				c2 / determinant, (m[1] * m[6] - m[0] * m[7]) / determinant, (m[0] * m[4] - m[1] * m[3]) / determinant};
+		if(matrix.length == 6) {
+			return new double [] {inverse[0], inverse[1], inverse[2], inverse[3], inverse[4], inverse[5]};
+		}
+		return inverse;
+	}
+
+	/**
+	 * Sets the size of the output images.  By default the output is the same size as the
+	 * input.
+	 * @param width The width of the output images
+	 * @param height The height of the output images
+	 */
+	public void setOutputSize(int width, int height) {
+		if(width <= 0 || height <= 0) {
+			throw new InvalidParameterException("Width and height must be > 0. Actual:(" + width + "," + height + ")");
+		}
+		this.outputWidth = width;
+		this.outputHeight = height;
+	}
+
+	/**
+	 * Sets the interpolator used to sample the input.  The default is bilinear interpolation.
+	 * @param interpolator The interpolator to use
+	 */
+	public void setInterpolator(Interpolator interpolator) {
+		this.interpolator = interpolator;
+	}
+
+	/**
+	 * Sets how points outside of the input are sampled.  The default treats everything
+	 * beyond the edge as 0.
+	 * @param outOfBoundsAccessStrategy The strategy to use
+	 */
+	public void setOutOfBoundsAccessStrategy(OutOfBoundsAccessStrategy outOfBoundsAccessStrategy) {
+		this.outOfBoundsAccessStrategy = outOfBoundsAccessStrategy;
+	}
+
+	/**
+	 * Sets the pool that output images are drawn from
+	 * @param imagePool The pool to use, or null to always create new output images
+	 */
+	public void setImagePool(ImagePool imagePool) {
+		this.imagePool = imagePool;
+	}
+
+	/**
+	 * Sets whether images may be warped on several threads at once.  This is on by default.
+	 * @param parallel false to always warp on the worker's thread
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	@Override
+	public void iterate() {
+		Image input = inputImages.pop();
+		int width = outputWidth < 0 ? input.getWidth() : outputWidth;
+		int height = outputHeight < 0 ? input.getHeight() : outputHeight;
+		Image output;
+		if(imagePool == null) {
+			output = ArrayImage.create(width, height, input.getNumBands(), input.getSampleType());
+		} else {
+			output = imagePool.acquire(width, height, input.getNumBands(), input.getSampleType());
+		}
+		logger.debug("Warping input image (" + input.getWidth() + "x" + input.getHeight() + ") into (" + width + "x" + height + ")");
+		warp(input, output);
+		outputImages.push(output);
+	}
+
+	/**
+	 * Warps the input image into the output image.  Both images must have the same number
+	 * of bands.
+	 * @param input The image to sample
+	 * @param output The image to fill in
+	 */
+	public void warp(final Image input, final Image output) {
+		if(matrix == null) {
+			throw new InvalidParameterException("No matrix has been set");
+		}
+		if(input.getNumBands() != output.getNumBands()) {
+			throw new InvalidParameterException("The output has " + output.getNumBands() + " bands but the input has " + input.getNumBands());
+		}
+		Parallel.StripTask task = new Parallel.StripTask() {
+			@Override
+			public void run(int start, int end) {
+				warpRows(input, output, start, end);
+			}
+		};
+		if(parallel && input.supportsConcurrentAccess() && output.supportsConcurrentAccess()) {
+			Parallel.forEachStrip(0, output.getHeight(), MIN_STRIP_ROWS, task);
+		} else {
+			task.run(0, output.getHeight());
+		}
+	}
+
+	private void warpRows(Image input, Image output, int start, int end) {
+		int width = output.getWidth();
+		int numBands = output.getNumBands();
+		double [] row = new double[width];
+		double [] xs = new double[width];
+		double [] ys = new double[width];
+		double [] m = matrix;
+		boolean affine = m.length == 6;
+		BatchInterpolator batchInterpolator = interpolator instanceof BatchInterpolator ? (BatchInterpolator) interpolator : null;
+		for(int y = start; y < end; y++) {
+			if(affine && batchInterpolator != null) {
+				double x0 = m[1] * y + m[2];
+				double y0 = m[4] * y + m[5];
+				for(int b = 0; b < numBands; b++) {
+					batchInterpolator.interpolateRow(input, b, x0, y0, m[0], m[3], width, row, 0, outOfBoundsAccessStrategy);
+					output.setRow(y, b, row, 0);
+				}
+				continue;
+			}
+			computeRow(y, width, xs, ys);
+			for(int b = 0; b < numBands; b++) {
+				if(batchInterpolator != null) {
+					batchInterpolator.interpolateRow(input, b, xs, ys, row, 0, outOfBoundsAccessStrategy);
+				} else {
+					for(int x = 0; x < width; x++) {
+						row[x] = sample(input, xs[x], ys[x], b);
+					}
+				}
+				output.setRow(y, b, row, 0);
+			}
+		}
+	}
+
+	/*
+	 * Fills in the source coordinates of every pixel of an output row, stepping the
+	 * numerators (and denominator) along the row
+	 */
+	private void computeRow(int y, int width, double[] xs, double[] ys) {
+		double [] m = matrix;
+		double sourceX = m[1] * y + m[2];
+		double sourceY = m[4] * y + m[5];
+		if(m.length == 6) {
+			for(int x = 0; x < width; x++) {
+				xs[x] = sourceX + x * m[0];
+				ys[x] = sourceY + x * m[3];
+			}
+			return;
+		}
+		double w = m[7] * y + m[8];
+		for(int x = 0; x < width; x++) {
+			xs[x] = sourceX / w;
+			ys[x] = sourceY / w;
+			sourceX += m[0];
+			sourceY += m[3];
+			w += m[6];
+		}
+	}
+
+	private double sample(Image input, double x, double y, int b) {
+		if(x >= 0 && y >= 0 && x <= input.getWidth() - 1 && y <= input.getHeight() - 1) {
+			return interpolator.interpolate(x, y, b, input);
+		}
+		return input.get((int) Math.floor(x + 0.5), (int) Math.floor(y + 0.5), b, outOfBoundsAccessStrategy);
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.github.westonpace.jayvee.image.worker.basic;
+
+import com.github.westonpace.jayvee.image.RowKernels;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformer;
+
+/**
+ * Scales every value of an image and then adds an offset to it (value * gain + offset).
+ * This can be used to adjust the contrast and brightness of an image or to convert
+ * values from one range to another.
+ */
+public class Gain extends PointwiseTransformer {
+
+	private double gain = 1;
+	private double offset = 0;
+
+	/**
+	 * Sets the amount every value is multiplied by, 1 by default
+	 * @param gain The scale factor
+	 */
+	public void setGain(double gain) {
+		this.gain = gain;
+	}
+
+	/**
+	 * Sets the amount added to every value after it is scaled, 0 by default
+	 * @param offset The offset
+	 */
+	public void setOffset(double offset) {
+		this.offset = offset;
+	}
+
+	@Override
+	protected void apply(double[] source, double[] destination, int count, int inputBands) {
+		RowKernels.getInstance().scaleAndOffset(source, 0, gain, offset, destination, 0, count * inputBands);
+	}
+
+	@Override
+	protected int getOutputBands(int inputBands) {
+		return inputBands;
+	}
+
+}
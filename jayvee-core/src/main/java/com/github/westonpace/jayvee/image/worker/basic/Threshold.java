@@ -0,0 +1,41 @@
+package com.github.westonpace.jayvee.image.worker.basic;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformer;
+
+/**
+ * Turns every value of an image into either 0 or 255.  Values at or above the threshold
+ * become 255 and everything else becomes 0.  The output is an 8 bit image with the same
+ * number of bands as the input.
+ */
+public class Threshold extends PointwiseTransformer {
+
+	private double threshold = 128;
+
+	/**
+	 * Sets the smallest value which becomes 255, 128 by default
+	 * @param threshold The threshold
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected void apply(double[] source, double[] destination, int count, int inputBands) {
+		int length = count * inputBands;
+		for(int i = 0; i < length; i++) {
+			destination[i] = source[i] >= threshold ? 255 : 0;
+		}
+	}
+
+	@Override
+	protected int getOutputBands(int inputBands) {
+		return inputBands;
+	}
+
+	@Override
+	protected SampleType getOutputSampleType(SampleType inputSampleType) {
+		return SampleType.UnsignedByte;
+	}
+
+}
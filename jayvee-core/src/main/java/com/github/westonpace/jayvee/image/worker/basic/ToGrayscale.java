@@ -1,7 +1,7 @@
 package com.github.westonpace.jayvee.image.worker.basic;
 
-import com.github.westonpace.jayvee.image.Image;
-import com.github.westonpace.jayvee.image.worker.ImageTransformer;
+import com.github.westonpace.jayvee.image.RowKernels;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformer;
 
 /**
  * Takes in an image with any number of bands and reduces it to
@@ -10,25 +10,17 @@ import com.github.westonpace.jayvee.image.worker.ImageTransformer;
  * 
  * For color images this has the effect of turning them into grayscale images.
  */
-public class ToGrayscale extends ImageTransformer {
+public class ToGrayscale extends PointwiseTransformer {
 
 	@Override
-	protected void transform(Image input, Image output) {
-		for(int y = 0; y < input.getHeight(); y++) {
-			for(int x = 0; x < input.getWidth(); x++) {
-				//For each pixel, compute the average by summing up the value in
-				//each band and dividing by the total number of bands
-				double sum = 0;
-				for(int b = 0; b < input.getNumBands(); b++) {
-					sum += input.get(x, y, b);
-				}
-				output.set(x, y, 0, sum/input.getNumBands());
-			}
-		}
+	protected void apply(double[] source, double[] destination, int count, int inputBands) {
+		//For each pixel, compute the average by summing up the value in
+		//each band and dividing by the total number of bands
+		RowKernels.getInstance().averageBands(source, 0, inputBands, destination, 0, count);
 	}
 
 	@Override
-	protected int getOutputBands(Image input) {
+	protected int getOutputBands(int inputBands) {
 		//Regardless of how many bands are passed in we always pass out 1 band
 		return 1;
 	}
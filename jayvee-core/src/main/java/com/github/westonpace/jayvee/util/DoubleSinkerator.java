@@ -0,0 +1,33 @@
+package com.github.westonpace.jayvee.util;
+
+/**
+ * A {@link Sinkerator Sinkerator} of doubles which can also be written to without boxing
+ * each value.  Writing a large number of values through {@link #putNext(Double)} creates
+ * a short-lived object for every value.  The primitive and bulk methods here should be
+ * preferred.
+ */
+public interface DoubleSinkerator extends Sinkerator<Double> {
+
+	/**
+	 * Writes in the next value and advances
+	 * @param value The value to set
+	 */
+	public void putNext(double value);
+
+	/**
+	 * Writes in the next length values and advances past them
+	 * @param source The array holding the values to set
+	 * @param offset The position in the array of the first value
+	 * @param length The number of values to write
+	 * @throws java.util.NoSuchElementException If there are fewer than length values left
+	 */
+	public void putNext(double[] source, int offset, int length);
+
+	/**
+	 * Skips the next count values, leaving them as they are
+	 * @param count The number of values to skip
+	 * @throws java.util.NoSuchElementException If there are fewer than count values left
+	 */
+	public void skip(int count);
+
+}
@@ -1,6 +1,7 @@
 package com.github.westonpace.jayvee.util;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 
 import com.github.westonpace.jayvee.image.Image;
 
@@ -16,27 +17,23 @@ public class J2SEUtils {
 			throw new InvalidParameterException("Don't know how to convert an image with " + image.getNumBands() + " to a BufferedImage");
 		}
 		BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), imageType);
+		//The raster of both image types takes the samples of a pixel in RGB (or gray) order
+		//so we can move one row at a time
+		WritableRaster raster = result.getRaster();
+		int width = image.getWidth();
+		int numBands = image.getNumBands();
+		double [] row = new double[width * numBands];
+		int [] samples = new int[width * numBands];
 		for(int y = 0; y < image.getHeight(); y++) {
-			for(int x = 0; x < image.getWidth(); x++) {
-				if(image.getNumBands() == 1) {
-					int pixel = (int)Math.round(image.get(x, y, 0));
-					if(pixel < 0 || pixel > 255) {
-						throw new InvalidParameterException("Illegal pixel value, must be between 0-255 when writing an image (" + x + "," + y + ") = " + pixel);
-					}
-					result.getRaster().setSample(x, y, 0, pixel);
-				} else {
-					int red = (int) Math.round(image.get(x, y, 0));
-					int green = (int) Math.round(image.get(x, y, 1));
-					int blue = (int) Math.round(image.get(x, y, 2));
-					if(red < 0 || green < 0 || blue < 0 || red > 255 || green > 255 || blue > 255) {
-						throw new InvalidParameterException("Illegal pixel value, must be between 0-255 when writing an image (" + x + "," + y + ") = (" + red + "," + green + "," + blue + ")");
-					}
-					int val = red;
-					val = green + (val << 8);
-					val = blue + (val << 8);
-					result.setRGB(x, y, val);
+			image.getRegion(0, y, width, 1, row, 0);
+			for(int i = 0; i < row.length; i++) {
+				int sample = (int) Math.round(row[i]);
+				if(sample < 0 || sample > 255) {
+					throw new InvalidParameterException("Illegal pixel value, must be between 0-255 when writing an image (" + (i / numBands) + "," + y + "," + (i % numBands) + ") = " + sample);
 				}
+				samples[i] = sample;
 			}
+			raster.setPixels(0, y, width, 1, samples);
 		}
 		return result;
 	}	
@@ -0,0 +1,141 @@
+package com.github.westonpace.jayvee.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Utilities for splitting up work on a single image across several threads.  The work is
+ * described as a range of integers (usually rows) and the range is split into strips
+ * which are run on a shared pool of daemon threads (one per processor).  The calling
+ * thread runs one of the strips itself and then waits for the rest.
+ * </p><p>
+ * Work started from one of the pool's own threads is run entirely on that thread.  This
+ * keeps nested parallel calls from waiting on strips that can never be scheduled.
+ * </p>
+ */
+public class Parallel {
+
+	/**
+	 * A piece of work which can be run on any sub-range of a larger range.  Different
+	 * strips will be run at the same time on different threads.
+	 */
+	public interface StripTask {
+
+		/**
+		 * Does the work for a strip of the range
+		 * @param start The first index of the strip
+		 * @param end One past the last index of the strip
+		 */
+		public void run(int start, int end);
+
+	}
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static final ThreadLocal<Boolean> inPool = new ThreadLocal<Boolean>();
+
+	private static final ExecutorService executorService = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					inPool.set(Boolean.TRUE);
+					runnable.run();
+				}
+			}, "jayvee-parallel-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	});
+
+	private Parallel() {
+		//Static utility methods only
+	}
+
+	/**
+	 * Returns the number of threads that parallel work is split across
+	 * @return The size of the shared thread pool
+	 */
+	public static int getParallelism() {
+		return THREADS;
+	}
+
+	/**
+	 * Runs a task over the range [start, end) split into strips of at least minStripSize
+	 * indices.  At most one strip per thread is created.  Returns once every strip has
+	 * finished.  If any strip throws then the exception is rethrown here (after the other
+	 * strips have finished).
+	 * @param start The first index of the range
+	 * @param end One past the last index of the range
+	 * @param minStripSize The smallest strip worth giving to another thread
+	 * @param task The work to do
+	 */
+	public static void forEachStrip(int start, int end, int minStripSize, StripTask task) {
+		int length = end - start;
+		if(length <= 0) {
+			return;
+		}
+		int strips = Math.min(THREADS, length / Math.max(minStripSize, 1));
+		if(strips <= 1 || inPool.get() != null) {
+			task.run(start, end);
+			return;
+		}
+		List<Future<?>> futures = new ArrayList<Future<?>>(strips - 1);
+		//The first strip is left for this thread
+		for(int strip = 1; strip < strips; strip++) {
+			final int stripStart = start + (int) ((long) length * strip / strips);
+			final int stripEnd = start + (int) ((long) length * (strip + 1) / strips);
+			final StripTask stripTask = task;
+			futures.add(executorService.submit(new Runnable() {
+				@Override
+				public void run() {
+					stripTask.run(stripStart, stripEnd);
+				}
+			}));
+		}
+		RuntimeException failure = null;
+		try {
+			task.run(start, start + length / strips);
+		} catch (RuntimeException ex) {
+			failure = ex;
+		}
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException ex) {
+				throw new RuntimeInterruptedException(ex);
+			} catch (ExecutionException ex) {
+				if(failure == null) {
+					failure = unwrap(ex);
+				}
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	private static RuntimeException unwrap(ExecutionException ex) {
+		Throwable cause = ex.getCause();
+		if(cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if(cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new RuntimeException(cause);
+	}
+
+}
@@ -34,10 +34,18 @@ class BuilderBuffer implements Source,Sink {
 		this.realBuffer = realBuffer;
 	}
 	
+	public Buffer<?> getRealBuffer() {
+		return realBuffer;
+	}
+	
 	public boolean hasRealBuffer() {
 		return realBuffer != null;
 	}
 	
+	public boolean isInput() {
+		return sourceField.isAnnotationPresent(InputBuffer.class);
+	}
+	
 	public Worker getWorker() {
 		return source;
 	}
@@ -0,0 +1,43 @@
+package com.github.westonpace.jayvee.workflow;
+
+/**
+ * <p>
+ * A worker which reads from one input, writes to one output, and can take over the work
+ * of the worker that reads its output.  When two fusible workers are connected directly
+ * the {@link SystemBuilder SystemBuilder} can replace the pair with the first worker
+ * alone, which then does the work of both in a single iteration (if fusion has been turned
+ * on with {@link SystemBuilder#setFusion(boolean) setFusion}).  This saves the buffer
+ * between the workers, the thread of the second worker, and usually the intermediate
+ * values passed between them.
+ * </p><p>
+ * Once fused, the second worker is never iterated and the first worker's output is
+ * connected to wherever the second worker's output went.
+ * </p>
+ */
+public interface FusibleWorker extends Worker {
+
+	/**
+	 * @return The input buffer field of this worker (as set by the builder)
+	 */
+	public Source<?> getFusibleInput();
+
+	/**
+	 * @return The output buffer field of this worker (as set by the builder)
+	 */
+	public Sink<?> getFusibleOutput();
+
+	/**
+	 * Checks if the worker which reads this worker's output can be fused into this one
+	 * @param next The worker reading this worker's output
+	 * @return true if {@link #fuse(FusibleWorker) fuse} can be called with the worker
+	 */
+	public boolean canFuse(FusibleWorker next);
+
+	/**
+	 * Takes over the work of the next worker.  From now on each iteration of this worker
+	 * must produce what the next worker would have produced.
+	 * @param next The worker reading this worker's output
+	 */
+	public void fuse(FusibleWorker next);
+
+}
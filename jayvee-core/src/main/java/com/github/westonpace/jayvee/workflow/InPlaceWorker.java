@@ -0,0 +1,30 @@
+package com.github.westonpace.jayvee.workflow;
+
+/**
+ * <p>
+ * A worker which can reuse the values it pops (for example, by writing its result into
+ * the image it read instead of into a new image) but only when nothing else can see those
+ * values.
+ * </p><p>
+ * The {@link SystemBuilder SystemBuilder} checks how the worker is connected when the
+ * system is built and tells the worker whether it owns what it pops.  It does so when
+ * every input of the worker is connected to the output of another worker that pushes each
+ * value once (workers marked {@link OnRequestOnly OnRequestOnly} may hand out the same
+ * value over and over so they don't count).
+ * </p><p>
+ * The builder can't tell whether a worker keeps using a value after pushing it, so
+ * reusing values should be something each worker is asked to do (for image transformers
+ * see {@code ImageTransformer.setInPlace}), only for workers fed by workers that never
+ * touch a value once it has been pushed.
+ * </p>
+ */
+public interface InPlaceWorker extends Worker {
+
+	/**
+	 * Tells the worker whether each value popped from its inputs is seen by it alone.
+	 * Workers should assume they do not own their inputs until told otherwise.
+	 * @param exclusive true if the worker may modify the values it pops
+	 */
+	public void setExclusiveInputs(boolean exclusive);
+
+}
@@ -1,12 +1,20 @@
 package com.github.westonpace.jayvee.workflow;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
 /**
  * Marks a worker as containing some kind of state (e.g. the opposite of stateless).
  * Ideally workers should be stateless as this allows us to parallelize them without
  * concern.  However, some workers (e.g. a tracker) must maintain state and those workers
  * should mark themselves Stateful with this annotation so that the system knows this
- * and will not parallelize them.
+ * and will not parallelize them (see {@link SystemBuilder#setReplicas(Worker, int)
+ * SystemBuilder.setReplicas}).
  */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
 public @interface Stateful {
 
 }
@@ -1,8 +1,16 @@
 package com.github.westonpace.jayvee.workflow;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.workflow.WorkerReplicas.ReorderingSink;
+import com.github.westonpace.jayvee.workflow.WorkerReplicas.Replica;
 
 
 /**
@@ -28,7 +36,10 @@ public class SystemBuilder {
 
 	private List<Worker> workers = new ArrayList<Worker>();
 	private List<BuilderBuffer> builderBuffers = new ArrayList<BuilderBuffer>();
+	private Map<Worker, Integer> replicaCounts = new LinkedHashMap<Worker, Integer>();
 	private WorkerGraph workerGraph = new WorkerGraph();
+	private List<Worker> fusedWorkers = new ArrayList<Worker>();
+	private boolean fusion = false;
 	private boolean finished = false;
 	
 	private <T extends Worker> T instantiateWorker(Class<T> workerClass) {
@@ -62,7 +73,9 @@ public class SystemBuilder {
 	 * reference to the created worker for later use.  Obviously that won't be very
 	 * useful if JayVee creates 5 more instances of your worker under the hood.
 	 * 
-	 * TODO: Acutally implement that clever recorder thing we say we implement
+	 * TODO: Acutally implement that clever recorder thing we say we implement.  For now
+	 * replicas (see {@link #setReplicas(Worker, int) setReplicas}) are made by copying the
+	 * fields of the configured worker.
 	 * 
 	 * @param workerClass The class of the worker to instantiate
 	 * @return An instantiated worker for you to configure
@@ -171,19 +184,232 @@ public class SystemBuilder {
 		
 	}
 	
+	/**
+	 * <p>
+	 * Runs several copies of a worker at once, each on its own thread.  The copies share
+	 * the worker's input and output buffers.  Every copy is a new instance of the worker's
+	 * class whose fields are copied (shallowly) from the configured worker when the system
+	 * is built, so configure the worker as usual.
+	 * </p><p>
+	 * The output of the copies is reordered so that it comes out in the same order as the
+	 * input was read, as if there was a single worker.  Only one copy at a time reads from
+	 * the inputs, from its first pop until it has popped from every input, so a replicated
+	 * worker should pop all of the inputs it needs at the start of an iteration.  The rest
+	 * of the iteration runs alongside the other copies.
+	 * </p><p>
+	 * Workers marked {@link Stateful Stateful} or {@link OnRequestOnly OnRequestOnly} cannot
+	 * be replicated.
+	 * </p>
+	 * @param worker A worker built by this builder
+	 * @param replicas The number of copies to run (including the worker itself), 1 runs
+	 *        the worker normally
+	 */
+	public void setReplicas(Worker worker, int replicas) {
+		if(finished) {
+			throw new RuntimeException("This builder has already finished.  See the javadoc for SystemBuilder.build for more details");
+		}
+		if(!workers.contains(worker)) {
+			throw new InvalidParameterException("The worker does not appear to have been built by this builder");
+		}
+		if(replicas < 1) {
+			throw new InvalidParameterException("The number of replicas must be at least 1. Actual: " + replicas);
+		}
+		if(replicas > 1 && worker.getClass().isAnnotationPresent(Stateful.class)) {
+			throw new InvalidParameterException(worker.getClass().getSimpleName() + " is marked Stateful and cannot be replicated");
+		}
+		if(replicas > 1 && worker.getClass().isAnnotationPresent(OnRequestOnly.class)) {
+			throw new InvalidParameterException(worker.getClass().getSimpleName() + " is marked OnRequestOnly and cannot be replicated");
+		}
+		replicaCounts.put(worker, replicas);
+	}
+	
+	/**
+	 * Sets whether chains of directly connected {@link FusibleWorker fusible} workers are
+	 * fused into a single worker when the system is built.  This is off by default since
+	 * it changes which workers actually run (the fused workers are never iterated).
+	 * @param fusion true to fuse chains of fusible workers
+	 */
+	public void setFusion(boolean fusion) {
+		this.fusion = fusion;
+	}
+	
+	private boolean canFuse(Worker worker) {
+		if(!(worker instanceof FusibleWorker) || worker.getClass().isAnnotationPresent(OnRequestOnly.class)) {
+			return false;
+		}
+		Integer replicas = replicaCounts.get(worker);
+		return replicas == null || replicas == 1;
+	}
+	
+	/*
+	 * Finds the fusible worker which reads the output of the given worker, if there is one
+	 * and the two can be fused
+	 */
+	private FusibleWorker findFusibleSuccessor(FusibleWorker worker) {
+		if(!(worker.getFusibleOutput() instanceof BuilderBuffer)) {
+			return null;
+		}
+		Buffer<?> output = ((BuilderBuffer) worker.getFusibleOutput()).getRealBuffer();
+		if(output == null) {
+			return null;
+		}
+		for(Worker other : workers) {
+			if(other == worker || !canFuse(other)) {
+				continue;
+			}
+			FusibleWorker next = (FusibleWorker) other;
+			if(next.getFusibleInput() instanceof BuilderBuffer && ((BuilderBuffer) next.getFusibleInput()).getRealBuffer() == output
+					&& next.getFusibleOutput() instanceof BuilderBuffer && worker.canFuse(next)) {
+				return next;
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Folds chains of fusible workers into the first worker of each chain.  Must be called
+	 * before the builder buffers are built.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void fuseWorkers() {
+		boolean fused = true;
+		while(fused) {
+			fused = false;
+			for(Worker worker : workers) {
+				if(!canFuse(worker)) {
+					continue;
+				}
+				FusibleWorker first = (FusibleWorker) worker;
+				FusibleWorker next = findFusibleSuccessor(first);
+				if(next != null) {
+					first.fuse(next);
+					((BuilderBuffer) first.getFusibleOutput()).setRealBuffer((Buffer) ((BuilderBuffer) next.getFusibleOutput()).getRealBuffer());
+					workerGraph.fuse(first, next);
+					workers.remove(next);
+					fusedWorkers.add(next);
+					fused = true;
+					break;
+				}
+			}
+		}
+	}
+	
+	/*
+	 * A worker owns the values it pops if every connected input is fed by another worker
+	 * of the system which pushes each value only once
+	 */
+	private boolean hasExclusiveInputs(Worker worker) {
+		boolean connected = false;
+		for(BuilderBuffer input : builderBuffers) {
+			if(input.getWorker() != worker || !input.isInput() || !input.hasRealBuffer()) {
+				continue;
+			}
+			Worker producer = null;
+			for(BuilderBuffer output : builderBuffers) {
+				if(!output.isInput() && output.getRealBuffer() == input.getRealBuffer() && workers.contains(output.getWorker())) {
+					producer = output.getWorker();
+				}
+			}
+			if(producer == null || producer.getClass().isAnnotationPresent(OnRequestOnly.class)) {
+				return false;
+			}
+			connected = true;
+		}
+		return connected;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T extends Worker> T copyWorker(T worker) {
+		T copy = (T) instantiateWorker(worker.getClass());
+		for(Class<?> type = worker.getClass(); type != null; type = type.getSuperclass()) {
+			for(Field field : type.getDeclaredFields()) {
+				if(Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				try {
+					field.setAccessible(true);
+					field.set(copy, field.get(worker));
+				} catch (IllegalAccessException ex) {
+					throw new RuntimeException("Could not copy the field " + field.getName() + " of " + type.getSimpleName(), ex);
+				}
+			}
+		}
+		return copy;
+	}
+	
+	/*
+	 * Creates the copies of a worker and puts the replica wrappers around their buffers.
+	 * Must be called after the builder buffers have been built.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private List<Replica> replicate(Worker worker, int count) {
+		WorkerReplicas replicas = new WorkerReplicas(count * 2);
+		List<Worker> copies = new ArrayList<Worker>();
+		copies.add(worker);
+		for(int i = 1; i < count; i++) {
+			copies.add(copyWorker(worker));
+		}
+		List<Field> bufferFields = findBufferFields(worker);
+		Map<Field, ReorderingSink> sinks = new LinkedHashMap<Field, ReorderingSink>();
+		try {
+			for(Field field : bufferFields) {
+				Object buffer = field.get(worker);
+				if(buffer != null && field.isAnnotationPresent(OutputBuffer.class)) {
+					sinks.put(field, replicas.addSink((Sink) buffer));
+				}
+			}
+			for(Worker copy : copies) {
+				Replica replica = replicas.addReplica(copy);
+				for(Field field : bufferFields) {
+					Object buffer = field.get(copy);
+					if(buffer == null) {
+						continue;
+					}
+					if(field.isAnnotationPresent(InputBuffer.class)) {
+						field.set(copy, replicas.new ReplicaSource(replica, (Source) buffer));
+					} else {
+						field.set(copy, replicas.new ReplicaSink(replica, sinks.get(field)));
+					}
+				}
+			}
+		} catch (IllegalAccessException ex) {
+			throw new RuntimeException("Buffer accessors should be public", ex);
+		}
+		workerGraph.replicate(worker, replicas.getReplicas());
+		return replicas.getReplicas();
+	}
+	
 	/**
 	 * Builds the actual system being configured.  This should be the last method called
 	 * on the SystemBuilder and once it is called this SystemBuilder is unusable.  The
 	 * returned system will contain all the workers instantiated by this builder connected
-	 * as configured by calls to connect to this builder.
+	 * as configured by calls to connect to this builder.  Chains of
+	 * {@link FusibleWorker fusible} workers are fused first if fusion has been turned on
+	 * with {@link #setFusion(boolean) setFusion}.
 	 * @return A workflow system which operates on the workers configured by this builder
 	 */
 	public WorkflowSystem build() {
 		finished = true;
+		if(fusion) {
+			fuseWorkers();
+		}
 		for(BuilderBuffer builderBuffer : builderBuffers) {
 			builderBuffer.build();
 		}
 		for(Worker worker : workers) {
+			if(worker instanceof InPlaceWorker) {
+				((InPlaceWorker) worker).setExclusiveInputs(hasExclusiveInputs(worker));
+			}
+		}
+		List<Worker> toInit = new ArrayList<Worker>(workers);
+		toInit.addAll(fusedWorkers);
+		for(Entry<Worker, Integer> replicaCount : replicaCounts.entrySet()) {
+			if(replicaCount.getValue() > 1) {
+				toInit.remove(replicaCount.getKey());
+				toInit.addAll(replicate(replicaCount.getKey(), replicaCount.getValue()));
+			}
+		}
+		for(Worker worker : toInit) {
 			worker.init();
 		}
 		return new WorkflowSystem(workerGraph);
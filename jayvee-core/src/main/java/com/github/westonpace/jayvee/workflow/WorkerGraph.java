@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -16,9 +15,11 @@ class WorkerGraph {
 	
 	private static class WorkerGraphEdge {
 		
+		private WorkerGraphNode destination;
 		private Buffer<?> edge;
 
 		public WorkerGraphEdge(WorkerGraphNode destination, Buffer<?> edge) {
+			this.destination = destination;
 			this.edge = edge;
 		}
 
@@ -27,6 +28,9 @@ class WorkerGraph {
 	private static class WorkerGraphNode {
 	
 		private List<WorkerGraphEdge> edges = new ArrayList<WorkerGraphEdge>();
+		//Replicated workers have one runnable per replica
+		private List<WorkerRunnable> runnables = new ArrayList<WorkerRunnable>();
+		private int endedRunnables = 0;
 		
 		public void addEdge(WorkerGraphNode destination, Buffer<?> edge) {
 			this.edges.add(new WorkerGraphEdge(destination, edge));
@@ -36,28 +40,78 @@ class WorkerGraph {
 			return edges.isEmpty();
 		}
 		
+		public boolean isFinished() {
+			for(WorkerRunnable runnable : runnables) {
+				if(!runnable.isFinished()) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
 	}
 	
+	private Map<Worker, WorkerGraphNode> workerMap = new HashMap<Worker, WorkerGraphNode>();
 	private Map<WorkerRunnable, WorkerGraphNode> graph = new HashMap<WorkerRunnable, WorkerGraphNode>();
-	private Map<Worker, WorkerRunnable> workerMap = new HashMap<Worker, WorkerRunnable>();
+	
+	private WorkerRunnable createRunnable(Worker worker) {
+		if(worker.getClass().isAnnotationPresent(OnRequestOnly.class)) {
+			return new WorklessWorkerRunnable();
+		}
+		return new StandardWorkerRunnable(worker);
+	}
 	
 	public void addNode(Worker worker) {
 		logger.debug("Adding node for: " + worker.getClass().getSimpleName());
-		WorkerRunnable runnable = null;
-		if(worker.getClass().isAnnotationPresent(OnRequestOnly.class)) {
-			runnable = new WorklessWorkerRunnable();
-		} else {
-			runnable = new StandardWorkerRunnable(worker);
+		WorkerGraphNode node = new WorkerGraphNode();
+		WorkerRunnable runnable = createRunnable(worker);
+		node.runnables.add(runnable);
+		workerMap.put(worker, node);
+		graph.put(runnable, node);
+	}
+	
+	/**
+	 * Replaces the runnable of a worker with one runnable per replica.  The replicas share
+	 * the worker's edges and the edges are only poisoned once every replica has ended.
+	 */
+	public void replicate(Worker worker, List<? extends Worker> replicas) {
+		logger.debug("Replicating " + worker.getClass().getSimpleName() + " " + replicas.size() + " times");
+		WorkerGraphNode node = workerMap.get(worker);
+		for(WorkerRunnable runnable : node.runnables) {
+			graph.remove(runnable);
+		}
+		node.runnables.clear();
+		for(Worker replica : replicas) {
+			WorkerRunnable runnable = createRunnable(replica);
+			node.runnables.add(runnable);
+			graph.put(runnable, node);
 		}
-		workerMap.put(worker, runnable);
-		graph.put(runnable, new WorkerGraphNode());
+	}
+	
+	/**
+	 * Removes the second worker from the graph.  The first worker takes over its outgoing
+	 * edges and the edge between the two is dropped.
+	 */
+	public void fuse(Worker first, Worker second) {
+		logger.debug("Fusing " + second.getClass().getSimpleName() + " into " + first.getClass().getSimpleName());
+		WorkerGraphNode firstNode = workerMap.get(first);
+		WorkerGraphNode secondNode = workerMap.remove(second);
+		for(WorkerRunnable runnable : secondNode.runnables) {
+			graph.remove(runnable);
+		}
+		List<WorkerGraphEdge> edges = new ArrayList<WorkerGraphEdge>();
+		for(WorkerGraphEdge edge : firstNode.edges) {
+			if(edge.destination != secondNode) {
+				edges.add(edge);
+			}
+		}
+		edges.addAll(secondNode.edges);
+		firstNode.edges = edges;
 	}
 	
 	public void addEdge(Worker source, Buffer<?> edge, Worker destination) {
 		logger.debug("Adding edge for " + source.getClass().getSimpleName() + " and " + destination.getClass().getSimpleName());
-		WorkerRunnable sourceRunnable = workerMap.get(source);
-		WorkerRunnable destinationRunnable = workerMap.get(destination);
-		graph.get(sourceRunnable).addEdge(graph.get(destinationRunnable), edge);
+		workerMap.get(source).addEdge(workerMap.get(destination), edge);
 	}
 	
 	public Set<WorkerRunnable> getWorkers() {
@@ -66,6 +120,13 @@ class WorkerGraph {
 	
 	public void poisonEdges(WorkerRunnable worker) {
 		WorkerGraphNode node = graph.get(worker);
+		synchronized(node) {
+			node.endedRunnables++;
+			if(node.endedRunnables < node.runnables.size()) {
+				//Other replicas may still push into the edges
+				return;
+			}
+		}
 		for(WorkerGraphEdge edge : node.edges) {
 			edge.edge.end();
 		}
@@ -73,8 +134,8 @@ class WorkerGraph {
 	
 	//The graph is finished if all leaf nodes are finished
 	public boolean isEnded() {
-		for(Entry<WorkerRunnable, WorkerGraphNode> nodeEntry : graph.entrySet()) {
-			if(nodeEntry.getValue().isLeaf() && !nodeEntry.getKey().isFinished()) {
+		for(WorkerGraphNode node : workerMap.values()) {
+			if(node.isLeaf() && !node.isFinished()) {
 				return false;
 			}
 		}
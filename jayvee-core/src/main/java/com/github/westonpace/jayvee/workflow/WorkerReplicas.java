@@ -0,0 +1,256 @@
+package com.github.westonpace.jayvee.workflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.westonpace.jayvee.util.RuntimeInterruptedException;
+
+/**
+ * <p>
+ * Coordinates several copies of a stateless worker which share the same input and output
+ * buffers so that, taken together, they behave like a single worker that happens to be
+ * running several iterations at once.
+ * </p><p>
+ * Every iteration which reads or writes anything is given a sequence number when it first
+ * pops (or, if it reads nothing, when it first pushes).  Only one replica at a time may
+ * read from the inputs and it keeps that right from its first pop until it has popped
+ * from every input (or the iteration ends) so that the values a replica reads from
+ * several inputs always belong together and sequence numbers follow the order the inputs
+ * were read in.  The work done after the last pop runs alongside the other replicas.
+ * Outputs are passed through a {@link ReorderingSink ReorderingSink} which holds back the
+ * output of an iteration until every earlier iteration has finished, so the outputs come
+ * out in the same order as the inputs went in.
+ * </p><p>
+ * To keep the held back outputs from growing without bound a replica may not start a new
+ * iteration while too many iterations are unfinished.
+ * </p>
+ */
+class WorkerReplicas {
+
+	/**
+	 * One copy of the worker.  Wraps the worker so that the end of each iteration can be
+	 * reported to the replicas.
+	 */
+	class Replica implements Worker {
+
+		private final Worker worker;
+		private long sequence = -1;
+		private int numInputs = 0;
+		private final Set<ReplicaSource<?>> popped = new HashSet<ReplicaSource<?>>();
+
+		Replica(Worker worker) {
+			this.worker = worker;
+		}
+
+		Worker getWorker() {
+			return worker;
+		}
+
+		@Override
+		public void iterate() {
+			try {
+				worker.iterate();
+			} finally {
+				finishIteration(this);
+			}
+		}
+
+		@Override
+		public void init() {
+			worker.init();
+		}
+
+		@Override
+		public boolean isEnded() {
+			return worker.isEnded();
+		}
+
+		@Override
+		public String toString() {
+			return worker.getClass().getSimpleName();
+		}
+
+	}
+
+	/**
+	 * An input of one replica
+	 */
+	class ReplicaSource<T> implements Source<T> {
+
+		private final Replica replica;
+		private final Source<T> source;
+
+		ReplicaSource(Replica replica, Source<T> source) {
+			this.replica = replica;
+			this.source = source;
+			replica.numInputs++;
+		}
+
+		@Override
+		public T pop() {
+			acquireInputs(replica);
+			try {
+				return source.pop();
+			} finally {
+				replica.popped.add(this);
+				if(replica.popped.size() == replica.numInputs) {
+					releaseInputs(replica);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * An output of one replica, tags every value with the replica's current sequence number
+	 */
+	class ReplicaSink<T> implements Sink<T> {
+
+		private final Replica replica;
+		private final ReorderingSink<T> sink;
+
+		ReplicaSink(Replica replica, ReorderingSink<T> sink) {
+			this.replica = replica;
+			this.sink = sink;
+		}
+
+		@Override
+		public void push(T value) {
+			if(replica.sequence < 0) {
+				//An iteration which writes without reading anything
+				acquireInputs(replica);
+				releaseInputs(replica);
+			}
+			sink.push(replica.sequence, value);
+		}
+
+		@Override
+		public void end() {
+			sink.end();
+		}
+
+	}
+
+	/**
+	 * Puts the values pushed by every replica into one output buffer in sequence order
+	 */
+	static class ReorderingSink<T> {
+
+		private final Sink<T> sink;
+		private long head = 0;
+		private final Map<Long, List<T>> pending = new HashMap<Long, List<T>>();
+		private final Set<Long> finished = new HashSet<Long>();
+
+		ReorderingSink(Sink<T> sink) {
+			this.sink = sink;
+		}
+
+		synchronized void push(long sequence, T value) {
+			if(sequence == head) {
+				sink.push(value);
+				return;
+			}
+			List<T> values = pending.get(sequence);
+			if(values == null) {
+				values = new ArrayList<T>();
+				pending.put(sequence, values);
+			}
+			values.add(value);
+		}
+
+		synchronized void finish(long sequence) {
+			finished.add(sequence);
+			while(finished.remove(head)) {
+				head++;
+				List<T> values = pending.remove(head);
+				if(values != null) {
+					for(T value : values) {
+						sink.push(value);
+					}
+				}
+			}
+		}
+
+		void end() {
+			sink.end();
+		}
+
+	}
+
+	private final int maxInFlight;
+	private final List<Replica> replicas = new ArrayList<Replica>();
+	private final List<ReorderingSink<?>> sinks = new ArrayList<ReorderingSink<?>>();
+	private Replica inputOwner;
+	private long nextSequence = 0;
+	private long head = 0;
+	private final Set<Long> finished = new HashSet<Long>();
+
+	/**
+	 * @param maxInFlight The most iterations which may be unfinished at once
+	 */
+	WorkerReplicas(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	Replica addReplica(Worker worker) {
+		Replica replica = new Replica(worker);
+		replicas.add(replica);
+		return replica;
+	}
+
+	List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	<T> ReorderingSink<T> addSink(Sink<T> sink) {
+		ReorderingSink<T> result = new ReorderingSink<T>(sink);
+		sinks.add(result);
+		return result;
+	}
+
+	private synchronized void acquireInputs(Replica replica) {
+		try {
+			while((inputOwner != null && inputOwner != replica) || (replica.sequence < 0 && nextSequence - head >= maxInFlight)) {
+				wait();
+			}
+		} catch (InterruptedException ex) {
+			throw new RuntimeInterruptedException(ex);
+		}
+		if(replica.sequence < 0) {
+			replica.sequence = nextSequence++;
+		}
+		inputOwner = replica;
+	}
+
+	private synchronized void releaseInputs(Replica replica) {
+		if(inputOwner == replica) {
+			inputOwner = null;
+			notifyAll();
+		}
+	}
+
+	private void finishIteration(Replica replica) {
+		releaseInputs(replica);
+		replica.popped.clear();
+		long sequence = replica.sequence;
+		if(sequence < 0) {
+			return;
+		}
+		replica.sequence = -1;
+		for(ReorderingSink<?> sink : sinks) {
+			sink.finish(sequence);
+		}
+		synchronized(this) {
+			finished.add(sequence);
+			while(finished.remove(head)) {
+				head++;
+			}
+			notifyAll();
+		}
+	}
+
+}
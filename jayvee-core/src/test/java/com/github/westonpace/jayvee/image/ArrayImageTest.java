@@ -0,0 +1,218 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.Layout;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class ArrayImageTest extends TestBase {
+
+	/**
+	 * Makes sure the factory creates the right kind of image for each sample type
+	 */
+	@Test
+	public void testCreate() {
+		for(SampleType sampleType : SampleType.values()) {
+			ArrayImage image = ArrayImage.create(3, 2, 4, sampleType);
+			Assert.assertEquals(sampleType, image.getSampleType());
+			Assert.assertEquals(3, image.getWidth());
+			Assert.assertEquals(2, image.getHeight());
+			Assert.assertEquals(4, image.getNumBands());
+			for(double value : image.getPixels()) {
+				Assert.assertEquals(0.0, value, 0.0);
+			}
+		}
+		Assert.assertTrue(ArrayImage.create(1, 1, 1, SampleType.UnsignedByte) instanceof ByteImage);
+		Assert.assertTrue(ArrayImage.create(1, 1, 1, SampleType.Float64) instanceof StandardImage);
+	}
+
+	/**
+	 * Byte images should be unsigned and should round and clamp values written to them
+	 */
+	@Test
+	public void testByteImage() {
+		byte [] data = new byte [] {0, 127, (byte) 128, (byte) 255};
+		ByteImage image = new ByteImage(2, 2, 1, data);
+		Assert.assertEquals(0, image.get(0, 0, 0), 0.0);
+		Assert.assertEquals(127, image.get(1, 0, 0), 0.0);
+		Assert.assertEquals(128, image.get(0, 1, 0), 0.0);
+		Assert.assertEquals(255, image.get(1, 1, 0), 0.0);
+
+		image.set(0, 0, 0, 3.6);
+		Assert.assertEquals(4, image.get(0, 0, 0), 0.0);
+		image.set(0, 0, 0, -7);
+		Assert.assertEquals(0, image.get(0, 0, 0), 0.0);
+		image.set(0, 0, 0, 300);
+		Assert.assertEquals(255, image.get(0, 0, 0), 0.0);
+		image.set(0, 0, 0, Double.NaN);
+		Assert.assertEquals(0, image.get(0, 0, 0), 0.0);
+		Assert.assertSame(data, image.getData());
+	}
+
+	/**
+	 * Short images should be unsigned and should round and clamp values written to them
+	 */
+	@Test
+	public void testShortImage() {
+		ShortImage image = new ShortImage(2, 1, 1, new short [] {(short) 40000, 12});
+		Assert.assertEquals(40000, image.get(0, 0, 0), 0.0);
+		Assert.assertEquals(12, image.get(1, 0, 0), 0.0);
+		image.set(1, 0, 0, 70000);
+		Assert.assertEquals(65535, image.get(1, 0, 0), 0.0);
+		image.set(1, 0, 0, -1);
+		Assert.assertEquals(0, image.get(1, 0, 0), 0.0);
+	}
+
+	/**
+	 * Int images should round and clamp, float images should keep fractions
+	 */
+	@Test
+	public void testIntAndFloatImages() {
+		IntImage intImage = new IntImage(1, 1, 2);
+		intImage.set(0, 0, 0, -2.6);
+		intImage.set(0, 0, 1, 1e20);
+		Assert.assertEquals(-3, intImage.get(0, 0, 0), 0.0);
+		Assert.assertEquals(Integer.MAX_VALUE, intImage.get(0, 0, 1), 0.0);
+
+		FloatImage floatImage = new FloatImage(1, 1, 1);
+		floatImage.set(0, 0, 0, 0.25);
+		Assert.assertEquals(0.25, floatImage.get(0, 0, 0), 0.0);
+	}
+
+	/**
+	 * Every array image shares the same band-interleaved, row-major layout
+	 */
+	@Test
+	public void testLayout() {
+		ByteImage image = new ByteImage(2, 2, 2, new byte [] {1, 1, 2, 2, 3, 3, 4, 4});
+		double [] expected = new double[] { 1, 1, 3, 3, 2, 2, 4, 4 };
+		int index = 0;
+		for (double value : image.getPixels(Image.PixelOrder.ColumnMajor)) {
+			Assert.assertEquals(expected[index], value, 0.0);
+			index++;
+		}
+		Assert.assertEquals(3, image.get(0, 1, 1), 0.0);
+	}
+
+	/**
+	 * A planar image keeps each band in its own plane
+	 */
+	@Test
+	public void testPlanarLayout() {
+		ShortImage image = new ShortImage(2, 2, 2, Layout.Planar, new short [] {1, 2, 3, 4, 10, 20, 30, 40});
+		Assert.assertEquals(Layout.Planar, image.getLayout());
+		Assert.assertEquals(2, image.get(1, 0, 0), 0.0);
+		Assert.assertEquals(30, image.get(0, 1, 1), 0.0);
+		//Iteration order is independent of the layout
+		double [] expected = new double [] {1, 10, 2, 20, 3, 30, 4, 40};
+		int index = 0;
+		for (double value : image.getPixels()) {
+			Assert.assertEquals(expected[index], value, 0.0);
+			index++;
+		}
+	}
+
+	/**
+	 * Converts between layouts (and sample types) and makes sure nothing is lost
+	 */
+	@Test
+	public void testLayoutConversion() {
+		ByteImage interleaved = new ByteImage(3, 2, 3);
+		int value = 0;
+		for(int y = 0; y < 2; y++) {
+			for(int x = 0; x < 3; x++) {
+				for(int b = 0; b < 3; b++) {
+					interleaved.set(x, y, b, value++);
+				}
+			}
+		}
+		ArrayImage planar = interleaved.toLayout(Layout.Planar);
+		Assert.assertTrue(planar instanceof ByteImage);
+		Assert.assertEquals(Layout.Planar, planar.getLayout());
+		Assert.assertSame(planar, planar.toLayout(Layout.Planar));
+		assertEquals(interleaved, planar, 0.0);
+		//The first plane should hold the first band of every pixel
+		Assert.assertArrayEquals(new byte [] {0, 3, 6, 9, 12, 15}, Arrays.copyOf(((ByteImage) planar).getData(), 6));
+
+		StandardImage doubles = new StandardImage(3, 2, 3, Layout.Planar);
+		planar.copyTo(doubles);
+		assertEquals(interleaved, doubles, 0.0);
+		assertEquals(interleaved, doubles.toLayout(Layout.Interleaved), 0.0);
+	}
+
+	/**
+	 * Transposes images bigger than one block (with partial blocks on the edges)
+	 */
+	@Test
+	public void testTranspose() {
+		for(Layout layout : Layout.values()) {
+			IntImage image = new IntImage(70, 45, 2, layout);
+			for(int y = 0; y < 45; y++) {
+				for(int x = 0; x < 70; x++) {
+					image.set(x, y, 0, x + y * 100);
+					image.set(x, y, 1, -(x + y * 100));
+				}
+			}
+			ArrayImage transposed = image.transpose();
+			Assert.assertTrue(transposed instanceof IntImage);
+			Assert.assertEquals(layout, transposed.getLayout());
+			Assert.assertEquals(45, transposed.getWidth());
+			Assert.assertEquals(70, transposed.getHeight());
+			for(int y = 0; y < 70; y++) {
+				for(int x = 0; x < 45; x++) {
+					Assert.assertEquals(y + x * 100, transposed.get(x, y, 0), 0.0);
+					Assert.assertEquals(-(y + x * 100), transposed.get(x, y, 1), 0.0);
+				}
+			}
+			//Transposing into an image of a different type converts the values
+			StandardImage region = new StandardImage(3, 4, 1);
+			image.subImage(10, 20, 4, 3).subBands(1, 1).transposeInto(region);
+			Assert.assertEquals(-(12 + 21 * 100), region.get(1, 2, 0), 0.0);
+		}
+	}
+
+	/**
+	 * Filling a view should only touch the values of the view
+	 */
+	@Test
+	public void testFill() {
+		for(SampleType sampleType : SampleType.values()) {
+			ArrayImage image = ArrayImage.create(4, 3, 2, sampleType, Layout.Planar);
+			image.fill(7);
+			image.subImage(1, 1, 2, 2).subBands(1, 1).fill(9);
+			double sum = 0;
+			for(double value : image.getPixels()) {
+				sum += value;
+			}
+			Assert.assertEquals(7 * 20 + 9 * 4, sum, 0.0);
+			Assert.assertEquals(9, image.get(2, 2, 1), 0.0);
+			Assert.assertEquals(7, image.get(2, 2, 0), 0.0);
+		}
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testTransposeWrongSize() {
+		new ByteImage(3, 2, 1).transposeInto(new ByteImage(3, 2, 1));
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testCopyToWrongSize() {
+		new ByteImage(2, 2, 1).copyTo(new ByteImage(2, 3, 1));
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testWrongLength() {
+		new ByteImage(2, 2, 1, new byte[3]);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testZeroBands() {
+		new FloatImage(2, 2, 0);
+	}
+
+}
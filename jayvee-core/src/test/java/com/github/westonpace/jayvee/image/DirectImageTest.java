@@ -0,0 +1,165 @@
+package com.github.westonpace.jayvee.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class DirectImageTest extends TestBase {
+
+	/**
+	 * Writes a few values into a direct image of every sample type and reads them back
+	 */
+	@Test
+	public void testReadWrite() {
+		for(SampleType sampleType : SampleType.values()) {
+			DirectImage image = new DirectImage(3, 2, 2, sampleType);
+			Assert.assertEquals(sampleType, image.getSampleType());
+			for(double value : image.getPixels()) {
+				Assert.assertEquals(0.0, value, 0.0);
+			}
+			image.set(2, 1, 1, 200);
+			image.set(0, 1, 0, 7);
+			Assert.assertEquals(200, image.get(2, 1, 1), 0.0);
+			Assert.assertEquals(7, image.get(0, 1, 0), 0.0);
+			Assert.assertEquals(0, image.get(2, 1, 0), 0.0);
+			image.close();
+		}
+		DirectImage byteImage = new DirectImage(1, 1, 1, SampleType.UnsignedByte);
+		byteImage.set(0, 0, 0, 400);
+		Assert.assertEquals(255, byteImage.get(0, 0, 0), 0.0);
+	}
+
+	/**
+	 * The bulk paths (whole regions, band rows, fills and copies) should convert values
+	 * exactly as single values are converted
+	 */
+	@Test
+	public void testBulkAccess() {
+		int width = 5000;
+		double [] values = new double[width * 2 * 3];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = (i * 7.3) % 300 - 10;
+		}
+		for(SampleType sampleType : SampleType.values()) {
+			DirectImage bulk = new DirectImage(width, 2, 3, sampleType);
+			DirectImage single = new DirectImage(width, 2, 3, sampleType);
+			bulk.setRegion(0, 0, width, 2, values, 0);
+			int index = 0;
+			for(int y = 0; y < 2; y++) {
+				for(int x = 0; x < width; x++) {
+					for(int b = 0; b < 3; b++) {
+						single.set(x, y, b, values[index++]);
+					}
+				}
+			}
+			assertEquals(single, bulk, 0.0);
+
+			double [] row = new double[width];
+			bulk.getRow(1, 2, row, 0);
+			for(int x = 0; x < width; x++) {
+				Assert.assertEquals(single.get(x, 1, 2), row[x], 0.0);
+			}
+			bulk.setRow(0, 1, row, 0);
+			Assert.assertEquals(single.get(9, 1, 2), bulk.get(9, 0, 1), 0.0);
+
+			bulk.subBands(1, 1).fill(3.6);
+			Assert.assertEquals(sampleType.isIntegral() ? 4 : 3.6, bulk.get(7, 1, 1), 0.00001);
+			Assert.assertEquals(single.get(7, 1, 0), bulk.get(7, 1, 0), 0.0);
+
+			StandardImage standard = new StandardImage(width, 2, 3);
+			single.copyTo(standard);
+			assertEquals(single, standard, 0.0);
+			DirectImage copy = new DirectImage(width, 2, 3, sampleType);
+			single.copyTo(copy);
+			assertEquals(single, copy, 0.0);
+		}
+	}
+
+	/**
+	 * An image created on top of an existing buffer should see the buffer's values
+	 */
+	@Test
+	public void testWrapBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(8).order(ByteOrder.nativeOrder());
+		buffer.putShort(0, (short) 1).putShort(2, (short) 2).putShort(4, (short) 3).putShort(6, (short) 60000);
+		DirectImage image = new DirectImage(2, 2, 1, SampleType.UnsignedShort, buffer);
+		Assert.assertEquals(1, image.get(0, 0, 0), 0.0);
+		Assert.assertEquals(3, image.get(0, 1, 0), 0.0);
+		Assert.assertEquals(60000, image.get(1, 1, 0), 0.0);
+		image.set(1, 0, 0, 9);
+		Assert.assertEquals(9, buffer.getShort(2));
+		//Closing a borrowed buffer should leave the buffer alone
+		image.close();
+		Assert.assertEquals(9, buffer.getShort(2));
+	}
+
+	/**
+	 * The raw values should be written out to a channel unchanged
+	 */
+	@Test
+	public void testWriteTo() throws IOException {
+		DirectImage image = new DirectImage(2, 2, 1, SampleType.UnsignedByte);
+		image.set(0, 0, 0, 1);
+		image.set(1, 0, 0, 2);
+		image.set(0, 1, 0, 3);
+		image.set(1, 1, 0, 4);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		image.writeTo(Channels.newChannel(output));
+		Assert.assertArrayEquals(new byte [] {1, 2, 3, 4}, output.toByteArray());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testAccessAfterClose() {
+		DirectImage image = new DirectImage(2, 2, 1, SampleType.Float32);
+		image.close();
+		Assert.assertTrue(image.isClosed());
+		image.get(0, 0, 0);
+	}
+
+	/**
+	 * Every way of reaching a closed image should fail cleanly, while a buffer handed out
+	 * before closing stays valid
+	 */
+	@Test
+	public void testClosedImage() throws IOException {
+		DirectImage image = new DirectImage(2, 2, 1, SampleType.UnsignedByte);
+		image.set(1, 1, 0, 42);
+		Image view = image.subImage(1, 1, 1, 1);
+		ByteBuffer shared = image.getBuffer();
+		image.close();
+		Assert.assertEquals(42, shared.get(3));
+		try {
+			view.get(0, 0, 0);
+			Assert.fail("Views of a closed image should not be readable");
+		} catch (IllegalStateException ex) {
+			//Expected
+		}
+		try {
+			image.getBuffer();
+			Assert.fail("A closed image has no buffer");
+		} catch (IllegalStateException ex) {
+			//Expected
+		}
+		try {
+			image.writeTo(Channels.newChannel(new ByteArrayOutputStream()));
+			Assert.fail("A closed image can't be written out");
+		} catch (IllegalStateException ex) {
+			//Expected
+		}
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testWrongBufferSize() {
+		new DirectImage(2, 2, 1, SampleType.SignedInt, ByteBuffer.allocateDirect(15));
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.github.westonpace.jayvee.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.test.TestBase;
+
+public class FileTileStoreTest extends TestBase {
+
+	/**
+	 * Every sample type should come back exactly as it was stored
+	 */
+	@Test
+	public void testRoundTrip() {
+		double [] samples = new double[] { 0, 1, 255, 65535, -7, 1e9, 0.1, -3.5e-12 };
+		FileTileStore store = new FileTileStore();
+		for(SampleType sampleType : SampleType.values()) {
+			ArrayImage tile = ArrayImage.create(3, 2, 2, sampleType);
+			ArrayImage other = ArrayImage.create(3, 2, 2, sampleType);
+			for(int i = 0; i < 12; i++) {
+				tile.set(i / 2 % 3, i / 6, i % 2, samples[i % samples.length]);
+				other.set(i / 2 % 3, i / 6, i % 2, i);
+			}
+			store.storeTile(0, 0, tile);
+			store.storeTile(5, 1, other);
+			//Overwriting a tile reuses its place in the file
+			store.storeTile(0, 0, tile);
+
+			ArrayImage loaded = ArrayImage.create(3, 2, 2, sampleType);
+			store.loadTile(0, 0, loaded);
+			assertEquals(tile, loaded, 0.0);
+			store.loadTile(5, 1, loaded);
+			assertEquals(other, loaded, 0.0);
+			store.close();
+		}
+	}
+
+	/**
+	 * Tiles which were never stored should be left empty
+	 */
+	@Test
+	public void testMissingTile() {
+		FileTileStore store = new FileTileStore();
+		ArrayImage tile = ArrayImage.create(2, 2, 1, SampleType.UnsignedByte);
+		tile.set(1, 1, 0, 9);
+		store.storeTile(0, 0, tile);
+		ArrayImage loaded = ArrayImage.create(2, 2, 1, SampleType.UnsignedByte);
+		store.loadTile(1, 0, loaded);
+		Assert.assertEquals(0, loaded.get(1, 1, 0), 0.0);
+		store.close();
+		//Closing forgets every tile
+		store.loadTile(0, 0, loaded);
+		Assert.assertEquals(0, loaded.get(1, 1, 0), 0.0);
+	}
+
+}
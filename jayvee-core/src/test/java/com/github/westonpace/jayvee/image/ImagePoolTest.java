@@ -0,0 +1,131 @@
+package com.github.westonpace.jayvee.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.Layout;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.worker.basic.ToGrayscale;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+
+public class ImagePoolTest extends TestBase {
+
+	/**
+	 * Released images should be handed out again, cleared, for the same size and type only
+	 */
+	@Test
+	public void testReuse() {
+		ImagePool pool = new ImagePool(4);
+		ArrayImage image = pool.acquire(4, 3, 2, SampleType.UnsignedShort);
+		Assert.assertTrue(image instanceof ShortImage);
+		image.set(1, 1, 1, 300);
+		image.release();
+		Assert.assertEquals(1, pool.getPooledCount());
+
+		//A different size, type, or layout needs a new image
+		Assert.assertNotSame(image, pool.acquire(3, 4, 2, SampleType.UnsignedShort));
+		Assert.assertNotSame(image, pool.acquire(4, 3, 2, SampleType.SignedInt));
+		Assert.assertNotSame(image, pool.acquire(4, 3, 2, SampleType.UnsignedShort, Layout.Planar));
+		Assert.assertEquals(1, pool.getPooledCount());
+
+		ArrayImage reused = pool.acquire(4, 3, 2, SampleType.UnsignedShort);
+		Assert.assertSame(image, reused);
+		Assert.assertEquals(0, reused.get(1, 1, 1), 0.0);
+		Assert.assertEquals(0, pool.getPooledCount());
+	}
+
+	/**
+	 * The pool should never hold more than its limit, or the same image twice
+	 */
+	@Test
+	public void testBounded() {
+		ImagePool pool = new ImagePool(2);
+		ArrayImage first = pool.acquire(2, 2, 1, SampleType.Float64);
+		first.release();
+		first.release();
+		Assert.assertEquals(1, pool.getPooledCount());
+		pool.acquire(2, 2, 1, SampleType.Float64);
+		pool.release(new StandardImage(2, 2, 1));
+		pool.release(new StandardImage(2, 2, 1));
+		pool.release(new StandardImage(2, 2, 1));
+		Assert.assertEquals(2, pool.getPooledCount());
+		pool.clear();
+		Assert.assertEquals(0, pool.getPooledCount());
+	}
+
+	/**
+	 * A pool limited by bytes should drop images which would take it over the limit
+	 */
+	@Test
+	public void testBoundedBytes() {
+		ImagePool pool = new ImagePool(10, 100);
+		//4x4x1 doubles is 128 bytes, too big to ever be pooled
+		pool.release(new StandardImage(4, 4, 1));
+		Assert.assertEquals(0, pool.getPooledCount());
+		pool.release(new ByteImage(6, 6, 1));
+		pool.release(new ShortImage(4, 4, 1));
+		Assert.assertEquals(68, pool.getPooledBytes());
+		//36 more bytes would be 104
+		pool.release(new ByteImage(6, 6, 1));
+		Assert.assertEquals(2, pool.getPooledCount());
+		pool.acquire(6, 6, 1, SampleType.UnsignedByte);
+		Assert.assertEquals(32, pool.getPooledBytes());
+		pool.release(new ByteImage(6, 6, 1));
+		Assert.assertEquals(68, pool.getPooledBytes());
+		pool.clear();
+		Assert.assertEquals(0, pool.getPooledBytes());
+	}
+
+	/**
+	 * Images which share memory with another image must never be pooled
+	 */
+	@Test
+	public void testUnpoolableImages() {
+		ImagePool pool = new ImagePool(10);
+		StandardImage image = new StandardImage(4, 4, 3);
+		pool.release(image.subImage(0, 0, 4, 4));
+		pool.release(image.subBands(0, 1));
+		pool.release(new DirectImage(4, 4, 3, SampleType.Float64));
+		pool.release(new TiledImage(4, 4, 3, 2, 2, SampleType.Float64));
+		//Releasing an image that didn't come from a pool does nothing
+		image.release();
+		Assert.assertEquals(0, pool.getPooledCount());
+	}
+
+	/**
+	 * A chain of transformers which release their inputs should reach a steady state where
+	 * no new images are created
+	 */
+	@Test
+	public void testTransformerPooling() {
+		ImagePool pool = new ImagePool(4);
+		ToGrayscale toGrayscale = new ToGrayscale();
+		toGrayscale.setImagePool(pool);
+		toGrayscale.setReleaseInputs(true);
+		ArrayListBuffer<Image> inputImages = new ArrayListBuffer<Image>();
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		toGrayscale.inputImages = inputImages;
+		toGrayscale.outputImages = outputImages;
+
+		ArrayImage input = pool.acquire(3, 3, 3, SampleType.Float64);
+		input.fill(6);
+		inputImages.add(input);
+		toGrayscale.iterate();
+		Image firstOutput = outputImages.pop();
+		Assert.assertEquals(6, firstOutput.get(2, 2, 0), 0.0);
+		//The input was released by the transformer
+		Assert.assertEquals(1, pool.getPooledCount());
+		firstOutput.release();
+
+		ArrayImage nextInput = pool.acquire(3, 3, 3, SampleType.Float64);
+		Assert.assertSame(input, nextInput);
+		nextInput.fill(3);
+		inputImages.add(nextInput);
+		toGrayscale.iterate();
+		Image secondOutput = outputImages.pop();
+		Assert.assertSame(firstOutput, secondOutput);
+		Assert.assertEquals(3, secondOutput.get(0, 0, 0), 0.0);
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.github.westonpace.jayvee.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class ImagePyramidTest extends TestBase {
+
+	@Test
+	public void testLevels() {
+		ByteImage image = new ByteImage(10, 7, 2);
+		for(int y = 0; y < 7; y++) {
+			for(int x = 0; x < 10; x++) {
+				image.set(x, y, 0, x * 10 + y);
+				image.set(x, y, 1, 200);
+			}
+		}
+		ImagePyramid pyramid = new ImagePyramid(image);
+		Assert.assertEquals(5, pyramid.getNumLevels());
+		Assert.assertEquals(1, pyramid.getBuiltLevels());
+		Assert.assertSame(image, pyramid.getLevel(0));
+
+		//Asking for level 2 builds level 1 on the way
+		Image level2 = pyramid.getLevel(2);
+		Assert.assertEquals(3, pyramid.getBuiltLevels());
+		Assert.assertSame(level2, pyramid.getLevel(2));
+		Assert.assertEquals(3, level2.getWidth());
+		Assert.assertEquals(2, level2.getHeight());
+		Assert.assertEquals(SampleType.UnsignedByte, level2.getSampleType());
+
+		Image level1 = pyramid.getLevel(1);
+		Assert.assertEquals(5, level1.getWidth());
+		Assert.assertEquals(4, level1.getHeight());
+		//(20 + 21 + 30 + 31) / 4 = 25.5, rounded
+		Assert.assertEquals(26, level1.get(1, 0, 0), 0.0);
+		//The odd last row is averaged with itself (6 + 6 + 16 + 16) / 4
+		Assert.assertEquals(11, level1.get(0, 3, 0), 0.0);
+		Assert.assertEquals(200, level1.get(4, 3, 1), 0.0);
+
+		Image last = pyramid.getLevel(4);
+		Assert.assertEquals(1, last.getWidth());
+		Assert.assertEquals(1, last.getHeight());
+		Assert.assertEquals(200, last.get(0, 0, 1), 0.0);
+
+		pyramid.invalidate();
+		Assert.assertEquals(1, pyramid.getBuiltLevels());
+		Assert.assertNotSame(level2, pyramid.getLevel(2));
+	}
+
+	@Test
+	public void testInterpolate() {
+		StandardImage image = new StandardImage(8, 8, 1);
+		for(int y = 0; y < 8; y++) {
+			for(int x = 0; x < 8; x++) {
+				image.set(x, y, 0, (x + y) % 2 == 0 ? 4 : 0);
+			}
+		}
+		ImagePyramid pyramid = new ImagePyramid(image);
+		Assert.assertEquals(4, pyramid.interpolate(2, 2, 0, 0), 0.000001);
+		//The checkerboard averages out to 2 on every other level
+		Assert.assertEquals(2, pyramid.interpolate(2, 2, 0, 1), 0.000001);
+		Assert.assertEquals(3, pyramid.interpolate(2, 2, 0, 0.5), 0.000001);
+		Assert.assertEquals(2, pyramid.interpolate(5.3, 1.2, 0, 2.7), 0.000001);
+		//Pixel (1,1) of level 1 covers pixels (2,2) to (3,3) of the base so its center is (2.5, 2.5)
+		image.set(2, 2, 0, 8);
+		pyramid.invalidate();
+		Assert.assertEquals(3, pyramid.interpolate(2.5, 2.5, 0, 1), 0.000001);
+	}
+
+	/**
+	 * Odd sizes are rounded up so the last pixel of a level covers only the last pixel of
+	 * the level before it, the edges of the levels should still line up
+	 */
+	@Test
+	public void testInterpolateOddSize() {
+		StandardImage image = new StandardImage(3, 3, 1, new double [] {0, 0, 9, 0, 0, 9, 0, 0, 9});
+		ImagePyramid pyramid = new ImagePyramid(image);
+		Assert.assertEquals(2, pyramid.getLevel(1).getWidth());
+		Assert.assertEquals(9, pyramid.interpolate(2, 1, 0, 1), 0.000001);
+		Assert.assertEquals(0, pyramid.interpolate(0, 1, 0, 1), 0.000001);
+	}
+
+	@Test
+	public void testLevelForScale() {
+		ImagePyramid pyramid = new ImagePyramid(new StandardImage(64, 48, 1));
+		Assert.assertEquals(7, pyramid.getNumLevels());
+		Assert.assertEquals(0, pyramid.getLevelForScale(1));
+		Assert.assertEquals(0, pyramid.getLevelForScale(0.6));
+		Assert.assertEquals(1, pyramid.getLevelForScale(0.5));
+		Assert.assertEquals(2, pyramid.getLevelForScale(0.2));
+		Assert.assertEquals(6, pyramid.getLevelForScale(0.0001));
+		Assert.assertEquals(0, pyramid.getLevelForScale(3));
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testMissingLevel() {
+		new ImagePyramid(new StandardImage(4, 4, 1)).getLevel(3);
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class ImageStatisticsTest extends TestBase {
+
+	/**
+	 * The statistics should match calculating them directly
+	 */
+	@Test
+	public void testStatistics() {
+		Random random = new Random(9);
+		ByteImage image = new ByteImage(100, 150, 3);
+		for(int y = 0; y < 150; y++) {
+			for(int x = 0; x < 100; x++) {
+				image.set(x, y, 0, random.nextInt(256));
+				image.set(x, y, 1, 100 + random.nextInt(50));
+				image.set(x, y, 2, 7);
+			}
+		}
+		ImageStatistics statistics = ImageStatistics.computeWithHistogram(image);
+		Assert.assertEquals(3, statistics.getNumBands());
+		Assert.assertEquals(15000, statistics.getCount());
+		Assert.assertTrue(statistics.hasHistogram());
+		for(int b = 0; b < 3; b++) {
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			double sum = 0;
+			long [] histogram = new long[256];
+			for(int y = 0; y < 150; y++) {
+				for(int x = 0; x < 100; x++) {
+					double value = image.get(x, y, b);
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+					sum += value;
+					histogram[(int) value]++;
+				}
+			}
+			double mean = sum / 15000;
+			double squaredDeviations = 0;
+			for(int y = 0; y < 150; y++) {
+				for(int x = 0; x < 100; x++) {
+					squaredDeviations += (image.get(x, y, b) - mean) * (image.get(x, y, b) - mean);
+				}
+			}
+			Assert.assertEquals(min, statistics.getMin(b), 0.0);
+			Assert.assertEquals(max, statistics.getMax(b), 0.0);
+			Assert.assertEquals(mean, statistics.getMean(b), 0.000001);
+			Assert.assertEquals(squaredDeviations / 15000, statistics.getVariance(b), 0.000001);
+			Assert.assertArrayEquals(histogram, statistics.getHistogram(b));
+		}
+		Assert.assertEquals(0, statistics.getVariance(2), 0.0);
+		Assert.assertEquals(7, statistics.getPercentile(2, 50), 0.0);
+		Assert.assertEquals(statistics.getMin(1), statistics.getPercentile(1, 0), 0.0);
+		Assert.assertEquals(statistics.getMax(1), statistics.getPercentile(1, 100), 0.0);
+		Assert.assertEquals(125, statistics.getPercentile(1, 50), 1.0);
+	}
+
+	@Test
+	public void testPercentiles() {
+		//The values 0 to 99, once each
+		StandardImage image = new StandardImage(10, 10, 1);
+		for(int i = 0; i < 100; i++) {
+			image.set(i % 10, i / 10, 0, i);
+		}
+		ImageStatistics statistics = ImageStatistics.compute(image, 10, 0, 100);
+		Assert.assertArrayEquals(new long [] {10, 10, 10, 10, 10, 10, 10, 10, 10, 10}, statistics.getHistogram(0));
+		Assert.assertEquals(25, statistics.getPercentile(0, 25), 0.000001);
+		Assert.assertEquals(90, statistics.getPercentile(0, 90), 0.000001);
+		Assert.assertEquals(49.5, statistics.getMean(0), 0.000001);
+
+		//Values outside of the range go into the end bins
+		statistics = ImageStatistics.compute(image, 4, 20, 60);
+		Assert.assertArrayEquals(new long [] {30, 10, 10, 50}, statistics.getHistogram(0));
+	}
+
+	/**
+	 * Images that aren't stored in arrays are read on the calling thread
+	 */
+	@Test
+	public void testTiledImage() {
+		TiledImage image = new TiledImage(40, 30, 1, 16, 16, Image.SampleType.Float64);
+		image.set(39, 29, 0, -3);
+		image.set(0, 29, 0, 12);
+		ImageStatistics statistics = ImageStatistics.compute(image);
+		Assert.assertFalse(statistics.hasHistogram());
+		Assert.assertEquals(-3, statistics.getMin(0), 0.0);
+		Assert.assertEquals(12, statistics.getMax(0), 0.0);
+		Assert.assertEquals(9.0 / 1200, statistics.getMean(0), 0.000001);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testNoHistogram() {
+		ImageStatistics.compute(new StandardImage(2, 2, 1)).getPercentile(0, 50);
+	}
+
+}
@@ -1,9 +1,18 @@
 package com.github.westonpace.jayvee.image;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.Layout;
+import com.github.westonpace.jayvee.image.Image.PixelOperator;
+import com.github.westonpace.jayvee.image.Image.RowOperator;
+import com.github.westonpace.jayvee.image.Image.RowVisitor;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.Image.UnsafeView;
+import com.github.westonpace.jayvee.image.Image.ValueOperator;
 import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy;
 import com.github.westonpace.jayvee.image.StandardImage;
 import com.github.westonpace.jayvee.test.TestBase;
@@ -89,4 +98,186 @@ public class ImageTest extends TestBase {
 		image.get(1, 1, 1, dontCallMe);
 	}
 
+	/**
+	 * Images of every kind (and views of them) should agree on the values of a row or region
+	 */
+	@Test
+	public void testBulkAccess() {
+		Image [] images = new Image [] {
+				new StandardImage(5, 4, 3),
+				new StandardImage(5, 4, 3, Layout.Planar),
+				new ByteImage(5, 4, 3),
+				new FloatImage(5, 4, 3, Layout.Planar),
+				new StandardImage(7, 6, 4).subImage(1, 1, 5, 4).subBands(1, 3),
+				new TiledImage(5, 4, 3, 2, 2, SampleType.SignedInt)
+		};
+		for(Image image : images) {
+			double [] row = new double[] { -1, 1, 2, 3, 4, 5 };
+			image.setRow(2, 1, row, 1);
+			Assert.assertEquals(3, image.get(2, 2, 1), 0.0);
+			Assert.assertEquals(0, image.get(2, 2, 0), 0.0);
+			double [] result = new double[5];
+			image.getRow(2, 1, result, 0);
+			Assert.assertArrayEquals(new double [] { 1, 2, 3, 4, 5 }, result, 0.0);
+
+			double [] region = new double[2 * 2 * 3];
+			for(int i = 0; i < region.length; i++) {
+				region[i] = 10 + i;
+			}
+			image.setRegion(3, 1, 2, 2, region, 0);
+			//Pixel (4,2) is the last pixel of the region
+			Assert.assertEquals(19, image.get(4, 2, 0), 0.0);
+			Assert.assertEquals(21, image.get(4, 2, 2), 0.0);
+			Assert.assertEquals(12, image.get(3, 1, 2), 0.0);
+			double [] regionResult = new double[1 + region.length];
+			image.getRegion(3, 1, 2, 2, regionResult, 1);
+			for(int i = 0; i < region.length; i++) {
+				Assert.assertEquals(region[i], regionResult[i + 1], 0.0);
+			}
+		}
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testRowOutOfBounds() {
+		StandardImage image = new StandardImage(2, 2, 2);
+		image.getRow(2, 0, new double[2], 0);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testRowArrayTooSmall() {
+		StandardImage image = new StandardImage(2, 2, 2);
+		image.setRow(0, 0, new double[2], 1);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testRegionArrayTooSmall() {
+		StandardImage image = new StandardImage(3, 3, 2);
+		image.getRegion(1, 1, 2, 2, new double[7], 0);
+	}
+
+	@Test
+	public void testUnsafeView() {
+		StandardImage image = new StandardImage(3, 2, 2);
+		UnsafeView view = image.unsafeView();
+		Assert.assertEquals(3, view.getWidth());
+		Assert.assertEquals(2, view.getHeight());
+		Assert.assertEquals(2, view.getNumBands());
+		view.set(2, 1, 1, 8);
+		Assert.assertEquals(8, image.get(2, 1, 1), 0.0);
+		Assert.assertEquals(8, view.get(2, 1, 1), 0.0);
+	}
+
+	private static StandardImage createNumbered(int width, int height, int numBands) {
+		StandardImage image = new StandardImage(width, height, numBands);
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				for(int b = 0; b < numBands; b++) {
+					image.set(x, y, b, x + y * 1000 + b * 1000000);
+				}
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void testMapValues() {
+		StandardImage image = createNumbered(30, 70, 2);
+		ByteImage result = new ByteImage(30, 70, 2);
+		image.mapValues(new ValueOperator() {
+			@Override
+			public double apply(double value) {
+				return value % 7;
+			}
+		}, result);
+		for(int y = 0; y < 70; y++) {
+			for(int x = 0; x < 30; x++) {
+				for(int b = 0; b < 2; b++) {
+					Assert.assertEquals(image.get(x, y, b) % 7, result.get(x, y, b), 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMapPixels() {
+		StandardImage image = createNumbered(25, 60, 3);
+		StandardImage result = new StandardImage(25, 60, 2, Layout.Planar);
+		image.mapPixels(new PixelOperator() {
+			@Override
+			public void apply(double[] source, int sourceOffset, double[] destination, int destinationOffset) {
+				destination[destinationOffset] = source[sourceOffset + 2];
+				destination[destinationOffset + 1] = source[sourceOffset] + source[sourceOffset + 1];
+			}
+		}, result);
+		for(int y = 0; y < 60; y++) {
+			for(int x = 0; x < 25; x++) {
+				Assert.assertEquals(image.get(x, y, 2), result.get(x, y, 0), 0.0);
+				Assert.assertEquals(image.get(x, y, 0) + image.get(x, y, 1), result.get(x, y, 1), 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Mapping an image into itself should work, as should images that can't be split
+	 * across threads
+	 */
+	@Test
+	public void testMapRowsInPlace() {
+		RowOperator reverse = new RowOperator() {
+			@Override
+			public void apply(int y, double[] source, double[] destination) {
+				for(int i = 0; i < source.length; i++) {
+					destination[i] = source[source.length - 1 - i] + y;
+				}
+			}
+		};
+		StandardImage image = createNumbered(10, 40, 1);
+		image.mapRows(reverse, image);
+		TiledImage tiled = new TiledImage(10, 40, 1, 4, 4, SampleType.Float64);
+		Assert.assertFalse(tiled.supportsConcurrentAccess());
+		Assert.assertTrue(image.supportsConcurrentAccess());
+		Assert.assertTrue(image.subImage(1, 1, 2, 2).supportsConcurrentAccess());
+		createNumbered(10, 40, 1).mapRows(reverse, tiled);
+		for(int y = 0; y < 40; y++) {
+			for(int x = 0; x < 10; x++) {
+				Assert.assertEquals(9 - x + y * 1001, image.get(x, y, 0), 0.0);
+				Assert.assertEquals(9 - x + y * 1001, tiled.get(x, y, 0), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testForEachRow() {
+		StandardImage image = createNumbered(20, 90, 2);
+		final AtomicLong total = new AtomicLong();
+		final AtomicLong rows = new AtomicLong();
+		image.forEachRow(new RowVisitor() {
+			@Override
+			public void visit(int y, double[] row) {
+				long sum = 0;
+				for(double value : row) {
+					sum += (long) value;
+				}
+				total.addAndGet(sum);
+				rows.incrementAndGet();
+			}
+		});
+		long expected = 0;
+		for(double value : image.getPixels()) {
+			expected += (long) value;
+		}
+		Assert.assertEquals(90, rows.get());
+		Assert.assertEquals(expected, total.get());
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testMapWrongSize() {
+		new StandardImage(3, 3, 1).mapValues(new ValueOperator() {
+			@Override
+			public double apply(double value) {
+				return value;
+			}
+		}, new StandardImage(3, 4, 1));
+	}
+
 }
@@ -0,0 +1,88 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class IntegralImageTest extends TestBase {
+
+	private static void fillRandom(Image image, int max) {
+		Random random = new Random(5);
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				for(int b = 0; b < image.getNumBands(); b++) {
+					image.set(x, y, b, random.nextInt(max));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Every box should match summing the values directly
+	 */
+	private void checkBoxes(Image image) {
+		IntegralImage integral = new IntegralImage(image, true);
+		Assert.assertTrue(integral.hasSquares());
+		for(int b = 0; b < image.getNumBands(); b++) {
+			for(int y0 = 0; y0 < image.getHeight(); y0 += 2) {
+				for(int x0 = 0; x0 < image.getWidth(); x0 += 3) {
+					for(int y1 = y0; y1 < image.getHeight(); y1 += 3) {
+						for(int x1 = x0; x1 < image.getWidth(); x1 += 2) {
+							double sum = 0;
+							double squares = 0;
+							for(int y = y0; y <= y1; y++) {
+								for(int x = x0; x <= x1; x++) {
+									double value = image.get(x, y, b);
+									sum += value;
+									squares += value * value;
+								}
+							}
+							int count = (x1 - x0 + 1) * (y1 - y0 + 1);
+							double mean = sum / count;
+							Assert.assertEquals(sum, integral.boxSum(x0, y0, x1, y1, b), 0.000001);
+							Assert.assertEquals(mean, integral.boxMean(x0, y0, x1, y1, b), 0.000001);
+							Assert.assertEquals(squares, integral.boxSquaredSum(x0, y0, x1, y1, b), 0.000001);
+							Assert.assertEquals(squares / count - mean * mean, integral.boxVariance(x0, y0, x1, y1, b), 0.0001);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBoxes() {
+		ByteImage bytes = new ByteImage(13, 9, 3);
+		fillRandom(bytes, 256);
+		checkBoxes(bytes);
+		StandardImage doubles = new StandardImage(11, 10, 2);
+		fillRandom(doubles, 1000);
+		doubles.set(3, 4, 1, 0.25);
+		checkBoxes(doubles);
+		checkBoxes(bytes.subImage(2, 1, 8, 6));
+	}
+
+	@Test
+	public void testSinglePixel() {
+		StandardImage image = new StandardImage(1, 1, 1, new double [] {7});
+		IntegralImage integral = new IntegralImage(image);
+		Assert.assertFalse(integral.hasSquares());
+		Assert.assertEquals(7, integral.boxSum(0, 0, 0, 0, 0), 0.0);
+		Assert.assertEquals(7, integral.boxMean(0, 0, 0, 0, 0), 0.0);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testNoSquares() {
+		new IntegralImage(new StandardImage(3, 3, 1)).boxVariance(0, 0, 1, 1, 0);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testBoxOutOfBounds() {
+		new IntegralImage(new StandardImage(3, 3, 1)).boxSum(1, 1, 3, 2, 0);
+	}
+
+}
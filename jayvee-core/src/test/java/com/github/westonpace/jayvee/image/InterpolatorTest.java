@@ -1,11 +1,18 @@
 package com.github.westonpace.jayvee.image;
 
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.github.westonpace.jayvee.image.StandardImage;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.Interpolator.BatchInterpolator;
 import com.github.westonpace.jayvee.image.Interpolator.BilinearInterpolator;
+import com.github.westonpace.jayvee.image.Interpolator.FixedPointBilinearInterpolator;
+import com.github.westonpace.jayvee.image.Interpolator.NearestNeighborInterpolator;
 import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
 
 public class InterpolatorTest extends TestBase {
 
@@ -36,4 +43,152 @@ public class InterpolatorTest extends TestBase {
 		Assert.assertEquals(2.75, result, 0.00001);
 	}
 
+	/**
+	 * Points on the last row and column have no neighbors past them but are still in the image
+	 */
+	@Test
+	public void testBilinearAtEdges() {
+		StandardImage image = new StandardImage(2, 2, 1, new double[] { 1, 2, 3, 4 });
+		BilinearInterpolator interpolator = new BilinearInterpolator();
+		Assert.assertEquals(4, interpolator.interpolate(1, 1, 0, image), 0.00001);
+		Assert.assertEquals(3.5, interpolator.interpolate(0.5, 1, 0, image), 0.00001);
+		Assert.assertEquals(3, interpolator.interpolate(1, 0.5, 0, image), 0.00001);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testBilinearOutOfBounds() {
+		StandardImage image = new StandardImage(2, 2, 1, new double[] { 1, 2, 3, 4 });
+		new BilinearInterpolator().interpolate(1.5, 0, 0, image);
+	}
+
+	private static Image createGradient() {
+		StandardImage image = new StandardImage(7, 5, 2);
+		for(int y = 0; y < 5; y++) {
+			for(int x = 0; x < 7; x++) {
+				image.set(x, y, 0, x * x + 3 * y);
+				image.set(x, y, 1, x * y);
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * The batch methods should give the same results as interpolating one point at a time,
+	 * both in the interior and past the edges of the image
+	 */
+	private void checkBatch(BatchInterpolator interpolator) {
+		Image image = createGradient();
+		OutOfBoundsAccessStrategy strategy = new OutOfBoundsAccessStrategy.ExtendEdgesStrategy();
+		double [] xs = new double [] {-1.5, -0.25, 0, 0.5, 2.75, 5.5, 5.99, 6, 6.5, 9};
+		double [] ys = new double [] {-2, 0.5, 4, 1.25, 3.5, 2.5, 3.99, 0, 4.5, 1};
+
+		double [] row = new double[xs.length + 1];
+		interpolator.interpolateRow(image, 1, xs, ys, row, 1, strategy);
+		for(int i = 0; i < xs.length; i++) {
+			Assert.assertEquals(interpolator.interpolate(xs[i], ys[i], 1, image, strategy), row[i + 1], 0.00001);
+		}
+
+		double [] line = new double[12];
+		interpolator.interpolateRow(image, 0, -1.5, 4.5, 0.75, -0.5, line.length, line, 0, strategy);
+		for(int i = 0; i < line.length; i++) {
+			Assert.assertEquals(interpolator.interpolate(-1.5 + i * 0.75, 4.5 - i * 0.5, 0, image, strategy), line[i], 0.00001);
+		}
+
+		double [] grid = new double[xs.length * ys.length];
+		interpolator.interpolateGrid(image, 0, xs, ys, grid, 0, strategy);
+		int index = 0;
+		for(int j = 0; j < ys.length; j++) {
+			for(int i = 0; i < xs.length; i++) {
+				Assert.assertEquals(interpolator.interpolate(xs[i], ys[j], 0, image, strategy), grid[index++], 0.00001);
+			}
+		}
+	}
+
+	@Test
+	public void testBatchInterpolation() {
+		checkBatch(new BilinearInterpolator());
+		checkBatch(new NearestNeighborInterpolator());
+
+		//The edge path and the interior path should agree
+		Image image = createGradient();
+		BilinearInterpolator interpolator = new BilinearInterpolator();
+		Assert.assertEquals(2.5 * 2.5 + 0.5 * 0.5 + 3 * 1.5, interpolator.interpolate(2.5, 1.5, 0, image), 0.00001);
+		Assert.assertEquals(36 + 12, interpolator.interpolate(6, 4, 0, image), 0.00001);
+		Assert.assertEquals((25 + 36) / 2.0 + 12, interpolator.interpolate(5.5, 4, 0, image, new OutOfBoundsAccessStrategy.ExtendEdgesStrategy()), 0.00001);
+		Assert.assertEquals(image.get(3, 2, 1), new NearestNeighborInterpolator().interpolate(2.5, 2.25, 1, image), 0.0);
+	}
+
+	private void checkFixedPoint(Image image) {
+		BilinearInterpolator exact = new BilinearInterpolator();
+		FixedPointBilinearInterpolator fixed = new FixedPointBilinearInterpolator();
+		OutOfBoundsAccessStrategy strategy = new OutOfBoundsAccessStrategy.ExtendEdgesStrategy();
+		Random random = new Random(7);
+		int count = 200;
+		double [] xs = new double[count];
+		double [] ys = new double[count];
+		for(int i = 0; i < count; i++) {
+			xs[i] = random.nextDouble() * (image.getWidth() + 2) - 1;
+			ys[i] = random.nextDouble() * (image.getHeight() + 2) - 1;
+		}
+		for(int b = 0; b < image.getNumBands(); b++) {
+			double [] row = new double[count];
+			fixed.interpolateRow(image, b, xs, ys, row, 0, strategy);
+			for(int i = 0; i < count; i++) {
+				double expected = exact.interpolate(xs[i], ys[i], b, image, strategy);
+				Assert.assertEquals(expected, row[i], 1.0);
+				Assert.assertEquals(Math.floor(row[i]), row[i], 0.0);
+				Assert.assertEquals(row[i], fixed.interpolate(xs[i], ys[i], b, image, strategy), 0.0);
+			}
+			double [] line = new double[count];
+			fixed.interpolateRow(image, b, -0.5, 0.25, 0.1, 0.03, count, line, 0, strategy);
+			for(int i = 0; i < count; i++) {
+				Assert.assertEquals(exact.interpolate(-0.5 + i * 0.1, 0.25 + i * 0.03, b, image, strategy), line[i], 1.0);
+			}
+		}
+		//Pixel centers are exact
+		Assert.assertEquals(image.get(2, 1, 0), fixed.interpolate(2, 1, 0, image), 0.0);
+	}
+
+	/**
+	 * The fixed point interpolator should never be more than one away from the exact result
+	 */
+	@Test
+	public void testFixedPointBilinear() {
+		Random random = new Random(3);
+		ByteImage bytes = new ByteImage(12, 9, 3);
+		ShortImage shorts = new ShortImage(12, 9, 2);
+		for(int y = 0; y < 9; y++) {
+			for(int x = 0; x < 12; x++) {
+				for(int b = 0; b < 3; b++) {
+					bytes.set(x, y, b, random.nextInt(256));
+				}
+				for(int b = 0; b < 2; b++) {
+					shorts.set(x, y, b, random.nextInt(65536));
+				}
+			}
+		}
+		checkFixedPoint(bytes);
+		checkFixedPoint(shorts);
+		checkFixedPoint(bytes.subImage(3, 2, 7, 5));
+		checkFixedPoint(shorts.subBands(1, 1));
+
+		//Direct images of the same sample types take the fixed point path too
+		FixedPointBilinearInterpolator fixed = new FixedPointBilinearInterpolator();
+		DirectImage directBytes = new DirectImage(12, 9, 3, SampleType.UnsignedByte);
+		DirectImage directShorts = new DirectImage(12, 9, 2, SampleType.UnsignedShort);
+		bytes.copyTo(directBytes);
+		shorts.copyTo(directShorts);
+		checkFixedPoint(directBytes);
+		checkFixedPoint(directShorts);
+		for(double x = 0.1; x < 11; x += 0.37) {
+			Assert.assertEquals(fixed.interpolate(x, 4.6, 2, bytes), fixed.interpolate(x, 4.6, 2, directBytes), 0.0);
+			Assert.assertEquals(fixed.interpolate(x, 4.6, 1, shorts), fixed.interpolate(x, 4.6, 1, directShorts), 0.0);
+		}
+
+		//Other images are interpolated exactly
+		Image gradient = createGradient();
+		Assert.assertEquals(new BilinearInterpolator().interpolate(2.3, 1.7, 1, gradient),
+				new FixedPointBilinearInterpolator().interpolate(2.3, 1.7, 1, gradient), 0.0);
+	}
+
 }
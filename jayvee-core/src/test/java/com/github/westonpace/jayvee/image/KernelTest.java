@@ -0,0 +1,68 @@
+package com.github.westonpace.jayvee.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class KernelTest extends TestBase {
+
+	private static final double EPSILON = 1e-12;
+
+	/**
+	 * Kernels given as a grid should be factored when they are an outer product
+	 */
+	@Test
+	public void testSeparableDetection() {
+		Kernel grid = new Kernel(3, 2, new double[] {
+				 2, 4, -6,
+				-1, -2, 3 });
+		Assert.assertTrue(grid.isSeparable());
+		double [] horizontal = grid.getHorizontal();
+		double [] vertical = grid.getVertical();
+		for(int y = 0; y < 2; y++) {
+			for(int x = 0; x < 3; x++) {
+				Assert.assertEquals(grid.getWeight(x, y), vertical[y] * horizontal[x], EPSILON);
+			}
+		}
+
+		Assert.assertFalse(Kernel.sharpen().isSeparable());
+		Assert.assertFalse(Kernel.laplacian().isSeparable());
+		Assert.assertFalse(new Kernel(2, 2, new double[4]).isSeparable());
+		try {
+			Kernel.sharpen().getHorizontal();
+			Assert.fail("A non-separable kernel has no horizontal pass");
+		} catch (InvalidParameterException ex) {
+			//Expected
+		}
+
+		Kernel sobel = Kernel.sobelX();
+		Assert.assertTrue(sobel.isSeparable());
+		Assert.assertArrayEquals(new double[] { -1, 0, 1, -2, 0, 2, -1, 0, 1 }, sobel.getWeights(), EPSILON);
+		Assert.assertTrue(new Kernel(3, 3, sobel.getWeights()).isSeparable());
+	}
+
+	@Test
+	public void testLibrary() {
+		Kernel gaussian = Kernel.gaussian(1.5);
+		Assert.assertEquals(11, gaussian.getWidth());
+		Assert.assertEquals(11, gaussian.getHeight());
+		Assert.assertEquals(5, gaussian.getCenterX());
+		double sum = 0;
+		for(double weight : gaussian.getWeights()) {
+			sum += weight;
+		}
+		Assert.assertEquals(1, sum, 1e-9);
+		Assert.assertTrue(gaussian.getWeight(5, 5) > gaussian.getWeight(4, 5));
+		Assert.assertEquals(gaussian.getWeight(4, 5), gaussian.getWeight(6, 5), EPSILON);
+
+		Kernel box = Kernel.box(3);
+		Assert.assertEquals(1.0 / 9, box.getWeight(2, 0), EPSILON);
+
+		Kernel sobelY = Kernel.sobelY();
+		Assert.assertEquals(-1, sobelY.getWeight(0, 0), EPSILON);
+		Assert.assertEquals(2, sobelY.getWeight(1, 2), EPSILON);
+	}
+
+}
@@ -4,7 +4,10 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.github.westonpace.jayvee.image.StandardImage;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ConstantStrategy;
 import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ExtendEdgesStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ReflectStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.WrapStrategy;
 import com.github.westonpace.jayvee.test.TestBase;
 
 public class OutOfBoundsAccessStrategyTest extends TestBase {
@@ -30,4 +33,45 @@ public class OutOfBoundsAccessStrategyTest extends TestBase {
 		}
 	}
 	
+	@Test
+	public void testReflectImage() {
+		StandardImage image = new StandardImage(3, 2, 1, new double []{1, 2, 3, 4, 5, 6});
+		double [] reflectedValues = new double[] {6, 5, 4, 4, 5, 6, 6, 5, 4, 4,
+		                                          3, 2, 1, 1, 2, 3, 3, 2, 1, 1,
+		                                          3, 2, 1, 1, 2, 3, 3, 2, 1, 1,
+		                                          6, 5, 4, 4, 5, 6, 6, 5, 4, 4,
+		                                          6, 5, 4, 4, 5, 6, 6, 5, 4, 4};
+		ReflectStrategy reflectStrategy = new ReflectStrategy();
+		int index = 0;
+		for(int y = -2; y < 3; y++) {
+			for(int x = -3; x < 7; x++) {
+				Assert.assertEquals(reflectedValues[index], image.get(x, y, 0, reflectStrategy), 0.0);
+				index++;
+			}
+		}
+	}
+
+	@Test
+	public void testWrapImage() {
+		StandardImage image = new StandardImage(3, 2, 1, new double []{1, 2, 3, 4, 5, 6});
+		WrapStrategy wrapStrategy = new WrapStrategy();
+		for(int y = -5; y < 5; y++) {
+			for(int x = -7; x < 7; x++) {
+				int trueX = (x + 9) % 3;
+				int trueY = (y + 6) % 2;
+				Assert.assertEquals(image.get(trueX, trueY, 0), image.get(x, y, 0, wrapStrategy), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testConstantImage() {
+		StandardImage image = new StandardImage(3, 2, 1, new double []{1, 2, 3, 4, 5, 6});
+		ConstantStrategy constantStrategy = new ConstantStrategy(-7);
+		Assert.assertEquals(-7, image.get(-1, 0, 0, constantStrategy), 0.0);
+		Assert.assertEquals(-7, image.get(1, 2, 0, constantStrategy), 0.0);
+		Assert.assertEquals(5, image.get(1, 1, 0, constantStrategy), 0.0);
+		Assert.assertEquals(0, image.get(1, 2, 0, new ConstantStrategy()), 0.0);
+	}
+
 }
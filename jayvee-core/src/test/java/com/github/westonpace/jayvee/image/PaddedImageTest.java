@@ -0,0 +1,74 @@
+package com.github.westonpace.jayvee.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ConstantStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ExtendEdgesStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ReflectStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.WrapStrategy;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class PaddedImageTest extends TestBase {
+
+	private static Image createImage() {
+		ByteImage image = new ByteImage(4, 3, 2);
+		for(int y = 0; y < 3; y++) {
+			for(int x = 0; x < 4; x++) {
+				image.set(x, y, 0, x + y * 10);
+				image.set(x, y, 1, 100 + x + y * 10);
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Every pixel of the padded image (read one at a time, by row, and after being
+	 * materialized) should match reading the source with the strategy
+	 */
+	@Test
+	public void testStrategies() {
+		Image source = createImage();
+		OutOfBoundsAccessStrategy [] strategies = new OutOfBoundsAccessStrategy [] {new ExtendEdgesStrategy(), new ReflectStrategy(), new WrapStrategy(),
+				new ConstantStrategy(42)};
+		for(OutOfBoundsAccessStrategy strategy : strategies) {
+			PaddedImage padded = new PaddedImage(source, 5, strategy);
+			Assert.assertEquals(14, padded.getWidth());
+			Assert.assertEquals(13, padded.getHeight());
+			Assert.assertEquals(2, padded.getNumBands());
+			Assert.assertEquals(SampleType.UnsignedByte, padded.getSampleType());
+			ArrayImage materialized = padded.materialize();
+			Assert.assertEquals(SampleType.UnsignedByte, materialized.getSampleType());
+			double [] row = new double[padded.getWidth()];
+			for(int b = 0; b < 2; b++) {
+				for(int y = 0; y < padded.getHeight(); y++) {
+					padded.getRow(y, b, row, 0);
+					for(int x = 0; x < padded.getWidth(); x++) {
+						double expected = source.get(x - 5, y - 5, b, strategy);
+						Assert.assertEquals(expected, padded.get(x, y, b), 0.0);
+						Assert.assertEquals(expected, row[x], 0.0);
+						Assert.assertEquals(expected, materialized.get(x, y, b), 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWriteThrough() {
+		Image source = createImage();
+		PaddedImage padded = new PaddedImage(source, 1, new ExtendEdgesStrategy());
+		padded.set(1, 1, 0, 77);
+		Assert.assertEquals(77, source.get(0, 0, 0), 0.0);
+		Assert.assertEquals(77, padded.get(0, 0, 0), 0.0);
+		Assert.assertEquals(1, padded.getBorder());
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testBorderReadOnly() {
+		new PaddedImage(createImage(), 1, new ExtendEdgesStrategy()).set(0, 1, 0, 5);
+	}
+
+}
@@ -0,0 +1,183 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.Layout;
+import com.github.westonpace.jayvee.image.Image.PixelOrder;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.Image.TiledOrder;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class PixelCursorTest extends TestBase {
+
+	private static Image [] createImages() {
+		Image [] images = new Image [] {
+				new StandardImage(5, 3, 3),
+				new StandardImage(5, 3, 3, Layout.Planar),
+				new ShortImage(5, 3, 1, Layout.Planar),
+				new IntImage(8, 6, 4).subImage(2, 1, 5, 3).subBands(1, 3),
+				new ByteImage(9, 4, 3).subImage(1, 1, 5, 3),
+				new TiledImage(5, 3, 3, 2, 2, SampleType.Float32)
+		};
+		for(Image image : images) {
+			for(int y = 0; y < image.getHeight(); y++) {
+				for(int x = 0; x < image.getWidth(); x++) {
+					for(int b = 0; b < image.getNumBands(); b++) {
+						image.set(x, y, b, x + y * 10 + b * 50);
+					}
+				}
+			}
+		}
+		return images;
+	}
+
+	/*
+	 * Each order is either a PixelOrder or a TiledOrder
+	 */
+	private static Object [] createOrders() {
+		return new Object [] {
+				PixelOrder.RowMajor,
+				PixelOrder.ColumnMajor,
+				new TiledOrder(2, 2),
+				new TiledOrder(3, 2),
+				new TiledOrder(100, 1)
+		};
+	}
+
+	private static PixelCursor getCursor(Image image, Object order) {
+		if(order instanceof TiledOrder) {
+			return image.getPixelCursor((TiledOrder) order);
+		}
+		return image.getPixelCursor((PixelOrder) order);
+	}
+
+	/**
+	 * Returns the values of the image in the given order the slow (but obviously correct) way
+	 */
+	private static double [] expectedValues(Image image, Object order) {
+		double [] result = new double[image.getWidth() * image.getHeight() * image.getNumBands()];
+		int index = 0;
+		if(order instanceof TiledOrder) {
+			TiledOrder tiledOrder = (TiledOrder) order;
+			for(int tileY = 0; tileY < image.getHeight(); tileY += tiledOrder.getTileHeight()) {
+				for(int tileX = 0; tileX < image.getWidth(); tileX += tiledOrder.getTileWidth()) {
+					for(int y = tileY; y < Math.min(tileY + tiledOrder.getTileHeight(), image.getHeight()); y++) {
+						for(int x = tileX; x < Math.min(tileX + tiledOrder.getTileWidth(), image.getWidth()); x++) {
+							for(int b = 0; b < image.getNumBands(); b++) {
+								result[index++] = image.get(x, y, b);
+							}
+						}
+					}
+				}
+			}
+			return result;
+		}
+		PixelOrder pixelOrder = (PixelOrder) order;
+		int outer = pixelOrder == PixelOrder.RowMajor ? image.getHeight() : image.getWidth();
+		int inner = pixelOrder == PixelOrder.RowMajor ? image.getWidth() : image.getHeight();
+		for(int i = 0; i < outer; i++) {
+			for(int j = 0; j < inner; j++) {
+				for(int b = 0; b < image.getNumBands(); b++) {
+					result[index++] = pixelOrder == PixelOrder.RowMajor ? image.get(j, i, b) : image.get(i, j, b);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testNextDouble() {
+		for(Image image : createImages()) {
+			for(Object order : createOrders()) {
+				double [] expected = expectedValues(image, order);
+				PixelCursor cursor = getCursor(image, order);
+				for(int i = 0; i < expected.length; i++) {
+					Assert.assertTrue(cursor.hasNext());
+					if(i % 2 == 0) {
+						Assert.assertEquals(expected[i], cursor.nextDouble(), 0.0);
+					} else {
+						Assert.assertEquals((int) expected[i], cursor.nextInt());
+					}
+				}
+				Assert.assertFalse(cursor.hasNext());
+			}
+		}
+	}
+
+	/**
+	 * Bulk reads should return the same values regardless of how they line up with rows
+	 */
+	@Test
+	public void testBulkNext() {
+		for(Image image : createImages()) {
+			for(Object order : createOrders()) {
+				double [] expected = expectedValues(image, order);
+				for(int chunk : new int [] { 1, 4, 7, 15, 1000 }) {
+					PixelCursor cursor = getCursor(image, order);
+					double [] actual = new double[expected.length + 1];
+					int total = 0;
+					while(cursor.hasNext()) {
+						int read = cursor.next(actual, total + 1, Math.min(chunk, actual.length - total - 1));
+						Assert.assertTrue(read > 0);
+						total += read;
+					}
+					Assert.assertEquals(expected.length, total);
+					Assert.assertEquals(0, cursor.next(actual, 0, 5));
+					for(int i = 0; i < expected.length; i++) {
+						Assert.assertEquals(expected[i], actual[i + 1], 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tiled order with 2x2 tiles on a 3x3 image (see the Image class comment)
+	 */
+	@Test
+	public void testTiledOrder() {
+		StandardImage image = new StandardImage(3, 3, 1, new double [] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		double [] values = new double[9];
+		Assert.assertEquals(9, image.getPixelCursor(new TiledOrder(2, 2)).next(values, 9));
+		Assert.assertArrayEquals(new double [] { 1, 2, 4, 5, 3, 6, 7, 8, 9 }, values, 0.0);
+		Assert.assertEquals(new TiledOrder(2, 2), new TiledOrder(2, 2));
+		Assert.assertFalse(new TiledOrder(2, 2).equals(new TiledOrder(2, 3)));
+
+		//The writer and the boxed iterable visit the same order
+		StandardImage written = new StandardImage(3, 3, 1);
+		written.getPixelWriter(new TiledOrder(2, 2)).putNext(values, 0, 9);
+		assertEquals(image, written, 0.0);
+		int index = 0;
+		for(double value : image.getPixels(new TiledOrder(2, 2))) {
+			Assert.assertEquals(values[index++], value, 0.0);
+		}
+	}
+
+	/**
+	 * The untiled orders are a plain enum
+	 */
+	@Test
+	public void testPixelOrderEnum() {
+		Assert.assertEquals(PixelOrder.ColumnMajor, PixelOrder.valueOf("ColumnMajor"));
+		Assert.assertEquals(1, PixelOrder.ColumnMajor.ordinal());
+		Assert.assertEquals(2, PixelOrder.values().length);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testEmptyTile() {
+		new TiledOrder(0, 4);
+	}
+
+	@Test(expected=NoSuchElementException.class)
+	public void testReadPastEnd() {
+		PixelCursor cursor = new StandardImage(1, 1, 2).getPixelCursor();
+		cursor.nextDouble();
+		cursor.nextDouble();
+		cursor.nextDouble();
+	}
+
+}
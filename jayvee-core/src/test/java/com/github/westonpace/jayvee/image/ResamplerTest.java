@@ -0,0 +1,168 @@
+package com.github.westonpace.jayvee.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Resampler.Filter;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class ResamplerTest extends TestBase {
+
+	private static Image createGradient(int width, int height, int numBands) {
+		StandardImage image = new StandardImage(width, height, numBands);
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				for(int b = 0; b < numBands; b++) {
+					image.set(x, y, b, x * 3 + y * y + b * 100);
+				}
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Resampling to the same size should not change the image, whatever the filter
+	 */
+	@Test
+	public void testSameSize() {
+		Image source = createGradient(7, 5, 2);
+		for(Filter filter : Filter.values()) {
+			StandardImage destination = new StandardImage(7, 5, 2);
+			new Resampler(filter).resample(source, destination);
+			assertEquals(source, destination, 0.000001);
+		}
+	}
+
+	/**
+	 * The weights are normalized so a constant image stays constant
+	 */
+	@Test
+	public void testConstant() {
+		StandardImage source = new StandardImage(9, 4, 1);
+		source.fill(42);
+		int [][] sizes = new int [][] {{3, 2}, {20, 11}, {1, 1}, {9, 13}};
+		for(Filter filter : Filter.values()) {
+			for(int [] size : sizes) {
+				StandardImage destination = new StandardImage(size[0], size[1], 1);
+				new Resampler(filter).resample(source, destination);
+				for(double value : destination.getPixels()) {
+					Assert.assertEquals(42, value, 0.000001);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNearestNeighbor() {
+		StandardImage source = new StandardImage(4, 1, 1, new double [] {1, 2, 3, 4});
+		StandardImage smaller = new StandardImage(2, 1, 1);
+		new Resampler(Filter.NearestNeighbor).resample(source, smaller);
+		Assert.assertEquals(2, smaller.get(0, 0, 0), 0.0);
+		Assert.assertEquals(4, smaller.get(1, 0, 0), 0.0);
+
+		StandardImage larger = new StandardImage(8, 2, 1);
+		new Resampler(Filter.NearestNeighbor).resample(source, larger);
+		for(int x = 0; x < 8; x++) {
+			Assert.assertEquals(1 + x / 2, larger.get(x, 0, 0), 0.0);
+			Assert.assertEquals(1 + x / 2, larger.get(x, 1, 0), 0.0);
+		}
+	}
+
+	/**
+	 * Doubling [0 4] puts the new pixel centers a quarter of the way between the old ones
+	 */
+	@Test
+	public void testBilinearEnlarge() {
+		StandardImage source = new StandardImage(2, 1, 1, new double [] {0, 4});
+		StandardImage destination = new StandardImage(4, 1, 1);
+		new Resampler(Filter.Bilinear).resample(source, destination);
+		double [] expected = new double [] {0, 1, 3, 4};
+		for(int x = 0; x < 4; x++) {
+			Assert.assertEquals(expected[x], destination.get(x, 0, 0), 0.000001);
+		}
+	}
+
+	/**
+	 * Integer images should be rounded and clamped (Lanczos overshoots at sharp edges)
+	 */
+	@Test
+	public void testIntegerImages() {
+		ByteImage source = new ByteImage(4, 4, 3);
+		source.set(1, 1, 0, 255);
+		source.set(2, 1, 0, 255);
+		ByteImage destination = new ByteImage(7, 7, 3);
+		new Resampler(Filter.Lanczos3).resample(source, destination);
+		for(double value : destination.getPixels()) {
+			Assert.assertTrue(value >= 0 && value <= 255 && value == Math.floor(value));
+		}
+		Assert.assertEquals(0, destination.get(3, 3, 1), 0.0);
+	}
+
+	/**
+	 * One resampler reused across sizes (and so across scratch rows) should match a direct
+	 * 2D weighted sum of the source
+	 */
+	@Test
+	public void testMatchesDirectSum() {
+		Image source = createGradient(23, 17, 2);
+		int [][] sizes = new int [][] {{5, 3}, {40, 31}, {23, 4}, {2, 17}, {11, 9}};
+		for(Filter filter : Filter.values()) {
+			Resampler resampler = new Resampler(filter);
+			for(int [] size : sizes) {
+				StandardImage destination = new StandardImage(size[0], size[1], 2);
+				resampler.resample(source, destination);
+				Resampler.WeightTable columns = Resampler.getWeightTable(23, size[0], filter);
+				Resampler.WeightTable rows = Resampler.getWeightTable(17, size[1], filter);
+				for(int y = 0; y < size[1]; y++) {
+					for(int x = 0; x < size[0]; x++) {
+						for(int b = 0; b < 2; b++) {
+							double expected = 0;
+							for(int ty = 0; ty < rows.taps; ty++) {
+								for(int tx = 0; tx < columns.taps; tx++) {
+									double weight = rows.weights[y * rows.taps + ty] * columns.weights[x * columns.taps + tx];
+									expected += weight * source.get(columns.starts[x] + tx, rows.starts[y] + ty, b);
+								}
+							}
+							Assert.assertEquals(expected, destination.get(x, y, b), 0.000001);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resampling a pyramid should start from the smallest level which is at least as large
+	 * as the destination in both dimensions
+	 */
+	@Test
+	public void testPyramid() {
+		Image source = createGradient(64, 40, 1);
+		ImagePyramid pyramid = new ImagePyramid(source);
+		StandardImage destination = new StandardImage(8, 6, 1);
+		new Resampler(Filter.Bilinear).resample(pyramid, destination);
+		//8/64 would allow level 3 but 6/40 only allows level 2
+		Assert.assertEquals(3, pyramid.getBuiltLevels());
+		StandardImage expected = new StandardImage(8, 6, 1);
+		new Resampler(Filter.Bilinear).resample(pyramid.getLevel(2), expected);
+		assertEquals(expected, destination, 0.0);
+
+		//Enlarging uses the base
+		pyramid = new ImagePyramid(source);
+		new Resampler(Filter.Bilinear).resample(pyramid, new StandardImage(100, 50, 1));
+		Assert.assertEquals(1, pyramid.getBuiltLevels());
+	}
+
+	@Test
+	public void testWeightTablesCached() {
+		Assert.assertSame(Resampler.getWeightTable(640, 128, Filter.Bicubic), Resampler.getWeightTable(640, 128, Filter.Bicubic));
+		Assert.assertNotSame(Resampler.getWeightTable(640, 128, Filter.Bicubic), Resampler.getWeightTable(640, 128, Filter.Lanczos3));
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testBandMismatch() {
+		new Resampler(Filter.Bilinear).resample(new StandardImage(3, 3, 3), new StandardImage(2, 2, 1));
+	}
+
+}
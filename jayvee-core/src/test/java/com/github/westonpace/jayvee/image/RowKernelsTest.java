@@ -0,0 +1,73 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.test.TestBase;
+
+public class RowKernelsTest extends TestBase {
+
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * Whichever kernels are loaded should behave like the scalar ones
+	 */
+	private final RowKernels kernels = RowKernels.getInstance();
+
+	@Test
+	public void testAverageBands() {
+		double [] source = new double[] { 9, 1, 2, 3, 4, 5, 6, 7 };
+		double [] destination = new double[3];
+		kernels.averageBands(source, 2, 3, destination, 1, 2);
+		Assert.assertArrayEquals(new double[] { 0, 3, 6 }, destination, EPSILON);
+	}
+
+	@Test
+	public void testScaleAndOffset() {
+		double [] values = new double[] { 1, 2, 3, 4 };
+		kernels.scaleAndOffset(values, 1, 2, 0.5, values, 1, 3);
+		Assert.assertArrayEquals(new double[] { 1, 4.5, 6.5, 8.5 }, values, EPSILON);
+	}
+
+	@Test
+	public void testMultiplyAdd() {
+		double [] source = new double[] { 1, 2, 3 };
+		double [] destination = new double[] { 10, 10, 10 };
+		kernels.multiplyAdd(source, 1, 0.5, destination, 0, 2);
+		Assert.assertArrayEquals(new double[] { 11, 11.5, 10 }, destination, EPSILON);
+	}
+
+	@Test
+	public void testByteConversions() {
+		byte [] bytes = new byte[] { 0, 1, (byte) 127, (byte) 128, (byte) 255 };
+		double [] values = new double[bytes.length + 1];
+		kernels.unsignedBytesToDoubles(bytes, 0, values, 1, bytes.length);
+		Assert.assertArrayEquals(new double[] { 0, 0, 1, 127, 128, 255 }, values, EPSILON);
+
+		double [] unconverted = new double[] { -3, 0.49, 0.5, 254.4, 300, Double.NaN };
+		byte [] converted = new byte[unconverted.length];
+		kernels.doublesToUnsignedBytes(unconverted, 0, converted, 0, unconverted.length);
+		for(int i = 0; i < unconverted.length; i++) {
+			Assert.assertEquals(ByteImage.toByte(unconverted[i]), converted[i]);
+		}
+		Assert.assertEquals(1, converted[2]);
+		Assert.assertEquals((byte) 254, converted[3]);
+		Assert.assertEquals((byte) 255, converted[4]);
+		Assert.assertEquals(0, converted[5]);
+	}
+
+	@Test
+	public void testByteImageRows() {
+		ByteImage image = new ByteImage(4, 2, 2);
+		double [] row = new double[] { 0, 10.4, 20.6, 255, 300, -1, 128, 7 };
+		image.setRegion(0, 1, 4, 1, row, 0);
+		double [] read = new double[8];
+		image.getRegion(0, 1, 4, 1, read, 0);
+		Assert.assertArrayEquals(new double[] { 0, 10, 21, 255, 255, 0, 128, 7 }, read, EPSILON);
+		image.getRow(1, 1, read, 0);
+		Assert.assertArrayEquals(new double[] { 10, 255, 0, 7 }, Arrays.copyOf(read, 4), EPSILON);
+	}
+
+}
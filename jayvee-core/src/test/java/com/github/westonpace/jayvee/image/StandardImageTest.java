@@ -1,11 +1,15 @@
 package com.github.westonpace.jayvee.image;
 
+import java.util.NoSuchElementException;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.github.westonpace.jayvee.image.StandardImage;
 import com.github.westonpace.jayvee.image.Image.PixelOrder;
+import com.github.westonpace.jayvee.image.Image.SampleType;
 import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.DoubleSinkerator;
 import com.github.westonpace.jayvee.util.InvalidParameterException;
 import com.github.westonpace.jayvee.util.Sinkerator;
 
@@ -171,6 +175,46 @@ public class StandardImageTest extends TestBase {
 		}
 
 	}
+
+	/**
+	 * Writes values in bulk (across row boundaries) and skips some values
+	 */
+	@Test
+	public void testBulkWriting() {
+		for(PixelOrder pixelOrder : PixelOrder.values()) {
+			Image [] images = new Image [] {
+					new StandardImage(3, 4, 2),
+					new StandardImage(5, 6, 2).subImage(1, 1, 3, 4),
+					new TiledImage(3, 4, 2, 2, 2, SampleType.Float64)
+			};
+			for(Image image : images) {
+				double [] values = new double[24];
+				for(int i = 0; i < values.length; i++) {
+					values[i] = i + 1;
+				}
+				DoubleSinkerator pixelWriter = image.getPixelWriter(pixelOrder);
+				pixelWriter.putNext(values, 0, 7);
+				pixelWriter.skip(3);
+				pixelWriter.putNext(11.0);
+				pixelWriter.putNext(values, 11, 13);
+				Assert.assertFalse(pixelWriter.hasNext());
+				//The skipped values were never written
+				values[7] = values[8] = values[9] = 0;
+				PixelCursor cursor = image.getPixelCursor(pixelOrder);
+				for(int i = 0; i < values.length; i++) {
+					Assert.assertEquals(values[i], cursor.nextDouble(), 0.0);
+				}
+			}
+		}
+	}
+
+	@Test(expected=NoSuchElementException.class)
+	public void testBulkWritingPastEnd() {
+		StandardImage image = new StandardImage(2, 2, 1);
+		DoubleSinkerator pixelWriter = image.getPixelWriter();
+		pixelWriter.skip(1);
+		pixelWriter.putNext(new double[4], 0, 4);
+	}
 	
 	/**
 	 * Tests accessing image values using get(x, y, b)
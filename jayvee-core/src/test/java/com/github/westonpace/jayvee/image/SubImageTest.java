@@ -0,0 +1,153 @@
+package com.github.westonpace.jayvee.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.Layout;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class SubImageTest extends TestBase {
+
+	/**
+	 * Fills an image so that every value is x + y*10 + b*100
+	 */
+	private static void fill(Image image) {
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				for(int b = 0; b < image.getNumBands(); b++) {
+					image.set(x, y, b, x + y * 10 + b * 100);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sub images of every kind of array image should share the parent's array
+	 */
+	@Test
+	public void testArraySubImage() {
+		for(Layout layout : Layout.values()) {
+			for(SampleType sampleType : SampleType.values()) {
+				if(sampleType == SampleType.UnsignedByte) {
+					continue;
+				}
+				ArrayImage image = ArrayImage.create(6, 5, 3, sampleType, layout);
+				fill(image);
+				ArrayImage region = image.subImage(2, 1, 3, 4);
+				Assert.assertEquals(image.getClass(), region.getClass());
+				Assert.assertEquals(3, region.getWidth());
+				Assert.assertEquals(4, region.getHeight());
+				Assert.assertEquals(3, region.getNumBands());
+				Assert.assertEquals(layout, region.getLayout());
+				Assert.assertEquals(2 + 1 * 10 + 2 * 100, region.get(0, 0, 2), 0.0);
+				Assert.assertEquals(4 + 4 * 10, region.get(2, 3, 0), 0.0);
+				//Writes go straight through to the parent
+				region.set(1, 2, 1, 999);
+				Assert.assertEquals(999, image.get(3, 3, 1), 0.0);
+				//Iteration only covers the region
+				int count = 0;
+				for(double value : region.getPixels()) {
+					Assert.assertTrue(value == 999 || (value % 10 >= 2 && value % 10 <= 4));
+					count++;
+				}
+				Assert.assertEquals(3 * 4 * 3, count);
+			}
+		}
+	}
+
+	/**
+	 * Band subsets and sub images of sub images should combine their offsets
+	 */
+	@Test
+	public void testSubBands() {
+		for(Layout layout : Layout.values()) {
+			ShortImage image = new ShortImage(4, 4, 3, layout);
+			fill(image);
+			ArrayImage green = image.subBands(1, 1);
+			Assert.assertEquals(1, green.getNumBands());
+			Assert.assertEquals(2 + 3 * 10 + 100, green.get(2, 3, 0), 0.0);
+			ArrayImage nested = green.subImage(1, 1, 2, 2);
+			Assert.assertEquals(2 + 1 * 10 + 100, nested.get(1, 0, 0), 0.0);
+			Assert.assertEquals(image.getData(), ((ShortImage) nested).getData());
+			Assert.assertEquals(image.indexOf(1, 1, 1), nested.getOffset());
+		}
+	}
+
+	/**
+	 * Copying out of a view (or into one) should only touch the view's values
+	 */
+	@Test
+	public void testCopyView() {
+		StandardImage image = new StandardImage(5, 5, 3);
+		fill(image);
+		ArrayImage copy = ArrayImage.create(2, 3, 2, SampleType.Float64, Layout.Planar);
+		image.subImage(1, 1, 2, 3).subBands(1, 2).copyTo(copy);
+		Assert.assertEquals(1 + 10 + 100, copy.get(0, 0, 0), 0.0);
+		Assert.assertEquals(2 + 30 + 200, copy.get(1, 2, 1), 0.0);
+
+		StandardImage target = new StandardImage(4, 4, 3);
+		image.subImage(0, 0, 2, 2).copyTo(target.subImage(2, 2, 2, 2));
+		Assert.assertEquals(0, target.get(1, 1, 0), 0.0);
+		Assert.assertEquals(0, target.get(2, 2, 0), 0.0);
+		Assert.assertEquals(1 + 10 + 200, target.get(3, 3, 2), 0.0);
+	}
+
+	/**
+	 * Images that aren't array images get a view that translates coordinates
+	 */
+	@Test
+	public void testGenericView() {
+		TiledImage image = new TiledImage(9, 9, 2, 4, 4, SampleType.Float32);
+		fill(image);
+		Image view = image.subImage(3, 2, 5, 5).subBands(1, 1).subImage(1, 1, 2, 2);
+		Assert.assertEquals(2, view.getWidth());
+		Assert.assertEquals(1, view.getNumBands());
+		Assert.assertEquals(SampleType.Float32, view.getSampleType());
+		Assert.assertEquals(5 + 4 * 10 + 100, view.get(1, 1, 0), 0.0);
+		view.set(0, 0, 0, 7);
+		Assert.assertEquals(7, image.get(4, 3, 1), 0.0);
+	}
+
+	/**
+	 * Views of direct images share the buffer and write out only their own values
+	 */
+	@Test
+	public void testDirectView() throws IOException {
+		DirectImage image = new DirectImage(3, 3, 2, SampleType.UnsignedByte);
+		fill(image);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		((DirectImage) image.subImage(1, 1, 2, 2)).writeTo(Channels.newChannel(output));
+		Assert.assertArrayEquals(new byte [] {11, 111, 12, 112, 21, (byte) 121, 22, (byte) 122}, output.toByteArray());
+		output.reset();
+		((DirectImage) image.subImage(1, 1, 2, 2).subBands(1, 1)).writeTo(Channels.newChannel(output));
+		Assert.assertArrayEquals(new byte [] {111, 112, (byte) 121, (byte) 122}, output.toByteArray());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testDirectViewAfterClose() {
+		DirectImage image = new DirectImage(3, 3, 1, SampleType.UnsignedByte);
+		DirectImage view = (DirectImage) image.subImage(1, 1, 1, 1);
+		view.close();
+		Assert.assertFalse(image.isClosed());
+		image.close();
+		Assert.assertTrue(view.isClosed());
+		view.get(0, 0, 0);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testRegionOutOfBounds() {
+		new ByteImage(4, 4, 1).subImage(2, 2, 3, 1);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testBandsOutOfBounds() {
+		new ByteImage(4, 4, 3).subBands(2, 2);
+	}
+
+}
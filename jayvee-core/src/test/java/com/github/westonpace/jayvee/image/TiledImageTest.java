@@ -0,0 +1,215 @@
+package com.github.westonpace.jayvee.image;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.TiledImage.TileStore;
+import com.github.westonpace.jayvee.image.worker.basic.Gain;
+import com.github.westonpace.jayvee.image.worker.basic.ToGrayscale;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+
+public class TiledImageTest extends TestBase {
+
+	/**
+	 * A tile store that keeps tiles in a map and counts how often it is used.  Tiles
+	 * which have never been stored are filled with x + y*1000 + b*1000000.
+	 */
+	private static class CountingTileStore implements TileStore {
+
+		private Map<String, double[]> stored = new HashMap<String, double[]>();
+		private int loads = 0;
+		private int stores = 0;
+
+		@Override
+		public void loadTile(int tileX, int tileY, ArrayImage tile) {
+			loads++;
+			double [] values = stored.get(tileX + "," + tileY);
+			int index = 0;
+			for(int y = 0; y < tile.getHeight(); y++) {
+				for(int x = 0; x < tile.getWidth(); x++) {
+					for(int b = 0; b < tile.getNumBands(); b++) {
+						if(values != null) {
+							tile.set(x, y, b, values[index++]);
+						} else {
+							tile.set(x, y, b, (tileX * 4 + x) + (tileY * 4 + y) * 1000 + b * 1000000);
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public void storeTile(int tileX, int tileY, ArrayImage tile) {
+			stores++;
+			double [] values = new double[tile.getWidth() * tile.getHeight() * tile.getNumBands()];
+			int index = 0;
+			for(double value : tile.getPixels()) {
+				values[index++] = value;
+			}
+			stored.put(tileX + "," + tileY, values);
+		}
+
+	}
+
+	/**
+	 * Values written into different tiles should all be read back
+	 */
+	@Test
+	public void testReadWrite() {
+		TiledImage image = new TiledImage(10, 7, 2, 4, 3, SampleType.Float64);
+		Assert.assertEquals(3, image.getTilesAcross());
+		Assert.assertEquals(3, image.getTilesDown());
+		for(int y = 0; y < 7; y++) {
+			for(int x = 0; x < 10; x++) {
+				image.set(x, y, 0, x + y * 10);
+				image.set(x, y, 1, -(x + y * 10));
+			}
+		}
+		for(int y = 0; y < 7; y++) {
+			for(int x = 0; x < 10; x++) {
+				Assert.assertEquals(x + y * 10, image.get(x, y, 0), 0.0);
+				Assert.assertEquals(-(x + y * 10), image.get(x, y, 1), 0.0);
+			}
+		}
+		//The edge tiles are clipped to the image so the tiles hold exactly the image
+		Assert.assertEquals(10 * 7 * 2 * 8, image.getResidentBytes());
+		//The pixel iterator works across tiles
+		int index = 0;
+		for(double value : image.getPixels()) {
+			int pixel = index / 2;
+			Assert.assertEquals((index % 2 == 0 ? 1 : -1) * pixel, value, 0.0);
+			index++;
+		}
+		Assert.assertEquals(140, index);
+	}
+
+	/**
+	 * Tiles which are never written should never be allocated
+	 */
+	@Test
+	public void testLazyAllocation() {
+		//Far too many values for a single array
+		TiledImage image = new TiledImage(100000, 100000, 3, 256, 256, SampleType.UnsignedByte);
+		Assert.assertEquals(0, image.get(99999, 99999, 2), 0.0);
+		Assert.assertEquals(0, image.getResidentBytes());
+		image.set(99999, 99999, 2, 17);
+		image.set(5, 5, 0, 3);
+		Assert.assertEquals(17, image.get(99999, 99999, 2), 0.0);
+		Assert.assertEquals(3, image.get(5, 5, 0), 0.0);
+		Assert.assertEquals(256 * 256 * 3 + 160 * 160 * 3, image.getResidentBytes());
+	}
+
+	/**
+	 * Tiles should be loaded on first access and clean tiles evicted to stay on budget
+	 */
+	@Test
+	public void testLoadAndEvict() {
+		CountingTileStore store = new CountingTileStore();
+		//Each 4x4x1 double tile is 128 bytes, allow 2 tiles in memory
+		TiledImage image = new TiledImage(8, 8, 1, 4, 4, SampleType.Float64, store, 256);
+		Assert.assertEquals(3001, image.get(1, 3, 0), 0.0);
+		Assert.assertEquals(2007, image.get(7, 2, 0), 0.0);
+		Assert.assertEquals(2, store.loads);
+		Assert.assertEquals(256, image.getResidentBytes());
+		//A third tile evicts the least recently used one
+		Assert.assertEquals(6005, image.get(5, 6, 0), 0.0);
+		Assert.assertEquals(3, store.loads);
+		Assert.assertEquals(256, image.getResidentBytes());
+		Assert.assertEquals(0, store.stores);
+		//Modify a tile, push it out, and make sure the modification survives
+		image.set(5, 6, 0, -1);
+		image.get(0, 0, 0);
+		image.get(0, 7, 0);
+		Assert.assertEquals(1, store.stores);
+		Assert.assertEquals(-1, image.get(5, 6, 0), 0.0);
+	}
+
+	/**
+	 * Image transformers should produce a tiled output for a tiled input
+	 */
+	@Test
+	public void testTransformTiledImage() {
+		TiledImage image = new TiledImage(5, 5, 3, 2, 2, SampleType.UnsignedByte);
+		image.set(4, 4, 0, 3);
+		image.set(4, 4, 1, 6);
+		image.set(4, 4, 2, 9);
+
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		ToGrayscale toGrayscale = new ToGrayscale();
+		toGrayscale.inputImages = newBuffer((Image) image);
+		toGrayscale.outputImages = outputImages;
+		toGrayscale.iterate();
+
+		Image result = outputImages.pop();
+		Assert.assertTrue(result instanceof TiledImage);
+		Assert.assertEquals(1, result.getNumBands());
+		Assert.assertEquals(6, result.get(4, 4, 0), 0.0);
+		Assert.assertEquals(0, result.get(0, 0, 0), 0.0);
+	}
+
+	/**
+	 * The output of a transform should stay within the input's budget, and the input
+	 * should be read one tile at a time so that each tile is only loaded once
+	 */
+	@Test
+	public void testTransformWithinBudget() {
+		CountingTileStore store = new CountingTileStore();
+		//Each 4x4x1 double tile is 128 bytes, allow 2 tiles in memory
+		TiledImage image = new TiledImage(12, 12, 1, 4, 4, SampleType.Float64, store, 256);
+
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		Gain gain = new Gain();
+		gain.setGain(2);
+		gain.inputImages = newBuffer((Image) image);
+		gain.outputImages = outputImages;
+		gain.iterate();
+
+		Assert.assertEquals(9, store.loads);
+		TiledImage result = (TiledImage) outputImages.pop();
+		Assert.assertTrue(result.getResidentBytes() <= 256);
+		Assert.assertTrue(image.getResidentBytes() <= 256);
+		for(int y = 0; y < 12; y++) {
+			for(int x = 0; x < 12; x++) {
+				Assert.assertEquals((x + y * 1000) * 2, result.get(x, y, 0), 0.0);
+			}
+		}
+		result.release();
+		Assert.assertEquals(0, result.getResidentBytes());
+	}
+
+	/**
+	 * Regions that span several tiles should be read and written across the tiles
+	 */
+	@Test
+	public void testRegions() {
+		TiledImage image = new TiledImage(10, 7, 2, 4, 3, SampleType.Float64);
+		double [] values = new double[7 * 4 * 2];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		image.setRegion(2, 1, 7, 4, values, 0);
+		Assert.assertEquals(0, image.get(2, 1, 0), 0.0);
+		Assert.assertEquals(3, image.get(3, 1, 1), 0.0);
+		Assert.assertEquals(14 + 13, image.get(8, 2, 1), 0.0);
+		double [] read = new double[values.length + 2];
+		image.getRegion(2, 1, 7, 4, read, 2);
+		for(int i = 0; i < values.length; i++) {
+			Assert.assertEquals(values[i], read[i + 2], 0.0);
+		}
+		//Tiles that were never written read as 0
+		image.getRegion(0, 0, 10, 1, read, 0);
+		Assert.assertEquals(0, read[19], 0.0);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testTooLargeForArray() {
+		new ByteImage(100000, 100000, 3);
+	}
+
+}
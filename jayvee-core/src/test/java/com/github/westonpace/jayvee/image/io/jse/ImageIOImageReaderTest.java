@@ -1,11 +1,19 @@
 package com.github.westonpace.jayvee.image.io.jse;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 
+import javax.imageio.ImageIO;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
 import com.github.westonpace.jayvee.image.io.jse.ImageIOImageReader;
 import com.github.westonpace.jayvee.test.ArrayListBuffer;
 import com.github.westonpace.jayvee.test.TestBase;
@@ -53,6 +61,12 @@ public class ImageIOImageReaderTest extends TestBase {
 		Assert.assertEquals(1, grayBmp.getNumBands());
 		Assert.assertEquals(3, colorPng.getNumBands());
 		Assert.assertEquals(3, colorBmp.getNumBands());
+		
+		//All of the test images are 8 bit and should stay that way
+		Assert.assertEquals(SampleType.UnsignedByte, colorPng.getSampleType());
+		Assert.assertEquals(SampleType.UnsignedByte, grayPng.getSampleType());
+		Assert.assertEquals(SampleType.UnsignedByte, colorBmp.getSampleType());
+		Assert.assertEquals(SampleType.UnsignedByte, grayBmp.getSampleType());
 
 		//The gray images should be identical and the color images should be identical
 		for(int y = 0; y < colorPng.getHeight(); y++) {
@@ -102,4 +116,50 @@ public class ImageIOImageReaderTest extends TestBase {
 			}
 		}
 	}
+
+	private static InputStream encode(BufferedImage image, String format) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Assert.assertTrue(ImageIO.write(image, format, output));
+		return new ByteArrayInputStream(output.toByteArray());
+	}
+
+	/**
+	 * Images that don't fit one of the fast paths (a 2 bit indexed color PNG and a 16 bit
+	 * gray PNG) should still be read
+	 */
+	@Test
+	public void testOtherImageTypes() throws IOException {
+		//Black, red, white, and blue
+		IndexColorModel palette = new IndexColorModel(2, 4, new byte [] {0, (byte) 255, (byte) 255, 0}, new byte [] {0, 0, (byte) 255, 0},
+				new byte [] {0, 0, (byte) 255, (byte) 255});
+		BufferedImage indexed = new BufferedImage(4, 3, BufferedImage.TYPE_BYTE_BINARY, palette);
+		indexed.getRaster().setSample(1, 2, 0, 1);
+		indexed.getRaster().setSample(3, 0, 0, 2);
+		BufferedImage deepGray = new BufferedImage(4, 3, BufferedImage.TYPE_USHORT_GRAY);
+		deepGray.getRaster().setSample(2, 1, 0, 40000);
+
+		ArrayListBuffer<InputStream> inputImages = new ArrayListBuffer<InputStream>();
+		inputImages.add(encode(indexed, "png"));
+		inputImages.add(encode(deepGray, "png"));
+		ImageIOImageReader reader = new ImageIOImageReader();
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		reader.generatedImages = outputImages;
+		reader.inputStreamsToRead = inputImages;
+		reader.iterate();
+		reader.iterate();
+
+		Image color = outputImages.pop();
+		Assert.assertEquals(3, color.getNumBands());
+		Assert.assertEquals(SampleType.UnsignedByte, color.getSampleType());
+		Assert.assertEquals(255, color.get(1, 2, 0), 0.0);
+		Assert.assertEquals(0, color.get(1, 2, 1), 0.0);
+		Assert.assertEquals(255, color.get(3, 0, 2), 0.0);
+		Assert.assertEquals(0, color.get(0, 0, 0), 0.0);
+
+		Image gray = outputImages.pop();
+		Assert.assertEquals(1, gray.getNumBands());
+		Assert.assertEquals(SampleType.UnsignedShort, gray.getSampleType());
+		Assert.assertEquals(40000, gray.get(2, 1, 0), 0.0);
+		Assert.assertEquals(0, gray.get(0, 0, 0), 0.0);
+	}
 }
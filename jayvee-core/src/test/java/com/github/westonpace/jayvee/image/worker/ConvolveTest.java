@@ -0,0 +1,120 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.Kernel;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ConstantStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ExtendEdgesStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ReflectStrategy;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+
+public class ConvolveTest extends TestBase {
+
+	private static Image createInput(int width, int height, int numBands) {
+		Image image = ArrayImage.create(width, height, numBands, SampleType.UnsignedByte);
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				for(int b = 0; b < numBands; b++) {
+					image.set(x, y, b, (x * 37 + y * 11 + b * 91 + x * y) % 256);
+				}
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * The convolution written as the obvious loop over the kernel
+	 */
+	private static double reference(Image image, Kernel kernel, OutOfBoundsAccessStrategy strategy, int x, int y, int b) {
+		double sum = 0;
+		for(int ky = 0; ky < kernel.getHeight(); ky++) {
+			for(int kx = 0; kx < kernel.getWidth(); kx++) {
+				sum += kernel.getWeight(kx, ky) * image.get(x + kx - kernel.getCenterX(), y + ky - kernel.getCenterY(), b, strategy);
+			}
+		}
+		return sum;
+	}
+
+	private Image convolve(Convolve convolve, Image input) {
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		convolve.inputImages = newBuffer(input);
+		convolve.outputImages = outputImages;
+		convolve.setImagePool(null);
+		convolve.init();
+		convolve.iterate();
+		return outputImages.pop();
+	}
+
+	private void check(Image input, Kernel kernel, OutOfBoundsAccessStrategy strategy) {
+		Convolve convolve = new Convolve(kernel);
+		convolve.setOutOfBoundsAccessStrategy(strategy);
+		convolve.setMinStripRows(2);
+		Image output = convolve(convolve, input);
+		Assert.assertEquals(SampleType.Float64, output.getSampleType());
+		Assert.assertEquals(input.getNumBands(), output.getNumBands());
+		for(int y = 0; y < input.getHeight(); y++) {
+			for(int x = 0; x < input.getWidth(); x++) {
+				for(int b = 0; b < input.getNumBands(); b++) {
+					Assert.assertEquals("Wrong value at " + x + "," + y + "," + b, reference(input, kernel, strategy, x, y, b), output.get(x, y, b), 1e-9);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Separable and non-separable kernels should match the reference with every border
+	 * strategy, including on images smaller than the kernel
+	 */
+	@Test
+	public void testMatchesReference() {
+		Kernel [] kernels = new Kernel[] { Kernel.gaussian(1), Kernel.sharpen(), Kernel.sobelX(), Kernel.sobelY(), Kernel.box(4),
+				new Kernel(3, 2, new double[] { 1, 2, 3, 4, 5, 7 }) };
+		OutOfBoundsAccessStrategy [] strategies = new OutOfBoundsAccessStrategy[] { new ExtendEdgesStrategy(), new ReflectStrategy(), new ConstantStrategy(7) };
+		Image [] inputs = new Image[] { createInput(23, 19, 3), createInput(2, 3, 1) };
+		for(Image input : inputs) {
+			for(Kernel kernel : kernels) {
+				for(OutOfBoundsAccessStrategy strategy : strategies) {
+					check(input, kernel, strategy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wide images are split into blocks of columns, the blocks should line up
+	 */
+	@Test
+	public void testColumnBlocks() {
+		Image input = createInput(1500, 6, 3);
+		check(input, Kernel.gaussian(2), new ExtendEdgesStrategy());
+		check(input, Kernel.sharpen(), new ConstantStrategy());
+	}
+
+	@Test
+	public void testKnownValues() {
+		Image input = ArrayImage.create(3, 3, 1, SampleType.Float64);
+		for(int x = 0; x < 3; x++) {
+			for(int y = 0; y < 3; y++) {
+				input.set(x, y, 0, x * 10);
+			}
+		}
+		Image output = convolve(new Convolve(Kernel.sobelX()), input);
+		//The middle column sees a gradient of 10 per pixel on both sides
+		Assert.assertEquals(80, output.get(1, 1, 0), 0.0);
+		//The edges are extended so half of the gradient is lost
+		Assert.assertEquals(40, output.get(0, 1, 0), 0.0);
+
+		Convolve blur = new Convolve(Kernel.box(3));
+		blur.setOutputSampleType(SampleType.UnsignedByte);
+		output = convolve(blur, input);
+		Assert.assertEquals(SampleType.UnsignedByte, output.getSampleType());
+		Assert.assertEquals(10, output.get(1, 2, 0), 0.0);
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformerTest.ImageCollector;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformerTest.ImageSource;
+import com.github.westonpace.jayvee.image.worker.basic.Gain;
+import com.github.westonpace.jayvee.image.worker.basic.ToGrayscale;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.ConstantSource;
+import com.github.westonpace.jayvee.workflow.SystemBuilder;
+import com.github.westonpace.jayvee.workflow.WorkflowSystem;
+
+public class ImageTransformerTest extends TestBase {
+
+	private static Image createInput() {
+		Image image = ArrayImage.create(4, 3, 2, SampleType.Float64);
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				for(int b = 0; b < image.getNumBands(); b++) {
+					image.set(x, y, b, x + y * 4 + b * 100);
+				}
+			}
+		}
+		return image;
+	}
+
+	private Image transform(ImageTransformer transformer, Image input) {
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		transformer.inputImages = newBuffer(input);
+		transformer.outputImages = outputImages;
+		transformer.setImagePool(null);
+		transformer.init();
+		transformer.iterate();
+		return outputImages.pop();
+	}
+
+	/**
+	 * The output should only be written into the input when the inputs are exclusive, the
+	 * transform is in place safe, and the output has the same shape and type
+	 */
+	@Test
+	public void testInPlace() {
+		Gain gain = new Gain();
+		gain.setGain(2);
+		Image input = createInput();
+		Image output = transform(gain, input);
+		Assert.assertNotSame(input, output);
+		Assert.assertEquals(5, input.get(1, 1, 0), 0.0);
+		Assert.assertEquals(10, output.get(1, 1, 0), 0.0);
+
+		gain.setExclusiveInputs(true);
+		//In place is off until asked for
+		Assert.assertNotSame(input, transform(gain, input));
+		gain.setInPlace(true);
+		output = transform(gain, input);
+		Assert.assertSame(input, output);
+		Assert.assertEquals(10, output.get(1, 1, 0), 0.0);
+		Assert.assertEquals(210, output.get(1, 1, 1), 0.0);
+
+		gain.setInPlace(false);
+		Assert.assertNotSame(input, transform(gain, input));
+
+		//The number of bands changes so this can never be in place
+		ToGrayscale grayscale = new ToGrayscale();
+		grayscale.setInPlace(true);
+		grayscale.setExclusiveInputs(true);
+		output = transform(grayscale, input);
+		Assert.assertNotSame(input, output);
+		Assert.assertEquals(1, output.getNumBands());
+
+		//The output type (Float64) differs from the input type
+		Gain byteGain = new Gain();
+		byteGain.setInPlace(true);
+		byteGain.setExclusiveInputs(true);
+		Image byteInput = ArrayImage.create(2, 2, 1, SampleType.UnsignedByte);
+		Assert.assertNotSame(byteInput, transform(byteGain, byteInput));
+	}
+
+	private List<Image> runGain(boolean constantSource, Image input) {
+		List<Image> collected = Collections.synchronizedList(new ArrayList<Image>());
+		SystemBuilder builder = new SystemBuilder();
+		Gain gain = builder.buildWorker(Gain.class);
+		ImageCollector collector = builder.buildWorker(ImageCollector.class);
+		gain.setGain(3);
+		gain.setInPlace(true);
+		collector.setCollected(collected);
+		if(constantSource) {
+			@SuppressWarnings("unchecked")
+			ConstantSource<Image> source = builder.buildWorker(ConstantSource.class);
+			source.setValue(input);
+			builder.connect(source.outputSink, gain.inputImages);
+		} else {
+			ImageSource source = builder.buildWorker(ImageSource.class);
+			source.setImages(Collections.singletonList(input));
+			builder.connect(source.images, gain.inputImages);
+		}
+		builder.connect(gain.outputImages, collector.images);
+		WorkflowSystem system = builder.build();
+		system.start();
+		if(constantSource) {
+			//A constant source never ends
+			while(collected.size() < 3) {
+				Thread.yield();
+			}
+			system.interrupt();
+		}
+		system.join();
+		return collected;
+	}
+
+	/**
+	 * The builder should only hand over ownership of inputs that come from a worker which
+	 * pushes each image once
+	 */
+	@Test
+	public void testBuilderVerifiesOwnership() {
+		Image input = createInput();
+		List<Image> collected = runGain(false, input);
+		Assert.assertEquals(1, collected.size());
+		Assert.assertSame(input, collected.get(0));
+		Assert.assertEquals(15, input.get(1, 1, 0), 0.0);
+
+		input = createInput();
+		collected = runGain(true, input);
+		for(Image output : collected.subList(0, 3)) {
+			Assert.assertNotSame(input, output);
+			Assert.assertEquals(15, output.get(1, 1, 0), 0.0);
+		}
+		Assert.assertEquals(5, input.get(1, 1, 0), 0.0);
+	}
+
+}
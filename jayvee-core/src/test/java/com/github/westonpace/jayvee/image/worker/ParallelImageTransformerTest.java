@@ -0,0 +1,111 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.worker.ParallelImageTransformer.Region;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+
+public class ParallelImageTransformerTest extends TestBase {
+
+	/**
+	 * Sums each pixel with the pixels above and below it, clamping at the edges, and
+	 * records the regions it was asked to transform
+	 */
+	private static class VerticalSum extends ParallelImageTransformer {
+
+		private final List<Region> regions = Collections.synchronizedList(new ArrayList<Region>());
+
+		@Override
+		protected void transform(Image input, Image output, Region region) {
+			regions.add(region);
+			int height = input.getHeight();
+			for(int y = region.getY(); y < region.getY() + region.getHeight(); y++) {
+				for(int x = region.getX(); x < region.getX() + region.getWidth(); x++) {
+					for(int b = 0; b < input.getNumBands(); b++) {
+						double sum = input.get(x, Math.max(y - 1, 0), b) + input.get(x, y, b) + input.get(x, Math.min(y + 1, height - 1), b);
+						output.set(x, y, b, sum);
+					}
+				}
+			}
+		}
+
+		@Override
+		protected int getOutputBands(Image input) {
+			return input.getNumBands();
+		}
+
+	}
+
+	private static Image createInput() {
+		Image image = ArrayImage.create(5, 40, 2, SampleType.Float64);
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				for(int b = 0; b < image.getNumBands(); b++) {
+					image.set(x, y, b, x + y * 10 + b * 1000);
+				}
+			}
+		}
+		return image;
+	}
+
+	private Image run(VerticalSum transformer, Image input) {
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		transformer.setImagePool(null);
+		transformer.inputImages = newBuffer(input);
+		transformer.outputImages = outputImages;
+		transformer.init();
+		transformer.iterate();
+		Assert.assertEquals(1, outputImages.size());
+		return outputImages.pop();
+	}
+
+	/**
+	 * The regions should cover every row of the output exactly once and the result should
+	 * not depend on how the image was split up
+	 */
+	@Test
+	public void testRegionsCoverImage() {
+		Image input = createInput();
+		VerticalSum parallel = new VerticalSum();
+		parallel.setMinStripRows(4);
+		Image parallelOutput = run(parallel, input);
+
+		List<Region> regions = new ArrayList<Region>(parallel.regions);
+		Collections.sort(regions, new Comparator<Region>() {
+			@Override
+			public int compare(Region a, Region b) {
+				return a.getY() - b.getY();
+			}
+		});
+		int nextRow = 0;
+		for(Region region : regions) {
+			Assert.assertEquals(0, region.getX());
+			Assert.assertEquals(input.getWidth(), region.getWidth());
+			Assert.assertEquals(nextRow, region.getY());
+			Assert.assertTrue(region.getHeight() >= 4);
+			nextRow += region.getHeight();
+		}
+		Assert.assertEquals(input.getHeight(), nextRow);
+
+		VerticalSum serial = new VerticalSum();
+		serial.setParallel(false);
+		Image serialOutput = run(serial, input);
+		Assert.assertEquals(1, serial.regions.size());
+		Assert.assertEquals(input.getHeight(), serial.regions.get(0).getHeight());
+
+		assertEquals(serialOutput, parallelOutput, 0.0);
+		Assert.assertEquals(3 * 1000 + 3 * 13, parallelOutput.get(3, 1, 1), 0.0);
+		Assert.assertEquals(3 * 2 + 380 + 2 * 390, parallelOutput.get(2, 39, 0), 0.0);
+	}
+
+}
@@ -0,0 +1,238 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.ArrayImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.worker.basic.Gain;
+import com.github.westonpace.jayvee.image.worker.basic.Threshold;
+import com.github.westonpace.jayvee.image.worker.basic.ToGrayscale;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.workflow.InputBuffer;
+import com.github.westonpace.jayvee.workflow.OutputBuffer;
+import com.github.westonpace.jayvee.workflow.Sink;
+import com.github.westonpace.jayvee.workflow.Source;
+import com.github.westonpace.jayvee.workflow.StandardWorker;
+import com.github.westonpace.jayvee.workflow.Stateful;
+import com.github.westonpace.jayvee.workflow.SystemBuilder;
+import com.github.westonpace.jayvee.workflow.WorkflowSystem;
+
+public class PointwiseTransformerTest extends TestBase {
+
+	/**
+	 * Pushes a list of images and then ends
+	 */
+	@Stateful
+	public static class ImageSource extends StandardWorker {
+
+		@OutputBuffer
+		public Sink<Image> images;
+
+		private List<Image> toPush;
+
+		public void setImages(List<Image> toPush) {
+			this.toPush = new ArrayList<Image>(toPush);
+		}
+
+		@Override
+		public void iterate() {
+			if(toPush.isEmpty()) {
+				end();
+				return;
+			}
+			images.push(toPush.remove(0));
+		}
+
+	}
+
+	/**
+	 * Adds every image it receives to a list
+	 */
+	@Stateful
+	public static class ImageCollector extends StandardWorker {
+
+		@InputBuffer
+		public Source<Image> images;
+
+		private List<Image> collected;
+
+		public void setCollected(List<Image> collected) {
+			this.collected = collected;
+		}
+
+		@Override
+		public void iterate() {
+			collected.add(images.pop());
+		}
+
+	}
+
+	/**
+	 * A gain which counts how often it is iterated on its own
+	 */
+	public static class CountingGain extends Gain {
+
+		private int iterations = 0;
+
+		@Override
+		public void iterate() {
+			iterations++;
+			super.iterate();
+		}
+
+	}
+
+	/**
+	 * A gain whose output is rounded to bytes
+	 */
+	public static class ByteGain extends Gain {
+
+		@Override
+		protected SampleType getOutputSampleType(SampleType inputSampleType) {
+			return SampleType.UnsignedByte;
+		}
+
+	}
+
+	private static Image createInput(int seed) {
+		Image image = ArrayImage.create(7, 20, 3, SampleType.UnsignedByte);
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				for(int b = 0; b < image.getNumBands(); b++) {
+					image.set(x, y, b, (x * 31 + y * 17 + b * 7 + seed) % 256);
+				}
+			}
+		}
+		return image;
+	}
+
+	/*
+	 * Runs the chain, fusion is left at the builder's default if it is null
+	 */
+	private List<Image> runChain(List<Image> inputs, Boolean fusion, int[] gainIterations) {
+		List<Image> collected = Collections.synchronizedList(new ArrayList<Image>());
+		SystemBuilder builder = new SystemBuilder();
+		if(fusion != null) {
+			builder.setFusion(fusion);
+		}
+		ImageSource source = builder.buildWorker(ImageSource.class);
+		ToGrayscale grayscale = builder.buildWorker(ToGrayscale.class);
+		CountingGain gain = builder.buildWorker(CountingGain.class);
+		Threshold threshold = builder.buildWorker(Threshold.class);
+		ImageCollector collector = builder.buildWorker(ImageCollector.class);
+
+		source.setImages(inputs);
+		gain.setGain(2);
+		gain.setOffset(-100);
+		threshold.setThreshold(150);
+		collector.setCollected(collected);
+
+		builder.connect(source.images, grayscale.inputImages);
+		builder.connect(grayscale.outputImages, gain.inputImages);
+		builder.connect(gain.outputImages, threshold.inputImages);
+		builder.connect(threshold.outputImages, collector.images);
+
+		WorkflowSystem system = builder.build();
+		system.start();
+		system.join();
+		gainIterations[0] = gain.iterations;
+		return collected;
+	}
+
+	/**
+	 * A fused chain should give the same images as the separate workers without the
+	 * middle workers ever iterating
+	 */
+	@Test
+	public void testFusedChain() {
+		List<Image> inputs = new ArrayList<Image>();
+		for(int i = 0; i < 3; i++) {
+			inputs.add(createInput(i * 50));
+		}
+		int [] gainIterations = new int[1];
+		List<Image> fused = runChain(inputs, true, gainIterations);
+		Assert.assertEquals(0, gainIterations[0]);
+		List<Image> separate = runChain(inputs, false, gainIterations);
+		Assert.assertTrue(gainIterations[0] >= inputs.size());
+		//Fusion is opt-in
+		runChain(inputs, null, gainIterations);
+		Assert.assertTrue(gainIterations[0] >= inputs.size());
+
+		Assert.assertEquals(inputs.size(), fused.size());
+		Assert.assertEquals(inputs.size(), separate.size());
+		for(int i = 0; i < inputs.size(); i++) {
+			Image input = inputs.get(i);
+			Image output = fused.get(i);
+			Assert.assertEquals(1, output.getNumBands());
+			Assert.assertEquals(SampleType.UnsignedByte, output.getSampleType());
+			assertEquals(separate.get(i), output, 0.0);
+			for(int y = 0; y < input.getHeight(); y++) {
+				for(int x = 0; x < input.getWidth(); x++) {
+					double gray = (input.get(x, y, 0) + input.get(x, y, 1) + input.get(x, y, 2)) / 3;
+					double expected = gray * 2 - 100 >= 150 ? 255 : 0;
+					Assert.assertEquals(expected, output.get(x, y, 0), 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A stage in the middle of a chain which rounds its output should still round when
+	 * fused
+	 */
+	@Test
+	public void testRoundingStage() {
+		ByteGain first = new ByteGain();
+		first.setGain(0.3);
+		Gain second = new Gain();
+		second.setGain(10);
+		Assert.assertTrue(first.canFuse(second));
+		first.fuse(second);
+
+		Image input = ArrayImage.create(3, 1, 1, SampleType.Float64);
+		input.set(0, 0, 0, 5);
+		input.set(1, 0, 0, 20);
+		input.set(2, 0, 0, 1000);
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		first.inputImages = newBuffer(input);
+		first.outputImages = outputImages;
+		first.setImagePool(null);
+		first.init();
+		first.iterate();
+
+		Image output = outputImages.pop();
+		Assert.assertEquals(SampleType.Float64, output.getSampleType());
+		//5 * 0.3 = 1.5 is rounded to 2 before the second stage
+		Assert.assertEquals(20, output.get(0, 0, 0), 0.0);
+		Assert.assertEquals(60, output.get(1, 0, 0), 0.0);
+		//300 is clamped to 255 before the second stage
+		Assert.assertEquals(2550, output.get(2, 0, 0), 0.0);
+	}
+
+	/**
+	 * Transformers configured differently can't share the settings of a fused chain
+	 */
+	@Test
+	public void testSettingsMustMatch() {
+		Gain first = new Gain();
+		Gain second = new Gain();
+		Assert.assertTrue(first.canFuse(second));
+		second.setReleaseInputs(true);
+		Assert.assertFalse(first.canFuse(second));
+		first.setReleaseInputs(true);
+		Assert.assertTrue(first.canFuse(second));
+		second.setImagePool(null);
+		Assert.assertFalse(first.canFuse(second));
+		first.setImagePool(null);
+		first.setInPlace(true);
+		Assert.assertFalse(first.canFuse(second));
+	}
+
+}
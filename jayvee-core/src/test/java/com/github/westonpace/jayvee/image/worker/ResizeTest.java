@@ -0,0 +1,110 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.SampleType;
+import com.github.westonpace.jayvee.image.StandardImage;
+import com.github.westonpace.jayvee.image.Resampler.Filter;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformerTest.ImageCollector;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformerTest.ImageSource;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.workflow.SystemBuilder;
+import com.github.westonpace.jayvee.workflow.WorkflowSystem;
+
+public class ResizeTest extends TestBase {
+
+	/**
+	 * Doubling the 3x3 image with nearest neighbor filtering should turn every pixel into
+	 * a 2x2 block
+	 */
+	@Test
+	public void testResize() {
+		Image input = imageStreamToImage(get3by3Stream());
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		Resize resize = new Resize(6, 6, Filter.NearestNeighbor);
+		resize.inputImages = newBuffer(input, input);
+		resize.outputImages = outputImages;
+		resize.init();
+		resize.iterate();
+		resize.iterate();
+
+		Assert.assertEquals(2, outputImages.size());
+		Image output = outputImages.pop();
+		Assert.assertEquals(6, output.getWidth());
+		Assert.assertEquals(6, output.getHeight());
+		Assert.assertEquals(input.getNumBands(), output.getNumBands());
+		Assert.assertEquals(SampleType.UnsignedByte, output.getSampleType());
+		for(int y = 0; y < 6; y++) {
+			for(int x = 0; x < 6; x++) {
+				for(int b = 0; b < output.getNumBands(); b++) {
+					Assert.assertEquals(input.get(x / 2, y / 2, b), output.get(x, y, b), 0.0);
+				}
+			}
+		}
+		assertEquals(output, outputImages.pop(), 0.0);
+	}
+
+	/**
+	 * Shrinking by exactly 8 from a pyramid should resample level 3, where every pixel is
+	 * the average of an 8x8 block of the input
+	 */
+	@Test
+	public void testPyramid() {
+		StandardImage input = new StandardImage(96, 64, 1);
+		for(int y = 0; y < 64; y++) {
+			for(int x = 0; x < 96; x++) {
+				input.set(x, y, 0, x + y * 2);
+			}
+		}
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		Resize resize = new Resize(12, 8);
+		resize.setUsePyramid(true);
+		resize.setImagePool(null);
+		resize.inputImages = newBuffer((Image) input);
+		resize.outputImages = outputImages;
+		resize.init();
+		resize.iterate();
+
+		Image output = outputImages.pop();
+		for(int y = 0; y < 8; y++) {
+			for(int x = 0; x < 12; x++) {
+				Assert.assertEquals(x * 8 + 3.5 + (y * 8 + 3.5) * 2, output.get(x, y, 0), 0.000001);
+			}
+		}
+	}
+
+	/**
+	 * The worker should be configurable when it is created by a system builder
+	 */
+	@Test
+	public void testBuiltBySystemBuilder() {
+		Image input = imageStreamToImage(get3by3Stream());
+		List<Image> collected = Collections.synchronizedList(new ArrayList<Image>());
+		SystemBuilder builder = new SystemBuilder();
+		ImageSource source = builder.buildWorker(ImageSource.class);
+		Resize resize = builder.buildWorker(Resize.class);
+		ImageCollector collector = builder.buildWorker(ImageCollector.class);
+		source.setImages(Collections.singletonList(input));
+		resize.setSize(6, 6);
+		resize.setFilter(Filter.NearestNeighbor);
+		collector.setCollected(collected);
+		builder.connect(source.images, resize.inputImages);
+		builder.connect(resize.outputImages, collector.images);
+
+		WorkflowSystem system = builder.build();
+		system.start();
+		system.join();
+		Assert.assertEquals(1, collected.size());
+		Image output = collected.get(0);
+		Assert.assertEquals(6, output.getWidth());
+		Assert.assertEquals(input.get(1, 2, 0), output.get(3, 5, 0), 0.0);
+	}
+
+}
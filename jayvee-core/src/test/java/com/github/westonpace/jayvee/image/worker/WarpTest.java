@@ -0,0 +1,186 @@
+package com.github.westonpace.jayvee.image.worker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.ByteImage;
+import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Interpolator;
+import com.github.westonpace.jayvee.image.Interpolator.BilinearInterpolator;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy;
+import com.github.westonpace.jayvee.image.OutOfBoundsAccessStrategy.ExtendEdgesStrategy;
+import com.github.westonpace.jayvee.image.StandardImage;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformerTest.ImageCollector;
+import com.github.westonpace.jayvee.image.worker.PointwiseTransformerTest.ImageSource;
+import com.github.westonpace.jayvee.test.ArrayListBuffer;
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.workflow.SystemBuilder;
+import com.github.westonpace.jayvee.workflow.WorkflowSystem;
+
+public class WarpTest extends TestBase {
+
+	private static StandardImage createRandomImage(int width, int height, int numBands) {
+		Random random = new Random(11);
+		StandardImage image = new StandardImage(width, height, numBands);
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				for(int b = 0; b < numBands; b++) {
+					image.set(x, y, b, random.nextInt(1000));
+				}
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void testTranslate() {
+		ByteImage input = new ByteImage(80, 70, 3);
+		for(int y = 0; y < 70; y++) {
+			for(int x = 0; x < 80; x++) {
+				for(int b = 0; b < 3; b++) {
+					input.set(x, y, b, (x + y + b) % 256);
+				}
+			}
+		}
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		Warp warp = new Warp(new double [] {1, 0, 2, 0, 1, -1});
+		warp.inputImages = newBuffer((Image) input);
+		warp.outputImages = outputImages;
+		warp.iterate();
+
+		Image output = outputImages.pop();
+		Assert.assertEquals(80, output.getWidth());
+		Assert.assertEquals(70, output.getHeight());
+		Assert.assertEquals(input.getSampleType(), output.getSampleType());
+		for(int y = 0; y < 70; y++) {
+			for(int x = 0; x < 80; x++) {
+				for(int b = 0; b < 3; b++) {
+					double expected = x + 2 < 80 && y > 0 ? input.get(x + 2, y - 1, b) : 0;
+					Assert.assertEquals(expected, output.get(x, y, b), 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The incremental, strip parallel warp should give the same answer as computing the
+	 * source coordinates of every pixel directly
+	 */
+	@Test
+	public void testPerspective() {
+		StandardImage input = createRandomImage(60, 50, 2);
+		double [] matrix = new double [] {0.9, 0.1, 3, -0.05, 1.1, 2, 0.001, 0.002, 1};
+		OutOfBoundsAccessStrategy strategy = new ExtendEdgesStrategy();
+		BilinearInterpolator interpolator = new BilinearInterpolator();
+		Warp warp = new Warp(matrix);
+		warp.setOutOfBoundsAccessStrategy(strategy);
+		StandardImage output = new StandardImage(70, 64, 2);
+		warp.warp(input, output);
+		for(int y = 0; y < 64; y++) {
+			for(int x = 0; x < 70; x++) {
+				double w = matrix[6] * x + matrix[7] * y + matrix[8];
+				double sourceX = (matrix[0] * x + matrix[1] * y + matrix[2]) / w;
+				double sourceY = (matrix[3] * x + matrix[4] * y + matrix[5]) / w;
+				for(int b = 0; b < 2; b++) {
+					Assert.assertEquals(interpolator.interpolate(sourceX, sourceY, b, input, strategy), output.get(x, y, b), 0.000001);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Interpolators that can't interpolate in batches are still supported
+	 */
+	@Test
+	public void testPlainInterpolator() {
+		StandardImage input = createRandomImage(20, 20, 1);
+		Warp warp = new Warp(new double [] {0.5, 0, 0, 0, 0.5, 0, 0, 0, 1});
+		warp.setInterpolator(new Interpolator() {
+			@Override
+			public double interpolate(double x, double y, int b, Image source) {
+				return source.get((int) x, (int) y, b);
+			}
+		});
+		warp.setOutputSize(44, 40);
+		StandardImage output = new StandardImage(44, 40, 1);
+		warp.warp(input, output);
+		Assert.assertEquals(input.get(3, 5, 0), output.get(7, 11, 0), 0.0);
+		Assert.assertEquals(input.get(19, 19, 0), output.get(38, 38, 0), 0.0);
+		//Point (21, 19) is beyond the edge and gets the default value of 0
+		Assert.assertEquals(0, output.get(42, 38, 0), 0.0);
+	}
+
+	@Test
+	public void testInvert() {
+		double [] affine = new double [] {2, 1, 5, -1, 3, 7};
+		double [] inverse = Warp.invert(affine);
+		Assert.assertEquals(6, inverse.length);
+		double x = 3.5;
+		double y = -2;
+		double forwardX = affine[0] * x + affine[1] * y + affine[2];
+		double forwardY = affine[3] * x + affine[4] * y + affine[5];
+		Assert.assertEquals(x, inverse[0] * forwardX + inverse[1] * forwardY + inverse[2], 0.000001);
+		Assert.assertEquals(y, inverse[3] * forwardX + inverse[4] * forwardY + inverse[5], 0.000001);
+
+		double [] perspective = new double [] {1, 0.2, 3, 0.1, 1, -4, 0.01, 0.02, 1};
+		double [] product = multiply(perspective, Warp.invert(perspective));
+		for(int i = 0; i < 9; i++) {
+			Assert.assertEquals(i % 4 == 0 ? 1 : 0, product[i] / product[8], 0.000001);
+		}
+	}
+
+	private static double[] multiply(double[] a, double[] b) {
+		double [] result = new double[9];
+		for(int row = 0; row < 3; row++) {
+			for(int column = 0; column < 3; column++) {
+				for(int k = 0; k < 3; k++) {
+					result[row * 3 + column] += a[row * 3 + k] * b[k * 3 + column];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The worker should be configurable when it is created by a system builder
+	 */
+	@Test
+	public void testBuiltBySystemBuilder() {
+		StandardImage input = createRandomImage(10, 8, 1);
+		List<Image> collected = Collections.synchronizedList(new ArrayList<Image>());
+		SystemBuilder builder = new SystemBuilder();
+		ImageSource source = builder.buildWorker(ImageSource.class);
+		Warp warp = builder.buildWorker(Warp.class);
+		ImageCollector collector = builder.buildWorker(ImageCollector.class);
+		source.setImages(Collections.<Image>singletonList(input));
+		warp.setMatrix(new double [] {1, 0, 1, 0, 1, 0});
+		collector.setCollected(collected);
+		builder.connect(source.images, warp.inputImages);
+		builder.connect(warp.outputImages, collector.images);
+
+		WorkflowSystem system = builder.build();
+		system.start();
+		system.join();
+		Assert.assertEquals(1, collected.size());
+		Image output = collected.get(0);
+		Assert.assertEquals(input.get(4, 3, 0), output.get(3, 3, 0), 0.0);
+		Assert.assertEquals(0, output.get(9, 3, 0), 0.0);
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testMissingMatrix() {
+		new Warp().warp(createRandomImage(2, 2, 1), createRandomImage(2, 2, 1));
+	}
+
+	@Test(expected=InvalidParameterException.class)
+	public void testBadMatrix() {
+		new Warp(new double [] {1, 0, 0, 1});
+	}
+
+}
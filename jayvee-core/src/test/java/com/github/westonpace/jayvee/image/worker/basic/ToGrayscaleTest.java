@@ -4,6 +4,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.github.westonpace.jayvee.image.Image;
+import com.github.westonpace.jayvee.image.Image.Layout;
 import com.github.westonpace.jayvee.image.StandardImage;
 import com.github.westonpace.jayvee.image.worker.basic.ToGrayscale;
 import com.github.westonpace.jayvee.test.ArrayListBuffer;
@@ -78,4 +79,28 @@ public class ToGrayscaleTest extends TestBase {
 		Assert.assertEquals(4.3333333, result.get(0, 1, 0), 0.00001);
 		Assert.assertEquals(0, result.get(1, 1, 0), 0.00001);
 	}
+
+	/**
+	 * The same known values as above stored in a planar image should give the same answer
+	 */
+	@Test
+	public void testPlanarInput() {
+		double [] values = new double [] {1, 4, 9, 0,
+				                          2, 4, 3, 0,
+				                          3, 4, 1, 0};
+		Image image = new StandardImage(2, 2, 3, Layout.Planar, values);
+
+		ArrayListBuffer<Image> outputImages = new ArrayListBuffer<Image>();
+		ToGrayscale toGrayscale = new ToGrayscale();
+		toGrayscale.inputImages = newBuffer(image);
+		toGrayscale.outputImages = outputImages;
+		toGrayscale.init();
+		toGrayscale.iterate();
+
+		Image result = outputImages.pop();
+		Assert.assertEquals(2, result.get(0, 0, 0), 0.00001);
+		Assert.assertEquals(4, result.get(1, 0, 0), 0.00001);
+		Assert.assertEquals(4.3333333, result.get(0, 1, 0), 0.00001);
+		Assert.assertEquals(0, result.get(1, 1, 0), 0.00001);
+	}
 }
@@ -0,0 +1,232 @@
+package com.github.westonpace.jayvee.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.test.TestBase;
+import com.github.westonpace.jayvee.util.ConstantSource;
+import com.github.westonpace.jayvee.util.InvalidParameterException;
+import com.github.westonpace.jayvee.util.RuntimeInterruptedException;
+
+public class SystemBuilderTest extends TestBase {
+
+	/**
+	 * Pushes 0, 1, 2, ... up to a limit
+	 */
+	@Stateful
+	public static class Counter extends StandardWorker {
+
+		@OutputBuffer
+		public Sink<Integer> numbers;
+
+		private int next = 0;
+		private int limit;
+
+		public void setLimit(int limit) {
+			this.limit = limit;
+		}
+
+		@Override
+		public void iterate() {
+			if(next == limit) {
+				end();
+				return;
+			}
+			numbers.push(next++);
+		}
+
+	}
+
+	/**
+	 * Adds an offset to each number after a random delay so that replicas finish out of
+	 * order, records which threads it ran on
+	 */
+	public static class SlowAdder extends StandardWorker {
+
+		@InputBuffer
+		public Source<Integer> numbers;
+		@InputBuffer
+		public Source<Integer> offsets;
+		@OutputBuffer
+		public Sink<Integer> sums;
+
+		private Set<String> threads;
+		private final Random random = new Random();
+
+		public void setThreads(Set<String> threads) {
+			this.threads = threads;
+		}
+
+		@Override
+		public void iterate() {
+			int number = numbers.pop();
+			int offset = offsets.pop();
+			threads.add(Thread.currentThread().getName());
+			try {
+				Thread.sleep(random.nextInt(3));
+			} catch (InterruptedException ex) {
+				throw new RuntimeInterruptedException(ex);
+			}
+			sums.push(number + offset);
+		}
+
+	}
+
+	/**
+	 * Passes numbers through but first waits, after popping, until two iterations are in
+	 * that spot at once.  Records whether that ever happened.
+	 */
+	public static class Rendezvous extends StandardWorker {
+
+		@InputBuffer
+		public Source<Integer> input;
+		@OutputBuffer
+		public Sink<Integer> output;
+
+		private CountDownLatch latch;
+		private List<Boolean> met;
+
+		public void setLatch(CountDownLatch latch, List<Boolean> met) {
+			this.latch = latch;
+			this.met = met;
+		}
+
+		@Override
+		public void iterate() {
+			int value = input.pop();
+			latch.countDown();
+			try {
+				met.add(latch.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException ex) {
+				throw new RuntimeInterruptedException(ex);
+			}
+			output.push(value);
+		}
+
+	}
+
+	/**
+	 * Adds everything it receives to a list
+	 */
+	@Stateful
+	public static class Collector extends StandardWorker {
+
+		@InputBuffer
+		public Source<Integer> values;
+
+		private List<Integer> collected;
+
+		public void setCollected(List<Integer> collected) {
+			this.collected = collected;
+		}
+
+		@Override
+		public void iterate() {
+			collected.add(values.pop());
+		}
+
+	}
+
+	private List<Integer> runAdder(int replicas, Set<String> threads) {
+		List<Integer> collected = Collections.synchronizedList(new ArrayList<Integer>());
+		SystemBuilder builder = new SystemBuilder();
+		Counter counter = builder.buildWorker(Counter.class);
+		SlowAdder adder = builder.buildWorker(SlowAdder.class);
+		@SuppressWarnings("unchecked")
+		ConstantSource<Integer> offset = builder.buildWorker(ConstantSource.class);
+		Collector collector = builder.buildWorker(Collector.class);
+
+		counter.setLimit(200);
+		offset.setValue(1000);
+		adder.setThreads(threads);
+		collector.setCollected(collected);
+		builder.setReplicas(adder, replicas);
+
+		builder.connect(counter.numbers, adder.numbers, 4);
+		builder.connect(offset.outputSink, adder.offsets);
+		builder.connect(adder.sums, collector.values, 4);
+
+		WorkflowSystem system = builder.build();
+		system.start();
+		system.join();
+		return collected;
+	}
+
+	/**
+	 * Replicas should run on separate threads but the output should still come out in the
+	 * order the input went in
+	 */
+	@Test
+	public void testReplicasKeepOrder() {
+		Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+		List<Integer> collected = runAdder(4, threads);
+		Assert.assertEquals(200, collected.size());
+		for(int i = 0; i < collected.size(); i++) {
+			Assert.assertEquals(Integer.valueOf(i + 1000), collected.get(i));
+		}
+		Assert.assertTrue(threads.size() > 1);
+
+		threads.clear();
+		collected = runAdder(1, threads);
+		Assert.assertEquals(200, collected.size());
+		Assert.assertEquals(1, threads.size());
+	}
+
+	/**
+	 * Replicas should only hold on to the inputs while popping, the work after the pops
+	 * should overlap
+	 */
+	@Test
+	public void testReplicasOverlap() {
+		List<Integer> collected = Collections.synchronizedList(new ArrayList<Integer>());
+		List<Boolean> met = Collections.synchronizedList(new ArrayList<Boolean>());
+		SystemBuilder builder = new SystemBuilder();
+		Counter counter = builder.buildWorker(Counter.class);
+		Rendezvous rendezvous = builder.buildWorker(Rendezvous.class);
+		Collector collector = builder.buildWorker(Collector.class);
+		counter.setLimit(10);
+		rendezvous.setLatch(new CountDownLatch(2), met);
+		collector.setCollected(collected);
+		builder.setReplicas(rendezvous, 2);
+		builder.connect(counter.numbers, rendezvous.input);
+		builder.connect(rendezvous.output, collector.values);
+
+		WorkflowSystem system = builder.build();
+		system.start();
+		system.join();
+		Assert.assertEquals(10, collected.size());
+		for(int i = 0; i < collected.size(); i++) {
+			Assert.assertEquals(Integer.valueOf(i), collected.get(i));
+		}
+		Assert.assertFalse(met.contains(Boolean.FALSE));
+	}
+
+	@Test
+	public void testStatefulWorkersAreNotReplicated() {
+		SystemBuilder builder = new SystemBuilder();
+		Counter counter = builder.buildWorker(Counter.class);
+		builder.setReplicas(counter, 1);
+		try {
+			builder.setReplicas(counter, 2);
+			Assert.fail("Stateful workers should not be replicated");
+		} catch (InvalidParameterException ex) {
+			//Expected
+		}
+		try {
+			builder.setReplicas(new SlowAdder(), 2);
+			Assert.fail("Workers from outside the builder should be rejected");
+		} catch (InvalidParameterException ex) {
+			//Expected
+		}
+	}
+
+}
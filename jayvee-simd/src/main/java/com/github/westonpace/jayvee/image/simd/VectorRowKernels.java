@@ -0,0 +1,22 @@
+package com.github.westonpace.jayvee.image.simd;
+
+import com.github.westonpace.jayvee.image.RowKernels;
+
+/**
+ * <p>
+ * Row kernels written with the JDK's vector API so that they compile to SIMD instructions.
+ * </p><p>
+ * This jar is a multi-release jar.  The real implementation is only found by JVMs which
+ * are new enough to have the vector API (16 and later), this version is the one older JVMs
+ * see and it never reports itself as supported so those JVMs keep using the scalar
+ * kernels.
+ * </p>
+ */
+public class VectorRowKernels extends RowKernels {
+
+	@Override
+	protected boolean isSupported() {
+		return false;
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.github.westonpace.jayvee.image.simd;
+
+import com.github.westonpace.jayvee.image.RowKernels;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>
+ * Row kernels written with the JDK's vector API so that they compile to SIMD instructions.
+ * The vector API is an incubator module so the JVM must be started with
+ * {@code --add-modules jdk.incubator.vector}, otherwise this class can't be loaded and the
+ * scalar kernels are used.  The kernels are also only used on hardware with vectors of at
+ * least 256 bits (4 doubles), on narrower hardware the scalar loops are as fast.
+ * </p><p>
+ * Every kernel gives exactly the same results as the scalar version.  Multiplications and
+ * additions are done separately (not fused) so they round the same way.
+ * </p>
+ */
+public class VectorRowKernels extends RowKernels {
+
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	//The byte conversions work on 8 values at a time, two 256 bit vectors of doubles
+	private static final VectorSpecies<Byte> BYTES_64 = ByteVector.SPECIES_64;
+	private static final VectorSpecies<Integer> INTS_256 = IntVector.SPECIES_256;
+	private static final VectorSpecies<Double> DOUBLES_256 = DoubleVector.SPECIES_256;
+
+	@Override
+	protected boolean isSupported() {
+		return DOUBLES.vectorBitSize() >= 256;
+	}
+
+	@Override
+	public void averageBands(double[] source, int sourceOffset, int numBands, double[] destination, int destinationOffset, int count) {
+		int lanes = DOUBLES.length();
+		int [] indexMap = new int[lanes];
+		for(int lane = 0; lane < lanes; lane++) {
+			indexMap[lane] = lane * numBands;
+		}
+		int i = 0;
+		//The gathers read up to the last band of the last pixel of the block
+		for(; i + lanes <= count; i += lanes) {
+			int start = sourceOffset + i * numBands;
+			DoubleVector sum = DoubleVector.zero(DOUBLES);
+			for(int b = 0; b < numBands; b++) {
+				sum = sum.add(DoubleVector.fromArray(DOUBLES, source, start + b, indexMap, 0));
+			}
+			sum.div(numBands).intoArray(destination, destinationOffset + i);
+		}
+		super.averageBands(source, sourceOffset + i * numBands, numBands, destination, destinationOffset + i, count - i);
+	}
+
+	@Override
+	public void scaleAndOffset(double[] source, int sourceOffset, double scale, double offset, double[] destination, int destinationOffset, int count) {
+		int i = 0;
+		for(int bound = DOUBLES.loopBound(count); i < bound; i += DOUBLES.length()) {
+			DoubleVector.fromArray(DOUBLES, source, sourceOffset + i).mul(scale).add(offset).intoArray(destination, destinationOffset + i);
+		}
+		super.scaleAndOffset(source, sourceOffset + i, scale, offset, destination, destinationOffset + i, count - i);
+	}
+
+	@Override
+	public void multiplyAdd(double[] source, int sourceOffset, double weight, double[] destination, int destinationOffset, int count) {
+		int i = 0;
+		for(int bound = DOUBLES.loopBound(count); i < bound; i += DOUBLES.length()) {
+			DoubleVector values = DoubleVector.fromArray(DOUBLES, source, sourceOffset + i).mul(weight);
+			DoubleVector.fromArray(DOUBLES, destination, destinationOffset + i).add(values).intoArray(destination, destinationOffset + i);
+		}
+		super.multiplyAdd(source, sourceOffset + i, weight, destination, destinationOffset + i, count - i);
+	}
+
+	@Override
+	public void unsignedBytesToDoubles(byte[] source, int sourceOffset, double[] destination, int destinationOffset, int count) {
+		int i = 0;
+		for(int bound = BYTES_64.loopBound(count); i < bound; i += BYTES_64.length()) {
+			IntVector ints = (IntVector) ByteVector.fromArray(BYTES_64, source, sourceOffset + i).convertShape(VectorOperators.B2I, INTS_256, 0);
+			ints = ints.and(0xFF);
+			((DoubleVector) ints.convertShape(VectorOperators.I2D, DOUBLES_256, 0)).intoArray(destination, destinationOffset + i);
+			((DoubleVector) ints.convertShape(VectorOperators.I2D, DOUBLES_256, 1)).intoArray(destination, destinationOffset + i + DOUBLES_256.length());
+		}
+		super.unsignedBytesToDoubles(source, sourceOffset + i, destination, destinationOffset + i, count - i);
+	}
+
+	@Override
+	public void doublesToUnsignedBytes(double[] source, int sourceOffset, byte[] destination, int destinationOffset, int count) {
+		int i = 0;
+		for(int bound = BYTES_64.loopBound(count); i < bound; i += BYTES_64.length()) {
+			//Adding 0.5 and then clamping to [0, 255] rounds like ByteImage.toByte, NaN stays
+			//NaN and the conversion to int turns it into 0
+			IntVector low = (IntVector) toRounded(source, sourceOffset + i).convertShape(VectorOperators.D2I, INTS_256, 0);
+			IntVector high = (IntVector) toRounded(source, sourceOffset + i + DOUBLES_256.length()).convertShape(VectorOperators.D2I, INTS_256, -1);
+			((ByteVector) low.or(high).convertShape(VectorOperators.I2B, BYTES_64, 0)).intoArray(destination, destinationOffset + i);
+		}
+		super.doublesToUnsignedBytes(source, sourceOffset + i, destination, destinationOffset + i, count - i);
+	}
+
+	private static DoubleVector toRounded(double[] source, int offset) {
+		return DoubleVector.fromArray(DOUBLES_256, source, offset).add(0.5).max(0).min(255);
+	}
+
+}
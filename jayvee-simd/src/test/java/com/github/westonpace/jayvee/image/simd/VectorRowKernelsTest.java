@@ -0,0 +1,100 @@
+package com.github.westonpace.jayvee.image.simd;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.westonpace.jayvee.image.RowKernels;
+
+import jdk.incubator.vector.DoubleVector;
+
+public class VectorRowKernelsTest {
+
+	//Odd lengths and offsets so that every kernel has a partial block left over
+	private static final int LENGTH = 203;
+	private static final int OFFSET = 3;
+
+	private final RowKernels scalar = new RowKernels() {};
+	private final VectorRowKernels vector = new VectorRowKernels();
+	private final Random random = new Random(5);
+
+	@Before
+	public void checkHardware() {
+		Assume.assumeTrue(DoubleVector.SPECIES_PREFERRED.vectorBitSize() >= 256);
+	}
+
+	private double[] randomDoubles(int length) {
+		double [] values = new double[length];
+		for(int i = 0; i < length; i++) {
+			values[i] = random.nextDouble() * 400 - 50;
+		}
+		return values;
+	}
+
+	/**
+	 * The multi-release jar should give the vector kernels to RowKernels.getInstance
+	 */
+	@Test
+	public void testLoaded() {
+		Assert.assertTrue(vector.isSupported());
+		Assert.assertSame(VectorRowKernels.class, RowKernels.getInstance().getClass());
+	}
+
+	@Test
+	public void testAverageBands() {
+		for(int numBands = 1; numBands <= 4; numBands++) {
+			double [] source = randomDoubles(LENGTH * numBands);
+			int count = LENGTH - OFFSET;
+			double [] expected = new double[LENGTH];
+			double [] actual = new double[LENGTH];
+			scalar.averageBands(source, OFFSET * numBands, numBands, expected, 1, count - 1);
+			vector.averageBands(source, OFFSET * numBands, numBands, actual, 1, count - 1);
+			Assert.assertArrayEquals(expected, actual, 0.0);
+		}
+	}
+
+	@Test
+	public void testScaleAndOffset() {
+		double [] source = randomDoubles(LENGTH);
+		double [] expected = new double[LENGTH];
+		double [] actual = new double[LENGTH];
+		scalar.scaleAndOffset(source, OFFSET, 0.37, -12.5, expected, 1, LENGTH - OFFSET);
+		vector.scaleAndOffset(source, OFFSET, 0.37, -12.5, actual, 1, LENGTH - OFFSET);
+		Assert.assertArrayEquals(expected, actual, 0.0);
+	}
+
+	@Test
+	public void testMultiplyAdd() {
+		double [] source = randomDoubles(LENGTH);
+		double [] expected = randomDoubles(LENGTH);
+		double [] actual = expected.clone();
+		scalar.multiplyAdd(source, OFFSET, -0.81, expected, 2, LENGTH - OFFSET);
+		vector.multiplyAdd(source, OFFSET, -0.81, actual, 2, LENGTH - OFFSET);
+		Assert.assertArrayEquals(expected, actual, 0.0);
+	}
+
+	@Test
+	public void testByteConversions() {
+		byte [] bytes = new byte[LENGTH];
+		random.nextBytes(bytes);
+		double [] expected = new double[LENGTH];
+		double [] actual = new double[LENGTH];
+		scalar.unsignedBytesToDoubles(bytes, OFFSET, expected, 1, LENGTH - OFFSET);
+		vector.unsignedBytesToDoubles(bytes, OFFSET, actual, 1, LENGTH - OFFSET);
+		Assert.assertArrayEquals(expected, actual, 0.0);
+
+		double [] values = randomDoubles(LENGTH);
+		double [] edges = new double[] { -0.0, -0.6, -0.5, 0.49, 0.5, 1.5, 254.49, 254.5, 255, 256, Double.NaN,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		System.arraycopy(edges, 0, values, OFFSET, edges.length);
+		byte [] expectedBytes = new byte[LENGTH];
+		byte [] actualBytes = new byte[LENGTH];
+		scalar.doublesToUnsignedBytes(values, OFFSET, expectedBytes, 1, LENGTH - OFFSET);
+		vector.doublesToUnsignedBytes(values, OFFSET, actualBytes, 1, LENGTH - OFFSET);
+		Assert.assertArrayEquals(expectedBytes, actualBytes);
+	}
+
+}